@@ -0,0 +1,75 @@
+import album.model.CompressedSnapshotStore;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.Random;
+
+/**
+ * Benchmark for CompressedSnapshotStore: compression ratio of the cold tier and time to inflate a
+ * cold snapshot, for an album of 200 snapshots of 1k shapes at several deflate levels. The ratio
+ * is that of the store's bytes; the heap the album as a whole retains is measured by
+ * RetainedHeapBenchmark.
+ */
+public class CompressedStoreBenchmark {
+  private static final int SHAPES = 1_000;
+  private static final int SNAPSHOTS = 200;
+  private static final int MOVES = 20;
+  private static final int[] LEVELS = {1, 6, 9};
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException never, declared by IPhotoAlbum.takeSnapshot
+   */
+  public static void main(String[] args) throws InterruptedException {
+    System.out.println("level\tratio\tcompressed KB\tus/inflate");
+    for (int level : LEVELS) {
+      CompressedSnapshotStore store = new CompressedSnapshotStore(4, false, level);
+      PhotoAlbumImpl album = build(store);
+
+      // read every cold snapshot twice, the first pass warming up
+      int sink = 0;
+      for (int pass = 0; pass < 2; pass++) {
+        for (ISnapshot snapshot : album.getAllSnapshots().values()) {
+          sink += snapshot.getShapes().size();
+        }
+      }
+      System.out.printf("%d\t%.1f\t%d\t%.1f%n", level, store.getCompressionRatio(),
+              store.getCompressedBytes() / 1024,
+              store.getAverageInflateNanos() / 1000.0);
+      System.out.print(sink > 0 ? "" : " ");
+    }
+  }
+
+  /**
+   * Build an album whose snapshots each move a few shapes.
+   * @param store snapshot store
+   * @return  album
+   * @throws InterruptedException never
+   */
+  private static PhotoAlbumImpl build(CompressedSnapshotStore store) throws InterruptedException {
+    Random random = new Random(42);
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    for (int i = 0; i < SHAPES; i++) {
+      Color color = new Color(random.nextInt(4) / 3.0, random.nextInt(4) / 3.0, 0.5);
+      Point2D point = new Point2D(random.nextInt(1000), random.nextInt(1000));
+      if (i % 2 == 0) {
+        album.addShape("S" + i, new Rectangle(color, point, 10 + random.nextInt(40), 20));
+      } else {
+        album.addShape("S" + i, new Oval(color, point, 15, 10 + random.nextInt(40)));
+      }
+    }
+    for (int s = 0; s < SNAPSHOTS; s++) {
+      for (int m = 0; m < MOVES; m++) {
+        album.moveShape("S" + random.nextInt(SHAPES),
+                new Point2D(random.nextInt(1000), random.nextInt(1000)));
+      }
+      album.takeSnapshot("snapshot " + s);
+    }
+    return album;
+  }
+}
@@ -0,0 +1,103 @@
+import album.model.ConcurrentPhotoAlbumImpl;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress benchmark for ConcurrentPhotoAlbumImpl: throughput of moveShape, changeShapeColor and
+ * scaleShape calls on distinct shapes as the number of writer threads grows, with one more
+ * thread taking a snapshot every millisecond.
+ */
+public class ConcurrentAlbumBenchmark {
+  private static final int SHAPES_PER_THREAD = 1_000;
+  private static final long RUN_MILLIS = 1_000;
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException if interrupted while waiting for threads
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.println("threads\tops/s\tsnapshots");
+    for (int threads = 1; threads <= cores; threads *= 2) {
+      run(threads);
+    }
+    if (Integer.bitCount(cores) != 1) {
+      run(cores);
+    }
+  }
+
+  /**
+   * Run one round and print its result.
+   * @param threadCount number of writer threads
+   * @throws InterruptedException if interrupted while waiting for threads
+   */
+  private static void run(int threadCount) throws InterruptedException {
+    final ConcurrentPhotoAlbumImpl album = new ConcurrentPhotoAlbumImpl();
+    for (int i = 0; i < threadCount * SHAPES_PER_THREAD; i++) {
+      album.addShape("S" + i, new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 10, 10));
+    }
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final LongAdder operations = new LongAdder();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < threadCount; t++) {
+      final int first = t * SHAPES_PER_THREAD;
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Color[] colors = {Color.of(1, 0, 0), Color.of(0, 1, 0), Color.of(0, 0, 1)};
+          long count = 0;
+          while (running.get()) {
+            String id = "S" + (first + (int) (count % SHAPES_PER_THREAD));
+            switch ((int) (count % 3)) {
+              case 0:
+                album.moveShape(id, new Point2D(count % 800, count % 600));
+                break;
+              case 1:
+                album.changeShapeColor(id, colors[(int) (count % colors.length)]);
+                break;
+              default:
+                album.scaleShape(id, ((count & 1) == 0) ? 2 : 0.5);
+            }
+            count++;
+          }
+          operations.add(count);
+        }
+      }));
+    }
+    Thread snapshots = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (running.get()) {
+          album.takeSnapshot("");
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    });
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    snapshots.start();
+    Thread.sleep(RUN_MILLIS);
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    snapshots.join();
+
+    System.out.println(threadCount + "\t" + (operations.sum() * 1000 / RUN_MILLIS) + "\t"
+            + album.getNumSnapshots());
+  }
+}
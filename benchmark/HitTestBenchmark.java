@@ -0,0 +1,98 @@
+import album.model.HitTester;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.IShape;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.Triangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark for finding the topmost shape under a point in a 100k-shape snapshot: HitTester
+ * next to scanning every shape of the snapshot.
+ */
+public class HitTestBenchmark {
+  private static final int SHAPES = 100_000;
+  private static final int EXTENT = 10_000;
+  private static final int LOOKUPS = 10_000;
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException never, declared by IPhotoAlbum.takeSnapshot
+   */
+  public static void main(String[] args) throws InterruptedException {
+    Random random = new Random(42);
+    PhotoAlbumImpl album = new PhotoAlbumImpl();
+    for (int i = 0; i < SHAPES; i++) {
+      Color color = new Color(random.nextDouble(), random.nextDouble(), random.nextDouble());
+      Point2D point = new Point2D(random.nextInt(EXTENT), random.nextInt(EXTENT));
+      double x = 5 + random.nextInt(50);
+      double y = 5 + random.nextInt(50);
+      switch (i % 3) {
+        case 0:
+          album.addShape("S" + i, new Rectangle(color, point, x, y));
+          break;
+        case 1:
+          album.addShape("S" + i, new Oval(color, point, x, y));
+          break;
+        default:
+          album.addShape("S" + i, new Triangle(color, point, x, y));
+      }
+    }
+    ISnapshot snapshot = album.takeSnapshot("scene");
+
+    long start = System.nanoTime();
+    HitTester tester = new HitTester(snapshot);
+    System.out.println("index build: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+    double[] points = new double[LOOKUPS * 2];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = random.nextDouble() * EXTENT;
+    }
+
+    // warm up both lookups
+    int sink = 0;
+    for (int i = 0; i < LOOKUPS; i++) {
+      sink += (tester.shapeAt(points[2 * i], points[2 * i + 1]) == null) ? 0 : 1;
+    }
+    for (int i = 0; i < 100; i++) {
+      sink += (scan(snapshot, points[2 * i], points[2 * i + 1]) == null) ? 0 : 1;
+    }
+
+    System.out.println("lookup\tus/lookup");
+    start = System.nanoTime();
+    for (int i = 0; i < LOOKUPS; i++) {
+      sink += (tester.shapeAt(points[2 * i], points[2 * i + 1]) == null) ? 0 : 1;
+    }
+    System.out.printf("HitTester\t%.2f%n", (System.nanoTime() - start) / 1000.0 / LOOKUPS);
+
+    start = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      sink += (scan(snapshot, points[2 * i], points[2 * i + 1]) == null) ? 0 : 1;
+    }
+    System.out.printf("scan\t%.2f%n", (System.nanoTime() - start) / 1000.0 / 100);
+    System.out.println(sink > 0 ? "" : " ");
+  }
+
+  /**
+   * Find the topmost shape under a point by checking every shape.
+   * @param snapshot  snapshot
+   * @param x x of point
+   * @param y y of point
+   * @return  identifier of topmost shape, or null
+   */
+  private static String scan(ISnapshot snapshot, double x, double y) {
+    String found = null;
+    for (Map.Entry<String, IShape> entry : snapshot.getShapes().entrySet()) {
+      if (entry.getValue().contains(x, y)) {
+        found = entry.getKey();
+      }
+    }
+    return found;
+  }
+}
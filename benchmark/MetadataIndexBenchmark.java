@@ -0,0 +1,79 @@
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Benchmark for the snapshot metadata index: time to find snapshots by description words and by
+ * time range in an album of 1M snapshots.
+ */
+public class MetadataIndexBenchmark {
+  private static final int SNAPSHOTS = 1_000_000;
+  private static final int QUERIES = 1_000;
+  private static final String[] ROOMS = {"kitchen", "hall", "garden", "attic", "cellar"};
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException never, declared by IPhotoAlbum.takeSnapshot
+   */
+  public static void main(String[] args) throws InterruptedException {
+    PhotoAlbumImpl album = new PhotoAlbumImpl();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+    String[] ids = new String[SNAPSHOTS];
+    for (int i = 0; i < SNAPSHOTS; i++) {
+      // every 1000th snapshot turns the lights on, the rest describe a room
+      String description = (i % 1000 == 0) ? "Lights On!" : ROOMS[i % ROOMS.length] + " " + i;
+      ids[i] = album.takeSnapshot(description).getID();
+    }
+
+    System.out.println("query\tmatches\tus/query");
+    run(album, ids, "Lights On!", false);
+    run(album, ids, "kitchen", true);
+    run(album, ids, "garden 42", false);
+    run(album, ids, null, true);
+  }
+
+  /**
+   * Time a query, optionally within a window of 1000 snapshots moving through the album.
+   * @param album album
+   * @param ids snapshot identifiers
+   * @param text  words to look for
+   * @param window  true to bound the time range
+   */
+  private static void run(PhotoAlbumImpl album, String[] ids, String text, boolean window) {
+    long matches = 0;
+    for (int pass = 0; pass < 2; pass++) {
+      matches = 0;
+      long start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        Instant from = null;
+        Instant to = null;
+        if (window) {
+          int first = (int) ((q * 7919L) % (SNAPSHOTS - 1000));
+          from = toInstant(ids[first]);
+          to = toInstant(ids[first + 1000]);
+        }
+        List<String> found = album.findSnapshots(text, from, to);
+        matches += found.size();
+      }
+      long time = System.nanoTime() - start;
+      if (pass == 1) {
+        System.out.println(text + (window ? " (1k window)" : "") + "\t" + (matches / QUERIES)
+                + "\t" + (time / QUERIES / 1000.0));
+      }
+    }
+  }
+
+  /**
+   * Read the instant of a snapshot from its identifier, a UTC instant.
+   * @param id  snapshot identifier
+   * @return  instant
+   */
+  private static Instant toInstant(String id) {
+    return Instant.parse(id);
+  }
+}
@@ -0,0 +1,88 @@
+import album.model.CompressedSnapshotStore;
+import album.model.ISnapshotStore;
+import album.model.InMemorySnapshotStore;
+import album.model.PhotoAlbumImpl;
+import album.model.TieredSnapshotStore;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.Random;
+
+/**
+ * Benchmark for the heap an album retains with different snapshot stores: 200 snapshots of 2k
+ * shapes, a quarter of which move between snapshots. It measures the heap held by the album with
+ * its store, and by the store alone once the album is dropped, next to the number of distinct
+ * shape states in the album's shape pool.
+ */
+public class RetainedHeapBenchmark {
+  private static final int SHAPES = 2_000;
+  private static final int SNAPSHOTS = 200;
+  private static final int MOVES = 500;
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException never, declared by IPhotoAlbum.takeSnapshot
+   */
+  public static void main(String[] args) throws InterruptedException {
+    System.out.println("store\talbum KB\tstore alone KB\tpooled states");
+    for (int i = 0; i < 3; i++) {
+      long base = usedHeap();
+      ISnapshotStore store;
+      if (i == 0) {
+        store = new InMemorySnapshotStore();
+      } else if (i == 1) {
+        store = new TieredSnapshotStore(2);
+      } else {
+        store = new CompressedSnapshotStore(2);
+      }
+      PhotoAlbumImpl album = build(store);
+      long withAlbum = usedHeap() - base;
+      int states = album.getShapePool().getUniqueShapes();
+      album = null;
+      long storeAlone = usedHeap() - base;
+
+      System.out.println(store.getClass().getSimpleName() + "\t" + (withAlbum / 1024) + "\t"
+              + (storeAlone / 1024) + "\t" + states + ((album == null) ? "" : " "));
+      if (store instanceof TieredSnapshotStore) {
+        ((TieredSnapshotStore) store).close();
+      }
+    }
+  }
+
+  /**
+   * Build an album whose snapshots each move a quarter of the shapes.
+   * @param store snapshot store
+   * @return  album
+   * @throws InterruptedException never
+   */
+  private static PhotoAlbumImpl build(ISnapshotStore store) throws InterruptedException {
+    Random random = new Random(42);
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    for (int i = 0; i < SHAPES; i++) {
+      album.addShape("S" + i, new Rectangle(new Color(0, 0, 1),
+              new Point2D(random.nextInt(1000), random.nextInt(1000)), 10, 20));
+    }
+    for (int s = 0; s < SNAPSHOTS; s++) {
+      for (int m = 0; m < MOVES; m++) {
+        album.moveShape("S" + random.nextInt(SHAPES),
+                new Point2D(random.nextInt(1000), random.nextInt(1000)));
+      }
+      album.takeSnapshot("snapshot " + s);
+    }
+    return album;
+  }
+
+  /**
+   * Measure the heap in use after collecting garbage.
+   * @return  bytes in use
+   */
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
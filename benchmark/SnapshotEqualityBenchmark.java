@@ -0,0 +1,106 @@
+import album.model.IPhotoAlbum;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.IShape;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.Triangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Benchmark for comparing two equal 10k-shape snapshots built from distinct shape objects: time
+ * and bytes allocated per shape with numeric equality, next to the previous approach of comparing
+ * toString() output.
+ */
+public class SnapshotEqualityBenchmark {
+  private static final int SHAPES = 10_000;
+  private static final int ROUNDS = 50;
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException never, declared by IPhotoAlbum.takeSnapshot
+   */
+  public static void main(String[] args) throws InterruptedException {
+    ISnapshot first = build().takeSnapshot("first");
+    ISnapshot second = build().takeSnapshot("second");
+    com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    // warm up both comparisons
+    boolean sink = false;
+    for (int i = 0; i < ROUNDS; i++) {
+      sink ^= first.getShapes().equals(second.getShapes());
+      sink ^= compareStrings(first.getShapes(), second.getShapes());
+    }
+
+    System.out.println("comparison\tns/shape\tbytes allocated/shape");
+    long bytes = threads.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      sink ^= first.getShapes().equals(second.getShapes());
+    }
+    report("equals", System.nanoTime() - start, threads.getThreadAllocatedBytes(thread) - bytes);
+
+    bytes = threads.getThreadAllocatedBytes(thread);
+    start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      sink ^= compareStrings(first.getShapes(), second.getShapes());
+    }
+    report("toString", System.nanoTime() - start, threads.getThreadAllocatedBytes(thread) - bytes);
+    System.out.println(sink ? "" : " ");
+  }
+
+  /**
+   * Build album with the benchmark shapes, all new objects.
+   * @return  album
+   */
+  private static IPhotoAlbum build() {
+    IPhotoAlbum album = new PhotoAlbumImpl();
+    for (int i = 0; i < SHAPES; i++) {
+      Color color = new Color((i % 11) / 10.0, (i % 7) / 10.0, (i % 5) / 10.0);
+      Point2D point = new Point2D(i % 800, i % 600);
+      IShape shape;
+      if (i % 3 == 0) {
+        shape = new Oval(color, point, 5 + i % 20, 5 + i % 30);
+      } else if (i % 3 == 1) {
+        shape = new Rectangle(color, point, 5 + i % 20, 5 + i % 30);
+      } else {
+        shape = new Triangle(color, point, 5 + i % 20, 5 + i % 30);
+      }
+      album.addShape("S" + i, shape);
+    }
+    return album;
+  }
+
+  /**
+   * Compare shapes the way shape equality used to, through their string representations.
+   * @param first first shapes
+   * @param second  second shapes
+   * @return  true if all shapes print the same
+   */
+  private static boolean compareStrings(Map<String, IShape> first, Map<String, IShape> second) {
+    for (Map.Entry<String, IShape> entry : first.entrySet()) {
+      if (!entry.getValue().toString().equals(second.get(entry.getKey()).toString())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Print one result line.
+   * @param name  comparison name
+   * @param nanos total time
+   * @param bytes total bytes allocated
+   */
+  private static void report(String name, long nanos, long bytes) {
+    long shapes = (long) SHAPES * ROUNDS;
+    System.out.println(name + "\t" + (nanos / shapes) + "\t" + ((double) bytes / shapes));
+  }
+}
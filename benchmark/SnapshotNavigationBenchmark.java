@@ -0,0 +1,91 @@
+import album.model.IPhotoAlbum;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+/**
+ * Benchmark for snapshot navigation: how the cost of Next/Previous (getSnapshot by index) and of
+ * Select (getSnapShotIndex by identifier) scales with the number of snapshots in an album.
+ */
+public class SnapshotNavigationBenchmark {
+  private static final int[] ALBUM_SIZES = {10_000, 100_000, 1_000_000};
+  private static final int LOOKUPS = 1_000_000;
+
+  /**
+   * Run benchmark.
+   * @param args  unused
+   * @throws InterruptedException never, declared by IPhotoAlbum.takeSnapshot
+   */
+  public static void main(String[] args) throws InterruptedException {
+    System.out.println("snapshots\tgetSnapshot(int) ns/op\tgetSnapShotIndex ns/op");
+    for (int size : ALBUM_SIZES) {
+      IPhotoAlbum album = new PhotoAlbumImpl();
+      album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+      String[] ids = new String[size];
+      for (int i = 0; i < size; i++) {
+        album.moveShape("R", new Point2D(i % 800, i % 600));
+        ids[i] = album.takeSnapshot("").getID();
+      }
+
+      // warm up, then walk the album back and forth like Next/Previous clicks
+      long sink = navigate(album, size, ids);
+      long start = System.nanoTime();
+      sink += walk(album, size);
+      long walkTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      sink += select(album, size, ids);
+      long selectTime = System.nanoTime() - start;
+
+      System.out.println(size + "\t" + (walkTime / LOOKUPS) + "\t" + (selectTime / LOOKUPS)
+              + ((sink == 42) ? " " : ""));
+    }
+  }
+
+  /**
+   * Warm up both lookups.
+   * @param album album
+   * @param size  number of snapshots
+   * @param ids snapshot identifiers
+   * @return  value to keep the work alive
+   */
+  private static long navigate(IPhotoAlbum album, int size, String[] ids) {
+    return walk(album, size) + select(album, size, ids);
+  }
+
+  /**
+   * Step through the album by index.
+   * @param album album
+   * @param size  number of snapshots
+   * @return  value to keep the work alive
+   */
+  private static long walk(IPhotoAlbum album, int size) {
+    long sink = 0;
+    int index = 0;
+    int step = 1;
+    for (int i = 0; i < LOOKUPS; i++) {
+      if ((index + step < 0) || (index + step >= size)) {
+        step = -step;
+      }
+      index += step;
+      sink += album.getSnapshot(index).getDescription().length();
+    }
+    return sink;
+  }
+
+  /**
+   * Look up indices of identifiers spread over the album.
+   * @param album album
+   * @param size  number of snapshots
+   * @param ids snapshot identifiers
+   * @return  value to keep the work alive
+   */
+  private static long select(IPhotoAlbum album, int size, String[] ids) {
+    long sink = 0;
+    for (int i = 0; i < LOOKUPS; i++) {
+      sink += album.getSnapShotIndex(ids[(int) ((i * 7919L) % size)]);
+    }
+    return sink;
+  }
+}
@@ -4,6 +4,7 @@ import album.controller.IPhotoAlbumController;
 import album.controller.PhotoAlbumController;
 import album.model.IPhotoAlbum;
 import album.model.PhotoAlbumImpl;
+import album.model.TieredSnapshotStore;
 import album.view.IPhotoAlbumView;
 import album.view.PhotoAlbumGraphicalView;
 import album.view.PhotoAlbumWebView;
@@ -24,7 +25,8 @@ public class PhotoAlbumMain {
 
     if (args.length == 0) {
       System.err.println(
-              "Usage: -in command-file -view type-of-view [-out output] [xmax] [ymax]");
+              "Usage: -in command-file -view type-of-view [-out output] [-hot snapshots] "
+              + "[xmax] [ymax]");
       System.exit(1);
     }
 
@@ -34,6 +36,7 @@ public class PhotoAlbumMain {
     String viewType = "";
     int xMax = 1000;
     int yMax = 1000;
+    int hotSnapshots = 0;
 
     // parse command line through each argument
     int i = 0;
@@ -64,6 +67,19 @@ public class PhotoAlbumMain {
           i += 2;
           break;
 
+        case "-hot":
+          try {
+            hotSnapshots = Integer.parseInt(args[i + 1]);
+          } catch (NumberFormatException e) {
+            hotSnapshots = 0;
+          }
+          if (hotSnapshots <= 0) {
+            System.err.println("Number of hot snapshots has to be a positive number.");
+            System.exit(1);
+          }
+          i += 2;
+          break;
+
         // if tags do not match previous, check if tag is number and parse out xMax and yMax
         default:
           if (args[i].matches("\\d+")) {
@@ -111,7 +127,10 @@ public class PhotoAlbumMain {
     }
 
     // piping for MVC architecture
-    IPhotoAlbum model = new PhotoAlbumImpl();
+    // keep only the shape maps of the most recently used snapshots on the heap if asked to
+    IPhotoAlbum model = (hotSnapshots > 0)
+            ? new PhotoAlbumImpl(new TieredSnapshotStore(hotSnapshots))
+            : new PhotoAlbumImpl();
     IPhotoAlbumController controller = new PhotoAlbumController(model, view, instructionFilename);
 
     controller.execute();
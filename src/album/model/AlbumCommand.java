@@ -0,0 +1,221 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+/**
+ * AlbumCommand is one edit of an album, applied as part of a batch by
+ * {@link IPhotoAlbum#applyBatch(java.util.List)}. Commands check their arguments when they are
+ * created, so a batch can only fail per command on identifiers.
+ */
+public final class AlbumCommand {
+  /**
+   * Kinds of commands.
+   */
+  public enum Type {
+    ADD, MOVE, RESIZE, COLOR, REMOVE, SNAPSHOT
+  }
+
+  private final Type type;
+  private final String id;
+  private final IShape shape;
+  private final Point2D point;
+  private final Color color;
+  private final double xDimension;
+  private final double yDimension;
+  private final String description;
+
+  /**
+   * Constructor.
+   * @param type  kind of command
+   * @param id  identifier of shape, null for snapshots
+   * @param shape shape to add
+   * @param point new coordinate
+   * @param color new color
+   * @param xDimension  new x dimension
+   * @param yDimension  new y dimension
+   * @param description snapshot description
+   */
+  private AlbumCommand(Type type, String id, IShape shape, Point2D point, Color color,
+                       double xDimension, double yDimension, String description) {
+    this.type = type;
+    this.id = id;
+    this.shape = shape;
+    this.point = point;
+    this.color = color;
+    this.xDimension = xDimension;
+    this.yDimension = yDimension;
+    this.description = description;
+  }
+
+  /**
+   * Create command adding a shape.
+   * @param id  identifier of shape
+   * @param shape shape to add
+   * @return  command
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public static AlbumCommand add(String id, IShape shape) throws IllegalArgumentException {
+    checkId(id);
+    if (shape == null) {
+      throw new IllegalArgumentException("Shape cannot be null.");
+    }
+    return new AlbumCommand(Type.ADD, id, shape, null, null, 0, 0, null);
+  }
+
+  /**
+   * Create command moving a shape.
+   * @param id  identifier of shape
+   * @param point new coordinate
+   * @return  command
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public static AlbumCommand move(String id, Point2D point) throws IllegalArgumentException {
+    checkId(id);
+    if (point == null) {
+      throw new IllegalArgumentException("Coordinate point object cannot be null.");
+    }
+    return new AlbumCommand(Type.MOVE, id, null, point, null, 0, 0, null);
+  }
+
+  /**
+   * Create command resizing a shape.
+   * @param id  identifier of shape
+   * @param xDimension  new x dimension (width, x-radius, base)
+   * @param yDimension  new y dimension (height, y-radius)
+   * @return  command
+   * @throws IllegalArgumentException if id is null or a dimension is not positive
+   */
+  public static AlbumCommand resize(String id, double xDimension, double yDimension)
+          throws IllegalArgumentException {
+    checkId(id);
+    if ((xDimension <= 0) || (yDimension <= 0)) {
+      throw new IllegalArgumentException("Dimension has to be positive");
+    }
+    return new AlbumCommand(Type.RESIZE, id, null, null, null, xDimension, yDimension, null);
+  }
+
+  /**
+   * Create command changing the color of a shape.
+   * @param id  identifier of shape
+   * @param color new color
+   * @return  command
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public static AlbumCommand color(String id, Color color) throws IllegalArgumentException {
+    checkId(id);
+    if (color == null) {
+      throw new IllegalArgumentException("Color object cannot be null");
+    }
+    return new AlbumCommand(Type.COLOR, id, null, null, color, 0, 0, null);
+  }
+
+  /**
+   * Create command removing a shape.
+   * @param id  identifier of shape
+   * @return  command
+   * @throws IllegalArgumentException if id is null
+   */
+  public static AlbumCommand remove(String id) throws IllegalArgumentException {
+    checkId(id);
+    return new AlbumCommand(Type.REMOVE, id, null, null, null, 0, 0, null);
+  }
+
+  /**
+   * Create command taking a snapshot.
+   * @param description description of snapshot
+   * @return  command
+   * @throws IllegalArgumentException if description is null
+   */
+  public static AlbumCommand snapshot(String description) throws IllegalArgumentException {
+    if (description == null) {
+      throw new IllegalArgumentException("Description object cannot be null");
+    }
+    return new AlbumCommand(Type.SNAPSHOT, null, null, null, null, 0, 0, description);
+  }
+
+  /**
+   * Check identifier argument.
+   * @param id  identifier
+   * @throws IllegalArgumentException if id is null
+   */
+  private static void checkId(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+  }
+
+  /**
+   * Get kind of command.
+   * @return  type
+   */
+  public Type getType() {
+    return this.type;
+  }
+
+  /**
+   * Get identifier of shape.
+   * @return  identifier, null for snapshots
+   */
+  public String getId() {
+    return this.id;
+  }
+
+  /**
+   * Get shape to add.
+   * @return  shape, null unless ADD
+   */
+  public IShape getShape() {
+    return this.shape;
+  }
+
+  /**
+   * Get new coordinate.
+   * @return  coordinate, null unless MOVE
+   */
+  public Point2D getPoint() {
+    return this.point;
+  }
+
+  /**
+   * Get new color.
+   * @return  color, null unless COLOR
+   */
+  public Color getColor() {
+    return this.color;
+  }
+
+  /**
+   * Get new x dimension.
+   * @return  x dimension, 0 unless RESIZE
+   */
+  public double getXDimension() {
+    return this.xDimension;
+  }
+
+  /**
+   * Get new y dimension.
+   * @return  y dimension, 0 unless RESIZE
+   */
+  public double getYDimension() {
+    return this.yDimension;
+  }
+
+  /**
+   * Get snapshot description.
+   * @return  description, null unless SNAPSHOT
+   */
+  public String getDescription() {
+    return this.description;
+  }
+
+  /**
+   * Return string representation.
+   * @return  string
+   */
+  @Override
+  public String toString() {
+    return this.type + ((this.id == null) ? "" : " " + this.id);
+  }
+}
@@ -0,0 +1,184 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AlbumReadView is a stable, read-only view of an album's shapes and snapshots at one epoch. It
+ * can be read from any thread while the album keeps changing, without locking the album, and has
+ * to be closed so the version it pins can be reclaimed. The shapes of a snapshot are read from the
+ * album's snapshot store, which may briefly lock to look the snapshot up.
+ */
+public class AlbumReadView implements AutoCloseable {
+  private final EpochManager epochs;
+  private final AlbumVersion version;
+  private final AtomicBoolean open;
+
+  /**
+   * Constructor, pinning the current version.
+   * @param epochs  epoch manager of the album
+   */
+  AlbumReadView(EpochManager epochs) {
+    this.epochs = epochs;
+    this.version = epochs.pin();
+    this.open = new AtomicBoolean(true);
+  }
+
+  /**
+   * Get epoch of the version seen by this view.
+   * @return  epoch
+   */
+  public long getEpoch() {
+    return this.version.getEpoch();
+  }
+
+  /**
+   * Get shapes.
+   * @return  read-only, insertion-ordered shapes
+   * @throws IllegalStateException if view is closed
+   */
+  public Map<String, IShape> getShapes() throws IllegalStateException {
+    return this.version().getShapes().asMap();
+  }
+
+  /**
+   * Get a copy of shape with identifier, which can be changed without touching the album.
+   * @param id  identifier of shape
+   * @return  shape, or null if not found
+   * @throws IllegalStateException if view is closed
+   */
+  public IShape getShape(String id) throws IllegalStateException {
+    IShape shape = this.version().getShapes().get(id);
+    return (shape == null) ? null : shape.getCopy();
+  }
+
+  /**
+   * Get number of shapes.
+   * @return  number of shapes
+   * @throws IllegalStateException if view is closed
+   */
+  public int getNumShapes() throws IllegalStateException {
+    return this.version().getShapes().size();
+  }
+
+  /**
+   * Get snapshots.
+   * @return  read-only snapshots in the order they were taken
+   * @throws IllegalStateException if view is closed
+   */
+  public Map<String, ISnapshot> getSnapshots() throws IllegalStateException {
+    final PersistentOrderedMap<Object, ISnapshot> snapshots = this.version().getSnapshots();
+    return new AbstractMap<String, ISnapshot>() {
+      @Override
+      public Set<Map.Entry<String, ISnapshot>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ISnapshot>>() {
+          @Override
+          public Iterator<Map.Entry<String, ISnapshot>> iterator() {
+            final Iterator<ISnapshot> it = snapshots.asMap().values().iterator();
+            return new Iterator<Map.Entry<String, ISnapshot>>() {
+              @Override
+              public boolean hasNext() {
+                return it.hasNext();
+              }
+
+              @Override
+              public Map.Entry<String, ISnapshot> next() {
+                ISnapshot snapshot = it.next();
+                return new AbstractMap.SimpleImmutableEntry<String, ISnapshot>(
+                        snapshot.getID(), snapshot);
+              }
+            };
+          }
+
+          @Override
+          public int size() {
+            return snapshots.size();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return snapshots.size();
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return this.get(key) != null;
+      }
+
+      @Override
+      public ISnapshot get(Object key) {
+        return (key instanceof String) ? snapshots.get(SnapshotIndex.keyOf((String) key)) : null;
+      }
+    };
+  }
+
+  /**
+   * Get snapshot with identifier.
+   * @param id  identifier of snapshot
+   * @return  snapshot, or null if not found
+   * @throws IllegalStateException if view is closed
+   */
+  public ISnapshot getSnapshot(String id) throws IllegalStateException {
+    return this.version().getSnapshots().get(SnapshotIndex.keyOf(id));
+  }
+
+  /**
+   * Get snapshot by index, starting at 0 for first snapshot.
+   * @param index index of snapshot
+   * @return  snapshot
+   * @throws IllegalArgumentException if index out of range
+   * @throws IllegalStateException if view is closed
+   */
+  public ISnapshot getSnapshot(int index) throws IllegalArgumentException, IllegalStateException {
+    return this.version().getSnapshots().valueAt(index);
+  }
+
+  /**
+   * Get index of snapshot.
+   * @param id  identifier of snapshot
+   * @return  index, or -1 if not found
+   * @throws IllegalStateException if view is closed
+   */
+  public int getSnapshotIndex(String id) throws IllegalStateException {
+    return this.version().getSnapshots().indexOf(SnapshotIndex.keyOf(id));
+  }
+
+  /**
+   * Get number of snapshots.
+   * @return  number of snapshots
+   * @throws IllegalStateException if view is closed
+   */
+  public int getNumSnapshots() throws IllegalStateException {
+    return this.version().getSnapshots().size();
+  }
+
+  /**
+   * Close view, releasing its pin. Closing twice has no effect.
+   */
+  @Override
+  public void close() {
+    if (this.open.compareAndSet(true, false)) {
+      this.epochs.unpin(this.version);
+    }
+  }
+
+  /**
+   * Return pinned version.
+   * @return  version
+   * @throws IllegalStateException if view is closed
+   */
+  private AlbumVersion version() throws IllegalStateException {
+    if (!this.open.get()) {
+      throw new IllegalStateException("Read view is closed.");
+    }
+    return this.version;
+  }
+}
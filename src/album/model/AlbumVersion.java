@@ -0,0 +1,50 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+/**
+ * Immutable state of an album at one epoch: its shapes and its snapshots. Versions share all
+ * unchanged structure with each other, so publishing one after every change is cheap.
+ */
+final class AlbumVersion {
+  private final long epoch;
+  private final PersistentOrderedMap<String, IShape> shapes;
+  private final PersistentOrderedMap<Object, ISnapshot> snapshots;
+
+  /**
+   * Constructor.
+   * @param epoch number of the version, increasing with every change
+   * @param shapes  current shapes
+   * @param snapshots snapshots in the order they were taken, keyed as the stores index them
+   */
+  AlbumVersion(long epoch, PersistentOrderedMap<String, IShape> shapes,
+               PersistentOrderedMap<Object, ISnapshot> snapshots) {
+    this.epoch = epoch;
+    this.shapes = shapes;
+    this.snapshots = snapshots;
+  }
+
+  /**
+   * Get epoch of version.
+   * @return  epoch
+   */
+  long getEpoch() {
+    return this.epoch;
+  }
+
+  /**
+   * Get shapes of version.
+   * @return  shapes
+   */
+  PersistentOrderedMap<String, IShape> getShapes() {
+    return this.shapes;
+  }
+
+  /**
+   * Get snapshots of version.
+   * @return  snapshots
+   */
+  PersistentOrderedMap<Object, ISnapshot> getSnapshots() {
+    return this.snapshots;
+  }
+}
@@ -0,0 +1,219 @@
+package album.model;
+
+/**
+ * Bloom filter over shape identifiers, summarizing which shapes a snapshot contains.
+ *
+ * <p>{@link #mightContain(String)} never misses an identifier that was added, and reports one
+ * that was not with about the false-positive rate the filter was sized for, as long as no more
+ * than the expected number of identifiers were added. Each identifier sets a fixed number of bits
+ * chosen by double hashing.
+ *
+ * <p>An album keeps one filter for its current shapes and hands frozen copies to its snapshots.
+ * A frozen copy shares the bits until the album's filter changes, so snapshots taken without new
+ * shapes in between cost no extra bits.
+ */
+public final class BloomFilter {
+  /** Default false-positive rate. */
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  private final int capacity;
+  private final double falsePositiveRate;
+  private final int bitCount;
+  private final int hashCount;
+  private final boolean frozen;
+  private long[] bits;
+  private boolean shared;
+  private int count;
+
+  /**
+   * Constructor.
+   * @param capacity  expected number of identifiers
+   * @param falsePositiveRate chance of reporting an identifier that was not added, once the
+   *                          expected number were
+   * @throws IllegalArgumentException if capacity is not positive or rate is not between 0 and 1
+   */
+  public BloomFilter(int capacity, double falsePositiveRate) throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity has to be positive.");
+    }
+    if (!(falsePositiveRate > 0) || !(falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("False-positive rate has to be between 0 and 1.");
+    }
+
+    double ln2 = Math.log(2);
+    long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+    bits = Math.min(Math.max(64, (bits + 63) & ~63L), Integer.MAX_VALUE & ~63L);
+    this.capacity = capacity;
+    this.falsePositiveRate = falsePositiveRate;
+    this.bitCount = (int) bits;
+    this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / capacity * ln2));
+    this.frozen = false;
+    this.bits = new long[this.bitCount / 64];
+  }
+
+  /**
+   * Constructor for a frozen copy sharing the bits of a filter.
+   * @param other filter to copy
+   */
+  private BloomFilter(BloomFilter other) {
+    this.capacity = other.capacity;
+    this.falsePositiveRate = other.falsePositiveRate;
+    this.bitCount = other.bitCount;
+    this.hashCount = other.hashCount;
+    this.frozen = true;
+    this.bits = other.bits;
+    this.count = other.count;
+  }
+
+  /**
+   * Add an identifier.
+   * @param id  identifier
+   * @throws IllegalArgumentException if identifier is null
+   * @throws IllegalStateException if the filter is a frozen copy
+   */
+  public void add(String id) throws IllegalArgumentException, IllegalStateException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    if (this.frozen) {
+      throw new IllegalStateException("Filter is frozen.");
+    }
+    if (this.shared) {
+      this.bits = this.bits.clone();
+      this.shared = false;
+    }
+
+    int hash1 = hash1(id);
+    int hash2 = hash2(id);
+    for (int i = 0; i < this.hashCount; i++) {
+      int bit = Math.floorMod(hash1 + i * hash2, this.bitCount);
+      this.bits[bit >>> 6] |= 1L << bit;
+    }
+    this.count++;
+  }
+
+  /**
+   * Check if an identifier may have been added.
+   * @param id  identifier
+   * @return  false if it was certainly not added, true if it probably was
+   * @throws IllegalArgumentException if identifier is null
+   */
+  public boolean mightContain(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+
+    int hash1 = hash1(id);
+    int hash2 = hash2(id);
+    for (int i = 0; i < this.hashCount; i++) {
+      int bit = Math.floorMod(hash1 + i * hash2, this.bitCount);
+      if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return a frozen copy, sharing the bits until this filter changes.
+   * @return  frozen copy
+   */
+  BloomFilter freeze() {
+    if (this.frozen) {
+      return this;
+    }
+    this.shared = true;
+    return new BloomFilter(this);
+  }
+
+  /**
+   * Get expected number of identifiers.
+   * @return  capacity
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Get number of identifiers added, counting repeats.
+   * @return  number of additions
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Get the false-positive rate the filter was sized for.
+   * @return  rate at capacity
+   */
+  public double getFalsePositiveRate() {
+    return this.falsePositiveRate;
+  }
+
+  /**
+   * Estimate the false-positive rate from the number of identifiers added so far.
+   * @return  expected rate
+   */
+  public double getExpectedFalsePositiveRate() {
+    double unset = Math.exp(-(double) this.hashCount * this.count / this.bitCount);
+    return Math.pow(1 - unset, this.hashCount);
+  }
+
+  /**
+   * Get number of bits.
+   * @return  number of bits
+   */
+  public int getBitCount() {
+    return this.bitCount;
+  }
+
+  /**
+   * Get number of bits set per identifier.
+   * @return  number of hash functions
+   */
+  public int getHashCount() {
+    return this.hashCount;
+  }
+
+  /**
+   * Check if the filter is a frozen copy.
+   * @return  true if frozen
+   */
+  public boolean isFrozen() {
+    return this.frozen;
+  }
+
+  @Override
+  public String toString() {
+    return "BloomFilter " + this.bitCount + " bits, " + this.hashCount + " hashes, "
+            + this.count + " of " + this.capacity + " added";
+  }
+
+  /**
+   * First hash of an identifier.
+   * @param id  identifier
+   * @return  hash
+   */
+  private static int hash1(String id) {
+    int h = id.hashCode();
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return h;
+  }
+
+  /**
+   * Second hash of an identifier, independent of the first and odd, so the bits it steps through
+   * do not repeat early.
+   * @param id  identifier
+   * @return  hash
+   */
+  private static int hash2(String id) {
+    int h = 0x811c9dc5;
+    for (int i = 0; i < id.length(); i++) {
+      h ^= id.charAt(i);
+      h *= 0x01000193;
+    }
+    return h | 1;
+  }
+}
@@ -0,0 +1,75 @@
+package album.model;
+
+/**
+ * CommandResult reports the outcome of one command of a batch.
+ */
+public final class CommandResult {
+  /**
+   * Outcomes of a command.
+   */
+  public enum Status {
+    /** Command was applied. */
+    OK,
+    /** No shape has the identifier of the command. */
+    NOT_FOUND,
+    /** A shape with the identifier of an ADD command already exists. */
+    DUPLICATE_ID
+  }
+
+  private final AlbumCommand command;
+  private final Status status;
+  private final ISnapshot snapshot;
+
+  /**
+   * Constructor.
+   * @param command command
+   * @param status  outcome
+   * @param snapshot  snapshot taken by a SNAPSHOT command, null otherwise
+   */
+  public CommandResult(AlbumCommand command, Status status, ISnapshot snapshot) {
+    this.command = command;
+    this.status = status;
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Get command.
+   * @return  command
+   */
+  public AlbumCommand getCommand() {
+    return this.command;
+  }
+
+  /**
+   * Get outcome.
+   * @return  status
+   */
+  public Status getStatus() {
+    return this.status;
+  }
+
+  /**
+   * Check if command was applied.
+   * @return  true if status is OK
+   */
+  public boolean isOk() {
+    return this.status == Status.OK;
+  }
+
+  /**
+   * Get snapshot taken by a SNAPSHOT command.
+   * @return  snapshot, or null
+   */
+  public ISnapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  /**
+   * Return string representation.
+   * @return  string
+   */
+  @Override
+  public String toString() {
+    return this.command + ": " + this.status;
+  }
+}
@@ -0,0 +1,479 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * CompressedSnapshotStore implements ISnapshotStore with a hot tier of recently used snapshots and
+ * a cold tier of deflate-compressed byte arrays, both on the heap.
+ *
+ * <p>It is the in-memory counterpart of {@link TieredSnapshotStore}: when more than the configured
+ * number of snapshots are hot, the least recently used one is encoded with {@link SnapshotCodec},
+ * compressed (once, since snapshots never change) and the store drops its shape map. Reading the
+ * shapes
+ * of a cold snapshot inflates them; if the store promotes on misses, the snapshot becomes hot
+ * again. The store tracks the compression ratio of its cold tier and the time spent inflating, so
+ * the number of hot snapshots and the compression level can be tuned against each other.
+ *
+ * <p>The compression ratio is that of the store's own bytes. As with {@link TieredSnapshotStore},
+ * the store reports the shape map of a snapshot it compressed for the first time with
+ * {@link #takeReleased()}, so the {@link ShapePool} of the album stops holding the shapes only
+ * compressed snapshots had.
+ *
+ * <p>Like the tiered store, it can be read from other threads. A reader holds the store's lock
+ * only to look its snapshot up and to promote it; a cold snapshot is inflated outside the lock.
+ */
+public class CompressedSnapshotStore implements ISnapshotStore {
+  /** Default number of hot snapshots. */
+  public static final int DEFAULT_HOT_SNAPSHOTS = 16;
+
+  private final int maxHot;
+  private final boolean promoteOnMiss;
+  private final int level;
+  private SnapshotIndex<CompressedSnapshot> snapshotList;
+  private LinkedHashMap<CompressedSnapshot, CompressedSnapshot> hot;
+  private long hits;
+  private long misses;
+  private long compressions;
+  private long encodedBytes;
+  private long compressedBytes;
+  private long inflateNanos;
+  private List<Map<String, IShape>> released;
+
+  /**
+   * Constructor, keeping the default number of snapshots hot.
+   */
+  public CompressedSnapshotStore() {
+    this(DEFAULT_HOT_SNAPSHOTS);
+  }
+
+  /**
+   * Constructor, promoting snapshots on misses and compressing with the default level.
+   * @param maxHot  number of snapshots kept hot
+   * @throws IllegalArgumentException if number is not positive
+   */
+  public CompressedSnapshotStore(int maxHot) throws IllegalArgumentException {
+    this(maxHot, true, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Constructor.
+   * @param maxHot  number of snapshots kept hot
+   * @param promoteOnMiss true to make a snapshot hot again when its cold shapes are read
+   * @param level deflate level from 0 to 9, or -1 for the default
+   * @throws IllegalArgumentException if number is not positive or level is out of range
+   */
+  public CompressedSnapshotStore(int maxHot, boolean promoteOnMiss, int level)
+          throws IllegalArgumentException {
+    if (maxHot <= 0) {
+      throw new IllegalArgumentException("Number of hot snapshots has to be positive.");
+    }
+    if ((level < Deflater.DEFAULT_COMPRESSION) || (level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Compression level has to be between -1 and 9.");
+    }
+
+    this.maxHot = maxHot;
+    this.promoteOnMiss = promoteOnMiss;
+    this.level = level;
+    this.snapshotList = new SnapshotIndex<CompressedSnapshot>();
+    this.hot = new LinkedHashMap<CompressedSnapshot, CompressedSnapshot>(16, 0.75f, true);
+    this.released = new ArrayList<Map<String, IShape>>();
+  }
+
+  @Override
+  public synchronized ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+    if (this.snapshotList.contains(snapshot)) {
+      throw new IllegalArgumentException("Snapshot ID already stored.");
+    }
+
+    CompressedSnapshot stored = new CompressedSnapshot(snapshot);
+    this.snapshotList.add(stored);
+    this.hot.put(stored, stored);
+    this.evict();
+    return stored;
+  }
+
+  @Override
+  public synchronized boolean remove(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    CompressedSnapshot removed = this.snapshotList.remove(id);
+    if (removed == null) {
+      return false;
+    }
+    this.hot.remove(removed);
+    if (removed.compressed == null) {
+      this.released.add(removed.shapes);
+    }
+    if (removed.compressed != null) {
+      this.encodedBytes -= removed.encodedLength;
+      this.compressedBytes -= removed.compressed.length;
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized ISnapshot get(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.get(id);
+  }
+
+  @Override
+  public synchronized ISnapshot get(int index) throws IllegalArgumentException {
+    return this.snapshotList.get(index);
+  }
+
+  @Override
+  public synchronized int indexOf(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.indexOf(id);
+  }
+
+  @Override
+  public synchronized int size() {
+    return this.snapshotList.size();
+  }
+
+  @Override
+  public synchronized void clear() {
+    this.snapshotList.clear();
+    this.hot.clear();
+    this.released.clear();
+    this.encodedBytes = 0;
+    this.compressedBytes = 0;
+  }
+
+  /**
+   * Return a read-only view of the stored snapshots. The view is not synchronized, so it should
+   * only be read by the thread that changes the store.
+   * @return  snapshot map
+   */
+  @Override
+  public synchronized Map<String, ISnapshot> asMap() {
+    return this.snapshotList.asMap();
+  }
+
+  /**
+   * Report that the store lets go of shape maps once it has compressed them.
+   * @return  true
+   */
+  @Override
+  public boolean releasesShapes() {
+    return true;
+  }
+
+  /**
+   * Take the shape maps let go of since the last call: those of snapshots compressed for the
+   * first time, and those of snapshots removed before they were ever compressed.
+   * @return  shape maps, oldest first
+   */
+  @Override
+  public synchronized List<Map<String, IShape>> takeReleased() {
+    List<Map<String, IShape>> taken = this.released;
+    this.released = new ArrayList<Map<String, IShape>>();
+    return taken;
+  }
+
+  /**
+   * Get number of reads of hot shapes.
+   * @return  number of hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Get number of reads of cold shapes, each of which inflated the snapshot.
+   * @return  number of misses
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Get number of snapshots compressed.
+   * @return  number of compressions
+   */
+  public synchronized long getCompressions() {
+    return this.compressions;
+  }
+
+  /**
+   * Get number of hot snapshots.
+   * @return  number of snapshots whose shapes are not compressed
+   */
+  public synchronized int getHotSnapshots() {
+    return this.hot.size();
+  }
+
+  /**
+   * Get size of the compressed snapshots still stored, before compression.
+   * @return  encoded bytes
+   */
+  public synchronized long getEncodedBytes() {
+    return this.encodedBytes;
+  }
+
+  /**
+   * Get size of the compressed snapshots still stored.
+   * @return  compressed bytes
+   */
+  public synchronized long getCompressedBytes() {
+    return this.compressedBytes;
+  }
+
+  /**
+   * Get the ratio of encoded to compressed size of the stored snapshots.
+   * @return  compression ratio, or 1 if nothing is compressed
+   */
+  public synchronized double getCompressionRatio() {
+    if (this.compressedBytes == 0) {
+      return 1;
+    }
+    return (double) this.encodedBytes / this.compressedBytes;
+  }
+
+  /**
+   * Get the total time spent inflating cold snapshots.
+   * @return  nanoseconds
+   */
+  public synchronized long getInflateNanos() {
+    return this.inflateNanos;
+  }
+
+  /**
+   * Get the average time spent inflating a cold snapshot.
+   * @return  nanoseconds per miss, or 0 if there were no misses
+   */
+  public synchronized double getAverageInflateNanos() {
+    if (this.misses == 0) {
+      return 0;
+    }
+    return (double) this.inflateNanos / this.misses;
+  }
+
+  /**
+   * Compress least recently used snapshots until the hot tier fits.
+   */
+  private void evict() {
+    Iterator<CompressedSnapshot> eldest = this.hot.values().iterator();
+    while (this.hot.size() > this.maxHot) {
+      CompressedSnapshot snapshot = eldest.next();
+      eldest.remove();
+      if (snapshot.compressed == null) {
+        byte[] encoded = SnapshotCodec.encode(snapshot.shapes);
+        snapshot.compressed = this.deflate(encoded);
+        snapshot.encodedLength = encoded.length;
+        this.compressions++;
+        this.encodedBytes += encoded.length;
+        this.compressedBytes += snapshot.compressed.length;
+        this.released.add(snapshot.shapes);
+      }
+      snapshot.shapes = null;
+    }
+  }
+
+  /**
+   * Compress bytes.
+   * @param encoded bytes to compress
+   * @return  compressed bytes, trimmed to size
+   */
+  private byte[] deflate(byte[] encoded) {
+    Deflater deflater = new Deflater(this.level);
+    try {
+      deflater.setInput(encoded);
+      deflater.finish();
+      byte[] buffer = new byte[Math.max(64, encoded.length / 4)];
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      return Arrays.copyOf(buffer, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Decompress the encoded shapes of a snapshot.
+   * @param compressed  compressed bytes of a cold snapshot
+   * @param encodedLength number of encoded bytes
+   * @return  encoded bytes
+   * @throws IllegalStateException if the compressed bytes are corrupt
+   */
+  private static byte[] inflate(byte[] compressed, int encodedLength)
+          throws IllegalStateException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      byte[] encoded = new byte[encodedLength];
+      int length = 0;
+      while (length < encoded.length) {
+        int read = inflater.inflate(encoded, length, encoded.length - length);
+        if ((read == 0) && (inflater.finished() || inflater.needsInput())) {
+          throw new IllegalStateException("Compressed snapshot is truncated.");
+        }
+        length += read;
+      }
+      return encoded;
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("Compressed snapshot is corrupt.", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Read the shapes of a snapshot, from whichever tier holds them.
+   * @param snapshot  snapshot
+   * @return  shapes in insertion order
+   */
+  private Map<String, IShape> read(CompressedSnapshot snapshot) {
+    byte[] compressed;
+    int encodedLength;
+    synchronized (this) {
+      if (snapshot.shapes != null) {
+        this.hits++;
+        // refresh its place in the access order
+        this.hot.get(snapshot);
+        return snapshot.shapes;
+      }
+      this.misses++;
+      compressed = snapshot.compressed;
+      encodedLength = snapshot.encodedLength;
+    }
+
+    long start = System.nanoTime();
+    Map<String, IShape> view =
+            SnapshotCodec.view(ByteBuffer.wrap(inflate(compressed, encodedLength)));
+    long elapsed = System.nanoTime() - start;
+    Map<String, IShape> shapes = this.promoteOnMiss
+            ? Collections.unmodifiableMap(new LinkedHashMap<String, IShape>(view)) : view;
+    synchronized (this) {
+      this.inflateNanos += elapsed;
+      // the snapshot may have been removed, or promoted by another reader, meanwhile
+      if (!this.promoteOnMiss || (this.snapshotList.get(snapshot) != snapshot)) {
+        return shapes;
+      }
+      if (snapshot.shapes == null) {
+        snapshot.shapes = shapes;
+        this.hot.put(snapshot, snapshot);
+        this.evict();
+      }
+      return snapshot.shapes;
+    }
+  }
+
+  /**
+   * Snapshot handle whose shapes are either on the heap or compressed.
+   */
+  private final class CompressedSnapshot implements ISnapshot {
+    private final long stamp;
+    private String id;
+    private String timeStamp;
+    private final String description;
+    private final long fingerprint;
+    private final BloomFilter shapeFilter;
+    private Map<String, IShape> shapes;
+    private byte[] compressed;
+    private int encodedLength;
+
+    /**
+     * Constructor, starting hot.
+     * @param snapshot  snapshot providing identifier, timestamp, description and shapes
+     */
+    private CompressedSnapshot(ISnapshot snapshot) {
+      this.stamp = snapshot.getStamp();
+      // a snapshot with a stamp has its strings formatted only when they are read
+      if (this.stamp == NO_STAMP) {
+        this.id = snapshot.getID();
+        this.timeStamp = snapshot.getTimestamp();
+      }
+      this.description = snapshot.getDescription();
+      this.shapes = snapshot.getShapes();
+      this.fingerprint = snapshot.getFingerprint();
+      this.shapeFilter = snapshot.getShapeFilter();
+    }
+
+    @Override
+    public String getID() {
+      if (this.id == null) {
+        this.id = SnapshotImpl.formatId(this.stamp);
+      }
+      return this.id;
+    }
+
+    @Override
+    public String getTimestamp() {
+      if (this.timeStamp == null) {
+        this.timeStamp = SnapshotImpl.formatTimestamp(this.stamp);
+      }
+      return this.timeStamp;
+    }
+
+    @Override
+    public long getStamp() {
+      return this.stamp;
+    }
+
+    @Override
+    public String getDescription() {
+      return this.description;
+    }
+
+    /**
+     * Get read-only shapes, inflating them if the snapshot is cold.
+     * @return  shapes in insertion order
+     */
+    @Override
+    public Map<String, IShape> getShapes() {
+      return CompressedSnapshotStore.this.read(this);
+    }
+
+    /**
+     * Get fingerprint of the shapes, taken when the snapshot was stored.
+     * @return  fingerprint
+     */
+    @Override
+    public long getFingerprint() {
+      return this.fingerprint;
+    }
+
+    /**
+     * Get filter over the shape identifiers, taken when the snapshot was stored.
+     * @return  filter, or null if the snapshot had none
+     */
+    @Override
+    public BloomFilter getShapeFilter() {
+      return this.shapeFilter;
+    }
+
+    @Override
+    public String toString() {
+      return new SnapshotImpl(this.getID(), this.getTimestamp(), this.description,
+              this.getShapes()).toString();
+    }
+  }
+}
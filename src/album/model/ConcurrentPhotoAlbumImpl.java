@@ -0,0 +1,440 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class ConcurrentPhotoAlbumImpl implements interface IPhotoAlbum for use by several threads at
+ * once.
+ *
+ * <p>Changes to a shape are serialized by one of a fixed set of locks chosen by the hash of the
+ * shape's identifier, so changes to different shapes usually proceed in parallel, and a change
+ * takes no other lock. {@link #takeSnapshot(String)} holds every stripe while it collects the
+ * shapes, so a snapshot is a consistent cut: each change is either fully in it or not at all. The
+ * snapshot is added to the store after the stripes are released. Insertion order is kept by an
+ * order stamp per shape.
+ *
+ * <p>Shapes are replaced by updated copies rather than changed in place, so snapshots can share
+ * them with the album.
+ */
+public class ConcurrentPhotoAlbumImpl implements IPhotoAlbum {
+  public static final int DEFAULT_STRIPES = 64;
+
+  private final ConcurrentHashMap<String, Slot> shapeList;
+  private final ConcurrentSkipListMap<Long, Slot> shapeOrder;
+  private final AtomicLong nextOrder;
+  private final ReentrantLock[] stripes;
+  private final ReentrantLock snapshotLock;
+  private final ISnapshotStore snapshotList;
+  private final ISnapshotIdGenerator idGenerator;
+
+  /**
+   * Constructor, keeping snapshots in memory as they are taken.
+   */
+  public ConcurrentPhotoAlbumImpl() {
+    this(new InMemorySnapshotStore(), new MonotonicIdGenerator(), DEFAULT_STRIPES);
+  }
+
+  /**
+   * Constructor.
+   * @param snapshotStore storage policy for snapshots, only used while holding its lock
+   * @param idGenerator source of snapshot identifiers
+   * @param stripes number of shape locks, rounded up to a power of two
+   * @throws IllegalArgumentException if an object is null or stripes is not positive
+   */
+  public ConcurrentPhotoAlbumImpl(ISnapshotStore snapshotStore, ISnapshotIdGenerator idGenerator,
+                                  int stripes) throws IllegalArgumentException {
+    if ((snapshotStore == null) || (idGenerator == null)) {
+      throw new IllegalArgumentException("Snapshot store and ID generator cannot be null.");
+    }
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("Number of stripes has to be positive.");
+    }
+
+    this.shapeList = new ConcurrentHashMap<String, Slot>();
+    this.shapeOrder = new ConcurrentSkipListMap<Long, Slot>();
+    this.nextOrder = new AtomicLong();
+    int size = Integer.highestOneBit(stripes);
+    this.stripes = new ReentrantLock[(size < stripes) ? size << 1 : size];
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+    this.snapshotLock = new ReentrantLock();
+    this.snapshotList = snapshotStore;
+    this.idGenerator = idGenerator;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    synchronized (this.snapshotList) {
+      return (this.snapshotList.size() == 0);
+    }
+  }
+
+  /**
+   * Return current shapes in album (as a snapshot). Changes running on other threads are held
+   * back while the shapes are collected.
+   *
+   * @return snapshot
+   */
+  @Override
+  public ISnapshot takeSnapshot(String description) throws IllegalArgumentException {
+    if (description == null) {
+      throw new IllegalArgumentException("Description object cannot be null");
+    }
+
+    // snapshots are taken one at a time, so stamps and store order follow the order of the cuts
+    this.snapshotLock.lock();
+    try {
+      Map<String, IShape> shapes = new LinkedHashMap<String, IShape>();
+      this.lockStripes();
+      try {
+        for (Slot slot : this.shapeOrder.values()) {
+          shapes.put(slot.id, slot.shape);
+        }
+      } finally {
+        this.unlockStripes();
+      }
+
+      synchronized (this.snapshotList) {
+        ISnapshot newSnap = new SnapshotImpl(this.idGenerator.nextStamp(), description, shapes);
+        return this.snapshotList.add(newSnap);
+      }
+    } finally {
+      this.snapshotLock.unlock();
+    }
+  }
+
+  @Override
+  public String printSnapshots() {
+    StringBuilder s = new StringBuilder("Printing Snapshots\n");
+
+    synchronized (this.snapshotList) {
+      int i = 0;
+      int len = this.snapshotList.size();
+      for (ISnapshot snapshot : this.snapshotList.asMap().values()) {
+        s.append(snapshot.toString());
+
+        if (i != (len - 1)) {
+          s.append("\n\n");
+        }
+        i++;
+      }
+    }
+    return s.toString();
+  }
+
+  @Override
+  public boolean removeSnapshot(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    synchronized (this.snapshotList) {
+      return this.snapshotList.remove(id);
+    }
+  }
+
+  @Override
+  public ISnapshot getSnapshot(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    synchronized (this.snapshotList) {
+      return this.snapshotList.get(id);
+    }
+  }
+
+  @Override
+  public ISnapshot getSnapshot(int index) throws IllegalArgumentException {
+    synchronized (this.snapshotList) {
+      return this.snapshotList.get(index);
+    }
+  }
+
+  @Override
+  public int getSnapShotIndex(String id) throws IllegalArgumentException {
+    synchronized (this.snapshotList) {
+      return this.snapshotList.indexOf(id);
+    }
+  }
+
+  /**
+   * Getter for snapshot map.
+   * @return  read-only copy of the snapshot map, unaffected by later changes
+   */
+  @Override
+  public Map<String, ISnapshot> getAllSnapshots() {
+    synchronized (this.snapshotList) {
+      return Collections.unmodifiableMap(
+              new LinkedHashMap<String, ISnapshot>(this.snapshotList.asMap()));
+    }
+  }
+
+  @Override
+  public boolean containsShape(String id) {
+    return (id != null) && this.shapeList.containsKey(id);
+  }
+
+  /**
+   * Add a new shape into the album, along with identifier. The album stores its own copy of the
+   * shape.
+   *
+   * @param id    identifier
+   * @param shape shape to be added
+   * @return true if added successfully, false if identifier already taken or null
+   * @throws IllegalArgumentException if shape is null
+   */
+  @Override
+  public boolean addShape(String id, IShape shape) throws IllegalArgumentException {
+    if (shape == null) {
+      throw new IllegalArgumentException("Shape cannot be null.");
+    }
+    if (id == null) {
+      return false;
+    }
+
+    IShape copy = shape.getCopy();
+    ReentrantLock stripe = this.stripeOf(id);
+    stripe.lock();
+    try {
+      if (this.shapeList.containsKey(id)) {
+        return false;
+      }
+      Slot slot = new Slot(id, this.nextOrder.getAndIncrement(), copy);
+      this.shapeList.put(id, slot);
+      this.shapeOrder.put(slot.order, slot);
+      return true;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  @Override
+  public boolean removeShape(String id) {
+    if (id == null) {
+      return false;
+    }
+
+    ReentrantLock stripe = this.stripeOf(id);
+    stripe.lock();
+    try {
+      Slot slot = this.shapeList.remove(id);
+      if (slot == null) {
+        return false;
+      }
+      this.shapeOrder.remove(slot.order);
+      return true;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Return a copy of shape with ID. The album's own shape is shared with snapshots, so changing
+   * the copy leaves them intact.
+   *
+   * @param id identifier of shape
+   * @return IShape object or null if shape not found
+   */
+  @Override
+  public IShape getShape(String id) {
+    Slot slot = (id == null) ? null : this.shapeList.get(id);
+    IShape shape = (slot == null) ? null : slot.shape;
+    return (shape == null) ? null : shape.getCopy();
+  }
+
+  @Override
+  public boolean moveShape(String id, final Point2D newPoint) throws IllegalArgumentException {
+    return this.update(id, new ShapeChange() {
+      @Override
+      public void apply(IShape shape) {
+        shape.move(newPoint);
+      }
+    });
+  }
+
+  @Override
+  public boolean changeShapeColor(String id, final Color color) throws IllegalArgumentException {
+    return this.update(id, new ShapeChange() {
+      @Override
+      public void apply(IShape shape) {
+        shape.changeColor(color);
+      }
+    });
+  }
+
+  @Override
+  public boolean changeShapeXDimension(String id, final double dimension)
+          throws IllegalArgumentException {
+    return this.update(id, new ShapeChange() {
+      @Override
+      public void apply(IShape shape) {
+        shape.changeXDimension(dimension);
+      }
+    });
+  }
+
+  @Override
+  public boolean changeShapeYDimension(String id, final double dimension)
+          throws IllegalArgumentException {
+    return this.update(id, new ShapeChange() {
+      @Override
+      public void apply(IShape shape) {
+        shape.changeYDimension(dimension);
+      }
+    });
+  }
+
+  @Override
+  public boolean scaleShape(String id, final double scaleFactor) throws IllegalArgumentException {
+    return this.update(id, new ShapeChange() {
+      @Override
+      public void apply(IShape shape) {
+        shape.scaleShape(scaleFactor);
+      }
+    });
+  }
+
+  @Override
+  public void reset() {
+    synchronized (this.snapshotList) {
+      this.snapshotList.clear();
+    }
+  }
+
+  @Override
+  public void clearShapes() {
+    this.lockStripes();
+    try {
+      this.shapeList.clear();
+      this.shapeOrder.clear();
+    } finally {
+      this.unlockStripes();
+    }
+  }
+
+  @Override
+  public int getNumShapes() {
+    return this.shapeList.size();
+  }
+
+  @Override
+  public int getNumSnapshots() {
+    synchronized (this.snapshotList) {
+      return this.snapshotList.size();
+    }
+  }
+
+  /**
+   * Return string representation of photo album.
+   * @return  string representation
+   */
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+
+    for (Slot slot : this.shapeOrder.values()) {
+      s.append("Name: ").append(slot.id).append("\n");
+      s.append(slot.shape.toString()).append("\n");
+    }
+    return s.toString();
+  }
+
+  /**
+   * Replace shape with a changed copy while holding its lock.
+   * @param id  identifier of shape
+   * @param change  change applied to the copy
+   * @return  true if changed, false if shape not found
+   * @throws IllegalArgumentException if change is invalid, leaving the shape unchanged
+   */
+  private boolean update(String id, ShapeChange change) throws IllegalArgumentException {
+    if (id == null) {
+      return false;
+    }
+
+    ReentrantLock stripe = this.stripeOf(id);
+    stripe.lock();
+    try {
+      Slot slot = this.shapeList.get(id);
+      if (slot == null) {
+        return false;
+      }
+      IShape shape = slot.shape.getCopy();
+      change.apply(shape);
+      slot.shape = shape;
+      return true;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Lock every stripe, in index order so two threads doing so cannot deadlock.
+   */
+  private void lockStripes() {
+    for (ReentrantLock stripe : this.stripes) {
+      stripe.lock();
+    }
+  }
+
+  /**
+   * Unlock every stripe.
+   */
+  private void unlockStripes() {
+    for (int i = this.stripes.length - 1; i >= 0; i--) {
+      this.stripes[i].unlock();
+    }
+  }
+
+  /**
+   * Return lock guarding a shape identifier.
+   * @param id  identifier
+   * @return  lock
+   */
+  private ReentrantLock stripeOf(String id) {
+    int hash = id.hashCode();
+    return this.stripes[(hash ^ (hash >>> 16)) & (this.stripes.length - 1)];
+  }
+
+  /**
+   * Change applied to a copy of a shape.
+   */
+  private interface ShapeChange {
+    /**
+     * Apply change.
+     * @param shape copy of shape to change
+     * @throws IllegalArgumentException if change is invalid
+     */
+    void apply(IShape shape) throws IllegalArgumentException;
+  }
+
+  /**
+   * Current shape of an identifier with its order stamp.
+   */
+  private static final class Slot {
+    private final String id;
+    private final long order;
+    private volatile IShape shape;
+
+    /**
+     * Constructor.
+     * @param id  identifier
+     * @param order order stamp
+     * @param shape shape
+     */
+    private Slot(String id, long order, IShape shape) {
+      this.id = id;
+      this.order = order;
+      this.shape = shape;
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DeltaSnapshotStore implements ISnapshotStore by keeping a full keyframe every few snapshots and
+ * only the shapes that were added, changed or removed for the snapshots in between.
+ *
+ * <p>A snapshot is rebuilt from the nearest keyframe before it, so reading one costs at most
+ * keyframe-interval deltas. Consecutive snapshots usually differ by a few shapes, which makes the
+ * deltas far smaller than full shape maps.
+ *
+ * <p>Removing a snapshot turns the snapshot after it into a keyframe and rebases the deltas that
+ * follow onto it, so the removed snapshot can be collected.
+ */
+public class DeltaSnapshotStore implements ISnapshotStore {
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 32;
+
+  private final int keyframeInterval;
+  private SnapshotIndex<Frame> frames;
+  private PersistentOrderedMap<String, IShape> lastShapes;
+
+  /**
+   * Constructor using the default keyframe interval.
+   */
+  public DeltaSnapshotStore() {
+    this(DEFAULT_KEYFRAME_INTERVAL);
+  }
+
+  /**
+   * Constructor.
+   * @param keyframeInterval  maximum number of snapshots per keyframe (1 stores only keyframes)
+   * @throws IllegalArgumentException if interval is not positive
+   */
+  public DeltaSnapshotStore(int keyframeInterval) throws IllegalArgumentException {
+    if (keyframeInterval <= 0) {
+      throw new IllegalArgumentException("Keyframe interval has to be positive.");
+    }
+
+    this.keyframeInterval = keyframeInterval;
+    this.frames = new SnapshotIndex<Frame>();
+    this.lastShapes = null;
+  }
+
+  @Override
+  public ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+    if (this.frames.contains(snapshot)) {
+      throw new IllegalArgumentException("Snapshot ID already stored.");
+    }
+
+    PersistentOrderedMap<String, IShape> shapes =
+            PersistentOrderedMap.copyOf(snapshot.getShapes(), ShapeState.HASHER);
+    Frame frame = null;
+    if ((this.frames.size() > 0) && (this.lastShapes != null)) {
+      Frame previous = this.frames.get(this.frames.size() - 1);
+      if (previous.depth + 1 < this.keyframeInterval) {
+        frame = Frame.delta(snapshot, previous, this.lastShapes, shapes);
+      }
+    }
+    if (frame == null) {
+      frame = Frame.keyframe(snapshot, shapes);
+    }
+
+    this.frames.add(frame);
+    this.lastShapes = shapes;
+    return frame;
+  }
+
+  @Override
+  public boolean remove(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+
+    int index = this.frames.indexOf(id);
+    if (index < 0) {
+      return false;
+    }
+
+    // the next snapshot may be a delta against this one, so turn it into a keyframe, and point
+    // the deltas after it at the new frames, so nothing refers to the removed one any more
+    if ((index + 1 < this.frames.size()) && (this.frames.get(index + 1).base != null)) {
+      Frame next = this.frames.get(index + 1);
+      Frame base = Frame.keyframe(next, next.shapes());
+      this.frames.set(index + 1, base);
+      for (int i = index + 2; (i < this.frames.size()) && (this.frames.get(i).base != null); i++) {
+        base = Frame.rebased(this.frames.get(i), base);
+        this.frames.set(i, base);
+      }
+    }
+    this.frames.remove(id);
+
+    if (this.frames.size() == 0) {
+      this.lastShapes = null;
+    } else if (index == this.frames.size()) {
+      this.lastShapes = this.frames.get(index - 1).shapes();
+    }
+    return true;
+  }
+
+  @Override
+  public ISnapshot get(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.frames.get(id);
+  }
+
+  @Override
+  public ISnapshot get(int index) throws IllegalArgumentException {
+    return this.frames.get(index);
+  }
+
+  @Override
+  public int indexOf(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID");
+    }
+    return this.frames.indexOf(id);
+  }
+
+  @Override
+  public int size() {
+    return this.frames.size();
+  }
+
+  @Override
+  public void clear() {
+    this.frames.clear();
+    this.lastShapes = null;
+  }
+
+  /**
+   * Get number of stored snapshots that are keyframes.
+   * @return  number of keyframes
+   */
+  public int getNumKeyframes() {
+    int count = 0;
+    for (int i = 0; i < this.frames.size(); i++) {
+      if (this.frames.get(i).base == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public Map<String, ISnapshot> asMap() {
+    return this.frames.asMap();
+  }
+
+  /**
+   * A stored snapshot: either a keyframe holding all shapes, or a delta against the snapshot
+   * stored before it.
+   */
+  private static final class Frame implements ISnapshot {
+    private final long stamp;
+    private String id;
+    private String timeStamp;
+    private final String description;
+    private final PersistentOrderedMap<String, IShape> keyframe;
+    private final Frame base;
+    private final String[] keys;
+    private final IShape[] values;
+    private final int depth;
+    private final long fingerprint;
+    private final BloomFilter shapeFilter;
+
+    /**
+     * Constructor.
+     * @param snapshot  snapshot providing identifier, timestamp and description
+     * @param keyframe  all shapes, or null for a delta
+     * @param base  frame the delta applies to, or null for a keyframe
+     * @param keys  identifiers of shapes put or removed by the delta
+     * @param values  new shapes, null entries mark removed shapes
+     * @param depth number of deltas between this frame and its keyframe
+     */
+    private Frame(ISnapshot snapshot, PersistentOrderedMap<String, IShape> keyframe, Frame base,
+                  String[] keys, IShape[] values, int depth) {
+      this.stamp = snapshot.getStamp();
+      // a snapshot with a stamp has its strings formatted only when they are read
+      if (this.stamp == NO_STAMP) {
+        this.id = snapshot.getID();
+        this.timeStamp = snapshot.getTimestamp();
+      }
+      this.description = snapshot.getDescription();
+      this.keyframe = keyframe;
+      this.base = base;
+      this.keys = keys;
+      this.values = values;
+      this.depth = depth;
+      this.fingerprint = snapshot.getFingerprint();
+      this.shapeFilter = snapshot.getShapeFilter();
+    }
+
+    /**
+     * Create keyframe.
+     * @param snapshot  snapshot
+     * @param shapes  all shapes of snapshot
+     * @return  frame
+     */
+    private static Frame keyframe(ISnapshot snapshot, PersistentOrderedMap<String, IShape> shapes) {
+      return new Frame(snapshot, shapes, null, null, null, 0);
+    }
+
+    /**
+     * Create a delta frame with the same changes as another, applied to a new base.
+     * @param frame delta frame
+     * @param base  frame holding the same shapes as the base of the delta
+     * @return  frame
+     */
+    private static Frame rebased(Frame frame, Frame base) {
+      return new Frame(frame, null, base, frame.keys, frame.values, base.depth + 1);
+    }
+
+    /**
+     * Create delta frame, or return null if the change cannot be expressed as a delta.
+     * @param snapshot  snapshot
+     * @param previous  frame of previous snapshot
+     * @param before  shapes of previous snapshot
+     * @param after shapes of snapshot
+     * @return  frame, or null if shapes were reordered or added anywhere but last
+     */
+    private static Frame delta(ISnapshot snapshot, Frame previous,
+                               PersistentOrderedMap<String, IShape> before,
+                               PersistentOrderedMap<String, IShape> after) {
+      final List<String> keys = new ArrayList<String>();
+      final List<IShape> values = new ArrayList<IShape>();
+      final List<String> added = new ArrayList<String>();
+      final boolean[] reordered = new boolean[1];
+
+      after.diff(before, new PersistentOrderedMap.ChangeVisitor<String, IShape>() {
+        @Override
+        public void visit(String key, IShape oldShape, IShape newShape, boolean moved) {
+          reordered[0] |= moved;
+          keys.add(key);
+          values.add(newShape);
+          if ((oldShape == null) && (newShape != null)) {
+            added.add(key);
+          }
+        }
+      });
+
+      // replaying puts added shapes last, so a shape put back at its old place (by undo) is a
+      // reorder too
+      for (String key : added) {
+        reordered[0] |= after.indexOf(key) < after.size() - added.size();
+      }
+      if (reordered[0]) {
+        return null;
+      }
+      return new Frame(snapshot, null, previous, keys.toArray(new String[0]),
+              values.toArray(new IShape[0]), previous.depth + 1);
+    }
+
+    /**
+     * Rebuild shapes of this frame from its keyframe.
+     * @return  shapes
+     */
+    private PersistentOrderedMap<String, IShape> shapes() {
+      Frame[] chain = new Frame[this.depth + 1];
+      Frame frame = this;
+      for (int i = this.depth; i >= 0; i--) {
+        chain[i] = frame;
+        frame = frame.base;
+      }
+
+      PersistentOrderedMap<String, IShape> shapes = chain[0].keyframe;
+      for (int i = 1; i < chain.length; i++) {
+        for (int j = 0; j < chain[i].keys.length; j++) {
+          if (chain[i].values[j] == null) {
+            shapes = shapes.remove(chain[i].keys[j]);
+          } else {
+            shapes = shapes.put(chain[i].keys[j], chain[i].values[j]);
+          }
+        }
+      }
+      return shapes;
+    }
+
+    @Override
+    public String getID() {
+      if (this.id == null) {
+        this.id = SnapshotImpl.formatId(this.stamp);
+      }
+      return this.id;
+    }
+
+    @Override
+    public String getTimestamp() {
+      if (this.timeStamp == null) {
+        this.timeStamp = SnapshotImpl.formatTimestamp(this.stamp);
+      }
+      return this.timeStamp;
+    }
+
+    @Override
+    public long getStamp() {
+      return this.stamp;
+    }
+
+    @Override
+    public String getDescription() {
+      return this.description;
+    }
+
+    @Override
+    public Map<String, IShape> getShapes() {
+      return this.shapes().asMap();
+    }
+
+    /**
+     * Get fingerprint of the shapes, taken when the snapshot was stored.
+     * @return  fingerprint
+     */
+    @Override
+    public long getFingerprint() {
+      return this.fingerprint;
+    }
+
+    /**
+     * Get filter over the shape identifiers, taken when the snapshot was stored.
+     * @return  filter, or null if the snapshot had none
+     */
+    @Override
+    public BloomFilter getShapeFilter() {
+      return this.shapeFilter;
+    }
+
+    @Override
+    public String toString() {
+      return new SnapshotImpl(this.getID(), this.getTimestamp(), this.description,
+              this.getShapes()).toString();
+    }
+  }
+}
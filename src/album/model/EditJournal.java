@@ -0,0 +1,304 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal of shape edits for undo and redo, kept in a ring buffer under a byte budget.
+ *
+ * <p>Each entry holds the shape an edit replaced and the shape it left, which are shared with the
+ * album, so undoing or redoing an edit costs as much as the edit did. When the estimated size of
+ * the entries goes over the budget, the edits that could be redone are dropped first, newest
+ * first, and then the oldest edits. An edit that changes several shapes at once (such as clearing
+ * the album) is undone and redone as a whole.
+ */
+public final class EditJournal {
+  /** Default byte budget. */
+  public static final long DEFAULT_BUDGET = 1 << 20;
+  /** Estimated bytes of an entry, not counting the shapes it holds. */
+  public static final int ESTIMATED_ENTRY_BYTES = 48;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private Entry[] ring;
+  private int start;
+  private int count;
+  private int cursor;
+  private long firstPosition;
+  private long bytes;
+  private long budget;
+  private boolean dropping;
+
+  /**
+   * Constructor.
+   * @param budget  byte budget, 0 to keep no edits
+   * @throws IllegalArgumentException if budget is negative
+   */
+  EditJournal(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative.");
+    }
+    this.ring = new Entry[INITIAL_CAPACITY];
+    this.budget = budget;
+  }
+
+  /**
+   * Record a shape change, dropping the edits that could be redone.
+   * @param id  identifier of shape
+   * @param before  shape before the change, null if added
+   * @param after shape after the change, null if removed
+   * @param order order stamp of the shape in the album
+   * @param joined  true if the change belongs to the same edit as the previous one
+   */
+  void record(String id, IShape before, IShape after, long order, boolean joined) {
+    // an edit that was dropped while being recorded is not kept in part
+    if (joined && this.dropping) {
+      return;
+    }
+    this.record(new Entry(id, before, after, order, -1, joined && (this.cursor > 0)));
+  }
+
+  /**
+   * Record a shape moved in the paint order, dropping the edits that could be redone.
+   * @param id  identifier of shape
+   * @param shape shape
+   * @param from  order stamp before the move
+   * @param to  order stamp after the move
+   */
+  void recordMove(String id, IShape shape, long from, long to) {
+    this.record(new Entry(id, shape, shape, to, from, false));
+  }
+
+  /**
+   * Add an entry, dropping the edits that could be redone.
+   * @param entry entry to be added
+   */
+  private void record(Entry entry) {
+    this.dropping = false;
+    this.truncate(this.cursor);
+    if (this.count == this.ring.length) {
+      this.grow();
+    }
+
+    this.ring[this.slot(this.count)] = entry;
+    this.count++;
+    this.cursor++;
+    this.bytes += entry.bytes;
+    this.trim();
+  }
+
+  /**
+   * Step back over the newest edit that can be undone.
+   * @return  changes of the edit, newest first, or null if there is nothing to undo
+   */
+  List<Entry> undo() {
+    if (this.cursor == 0) {
+      return null;
+    }
+    List<Entry> changes = new ArrayList<Entry>();
+    Entry entry;
+    do {
+      this.cursor--;
+      entry = this.ring[this.slot(this.cursor)];
+      changes.add(entry);
+    } while (entry.joined);
+    return changes;
+  }
+
+  /**
+   * Step forward over the oldest edit that can be redone.
+   * @return  changes of the edit, oldest first, or null if there is nothing to redo
+   */
+  List<Entry> redo() {
+    if (this.cursor == this.count) {
+      return null;
+    }
+    List<Entry> changes = new ArrayList<Entry>();
+    do {
+      changes.add(this.ring[this.slot(this.cursor)]);
+      this.cursor++;
+    } while ((this.cursor < this.count) && this.ring[this.slot(this.cursor)].joined);
+    return changes;
+  }
+
+  /**
+   * Return current position, for {@link #rewind(long)}.
+   * @return  number of changes recorded up to the cursor, including dropped ones
+   */
+  long position() {
+    return this.firstPosition + this.cursor;
+  }
+
+  /**
+   * Drop the changes recorded after a position, once they have been undone by other means.
+   * @param position  position returned by {@link #position()}
+   */
+  void rewind(long position) {
+    long index = position - this.firstPosition;
+    if (this.cursor > index) {
+      this.truncate((int) Math.max(index, 0));
+      this.cursor = this.count;
+    }
+  }
+
+  /**
+   * Check if an edit can be undone.
+   * @return  true if yes
+   */
+  public boolean canUndo() {
+    return this.cursor > 0;
+  }
+
+  /**
+   * Check if an edit can be redone.
+   * @return  true if yes
+   */
+  public boolean canRedo() {
+    return this.cursor < this.count;
+  }
+
+  /**
+   * Get number of shape changes kept.
+   * @return  number of changes, both undoable and redoable
+   */
+  public int getSize() {
+    return this.count;
+  }
+
+  /**
+   * Get estimated bytes of the changes kept.
+   * @return  estimated bytes
+   */
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Get byte budget.
+   * @return  byte budget
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Set byte budget, dropping the edits that could be redone and then the oldest edits until the
+   * journal fits.
+   * @param budget  byte budget, 0 to keep no edits
+   * @throws IllegalArgumentException if budget is negative
+   */
+  public void setBudget(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget cannot be negative.");
+    }
+    this.budget = budget;
+    this.trim();
+  }
+
+  /**
+   * Drop all edits.
+   */
+  public void clear() {
+    this.firstPosition += this.cursor;
+    this.truncate(0);
+    this.cursor = 0;
+  }
+
+  /**
+   * Drop edits, whole, while over budget: first the edits that could be redone, newest first, so
+   * the next redo always follows the state the album is in, then the oldest edits.
+   */
+  private void trim() {
+    while ((this.bytes > this.budget) && (this.cursor < this.count)) {
+      int first = this.count - 1;
+      while ((first > this.cursor) && this.ring[this.slot(first)].joined) {
+        first--;
+      }
+      this.truncate(first);
+    }
+    while (this.bytes > this.budget) {
+      do {
+        Entry entry = this.ring[this.start];
+        this.ring[this.start] = null;
+        this.start = (this.start + 1) % this.ring.length;
+        this.count--;
+        if (this.cursor > 0) {
+          this.cursor--;
+        }
+        this.firstPosition++;
+        this.bytes -= entry.bytes;
+      } while ((this.count > 0) && this.ring[this.start].joined);
+      this.dropping = (this.count == 0);
+    }
+  }
+
+  /**
+   * Drop the changes from an index on.
+   * @param index index of first change to drop
+   */
+  private void truncate(int index) {
+    for (int i = index; i < this.count; i++) {
+      this.bytes -= this.ring[this.slot(i)].bytes;
+      this.ring[this.slot(i)] = null;
+    }
+    this.count = Math.min(this.count, index);
+  }
+
+  /**
+   * Double ring capacity, moving the changes to the front.
+   */
+  private void grow() {
+    Entry[] larger = new Entry[this.ring.length * 2];
+    for (int i = 0; i < this.count; i++) {
+      larger[i] = this.ring[this.slot(i)];
+    }
+    this.ring = larger;
+    this.start = 0;
+  }
+
+  /**
+   * Map an index, counted from the oldest change, to a ring slot.
+   * @param index index of change
+   * @return  slot in ring
+   */
+  private int slot(int index) {
+    return (this.start + index) % this.ring.length;
+  }
+
+  /**
+   * A recorded shape change.
+   */
+  static final class Entry {
+    final String id;
+    final IShape before;
+    final IShape after;
+    final long order;
+    final long previousOrder;
+    final boolean joined;
+    final long bytes;
+
+    /**
+     * Constructor.
+     * @param id  identifier of shape
+     * @param before  shape before the change, null if added
+     * @param after shape after the change, null if removed
+     * @param order order stamp of the shape in the album
+     * @param previousOrder order stamp before the change if it moved the shape, otherwise -1
+     * @param joined  true if the change belongs to the same edit as the previous one
+     */
+    private Entry(String id, IShape before, IShape after, long order, long previousOrder,
+                  boolean joined) {
+      this.id = id;
+      this.before = before;
+      this.after = after;
+      this.order = order;
+      this.previousOrder = previousOrder;
+      this.joined = joined;
+      this.bytes = ESTIMATED_ENTRY_BYTES
+              + ((before == null) ? 0 : ShapePool.ESTIMATED_SHAPE_BYTES)
+              + ((after == null || after == before) ? 0 : ShapePool.ESTIMATED_SHAPE_BYTES);
+    }
+  }
+}
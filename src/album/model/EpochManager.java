@@ -0,0 +1,100 @@
+package album.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EpochManager publishes the versions of an album written by one thread and lets any number of
+ * reader threads pin one without locking.
+ *
+ * <p>A version is immutable, so a pinned reader sees it unchanged however far the writer moves
+ * on. The manager only holds the latest version; an older one is reclaimed by the garbage
+ * collector as soon as the last reader pinned to it closes its view. Pins are counted per epoch
+ * so the oldest version still in use can be observed.
+ */
+public class EpochManager {
+  private volatile AlbumVersion current;
+  private final ConcurrentSkipListMap<Long, AtomicInteger> pins;
+
+  /**
+   * Constructor.
+   * @param initial first version
+   */
+  EpochManager(AlbumVersion initial) {
+    this.current = initial;
+    this.pins = new ConcurrentSkipListMap<Long, AtomicInteger>();
+  }
+
+  /**
+   * Publish a new version, replacing the current one atomically. Only the writer calls this.
+   * @param version new version
+   */
+  void publish(AlbumVersion version) {
+    this.current = version;
+  }
+
+  /**
+   * Pin the current version for a reader.
+   * @return  pinned version
+   */
+  AlbumVersion pin() {
+    AlbumVersion version = this.current;
+    Long epoch = version.getEpoch();
+    while (true) {
+      AtomicInteger count = this.pins.get(epoch);
+      if (count == null) {
+        if (this.pins.putIfAbsent(epoch, new AtomicInteger(1)) == null) {
+          return version;
+        }
+        continue;
+      }
+      // a count that dropped to zero is being removed and must not be revived
+      int readers = count.get();
+      if ((readers > 0) && count.compareAndSet(readers, readers + 1)) {
+        return version;
+      }
+    }
+  }
+
+  /**
+   * Release a pin taken by {@link #pin()}.
+   * @param version pinned version
+   */
+  void unpin(AlbumVersion version) {
+    Long epoch = version.getEpoch();
+    AtomicInteger count = this.pins.get(epoch);
+    if ((count != null) && (count.decrementAndGet() == 0)) {
+      this.pins.remove(epoch, count);
+    }
+  }
+
+  /**
+   * Get epoch of the latest published version.
+   * @return  current epoch
+   */
+  public long getCurrentEpoch() {
+    return this.current.getEpoch();
+  }
+
+  /**
+   * Get epoch of the oldest version a reader still holds.
+   * @return  oldest pinned epoch, or -1 if no reader holds a version
+   */
+  public long getOldestPinnedEpoch() {
+    Map.Entry<Long, AtomicInteger> oldest = this.pins.firstEntry();
+    return (oldest == null) ? -1 : oldest.getKey();
+  }
+
+  /**
+   * Get number of open read views.
+   * @return  number of pinned readers
+   */
+  public int getPinnedReaders() {
+    int readers = 0;
+    for (AtomicInteger count : this.pins.values()) {
+      readers += Math.max(0, count.get());
+    }
+    return readers;
+  }
+}
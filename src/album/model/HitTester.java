@@ -0,0 +1,69 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the shapes of a snapshot under a point.
+ *
+ * <p>Candidates come from a {@link SpatialGrid} over the bounding boxes of the shapes, built once
+ * when the tester is created. Each candidate is then checked with
+ * {@link IShape#contains(double, double)}, which follows the exact outline of ovals and triangles.
+ * Snapshots are frozen, so a tester can be kept for as long as its snapshot is shown.
+ */
+public final class HitTester {
+  private final Map<String, IShape> shapes;
+  private final SpatialGrid<String> grid;
+
+  /**
+   * Constructor.
+   * @param snapshot  snapshot to test against
+   * @throws IllegalArgumentException if snapshot is null
+   */
+  public HitTester(ISnapshot snapshot) throws IllegalArgumentException {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+    this.shapes = snapshot.getShapes();
+    this.grid = SpatialGrid.of(this.shapes);
+  }
+
+  /**
+   * Find the topmost shape under a point.
+   * @param x x of point
+   * @param y y of point
+   * @return  identifier of the shape painted last among those containing the point, or null
+   */
+  public String shapeAt(double x, double y) {
+    List<String> candidates = this.grid.query(x, y, 0, 0);
+    for (int i = candidates.size() - 1; i >= 0; i--) {
+      String id = candidates.get(i);
+      if (this.shapes.get(id).contains(x, y)) {
+        return id;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find all shapes under a point.
+   * @param x x of point
+   * @param y y of point
+   * @return  identifiers of the shapes containing the point, topmost first
+   */
+  public List<String> shapesAt(double x, double y) {
+    List<String> candidates = this.grid.query(x, y, 0, 0);
+    List<String> hits = new ArrayList<String>();
+    for (int i = candidates.size() - 1; i >= 0; i--) {
+      String id = candidates.get(i);
+      if (this.shapes.get(id).contains(x, y)) {
+        hits.add(id);
+      }
+    }
+    return Collections.unmodifiableList(hits);
+  }
+}
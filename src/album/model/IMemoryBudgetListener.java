@@ -0,0 +1,15 @@
+package album.model;
+
+/**
+ * Interface IMemoryBudgetListener, told when the estimated memory of an album goes over budget.
+ */
+public interface IMemoryBudgetListener {
+
+  /**
+   * Called once each time the estimate crosses from within the budget to over it. The call is
+   * made on the thread that changed the album, right after the change.
+   * @param totalBytes  estimated bytes retained by the album
+   * @param budget  byte budget
+   */
+  void budgetExceeded(long totalBytes, long budget);
+}
@@ -4,7 +4,12 @@ import album.model.shapes.IShape;
 import album.model.shapes.component.Color;
 import album.model.shapes.component.Point2D;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Interface IPhotoAlbum.
@@ -159,6 +164,225 @@ public interface IPhotoAlbum {
    */
   int getNumSnapshots();
 
+  /**
+   * Apply a batch of commands in order and report the outcome of each. The batch is checked for
+   * null entries before any command is applied; a command whose identifier is missing (or taken,
+   * for ADD) is reported and the batch goes on.
+   *
+   * <p>The default implementation checks each identifier with {@link #containsShape(String)} and
+   * then passes the command on to the matching method.
+   * @param commands  commands to apply
+   * @return  one result per command, in order
+   * @throws IllegalArgumentException if list or a command is null
+   * @throws InterruptedException if interrupted while taking a snapshot
+   */
+  default List<CommandResult> applyBatch(List<AlbumCommand> commands)
+          throws IllegalArgumentException, InterruptedException {
+    checkBatch(commands);
+
+    List<CommandResult> results = new ArrayList<CommandResult>(commands.size());
+    for (AlbumCommand command : commands) {
+      CommandResult.Status status = CommandResult.Status.OK;
+      ISnapshot snapshot = null;
+      if (command.getType() == AlbumCommand.Type.ADD) {
+        if (this.containsShape(command.getId())) {
+          status = CommandResult.Status.DUPLICATE_ID;
+        }
+      } else if (command.getType() != AlbumCommand.Type.SNAPSHOT) {
+        if (!this.containsShape(command.getId())) {
+          status = CommandResult.Status.NOT_FOUND;
+        }
+      }
+
+      switch (command.getType()) {
+        case ADD:
+          this.addShape(command.getId(), command.getShape());
+          break;
+        case MOVE:
+          this.moveShape(command.getId(), command.getPoint());
+          break;
+        case RESIZE:
+          this.changeShapeXDimension(command.getId(), command.getXDimension());
+          this.changeShapeYDimension(command.getId(), command.getYDimension());
+          break;
+        case COLOR:
+          this.changeShapeColor(command.getId(), command.getColor());
+          break;
+        case REMOVE:
+          this.removeShape(command.getId());
+          break;
+        default:
+          snapshot = this.takeSnapshot(command.getDescription());
+      }
+      results.add(new CommandResult(command, status, snapshot));
+    }
+    return results;
+  }
+
+  /**
+   * Estimate bytes retained by the album, its shapes and its snapshots.
+   *
+   * <p>The default implementation adds up the current shapes and the estimate of every snapshot,
+   * as if nothing were shared, so it overstates albums whose snapshots share shapes.
+   * @return  estimated bytes
+   */
+  default long getEstimatedBytes() {
+    long bytes = this.getNumShapes() * MemoryMeter.estimateShape("");
+    for (ISnapshot snapshot : this.getAllSnapshots().values()) {
+      bytes += snapshot.getEstimatedBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * Estimate bytes of a current shape.
+   * @param id  identifier of shape
+   * @return  estimated bytes, or 0 if shape not found
+   */
+  default long getEstimatedShapeBytes(String id) {
+    return (this.getShape(id) == null) ? 0 : MemoryMeter.estimateShape(id);
+  }
+
+  /**
+   * Estimate bytes retained by a snapshot, which removing it would free.
+   *
+   * <p>The default implementation returns the estimate of the snapshot itself.
+   * @param id  identifier of snapshot
+   * @return  estimated bytes, or -1 if snapshot not found
+   */
+  default long getEstimatedSnapshotBytes(String id) {
+    ISnapshot snapshot = this.getSnapshot(id);
+    return (snapshot == null) ? -1 : snapshot.getEstimatedBytes();
+  }
+
+  /**
+   * Undo the newest shape edit (add, remove, move, color, dimension or scale change).
+   *
+   * <p>The default implementation keeps no journal, so there is nothing to undo.
+   * @return  true if an edit was undone, false if there is none
+   */
+  default boolean undo() {
+    return false;
+  }
+
+  /**
+   * Redo the newest undone shape edit. Any new edit drops the edits that could be redone.
+   *
+   * <p>The default implementation keeps no journal, so there is nothing to redo.
+   * @return  true if an edit was redone, false if there is none
+   */
+  default boolean redo() {
+    return false;
+  }
+
+  /**
+   * Find the shapes added, removed and modified between two snapshots.
+   * @param fromId  identifier of older snapshot
+   * @param toId  identifier of newer snapshot
+   * @return  differences leading from the older snapshot to the newer one
+   * @throws IllegalArgumentException if an identifier is null or not found
+   */
+  default SnapshotDiff diffSnapshots(String fromId, String toId)
+          throws IllegalArgumentException {
+    if ((fromId == null) || (toId == null)) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    ISnapshot from = this.getSnapshot(fromId);
+    ISnapshot to = this.getSnapshot(toId);
+    if ((from == null) || (to == null)) {
+      throw new IllegalArgumentException("Snapshot not found.");
+    }
+    return SnapshotDiff.of(from, to);
+  }
+
+  /**
+   * Find the shapes added, removed and modified between two snapshots.
+   * @param fromIndex index of older snapshot
+   * @param toIndex index of newer snapshot
+   * @return  differences leading from the older snapshot to the newer one
+   * @throws IllegalArgumentException if an index is out of range
+   */
+  default SnapshotDiff diffSnapshots(int fromIndex, int toIndex)
+          throws IllegalArgumentException {
+    return SnapshotDiff.of(this.getSnapshot(fromIndex), this.getSnapshot(toIndex));
+  }
+
+  /**
+   * Find the snapshots that contain a shape. Snapshots whose shape filters rule the shape out are
+   * passed over without reading their shapes.
+   * @param shapeId identifier of shape
+   * @return  read-only list of snapshot identifiers, in snapshot order
+   * @throws IllegalArgumentException if identifier is null
+   */
+  default List<String> findSnapshotsContaining(String shapeId) throws IllegalArgumentException {
+    if (shapeId == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    List<String> found = new ArrayList<String>();
+    for (ISnapshot snapshot : this.getAllSnapshots().values()) {
+      if (snapshot.mightContainShape(shapeId) && snapshot.getShapes().containsKey(shapeId)) {
+        found.add(snapshot.getID());
+      }
+    }
+    return Collections.unmodifiableList(found);
+  }
+
+  /**
+   * Find the snapshots taken in a time range whose description contains all the given words.
+   * Words are runs of letters and digits, matched whole and regardless of case.
+   *
+   * <p>The default implementation looks at every snapshot, reading the time from its stamp, or
+   * from its identifier as a UTC instant; snapshots with neither only match unbounded ranges.
+   * @param text  words to look for, or null to match any description
+   * @param from  first instant to include, or null for no lower bound
+   * @param to  first instant to exclude, or null for no upper bound
+   * @return  read-only list of snapshot identifiers, in snapshot order
+   * @throws IllegalArgumentException if the range starts after it ends
+   */
+  default List<String> findSnapshots(String text, Instant from, Instant to)
+          throws IllegalArgumentException {
+    if ((from != null) && (to != null) && from.isAfter(to)) {
+      throw new IllegalArgumentException("Start of range is after its end.");
+    }
+    Set<String> words = SnapshotMetadataIndex.tokenize(text);
+    List<String> found = new ArrayList<String>();
+    for (ISnapshot snapshot : this.getAllSnapshots().values()) {
+      if ((from != null) || (to != null)) {
+        long stamp = snapshot.getStamp();
+        if (stamp == ISnapshot.NO_STAMP) {
+          stamp = SnapshotImpl.parseId(snapshot.getID());
+        }
+        if (stamp == ISnapshot.NO_STAMP) {
+          continue;
+        }
+        Instant taken = SnapshotImpl.toInstant(stamp);
+        if (((from != null) && taken.isBefore(from)) || ((to != null) && !taken.isBefore(to))) {
+          continue;
+        }
+      }
+      if (SnapshotMetadataIndex.tokenize(snapshot.getDescription()).containsAll(words)) {
+        found.add(snapshot.getID());
+      }
+    }
+    return Collections.unmodifiableList(found);
+  }
+
+  /**
+   * Check that a batch and its commands are not null.
+   * @param commands  commands to check
+   * @throws IllegalArgumentException if list or a command is null
+   */
+  private static void checkBatch(List<AlbumCommand> commands) throws IllegalArgumentException {
+    if (commands == null) {
+      throw new IllegalArgumentException("Command list cannot be null.");
+    }
+    for (AlbumCommand command : commands) {
+      if (command == null) {
+        throw new IllegalArgumentException("Command cannot be null.");
+      }
+    }
+  }
+
   /**
    * Return String that describes album.
    * @return  string representation
@@ -2,12 +2,16 @@ package album.model;
 
 import album.model.shapes.IShape;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Interface ISnapshot.
  */
 public interface ISnapshot {
+  /** Stamp of a snapshot whose identifier and timestamp are not formatted from a stamp. */
+  long NO_STAMP = Long.MIN_VALUE;
 
   /**
    * Get ID.
@@ -21,6 +25,17 @@ public interface ISnapshot {
    */
   String getTimestamp();
 
+  /**
+   * Get the stamp the identifier and timestamp are formatted from, so snapshots can be indexed
+   * without formatting them. Such an identifier is the UTC instant of the stamp.
+   *
+   * <p>The default implementation has no stamp.
+   * @return  stamp, as microseconds since the epoch, or {@link #NO_STAMP}
+   */
+  default long getStamp() {
+    return NO_STAMP;
+  }
+
   /**
    * Get description of snapshot.
    * @return  description
@@ -29,10 +44,112 @@ public interface ISnapshot {
 
   /**
    * Get list of shapes in snapshot.
-   * @return collection of shapes in snapshot.
+   * @return read-only, insertion-ordered map of shapes in snapshot.
    */
   Map<String, IShape> getShapes();
 
+  /**
+   * Get a fingerprint of the shapes: snapshots with shapes in exactly the same state have equal
+   * fingerprints, whatever their paint order, and snapshots with different shapes almost never do.
+   *
+   * <p>The default implementation takes the fingerprint kept by a persistent shape map, and walks
+   * any other map.
+   * @return  fingerprint
+   */
+  default long getFingerprint() {
+    return PersistentOrderedMap.fingerprintOf(this.getShapes(), ShapeState.HASHER);
+  }
+
+  /**
+   * Check if another snapshot has the same shapes, in exactly the same state, in the same paint
+   * order. Snapshots with different
+   * fingerprints are told apart without looking at their shapes.
+   * @param other other snapshot
+   * @return  true if the shapes are equal
+   * @throws IllegalArgumentException if other snapshot is null
+   */
+  default boolean hasSameShapes(ISnapshot other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+    if (other == this) {
+      return true;
+    }
+    if (this.getFingerprint() != other.getFingerprint()) {
+      return false;
+    }
+
+    return SnapshotDiff.sameShapes(this.getShapes(), other.getShapes());
+  }
+
+  /**
+   * Get a Bloom filter over the identifiers of the shapes, for membership checks that do not read
+   * the shapes.
+   *
+   * <p>The default implementation has no filter.
+   * @return  filter, or null if there is none
+   */
+  default BloomFilter getShapeFilter() {
+    return null;
+  }
+
+  /**
+   * Check if the snapshot may contain a shape. With a shape filter, a false answer is certain and
+   * a true answer is wrong at about the rate of the filter; without one, the answer is exact.
+   * @param id  identifier of shape
+   * @return  false if the shape is certainly not in the snapshot
+   * @throws IllegalArgumentException if identifier is null
+   */
+  default boolean mightContainShape(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    BloomFilter filter = this.getShapeFilter();
+    return (filter == null) ? this.getShapes().containsKey(id) : filter.mightContain(id);
+  }
+
+  /**
+   * Estimate bytes of the snapshot as if it shared nothing with other snapshots.
+   *
+   * <p>The default implementation walks the shapes of the snapshot.
+   * @return  estimated bytes
+   */
+  default long getEstimatedBytes() {
+    long bytes = MemoryMeter.SNAPSHOT_BYTES + MemoryMeter.estimateString(this.getDescription());
+    for (String id : this.getShapes().keySet()) {
+      bytes += MemoryMeter.estimateShape(id);
+    }
+    return bytes;
+  }
+
+  /**
+   * Get the shapes whose bounding boxes intersect a rectangle, edges included.
+   *
+   * <p>The default implementation checks every shape of the snapshot.
+   * @param x left edge of rectangle
+   * @param y top edge of rectangle
+   * @param width width of rectangle
+   * @param height  height of rectangle
+   * @return  read-only map of the shapes, in paint order
+   * @throws IllegalArgumentException if width or height is negative
+   */
+  default Map<String, IShape> shapesIntersecting(double x, double y, double width, double height)
+          throws IllegalArgumentException {
+    if (!(width >= 0) || !(height >= 0)) {
+      throw new IllegalArgumentException("Width and height cannot be negative.");
+    }
+
+    Map<String, IShape> found = new LinkedHashMap<String, IShape>();
+    for (Map.Entry<String, IShape> entry : this.getShapes().entrySet()) {
+      IShape shape = entry.getValue();
+      if ((shape.getMinX() <= x + width) && (shape.getMaxX() >= x)
+              && (shape.getMinY() <= y + height) && (shape.getMaxY() >= y)) {
+        found.put(entry.getKey(), shape);
+      }
+    }
+    return Collections.unmodifiableMap(found);
+  }
+
   /**
    * Get string representation.
    * @return string.
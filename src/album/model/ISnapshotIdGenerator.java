@@ -0,0 +1,14 @@
+package album.model;
+
+/**
+ * Interface ISnapshotIdGenerator, source of the stamps that identify snapshots.
+ */
+public interface ISnapshotIdGenerator {
+
+  /**
+   * Return the stamp for a new snapshot, as microseconds since the epoch. Every call returns a
+   * stamp strictly greater than any stamp returned before, so stamps are unique.
+   * @return  snapshot stamp
+   */
+  long nextStamp();
+}
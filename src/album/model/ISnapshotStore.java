@@ -0,0 +1,96 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface ISnapshotStore, storage policy for the snapshots of a photo album.
+ */
+public interface ISnapshotStore {
+
+  /**
+   * Store a snapshot after all snapshots stored so far.
+   * @param snapshot  snapshot to be stored
+   * @return  snapshot as held by the store, which is what later lookups return
+   * @throws IllegalArgumentException if snapshot is null or its identifier is already stored
+   */
+  ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException;
+
+  /**
+   * Remove snapshot with identifier.
+   * @param id  identifier of snapshot
+   * @return  true if removed, false if not found
+   * @throws IllegalArgumentException if id is null
+   */
+  boolean remove(String id) throws IllegalArgumentException;
+
+  /**
+   * Return snapshot with identifier.
+   * @param id  identifier of snapshot
+   * @return  snapshot, or null if not found
+   * @throws IllegalArgumentException if id is null
+   */
+  ISnapshot get(String id) throws IllegalArgumentException;
+
+  /**
+   * Return snapshot by index, starting at 0 for first snapshot.
+   * @param index index of snapshot
+   * @return  snapshot
+   * @throws IllegalArgumentException if index out of range
+   */
+  ISnapshot get(int index) throws IllegalArgumentException;
+
+  /**
+   * Given an identifier, find the index.
+   * @param id  identifier of snapshot
+   * @return  index of snapshot, or -1 if not found
+   * @throws IllegalArgumentException if id is null
+   */
+  int indexOf(String id) throws IllegalArgumentException;
+
+  /**
+   * Get number of snapshots stored.
+   * @return  number of snapshots
+   */
+  int size();
+
+  /**
+   * Remove all snapshots.
+   */
+  void clear();
+
+  /**
+   * Return a read-only view of the stored snapshots, keyed by identifier in the order they were
+   * added.
+   * @return  snapshot map
+   */
+  Map<String, ISnapshot> asMap();
+
+  /**
+   * Check if the store lets go of the shape maps of the snapshots added to it, for example once
+   * it has encoded them. The shapes of such a map no longer have to be kept for the snapshot, so
+   * an album releases them when the store reports the map with {@link #takeReleased()}, rather
+   * than when the snapshot is removed.
+   *
+   * <p>The default implementation keeps every map until its snapshot is removed.
+   * @return  true if the store reports the maps it lets go of
+   */
+  default boolean releasesShapes() {
+    return false;
+  }
+
+  /**
+   * Take the shape maps that the store let go of since the last call, each as it was when its
+   * snapshot was added, and each only once, whether it was dropped while the snapshot was stored
+   * or when it was removed. Maps dropped by {@link #clear()} are not reported.
+   *
+   * <p>The default implementation never lets go of a map.
+   * @return  shape maps, oldest first
+   */
+  default List<Map<String, IShape>> takeReleased() {
+    return Collections.emptyList();
+  }
+}
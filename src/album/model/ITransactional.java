@@ -0,0 +1,34 @@
+package album.model;
+
+/**
+ * Interface ITransactional for albums that can apply a group of edits atomically.
+ *
+ * <p>Between {@link #begin()} and {@link #commit()} the album records what each edit replaced.
+ * {@link #rollback()} undoes the recorded edits and any snapshots taken since, so the album is
+ * left as it was when the transaction began. Transactions do not nest.
+ */
+public interface ITransactional {
+  /**
+   * Start a transaction.
+   * @throws IllegalStateException if a transaction is already active
+   */
+  void begin() throws IllegalStateException;
+
+  /**
+   * Keep the edits of the active transaction.
+   * @throws IllegalStateException if no transaction is active
+   */
+  void commit() throws IllegalStateException;
+
+  /**
+   * Undo the edits of the active transaction.
+   * @throws IllegalStateException if no transaction is active
+   */
+  void rollback() throws IllegalStateException;
+
+  /**
+   * Check if a transaction is active.
+   * @return  true if between begin and commit or rollback
+   */
+  boolean inTransaction();
+}
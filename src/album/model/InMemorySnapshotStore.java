@@ -0,0 +1,72 @@
+package album.model;
+
+import java.util.Map;
+
+/**
+ * InMemorySnapshotStore implements ISnapshotStore and keeps every snapshot as it was given, with
+ * constant-time lookups by index and by identifier.
+ */
+public class InMemorySnapshotStore implements ISnapshotStore {
+  private SnapshotIndex<ISnapshot> snapshotList;
+
+  /**
+   * Constructor.
+   */
+  public InMemorySnapshotStore() {
+    this.snapshotList = new SnapshotIndex<ISnapshot>();
+  }
+
+  @Override
+  public ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+
+    this.snapshotList.add(snapshot);
+    return snapshot;
+  }
+
+  @Override
+  public boolean remove(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.remove(id) != null;
+  }
+
+  @Override
+  public ISnapshot get(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.get(id);
+  }
+
+  @Override
+  public ISnapshot get(int index) throws IllegalArgumentException {
+    return this.snapshotList.get(index);
+  }
+
+  @Override
+  public int indexOf(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID");
+    }
+    return this.snapshotList.indexOf(id);
+  }
+
+  @Override
+  public int size() {
+    return this.snapshotList.size();
+  }
+
+  @Override
+  public void clear() {
+    this.snapshotList.clear();
+  }
+
+  @Override
+  public Map<String, ISnapshot> asMap() {
+    return this.snapshotList.asMap();
+  }
+}
@@ -0,0 +1,231 @@
+package album.model;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Running estimate of the heap retained by an album's shapes and snapshots, with an optional
+ * budget.
+ *
+ * <p>The album reports every change, and the meter adjusts its totals in constant time instead of
+ * walking the shapes. Snapshots share the entries of shapes that did not change, so a snapshot is
+ * only charged for its own object and for the shapes that changed or were removed after it was
+ * taken, which no later version holds. Figures are estimates: shapes count
+ * {@link ShapePool#ESTIMATED_SHAPE_BYTES} each whether or not their state is pooled.
+ */
+public final class MemoryMeter {
+  /** Estimated bytes of a map entry with its share of trie and treap nodes. */
+  public static final int ENTRY_BYTES = 96;
+  /** Estimated bytes of a snapshot object with its identifier and timestamp. */
+  public static final int SNAPSHOT_BYTES = 160;
+  /** Estimated bytes of a string, not counting its characters. */
+  public static final int STRING_BYTES = 40;
+
+  private long shapeBytes;
+  private long snapshotBytes;
+  private final Map<Object, Long> snapshots;
+  private final Set<String> touched;
+  private Object lastSnapshot;
+  private long budget;
+  private IMemoryBudgetListener listener;
+  private boolean over;
+
+  /**
+   * Constructor, with no budget.
+   */
+  MemoryMeter() {
+    this.snapshots = new HashMap<Object, Long>();
+    this.touched = new HashSet<String>();
+    this.budget = Long.MAX_VALUE;
+  }
+
+  /**
+   * Estimate bytes of a shape held under an identifier.
+   * @param id  identifier of shape
+   * @return  estimated bytes of the entry, the identifier and the shape
+   */
+  public static long estimateShape(String id) {
+    return ENTRY_BYTES + estimateString(id) + ShapePool.ESTIMATED_SHAPE_BYTES;
+  }
+
+  /**
+   * Estimate bytes of a string.
+   * @param s string
+   * @return  estimated bytes
+   */
+  static long estimateString(String s) {
+    return STRING_BYTES + 2L * s.length();
+  }
+
+  /**
+   * Record a shape added.
+   * @param id  identifier of shape
+   */
+  void shapeAdded(String id) {
+    this.shapeBytes += estimateShape(id);
+    // the new entry is in no snapshot, so changing it later does not charge one
+    this.touched.add(id);
+    this.check();
+  }
+
+  /**
+   * Record a shape changed, which leaves its old entry to the latest snapshot.
+   * @param id  identifier of shape
+   */
+  void shapeChanged(String id) {
+    this.chargeLastSnapshot(id);
+    this.check();
+  }
+
+  /**
+   * Record a shape removed, which leaves its entry to the latest snapshot.
+   * @param id  identifier of shape
+   */
+  void shapeRemoved(String id) {
+    this.shapeBytes -= estimateShape(id);
+    this.chargeLastSnapshot(id);
+    this.check();
+  }
+
+  /**
+   * Record a snapshot taken.
+   * @param key key of snapshot, as indexed by the stores
+   * @param description description of snapshot
+   */
+  void snapshotTaken(Object key, String description) {
+    long bytes = SNAPSHOT_BYTES + estimateString(description);
+    this.snapshots.put(key, bytes);
+    this.snapshotBytes += bytes;
+    this.lastSnapshot = key;
+    this.touched.clear();
+    this.check();
+  }
+
+  /**
+   * Record a snapshot removed.
+   * @param key key of snapshot, as indexed by the stores
+   */
+  void snapshotRemoved(Object key) {
+    Long bytes = this.snapshots.remove(key);
+    if (bytes != null) {
+      this.snapshotBytes -= bytes;
+    }
+    if (key.equals(this.lastSnapshot)) {
+      this.lastSnapshot = null;
+    }
+    this.check();
+  }
+
+  /**
+   * Record all snapshots removed.
+   */
+  void snapshotsCleared() {
+    this.snapshots.clear();
+    this.snapshotBytes = 0;
+    this.lastSnapshot = null;
+    this.check();
+  }
+
+  /**
+   * Charge the latest snapshot for the entry of a shape, the first time the shape changes after
+   * it was taken.
+   * @param id  identifier of shape
+   */
+  private void chargeLastSnapshot(String id) {
+    if ((this.lastSnapshot != null) && this.touched.add(id)) {
+      long bytes = estimateShape(id);
+      this.snapshots.put(this.lastSnapshot, this.snapshots.get(this.lastSnapshot) + bytes);
+      this.snapshotBytes += bytes;
+    }
+  }
+
+  /**
+   * Get estimated bytes of the current shapes.
+   * @return  estimated bytes
+   */
+  public long getShapeBytes() {
+    return this.shapeBytes;
+  }
+
+  /**
+   * Get estimated bytes retained by snapshots beyond the current shapes.
+   * @return  estimated bytes
+   */
+  public long getSnapshotBytes() {
+    return this.snapshotBytes;
+  }
+
+  /**
+   * Get estimated bytes retained by one snapshot alone, which removing it would free.
+   * @param id  identifier of snapshot
+   * @return  estimated bytes, or -1 if the snapshot is unknown
+   */
+  public long getSnapshotBytes(String id) {
+    Long bytes = this.snapshots.get(SnapshotIndex.keyOf(id));
+    return (bytes == null) ? -1 : bytes;
+  }
+
+  /**
+   * Get estimated bytes retained by the album.
+   * @return  estimated bytes of shapes and snapshots
+   */
+  public long getTotalBytes() {
+    return this.shapeBytes + this.snapshotBytes;
+  }
+
+  /**
+   * Get byte budget.
+   * @return  byte budget, {@link Long#MAX_VALUE} if none
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Set a byte budget. The listener is called when the estimate goes over the budget, and again
+   * each time it goes over after having come back within.
+   * @param budget  byte budget
+   * @param listener  listener to be called
+   * @throws IllegalArgumentException if budget is negative or listener is null
+   */
+  public void setBudget(long budget, IMemoryBudgetListener listener)
+          throws IllegalArgumentException {
+    if ((budget < 0) || (listener == null)) {
+      throw new IllegalArgumentException("Budget cannot be negative and listener cannot be null.");
+    }
+    this.budget = budget;
+    this.listener = listener;
+    this.over = false;
+    this.check();
+  }
+
+  /**
+   * Remove the budget.
+   */
+  public void clearBudget() {
+    this.budget = Long.MAX_VALUE;
+    this.listener = null;
+    this.over = false;
+  }
+
+  /**
+   * Check if the estimate is over budget.
+   * @return  true if over budget
+   */
+  public boolean isOverBudget() {
+    return this.getTotalBytes() > this.budget;
+  }
+
+  /**
+   * Call the listener if the estimate has just gone over budget.
+   */
+  private void check() {
+    boolean nowOver = this.isOverBudget();
+    if (nowOver && !this.over && (this.listener != null)) {
+      this.listener.budgetExceeded(this.getTotalBytes(), this.budget);
+    }
+    this.over = nowOver;
+  }
+}
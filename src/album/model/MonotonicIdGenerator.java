@@ -0,0 +1,53 @@
+package album.model;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MonotonicIdGenerator implements ISnapshotIdGenerator by reading a clock and, whenever the clock
+ * has not moved past the last stamp, handing out the next microsecond instead. Stamps stay unique
+ * and increasing without ever waiting for the clock.
+ */
+public class MonotonicIdGenerator implements ISnapshotIdGenerator {
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+  private static final long NANOS_PER_MICRO = 1_000L;
+
+  private final Clock clock;
+  private final AtomicLong lastStamp;
+
+  /**
+   * Constructor using the system clock.
+   */
+  public MonotonicIdGenerator() {
+    this(Clock.systemDefaultZone());
+  }
+
+  /**
+   * Constructor.
+   * @param clock clock to read time from
+   * @throws IllegalArgumentException if clock is null
+   */
+  public MonotonicIdGenerator(Clock clock) throws IllegalArgumentException {
+    if (clock == null) {
+      throw new IllegalArgumentException("Clock cannot be null.");
+    }
+
+    this.clock = clock;
+    this.lastStamp = new AtomicLong(Long.MIN_VALUE);
+  }
+
+  @Override
+  public long nextStamp() {
+    Instant now = this.clock.instant();
+    long micros = now.getEpochSecond() * MICROS_PER_SECOND + now.getNano() / NANOS_PER_MICRO;
+
+    while (true) {
+      long last = this.lastStamp.get();
+      long stamp = Math.max(micros, last + 1);
+      if (this.lastStamp.compareAndSet(last, stamp)) {
+        return stamp;
+      }
+    }
+  }
+}
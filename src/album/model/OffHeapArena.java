@@ -0,0 +1,130 @@
+package album.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OffHeapArena hands out regions of direct (off-heap) memory and releases all of them at once when
+ * it is closed.
+ *
+ * <p>Regions are carved from large chunks, so many small snapshots do not each pay for a direct
+ * allocation. Memory of single regions cannot be given back; an arena lives as long as the data
+ * allocated from it.
+ */
+public class OffHeapArena implements AutoCloseable {
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private final int chunkSize;
+  private List<ByteBuffer> chunks;
+  private ByteBuffer current;
+  private long bytesAllocated;
+  private long bytesReserved;
+  private boolean open;
+
+  /**
+   * Constructor using the default chunk size.
+   */
+  public OffHeapArena() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param chunkSize number of bytes reserved at a time
+   * @throws IllegalArgumentException if chunk size is not positive
+   */
+  public OffHeapArena(int chunkSize) throws IllegalArgumentException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size has to be positive.");
+    }
+
+    this.chunkSize = chunkSize;
+    this.chunks = new ArrayList<ByteBuffer>();
+    this.current = null;
+    this.bytesAllocated = 0;
+    this.bytesReserved = 0;
+    this.open = true;
+  }
+
+  /**
+   * Copy bytes into a new region of the arena.
+   * @param bytes bytes to copy
+   * @return  read-only buffer over the region
+   * @throws IllegalArgumentException if bytes are null
+   * @throws IllegalStateException if arena is closed
+   */
+  public ByteBuffer allocate(byte[] bytes) throws IllegalArgumentException, IllegalStateException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("Bytes cannot be null.");
+    }
+    this.checkOpen();
+
+    ByteBuffer chunk;
+    if (bytes.length > this.chunkSize / 4) {
+      // large regions get a chunk of their own instead of wasting the rest of the current one
+      chunk = ByteBuffer.allocateDirect(bytes.length);
+      this.chunks.add(chunk);
+      this.bytesReserved += bytes.length;
+    } else {
+      if ((this.current == null) || (this.current.remaining() < bytes.length)) {
+        this.current = ByteBuffer.allocateDirect(this.chunkSize);
+        this.chunks.add(this.current);
+        this.bytesReserved += this.chunkSize;
+      }
+      chunk = this.current;
+    }
+
+    int start = chunk.position();
+    chunk.put(bytes);
+    ByteBuffer region = chunk.duplicate();
+    region.position(start).limit(start + bytes.length);
+    this.bytesAllocated += bytes.length;
+    return region.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Return whether arena is still open.
+   * @return  true if regions can still be allocated and read
+   */
+  public boolean isOpen() {
+    return this.open;
+  }
+
+  /**
+   * Throw if arena is closed.
+   * @throws IllegalStateException if arena is closed
+   */
+  public void checkOpen() throws IllegalStateException {
+    if (!this.open) {
+      throw new IllegalStateException("Off-heap arena is closed.");
+    }
+  }
+
+  /**
+   * Get number of bytes handed out in regions.
+   * @return  allocated bytes
+   */
+  public long getBytesAllocated() {
+    return this.bytesAllocated;
+  }
+
+  /**
+   * Get number of off-heap bytes reserved, including unused parts of chunks.
+   * @return  reserved bytes
+   */
+  public long getBytesReserved() {
+    return this.bytesReserved;
+  }
+
+  /**
+   * Close arena. Regions must not be read afterwards; the memory is returned once the buffers are
+   * no longer referenced.
+   */
+  @Override
+  public void close() {
+    this.open = false;
+    this.chunks.clear();
+    this.current = null;
+  }
+}
@@ -0,0 +1,337 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OffHeapSnapshotStore implements ISnapshotStore by encoding the shapes of each snapshot into
+ * off-heap memory, so albums with many large snapshots do not grow the Java heap.
+ *
+ * <p>Stored snapshots are views: their shapes are decoded from the off-heap region when read.
+ * Regions are kept in an {@link OffHeapArena} and released together when the store is cleared or
+ * closed. An arena cannot give back single regions, so removing a snapshot only drops its handle
+ * until the regions of removed snapshots take more than half of the arena: the store then copies
+ * the live regions into a new arena and leaves the old one to be returned once nothing reads it.
+ * A snapshot sharing its shape map with the snapshot added just before it, as duplicates collapsed
+ * by {@link PhotoAlbumImpl} do, shares its region too.
+ *
+ * <p>The store lets go of a shape map as soon as it has encoded it, and reports the map with
+ * {@link #takeReleased()}, so the {@link ShapePool} of the album does not keep the shapes on the
+ * heap for stored snapshots.
+ */
+public class OffHeapSnapshotStore implements ISnapshotStore, AutoCloseable {
+  private final int chunkSize;
+  private SnapshotIndex<OffHeapSnapshot> snapshotList;
+  private OffHeapArena arena;
+  private PersistentOrderedMap<String, IShape> lastShapes;
+  private ByteBuffer lastRegion;
+  private List<Map<String, IShape>> released;
+  private long removedBytes;
+  private long compactions;
+
+  /**
+   * Constructor using the default arena chunk size.
+   */
+  public OffHeapSnapshotStore() {
+    this(OffHeapArena.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param chunkSize number of off-heap bytes reserved at a time
+   * @throws IllegalArgumentException if chunk size is not positive
+   */
+  public OffHeapSnapshotStore(int chunkSize) throws IllegalArgumentException {
+    this.arena = new OffHeapArena(chunkSize);
+    this.chunkSize = chunkSize;
+    this.snapshotList = new SnapshotIndex<OffHeapSnapshot>();
+    this.released = new ArrayList<Map<String, IShape>>();
+  }
+
+  @Override
+  public ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+    if (this.snapshotList.contains(snapshot)) {
+      throw new IllegalArgumentException("Snapshot ID already stored.");
+    }
+
+    PersistentOrderedMap<String, IShape> shapes = PersistentOrderedMap.unwrap(snapshot.getShapes());
+    ByteBuffer region = this.lastRegion;
+    if ((shapes == null) || (shapes != this.lastShapes)) {
+      region = this.arena.allocate(SnapshotCodec.encode(snapshot.getShapes()));
+    }
+    this.lastShapes = shapes;
+    this.lastRegion = region;
+    OffHeapSnapshot stored = new OffHeapSnapshot(snapshot, this.arena, region);
+    this.snapshotList.add(stored);
+    this.released.add(snapshot.getShapes());
+    return stored;
+  }
+
+  @Override
+  public boolean remove(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    int index = this.snapshotList.indexOf(id);
+    OffHeapSnapshot removed = this.snapshotList.remove(id);
+    if (removed == null) {
+      return false;
+    }
+
+    // a region shared with a neighbour stays in use
+    OffHeapSnapshot before = (index > 0) ? this.snapshotList.get(index - 1) : null;
+    OffHeapSnapshot after = (index < this.snapshotList.size())
+            ? this.snapshotList.get(index) : null;
+    if (((before == null) || (before.region != removed.region))
+            && ((after == null) || (after.region != removed.region))) {
+      this.removedBytes += removed.region.capacity();
+      if (removed.region == this.lastRegion) {
+        this.lastShapes = null;
+        this.lastRegion = null;
+      }
+    }
+    if (this.removedBytes * 2 > this.arena.getBytesAllocated()) {
+      this.compact();
+    }
+    return true;
+  }
+
+  /**
+   * Copy the regions of stored snapshots into a new arena and point the snapshots at the copies.
+   * The old arena is not closed, so snapshots handed out before stay readable until they are
+   * dropped.
+   */
+  private void compact() {
+    OffHeapArena compacted = new OffHeapArena(this.chunkSize);
+    ByteBuffer source = null;
+    ByteBuffer copy = null;
+    for (int i = 0; i < this.snapshotList.size(); i++) {
+      OffHeapSnapshot snapshot = this.snapshotList.get(i);
+      if (snapshot.region != source) {
+        source = snapshot.region;
+        byte[] bytes = new byte[source.capacity()];
+        source.duplicate().get(bytes);
+        copy = compacted.allocate(bytes);
+      }
+      if (this.lastRegion == source) {
+        this.lastRegion = copy;
+      }
+      snapshot.moveTo(compacted, copy);
+    }
+    this.arena = compacted;
+    this.removedBytes = 0;
+    this.compactions++;
+  }
+
+  @Override
+  public ISnapshot get(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.get(id);
+  }
+
+  @Override
+  public ISnapshot get(int index) throws IllegalArgumentException {
+    return this.snapshotList.get(index);
+  }
+
+  @Override
+  public int indexOf(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.indexOf(id);
+  }
+
+  @Override
+  public int size() {
+    return this.snapshotList.size();
+  }
+
+  /**
+   * Remove all snapshots and start a new arena. Snapshots handed out before stay readable, and
+   * the old arena's memory is returned once none of them is referenced any more.
+   */
+  @Override
+  public void clear() {
+    this.snapshotList.clear();
+    this.arena = new OffHeapArena(this.chunkSize);
+    this.lastShapes = null;
+    this.lastRegion = null;
+    this.released.clear();
+    this.removedBytes = 0;
+  }
+
+  @Override
+  public Map<String, ISnapshot> asMap() {
+    return this.snapshotList.asMap();
+  }
+
+  /**
+   * Report that the store lets go of shape maps once it has encoded them.
+   * @return  true
+   */
+  @Override
+  public boolean releasesShapes() {
+    return true;
+  }
+
+  /**
+   * Take the shape maps of the snapshots added since the last call.
+   * @return  shape maps, oldest first
+   */
+  @Override
+  public List<Map<String, IShape>> takeReleased() {
+    List<Map<String, IShape>> taken = this.released;
+    this.released = new ArrayList<Map<String, IShape>>();
+    return taken;
+  }
+
+  /**
+   * Get number of off-heap bytes used by stored snapshots, including removed ones until the store
+   * is compacted or cleared. Removed snapshots never take more than half of the bytes.
+   * @return  allocated bytes
+   */
+  public long getOffHeapBytes() {
+    return this.arena.getBytesAllocated();
+  }
+
+  /**
+   * Get number of off-heap bytes of removed snapshots, released at the next compaction.
+   * @return  removed bytes
+   */
+  public long getRemovedBytes() {
+    return this.removedBytes;
+  }
+
+  /**
+   * Get number of times the live regions were copied into a new arena.
+   * @return  number of compactions
+   */
+  public long getCompactions() {
+    return this.compactions;
+  }
+
+  /**
+   * Remove all snapshots and release their off-heap memory. Snapshots handed out before must not
+   * be read afterwards.
+   */
+  @Override
+  public void close() {
+    this.arena.close();
+    this.clear();
+  }
+
+  /**
+   * Snapshot whose shapes live in an off-heap region.
+   */
+  private static final class OffHeapSnapshot implements ISnapshot {
+    private final long stamp;
+    private String id;
+    private String timeStamp;
+    private final String description;
+    private volatile OffHeapArena arena;
+    private volatile ByteBuffer region;
+    private final long fingerprint;
+    private final BloomFilter shapeFilter;
+
+    /**
+     * Constructor.
+     * @param snapshot  snapshot providing identifier, timestamp and description
+     * @param arena arena owning the region
+     * @param region  encoded shapes
+     */
+    private OffHeapSnapshot(ISnapshot snapshot, OffHeapArena arena, ByteBuffer region) {
+      this.stamp = snapshot.getStamp();
+      // a snapshot with a stamp has its strings formatted only when they are read
+      if (this.stamp == NO_STAMP) {
+        this.id = snapshot.getID();
+        this.timeStamp = snapshot.getTimestamp();
+      }
+      this.description = snapshot.getDescription();
+      this.arena = arena;
+      this.region = region;
+      this.fingerprint = snapshot.getFingerprint();
+      this.shapeFilter = snapshot.getShapeFilter();
+    }
+
+    /**
+     * Point the snapshot at a copy of its region, once the store compacts its arena.
+     * @param arena arena owning the copy
+     * @param region  copy of the encoded shapes
+     */
+    private void moveTo(OffHeapArena arena, ByteBuffer region) {
+      this.region = region;
+      this.arena = arena;
+    }
+
+    @Override
+    public String getID() {
+      if (this.id == null) {
+        this.id = SnapshotImpl.formatId(this.stamp);
+      }
+      return this.id;
+    }
+
+    @Override
+    public String getTimestamp() {
+      if (this.timeStamp == null) {
+        this.timeStamp = SnapshotImpl.formatTimestamp(this.stamp);
+      }
+      return this.timeStamp;
+    }
+
+    @Override
+    public long getStamp() {
+      return this.stamp;
+    }
+
+    @Override
+    public String getDescription() {
+      return this.description;
+    }
+
+    /**
+     * Get read-only view decoding shapes from off-heap memory.
+     * @return  shapes in insertion order
+     * @throws IllegalStateException if the store was closed since
+     */
+    @Override
+    public Map<String, IShape> getShapes() throws IllegalStateException {
+      this.arena.checkOpen();
+      return SnapshotCodec.view(this.region);
+    }
+
+    /**
+     * Get fingerprint of the shapes, taken when the snapshot was stored.
+     * @return  fingerprint
+     */
+    @Override
+    public long getFingerprint() {
+      return this.fingerprint;
+    }
+
+    /**
+     * Get filter over the shape identifiers, taken when the snapshot was stored.
+     * @return  filter, or null if the snapshot had none
+     */
+    @Override
+    public BloomFilter getShapeFilter() {
+      return this.shapeFilter;
+    }
+
+    @Override
+    public String toString() {
+      return new SnapshotImpl(this.getID(), this.getTimestamp(), this.description,
+              this.getShapes()).toString();
+    }
+  }
+}
@@ -0,0 +1,1268 @@
+package album.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, insertion-ordered map with structural sharing.
+ *
+ * <p>Keys are indexed by a hash array mapped trie, and insertion order is kept by a persistent
+ * treap keyed on an order stamp. Every update returns a new map that shares all untouched nodes
+ * with the map it was derived from, so holding on to older versions (for example as snapshots)
+ * only costs the nodes on the paths that were changed.
+ *
+ * <p>Order stamps are handed out with wide gaps between them, so a key can be moved to the front,
+ * to the back, or right after another key by giving it a new stamp, in logarithmic time. When a
+ * gap runs out, every key is given a new stamp; such a map has a new
+ * {@link #getGeneration() generation}, and stamps taken from earlier generations no longer apply.
+ *
+ * <p>Every map also keeps a {@link #getFingerprint() fingerprint} of its entries, updated with
+ * each change, so maps with different entries can be told apart without comparing them.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class PersistentOrderedMap<K, V> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  private static final int MAX_SHIFT = 30;
+  private static final long FIRST_ORDER = 1L << 62;
+  private static final long ORDER_GAP = 1L << 32;
+
+  private static final ValueHasher<Object> HASH_CODE = new ValueHasher<Object>() {
+    @Override
+    public int hash(Object value) {
+      return value.hashCode();
+    }
+  };
+
+  private static final PersistentOrderedMap<?, ?> EMPTY =
+          new PersistentOrderedMap<Object, Object>(null, null, 0, FIRST_ORDER, 0, 0, HASH_CODE);
+
+  private final Object root;
+  private final TreapNode order;
+  private final int size;
+  private final long nextOrder;
+  private final long generation;
+  private final long fingerprint;
+  private final ValueHasher<? super V> hasher;
+  private Map<K, V> view;
+
+  /**
+   * Constructor.
+   * @param root  root of the key trie
+   * @param order root of the order treap
+   * @param size  number of entries
+   * @param nextOrder order stamp handed to the next new key
+   * @param generation  number of times the order stamps were renumbered
+   * @param fingerprint sum of the fingerprints of the entries
+   * @param hasher  hash function of values used in fingerprints
+   */
+  private PersistentOrderedMap(Object root, TreapNode order, int size, long nextOrder,
+                               long generation, long fingerprint, ValueHasher<? super V> hasher) {
+    this.root = root;
+    this.order = order;
+    this.size = size;
+    this.nextOrder = nextOrder;
+    this.generation = generation;
+    this.fingerprint = fingerprint;
+    this.hasher = hasher;
+  }
+
+  /**
+   * Return the empty map.
+   * @param <K> type of keys
+   * @param <V> type of values
+   * @return  empty map
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentOrderedMap<K, V> empty() {
+    return (PersistentOrderedMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Return an empty map whose fingerprint hashes values with a given function instead of their
+   * hashCode, for values whose equals is looser than the changes a fingerprint has to notice.
+   * Maps derived from it keep the function.
+   * @param hasher  hash function of values
+   * @param <K> type of keys
+   * @param <V> type of values
+   * @return  empty map
+   * @throws IllegalArgumentException if hasher is null
+   */
+  public static <K, V> PersistentOrderedMap<K, V> empty(ValueHasher<? super V> hasher)
+          throws IllegalArgumentException {
+    if (hasher == null) {
+      throw new IllegalArgumentException("Hasher cannot be null.");
+    }
+    return new PersistentOrderedMap<K, V>(null, null, 0, FIRST_ORDER, 0, 0, hasher);
+  }
+
+  /**
+   * Return an empty map that goes on handing out order stamps after the ones of this map, so keys
+   * of this map can later be put back with {@link #putAt(Object, Object, long)}.
+   * @return  empty map
+   */
+  public PersistentOrderedMap<K, V> clear() {
+    return new PersistentOrderedMap<K, V>(null, null, 0, this.nextOrder, this.generation, 0,
+            this.hasher);
+  }
+
+  /**
+   * Get number of entries.
+   * @return  number of entries
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Check if map is empty.
+   * @return  true if there are no entries
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Check if map contains key.
+   * @param key key to look for
+   * @return  true if key is mapped
+   */
+  public boolean containsKey(Object key) {
+    return this.findEntry(key) != null;
+  }
+
+  /**
+   * Return value mapped to key.
+   * @param key key to look for
+   * @return  value, or null if key is not mapped
+   */
+  public V get(Object key) {
+    Entry<K, V> entry = this.findEntry(key);
+    return (entry == null) ? null : entry.value;
+  }
+
+  /**
+   * Return value at a position in the ordering, in logarithmic time.
+   * @param index position, starting at 0
+   * @return  value
+   * @throws IllegalArgumentException if index is out of range
+   */
+  @SuppressWarnings("unchecked")
+  public V valueAt(int index) throws IllegalArgumentException {
+    if ((index < 0) || (index >= this.size)) {
+      throw new IllegalArgumentException("Index out of range.");
+    }
+
+    TreapNode node = this.order;
+    while (true) {
+      int leftSize = sizeOf(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index > leftSize) {
+        index -= leftSize + 1;
+        node = node.right;
+      } else {
+        return (V) node.entry.value;
+      }
+    }
+  }
+
+  /**
+   * Return position of key in the ordering, in logarithmic time.
+   * @param key key to look for
+   * @return  position starting at 0, or -1 if key is not mapped
+   */
+  public int indexOf(Object key) {
+    Entry<K, V> entry = this.findEntry(key);
+    if (entry == null) {
+      return -1;
+    }
+
+    int index = 0;
+    TreapNode node = this.order;
+    while (node.entry.order != entry.order) {
+      if (entry.order < node.entry.order) {
+        node = node.left;
+      } else {
+        index += sizeOf(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return index + sizeOf(node.left);
+  }
+
+  /**
+   * Map key to value. A key that is already present keeps its position in the ordering, a new key
+   * is placed last.
+   * @param key key
+   * @param value value
+   * @return  updated map
+   * @throws IllegalArgumentException if key or value is null
+   */
+  public PersistentOrderedMap<K, V> put(K key, V value) throws IllegalArgumentException {
+    if ((key == null) || (value == null)) {
+      throw new IllegalArgumentException("Key and value cannot be null.");
+    }
+
+    Entry<K, V> old = this.findEntry(key);
+    if (old != null) {
+      if (old.value == value) {
+        return this;
+      }
+      Entry<K, V> entry = new Entry<K, V>(key, value, old.hash, old.order);
+      return new PersistentOrderedMap<K, V>(
+              trieInsert(this.root, entry, 0), treapReplace(this.order, entry),
+              this.size, this.nextOrder, this.generation,
+              this.fingerprint - this.fingerprint(old) + this.fingerprint(entry), this.hasher);
+    }
+    if (this.nextOrder > Long.MAX_VALUE - ORDER_GAP) {
+      return this.renumbered().put(key, value);
+    }
+
+    Entry<K, V> entry = new Entry<K, V>(key, value, spread(key.hashCode()), this.nextOrder);
+    return new PersistentOrderedMap<K, V>(
+            trieInsert(this.root, entry, 0), treapInsert(this.order, entry),
+            this.size + 1, this.nextOrder + ORDER_GAP, this.generation,
+            this.fingerprint + this.fingerprint(entry), this.hasher);
+  }
+
+  /**
+   * Return order stamp of key, which fixes its position in the ordering.
+   * @param key key to look for
+   * @return  order stamp, or -1 if key is not mapped
+   */
+  public long orderOf(Object key) {
+    Entry<K, V> entry = this.findEntry(key);
+    return (entry == null) ? -1 : entry.order;
+  }
+
+  /**
+   * Map an absent key to value at the position of an order stamp it had before, as returned by
+   * {@link #orderOf(Object)}. This puts a removed key back where it was.
+   * @param key key
+   * @param value value
+   * @param order order stamp of the key in an earlier version of this map
+   * @return  updated map
+   * @throws IllegalArgumentException if key or value is null, key is mapped, or order stamp was
+   *     never handed out or is used by another key
+   */
+  public PersistentOrderedMap<K, V> putAt(K key, V value, long order)
+          throws IllegalArgumentException {
+    if ((key == null) || (value == null)) {
+      throw new IllegalArgumentException("Key and value cannot be null.");
+    }
+    if (this.findEntry(key) != null) {
+      throw new IllegalArgumentException("Key is already mapped.");
+    }
+    if ((order < 0) || (order >= this.nextOrder) || treapContains(this.order, order)) {
+      throw new IllegalArgumentException("Order stamp is not available.");
+    }
+
+    Entry<K, V> entry = new Entry<K, V>(key, value, spread(key.hashCode()), order);
+    return new PersistentOrderedMap<K, V>(
+            trieInsert(this.root, entry, 0), treapInsert(this.order, entry),
+            this.size + 1, this.nextOrder, this.generation,
+            this.fingerprint + this.fingerprint(entry), this.hasher);
+  }
+
+  /**
+   * Move a key to the end of the ordering.
+   * @param key key to be moved
+   * @return  updated map
+   * @throws IllegalArgumentException if key is not mapped
+   */
+  public PersistentOrderedMap<K, V> moveToEnd(K key) throws IllegalArgumentException {
+    Entry<K, V> entry = this.mappedEntry(key);
+    if (treapSuccessor(this.order, entry.order) == null) {
+      return this;
+    }
+    if (this.nextOrder > Long.MAX_VALUE - ORDER_GAP) {
+      return this.renumbered().moveToEnd(key);
+    }
+    return this.reorder(entry, this.nextOrder, this.nextOrder + ORDER_GAP);
+  }
+
+  /**
+   * Move a key to the start of the ordering.
+   * @param key key to be moved
+   * @return  updated map
+   * @throws IllegalArgumentException if key is not mapped
+   */
+  public PersistentOrderedMap<K, V> moveToStart(K key) throws IllegalArgumentException {
+    Entry<K, V> entry = this.mappedEntry(key);
+    long first = treapFirst(this.order).order;
+    if (first == entry.order) {
+      return this;
+    }
+    if (first < ORDER_GAP) {
+      return this.renumbered().moveToStart(key);
+    }
+    return this.reorder(entry, first - ORDER_GAP, this.nextOrder);
+  }
+
+  /**
+   * Move a key to right after another key in the ordering.
+   * @param key key to be moved
+   * @param target  key to be followed
+   * @return  updated map
+   * @throws IllegalArgumentException if a key is not mapped, or both are the same
+   */
+  public PersistentOrderedMap<K, V> moveAfter(K key, K target) throws IllegalArgumentException {
+    Entry<K, V> entry = this.mappedEntry(key);
+    Entry<K, V> after = this.mappedEntry(target);
+    if (entry == after) {
+      throw new IllegalArgumentException("Key cannot be moved after itself.");
+    }
+
+    Entry<?, ?> next = treapSuccessor(this.order, after.order);
+    if (next == entry) {
+      return this;
+    }
+    if (next == null) {
+      return this.moveToEnd(key);
+    }
+    long order = after.order + (next.order - after.order) / 2;
+    if (order == after.order) {
+      return this.renumbered().moveAfter(key, target);
+    }
+    return this.reorder(entry, order, this.nextOrder);
+  }
+
+  /**
+   * Move a key to the position of an order stamp it had before, as returned by
+   * {@link #orderOf(Object)} on an earlier version of this map of the same generation.
+   * @param key key to be moved
+   * @param order order stamp
+   * @return  updated map
+   * @throws IllegalArgumentException if key is not mapped, or order stamp was never handed out
+   *     or is used by another key
+   */
+  public PersistentOrderedMap<K, V> moveTo(K key, long order) throws IllegalArgumentException {
+    Entry<K, V> entry = this.mappedEntry(key);
+    if (entry.order == order) {
+      return this;
+    }
+    if ((order < 0) || (order >= this.nextOrder) || treapContains(this.order, order)) {
+      throw new IllegalArgumentException("Order stamp is not available.");
+    }
+    return this.reorder(entry, order, this.nextOrder);
+  }
+
+  /**
+   * Get number of times the order stamps of this map and the versions it derives from were
+   * renumbered. Order stamps only carry over between versions of the same generation.
+   * @return  generation
+   */
+  public long getGeneration() {
+    return this.generation;
+  }
+
+  /**
+   * Get the fingerprint of the entries: the sum of a 64-bit hash of each key and value. Maps with
+   * the same entries have the same fingerprint whatever their ordering, and maps with different
+   * entries almost never do. Values are hashed when they are put, with the hash function the map
+   * was {@link #empty(ValueHasher) made with}, or their hashCode.
+   * @return  fingerprint
+   */
+  public long getFingerprint() {
+    return this.fingerprint;
+  }
+
+  /**
+   * Compute the fingerprint of the entries of any map, matching {@link #getFingerprint()} for a
+   * persistent map with the same entries and hash function. Views returned by {@link #asMap()} of
+   * maps with that function are not walked.
+   * @param map map
+   * @param hasher  hash function of values
+   * @param <V> type of values
+   * @return  fingerprint
+   * @throws IllegalArgumentException if map or hasher is null
+   */
+  public static <V> long fingerprintOf(Map<?, ? extends V> map, ValueHasher<? super V> hasher)
+          throws IllegalArgumentException {
+    if ((map == null) || (hasher == null)) {
+      throw new IllegalArgumentException("Map and hasher cannot be null.");
+    }
+    if (map instanceof PersistentOrderedMap.MapView) {
+      PersistentOrderedMap<?, ?> persistent = ((PersistentOrderedMap<?, ?>.MapView) map).owner();
+      if (persistent.hasher == hasher) {
+        return persistent.fingerprint;
+      }
+    }
+    long fingerprint = 0;
+    for (Map.Entry<?, ? extends V> entry : map.entrySet()) {
+      fingerprint += fingerprint(spread(entry.getKey().hashCode()),
+              hasher.hash(entry.getValue()));
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Compute the fingerprint of the entries of any map, hashing values with their hashCode.
+   * @param map map
+   * @return  fingerprint
+   * @throws IllegalArgumentException if map is null
+   */
+  public static long fingerprintOf(Map<?, ?> map) throws IllegalArgumentException {
+    return fingerprintOf(map, HASH_CODE);
+  }
+
+  /**
+   * Hash an entry into 64 bits with the hash function of this map.
+   * @param entry entry
+   * @return  entry fingerprint
+   */
+  private long fingerprint(Entry<K, V> entry) {
+    return fingerprint(entry.hash, this.hasher.hash(entry.value));
+  }
+
+  /**
+   * Hash a key and value into 64 bits.
+   * @param hash  spread hash of key
+   * @param valueHash hash of value
+   * @return  entry fingerprint
+   */
+  private static long fingerprint(int hash, int valueHash) {
+    long h = ((long) hash << 32) ^ (valueHash & 0xFFFFFFFFL);
+    h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+    h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  }
+
+  /**
+   * Find the entry of a key that has to be mapped.
+   * @param key key to look for
+   * @return  entry
+   * @throws IllegalArgumentException if key is not mapped
+   */
+  private Entry<K, V> mappedEntry(Object key) throws IllegalArgumentException {
+    Entry<K, V> entry = this.findEntry(key);
+    if (entry == null) {
+      throw new IllegalArgumentException("Key is not mapped.");
+    }
+    return entry;
+  }
+
+  /**
+   * Give an entry a new order stamp.
+   * @param old current entry
+   * @param order new order stamp, not in use
+   * @param nextOrder order stamp handed to the next new key afterwards
+   * @return  updated map
+   */
+  private PersistentOrderedMap<K, V> reorder(Entry<K, V> old, long order, long nextOrder) {
+    Entry<K, V> entry = new Entry<K, V>(old.key, old.value, old.hash, order);
+    return new PersistentOrderedMap<K, V>(
+            trieInsert(this.root, entry, 0),
+            treapInsert(treapRemove(this.order, old.order), entry),
+            this.size, nextOrder, this.generation, this.fingerprint, this.hasher);
+  }
+
+  /**
+   * Return a map with the same entries and ordering, with order stamps spread out evenly again.
+   * @return  map of the next generation
+   */
+  private PersistentOrderedMap<K, V> renumbered() {
+    PersistentOrderedMap<K, V> result = new PersistentOrderedMap<K, V>(
+            null, null, 0, FIRST_ORDER, this.generation + 1, 0, this.hasher);
+    for (Map.Entry<K, V> entry : this.asMap().entrySet()) {
+      result = result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Remove key from map.
+   * @param key key to be removed
+   * @return  updated map, or this map if the key was not mapped
+   */
+  public PersistentOrderedMap<K, V> remove(Object key) {
+    Entry<K, V> old = this.findEntry(key);
+    if (old == null) {
+      return this;
+    }
+
+    return new PersistentOrderedMap<K, V>(
+            trieRemove(this.root, key, old.hash, 0), treapRemove(this.order, old.order),
+            this.size - 1, this.nextOrder, this.generation,
+            this.fingerprint - this.fingerprint(old), this.hasher);
+  }
+
+  /**
+   * Report every key whose entry differs between an older version and this map. Because both
+   * versions share all untouched nodes, comparing versions derived from each other costs time
+   * proportional to the number of changes, not to the size of the maps.
+   *
+   * <p>Removed keys are reported first, followed by changed and added keys in this map's order.
+   * @param older older version of this map
+   * @param visitor visitor that receives the changes
+   * @throws IllegalArgumentException if an argument is null
+   */
+  @SuppressWarnings("unchecked")
+  public void diff(PersistentOrderedMap<K, V> older, ChangeVisitor<K, V> visitor)
+          throws IllegalArgumentException {
+    if ((older == null) || (visitor == null)) {
+      throw new IllegalArgumentException("Map and visitor cannot be null.");
+    }
+
+    List<Entry<?, ?>[]> changes = new ArrayList<Entry<?, ?>[]>();
+    diffNodes(older.root, this.root, changes);
+    Collections.sort(changes, new Comparator<Entry<?, ?>[]>() {
+      @Override
+      public int compare(Entry<?, ?>[] a, Entry<?, ?>[] b) {
+        long orderA = (a[1] == null) ? Long.MIN_VALUE : a[1].order;
+        long orderB = (b[1] == null) ? Long.MIN_VALUE : b[1].order;
+        return Long.compare(orderA, orderB);
+      }
+    });
+
+    for (Entry<?, ?>[] change : changes) {
+      Entry<K, V> before = (Entry<K, V>) change[0];
+      Entry<K, V> after = (Entry<K, V>) change[1];
+      K key = (before != null) ? before.key : after.key;
+      boolean reordered = (before != null) && (after != null) && (before.order != after.order);
+      visitor.visit(key, (before == null) ? null : before.value,
+              (after == null) ? null : after.value, reordered);
+    }
+  }
+
+  /**
+   * Return the map backing a view returned by {@link #asMap()}.
+   * @param map map that may be a view of a persistent map
+   * @param <K> type of keys
+   * @param <V> type of values
+   * @return  backing persistent map, or null if map is not such a view
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentOrderedMap<K, V> unwrap(Map<K, V> map) {
+    if (map instanceof PersistentOrderedMap.MapView) {
+      return ((PersistentOrderedMap<K, V>.MapView) map).owner();
+    }
+    return null;
+  }
+
+  /**
+   * Build a persistent map holding the entries of a map, in its iteration order. Views returned
+   * by {@link #asMap()} are unwrapped instead of copied.
+   * @param map map to be copied
+   * @param <K> type of keys
+   * @param <V> type of values
+   * @return  persistent map
+   * @throws IllegalArgumentException if map is null
+   */
+  public static <K, V> PersistentOrderedMap<K, V> copyOf(Map<K, V> map)
+          throws IllegalArgumentException {
+    if (map == null) {
+      throw new IllegalArgumentException("Map cannot be null.");
+    }
+
+    PersistentOrderedMap<K, V> result = unwrap(map);
+    return (result != null) ? result : copyInto(PersistentOrderedMap.<K, V>empty(), map);
+  }
+
+  /**
+   * Build a persistent map holding the entries of a map, in its iteration order, that hashes
+   * values with a given function. Views returned by {@link #asMap()} of maps with that function
+   * are unwrapped instead of copied.
+   * @param map map to be copied
+   * @param hasher  hash function of values
+   * @param <K> type of keys
+   * @param <V> type of values
+   * @return  persistent map
+   * @throws IllegalArgumentException if map or hasher is null
+   */
+  public static <K, V> PersistentOrderedMap<K, V> copyOf(Map<K, V> map,
+                                                         ValueHasher<? super V> hasher)
+          throws IllegalArgumentException {
+    if (map == null) {
+      throw new IllegalArgumentException("Map cannot be null.");
+    }
+
+    PersistentOrderedMap<K, V> result = unwrap(map);
+    if ((result != null) && (result.hasher == hasher)) {
+      return result;
+    }
+    return copyInto(PersistentOrderedMap.<K, V>empty(hasher), map);
+  }
+
+  /**
+   * Put the entries of a map into a persistent map, in its iteration order.
+   * @param result  map to put into
+   * @param map map to be copied
+   * @param <K> type of keys
+   * @param <V> type of values
+   * @return  updated map
+   */
+  private static <K, V> PersistentOrderedMap<K, V> copyInto(PersistentOrderedMap<K, V> result,
+                                                            Map<K, V> map) {
+    for (Map.Entry<K, V> entry : map.entrySet()) {
+      result = result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Return a read-only, insertion-ordered {@link Map} view of this map. The view never changes,
+   * since the map itself is immutable.
+   * @return  map view
+   */
+  public Map<K, V> asMap() {
+    if (this.view == null) {
+      this.view = new MapView();
+    }
+    return this.view;
+  }
+
+  /**
+   * Find entry of key in the trie.
+   * @param key key to look for
+   * @return  entry, or null if key is not mapped
+   */
+  @SuppressWarnings("unchecked")
+  private Entry<K, V> findEntry(Object key) {
+    if (key == null) {
+      return null;
+    }
+
+    int hash = spread(key.hashCode());
+    Object node = this.root;
+    int shift = 0;
+    while (node != null) {
+      if (node instanceof Entry) {
+        Entry<K, V> entry = (Entry<K, V>) node;
+        return ((entry.hash == hash) && entry.key.equals(key)) ? entry : null;
+      }
+      if (node instanceof CollisionNode) {
+        return (Entry<K, V>) ((CollisionNode) node).find(key, hash);
+      }
+      BitmapNode bitmapNode = (BitmapNode) node;
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmapNode.bitmap & bit) == 0) {
+        return null;
+      }
+      node = bitmapNode.slots[Integer.bitCount(bitmapNode.bitmap & (bit - 1))];
+      shift += BITS;
+    }
+    return null;
+  }
+
+  /**
+   * Compare two trie nodes and collect (before, after) entry pairs that differ.
+   * @param a node of the older trie
+   * @param b node of the newer trie
+   * @param out list that receives the changed pairs
+   */
+  private static void diffNodes(Object a, Object b, List<Entry<?, ?>[]> out) {
+    if (a == b) {
+      return;
+    }
+
+    if ((a instanceof BitmapNode) && (b instanceof BitmapNode)) {
+      BitmapNode nodeA = (BitmapNode) a;
+      BitmapNode nodeB = (BitmapNode) b;
+      int bits = nodeA.bitmap | nodeB.bitmap;
+      while (bits != 0) {
+        int bit = bits & -bits;
+        bits &= ~bit;
+        Object childA = ((nodeA.bitmap & bit) == 0)
+                ? null : nodeA.slots[Integer.bitCount(nodeA.bitmap & (bit - 1))];
+        Object childB = ((nodeB.bitmap & bit) == 0)
+                ? null : nodeB.slots[Integer.bitCount(nodeB.bitmap & (bit - 1))];
+        diffNodes(childA, childB, out);
+      }
+      return;
+    }
+
+    // shapes of the two subtrees differ, compare their entries directly
+    Map<Object, Entry<?, ?>> before = new HashMap<Object, Entry<?, ?>>();
+    List<Entry<?, ?>> after = new ArrayList<Entry<?, ?>>();
+    collectEntries(a, before, null);
+    collectEntries(b, null, after);
+    for (Entry<?, ?> entry : after) {
+      Entry<?, ?> old = before.remove(entry.key);
+      if (old != entry) {
+        out.add(new Entry<?, ?>[]{old, entry});
+      }
+    }
+    for (Entry<?, ?> old : before.values()) {
+      out.add(new Entry<?, ?>[]{old, null});
+    }
+  }
+
+  /**
+   * Collect all entries below a trie node into a map or a list.
+   * @param node  trie node, entry or null
+   * @param map map to fill (keyed by entry key), or null
+   * @param list  list to fill, or null
+   */
+  private static void collectEntries(Object node, Map<Object, Entry<?, ?>> map,
+                                     List<Entry<?, ?>> list) {
+    if (node == null) {
+      return;
+    }
+    if (node instanceof Entry) {
+      Entry<?, ?> entry = (Entry<?, ?>) node;
+      if (map != null) {
+        map.put(entry.key, entry);
+      } else {
+        list.add(entry);
+      }
+    } else if (node instanceof CollisionNode) {
+      for (Entry<?, ?> entry : ((CollisionNode) node).entries) {
+        collectEntries(entry, map, list);
+      }
+    } else {
+      for (Object child : ((BitmapNode) node).slots) {
+        collectEntries(child, map, list);
+      }
+    }
+  }
+
+  /**
+   * Spread hash bits so keys with similar hash codes end up in different branches.
+   * @param h raw hash code
+   * @return  spread hash
+   */
+  private static int spread(int h) {
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return h;
+  }
+
+  /**
+   * Insert (or replace) entry in trie node.
+   * @param node  trie node, entry or null
+   * @param entry entry to insert
+   * @param shift current shift
+   * @return  new node
+   */
+  private static Object trieInsert(Object node, Entry<?, ?> entry, int shift) {
+    if (node == null) {
+      return entry;
+    }
+
+    if (node instanceof Entry) {
+      Entry<?, ?> existing = (Entry<?, ?>) node;
+      if ((existing.hash == entry.hash) && existing.key.equals(entry.key)) {
+        return entry;
+      }
+      if ((existing.hash == entry.hash) || (shift > MAX_SHIFT)) {
+        return new CollisionNode(new Entry<?, ?>[]{existing, entry});
+      }
+      return trieInsert(trieInsert(BitmapNode.EMPTY, existing, shift), entry, shift);
+    }
+
+    if (node instanceof CollisionNode) {
+      return ((CollisionNode) node).with(entry);
+    }
+
+    BitmapNode bitmapNode = (BitmapNode) node;
+    int bit = 1 << ((entry.hash >>> shift) & MASK);
+    int index = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+    if ((bitmapNode.bitmap & bit) == 0) {
+      Object[] slots = new Object[bitmapNode.slots.length + 1];
+      System.arraycopy(bitmapNode.slots, 0, slots, 0, index);
+      slots[index] = entry;
+      System.arraycopy(bitmapNode.slots, index, slots, index + 1, bitmapNode.slots.length - index);
+      return new BitmapNode(bitmapNode.bitmap | bit, slots);
+    }
+    Object[] slots = bitmapNode.slots.clone();
+    slots[index] = trieInsert(slots[index], entry, shift + BITS);
+    return new BitmapNode(bitmapNode.bitmap, slots);
+  }
+
+  /**
+   * Remove key from trie node.
+   * @param node  trie node or entry
+   * @param key key to remove
+   * @param hash  spread hash of key
+   * @param shift current shift
+   * @return  new node, or null if node became empty
+   */
+  private static Object trieRemove(Object node, Object key, int hash, int shift) {
+    if (node instanceof Entry) {
+      return null;
+    }
+
+    if (node instanceof CollisionNode) {
+      return ((CollisionNode) node).without(key);
+    }
+
+    BitmapNode bitmapNode = (BitmapNode) node;
+    int bit = 1 << ((hash >>> shift) & MASK);
+    int index = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+    Object child = trieRemove(bitmapNode.slots[index], key, hash, shift + BITS);
+
+    if (child != null) {
+      // pull single entries back up so the trie stays as shallow as possible
+      if ((bitmapNode.slots.length == 1) && (child instanceof Entry) && (shift > 0)) {
+        return child;
+      }
+      Object[] slots = bitmapNode.slots.clone();
+      slots[index] = child;
+      return new BitmapNode(bitmapNode.bitmap, slots);
+    }
+
+    if (bitmapNode.slots.length == 1) {
+      return null;
+    }
+    Object[] slots = new Object[bitmapNode.slots.length - 1];
+    System.arraycopy(bitmapNode.slots, 0, slots, 0, index);
+    System.arraycopy(bitmapNode.slots, index + 1, slots, index, slots.length - index);
+    if ((slots.length == 1) && (slots[0] instanceof Entry) && (shift > 0)) {
+      return slots[0];
+    }
+    return new BitmapNode(bitmapNode.bitmap & ~bit, slots);
+  }
+
+  /**
+   * Check if an order stamp is used in treap.
+   * @param node  treap root
+   * @param order order stamp
+   * @return  true if an entry has the order stamp
+   */
+  private static boolean treapContains(TreapNode node, long order) {
+    while (node != null) {
+      if (order == node.entry.order) {
+        return true;
+      }
+      node = (order < node.entry.order) ? node.left : node.right;
+    }
+    return false;
+  }
+
+  /**
+   * Find the entry with the smallest order stamp in a treap.
+   * @param node  treap root, not null
+   * @return  first entry
+   */
+  private static Entry<?, ?> treapFirst(TreapNode node) {
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node.entry;
+  }
+
+  /**
+   * Find the entry with the smallest order stamp above a given one.
+   * @param node  treap root
+   * @param order order stamp
+   * @return  next entry, or null if there is none
+   */
+  private static Entry<?, ?> treapSuccessor(TreapNode node, long order) {
+    Entry<?, ?> next = null;
+    while (node != null) {
+      if (node.entry.order > order) {
+        next = node.entry;
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Number of entries in a treap.
+   * @param node  treap root, may be null
+   * @return  number of entries
+   */
+  private static int sizeOf(TreapNode node) {
+    return (node == null) ? 0 : node.size;
+  }
+
+  /**
+   * Priority of a treap node, derived from its order stamp so the treap shape is deterministic.
+   * @param order order stamp
+   * @return  priority
+   */
+  private static int priority(long order) {
+    long z = order + 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return (int) (z ^ (z >>> 31));
+  }
+
+  /**
+   * Insert entry into treap.
+   * @param node  treap root
+   * @param entry entry to be inserted
+   * @return  new root
+   */
+  private static TreapNode treapInsert(TreapNode node, Entry<?, ?> entry) {
+    if (node == null) {
+      return new TreapNode(entry, priority(entry.order), null, null);
+    }
+
+    if (entry.order < node.entry.order) {
+      TreapNode left = treapInsert(node.left, entry);
+      if (left.priority > node.priority) {
+        return new TreapNode(left.entry, left.priority, left.left,
+                new TreapNode(node.entry, node.priority, left.right, node.right));
+      }
+      return new TreapNode(node.entry, node.priority, left, node.right);
+    }
+
+    TreapNode right = treapInsert(node.right, entry);
+    if (right.priority > node.priority) {
+      return new TreapNode(right.entry, right.priority,
+              new TreapNode(node.entry, node.priority, node.left, right.left), right.right);
+    }
+    return new TreapNode(node.entry, node.priority, node.left, right);
+  }
+
+  /**
+   * Replace the entry that has the same order stamp.
+   * @param node  treap root
+   * @param entry new entry
+   * @return  new root
+   */
+  private static TreapNode treapReplace(TreapNode node, Entry<?, ?> entry) {
+    if (entry.order < node.entry.order) {
+      return new TreapNode(node.entry, node.priority, treapReplace(node.left, entry), node.right);
+    }
+    if (entry.order > node.entry.order) {
+      return new TreapNode(node.entry, node.priority, node.left, treapReplace(node.right, entry));
+    }
+    return new TreapNode(entry, node.priority, node.left, node.right);
+  }
+
+  /**
+   * Remove entry with order stamp from treap.
+   * @param node  treap root
+   * @param order order stamp
+   * @return  new root
+   */
+  private static TreapNode treapRemove(TreapNode node, long order) {
+    if (order < node.entry.order) {
+      return new TreapNode(node.entry, node.priority, treapRemove(node.left, order), node.right);
+    }
+    if (order > node.entry.order) {
+      return new TreapNode(node.entry, node.priority, node.left, treapRemove(node.right, order));
+    }
+    return treapMerge(node.left, node.right);
+  }
+
+  /**
+   * Merge two treaps where every order in left is smaller than every order in right.
+   * @param left  left treap
+   * @param right right treap
+   * @return  merged treap
+   */
+  private static TreapNode treapMerge(TreapNode left, TreapNode right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      return new TreapNode(left.entry, left.priority, left.left, treapMerge(left.right, right));
+    }
+    return new TreapNode(right.entry, right.priority, treapMerge(left, right.left), right.right);
+  }
+
+  /**
+   * Hash function of values, used in {@link #getFingerprint() fingerprints}.
+   * @param <V> type of values
+   */
+  public interface ValueHasher<V> {
+    /**
+     * Hash a value.
+     * @param value value, not null
+     * @return  hash
+     */
+    int hash(V value);
+  }
+
+  /**
+   * Receives the changes found by {@link #diff(PersistentOrderedMap, ChangeVisitor)}.
+   * @param <K> type of keys
+   * @param <V> type of values
+   */
+  public interface ChangeVisitor<K, V> {
+    /**
+     * Visit one changed key.
+     * @param key key that changed
+     * @param before  value in the older map, or null if key was added
+     * @param after value in the newer map, or null if key was removed
+     * @param reordered true if key is in both maps but its position in the ordering changed
+     */
+    void visit(K key, V before, V after, boolean reordered);
+  }
+
+  /**
+   * Key/value pair stored in both the trie and the treap.
+   */
+  private static final class Entry<K, V> implements Map.Entry<K, V> {
+    private final K key;
+    private final V value;
+    private final int hash;
+    private final long order;
+
+    /**
+     * Constructor.
+     * @param key key
+     * @param value value
+     * @param hash  spread hash of key
+     * @param order order stamp
+     */
+    private Entry(K key, V value, int hash, long order) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+      this.order = order;
+    }
+
+    @Override
+    public K getKey() {
+      return this.key;
+    }
+
+    @Override
+    public V getValue() {
+      return this.value;
+    }
+
+    @Override
+    public V setValue(V value) {
+      throw new UnsupportedOperationException("Map is read only.");
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other2 = (Map.Entry<?, ?>) other;
+      return this.key.equals(other2.getKey()) && this.value.equals(other2.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.key.hashCode() ^ this.value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return this.key + "=" + this.value;
+    }
+  }
+
+  /**
+   * Trie node holding up to 32 children, indexed by a bitmap.
+   */
+  private static final class BitmapNode {
+    private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+    private final Object[] slots;
+
+    /**
+     * Constructor.
+     * @param bitmap  bitmap of occupied slots
+     * @param slots children (entries or nodes)
+     */
+    private BitmapNode(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+  }
+
+  /**
+   * Trie node holding entries whose hashes collide completely.
+   */
+  private static final class CollisionNode {
+    private final Entry<?, ?>[] entries;
+
+    /**
+     * Constructor.
+     * @param entries colliding entries
+     */
+    private CollisionNode(Entry<?, ?>[] entries) {
+      this.entries = entries;
+    }
+
+    /**
+     * Find entry.
+     * @param key key
+     * @param hash  spread hash of key
+     * @return  entry or null
+     */
+    private Entry<?, ?> find(Object key, int hash) {
+      for (Entry<?, ?> entry : this.entries) {
+        if ((entry.hash == hash) && entry.key.equals(key)) {
+          return entry;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Return node with entry added or replaced.
+     * @param entry entry
+     * @return  new node
+     */
+    private CollisionNode with(Entry<?, ?> entry) {
+      for (int i = 0; i < this.entries.length; i++) {
+        if (this.entries[i].key.equals(entry.key)) {
+          Entry<?, ?>[] copy = this.entries.clone();
+          copy[i] = entry;
+          return new CollisionNode(copy);
+        }
+      }
+      Entry<?, ?>[] copy = new Entry<?, ?>[this.entries.length + 1];
+      System.arraycopy(this.entries, 0, copy, 0, this.entries.length);
+      copy[this.entries.length] = entry;
+      return new CollisionNode(copy);
+    }
+
+    /**
+     * Return node without key.
+     * @param key key
+     * @return  new node, single remaining entry, or null if empty
+     */
+    private Object without(Object key) {
+      Entry<?, ?>[] copy = new Entry<?, ?>[this.entries.length - 1];
+      int j = 0;
+      for (Entry<?, ?> entry : this.entries) {
+        if (!entry.key.equals(key)) {
+          copy[j++] = entry;
+        }
+      }
+      if (copy.length == 0) {
+        return null;
+      }
+      return (copy.length == 1) ? copy[0] : new CollisionNode(copy);
+    }
+  }
+
+  /**
+   * Node of the order treap.
+   */
+  private static final class TreapNode {
+    private final Entry<?, ?> entry;
+    private final int priority;
+    private final TreapNode left;
+    private final TreapNode right;
+    private final int size;
+
+    /**
+     * Constructor.
+     * @param entry entry stored at node
+     * @param priority  heap priority
+     * @param left  left child
+     * @param right right child
+     */
+    private TreapNode(Entry<?, ?> entry, int priority, TreapNode left, TreapNode right) {
+      this.entry = entry;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.size = 1 + sizeOf(left) + sizeOf(right);
+    }
+  }
+
+  /**
+   * In-order iterator over the treap.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+    private final Deque<TreapNode> stack = new ArrayDeque<TreapNode>();
+
+    /**
+     * Constructor.
+     */
+    private EntryIterator() {
+      this.pushLeft(PersistentOrderedMap.this.order);
+    }
+
+    /**
+     * Push node and all of its left descendants.
+     * @param node  node
+     */
+    private void pushLeft(TreapNode node) {
+      while (node != null) {
+        this.stack.push(node);
+        node = node.left;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !this.stack.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> next() {
+      if (this.stack.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      TreapNode node = this.stack.pop();
+      this.pushLeft(node.right);
+      return (Map.Entry<K, V>) node.entry;
+    }
+  }
+
+  /**
+   * Read-only {@link Map} view.
+   */
+  private final class MapView extends AbstractMap<K, V> {
+    private Set<Map.Entry<K, V>> entries;
+
+    /**
+     * Return the map this view belongs to.
+     * @return  backing map
+     */
+    private PersistentOrderedMap<K, V> owner() {
+      return PersistentOrderedMap.this;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+      if (this.entries == null) {
+        this.entries = new AbstractSet<Map.Entry<K, V>>() {
+          @Override
+          public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+          }
+
+          @Override
+          public int size() {
+            return PersistentOrderedMap.this.size;
+          }
+        };
+      }
+      return this.entries;
+    }
+
+    @Override
+    public int size() {
+      return PersistentOrderedMap.this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return PersistentOrderedMap.this.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+      return PersistentOrderedMap.this.get(key);
+    }
+  }
+}
@@ -1,31 +1,131 @@
 package album.model;
 
 import album.model.shapes.IShape;
+import album.model.shapes.ShapeType;
 import album.model.shapes.component.Color;
 import album.model.shapes.component.Point2D;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Class PhotoAlbumImpl implements interface IPhotoAlbum.
+ *
+ * <p>Current shapes are kept in a {@link PersistentOrderedMap}, so taking a snapshot only
+ * captures the current version of the map instead of copying every shape. Shapes held by the map
+ * are never mutated in place: every change replaces the shape with an updated copy, which leaves
+ * the versions captured by earlier snapshots untouched. Shape states are interned in a
+ * {@link ShapePool}, so a state that recurs across snapshots or identifiers is stored once. A
+ * store that encodes snapshots reports the shape maps it let go of, and the pool stops holding
+ * their shapes for them.
+ *
+ * <p>The album is written by one thread. After every change it publishes an immutable version of
+ * its shapes and snapshots, which other threads read through {@link #openReadView()} without
+ * locking the album. Reading the shapes of a snapshot goes to the snapshot store, and a store that
+ * decodes snapshots on demand may take a lock of its own for its bookkeeping, though not while it
+ * decodes.
+ *
+ * <p>Edits can be grouped in transactions. The undo log of a transaction holds the shape each
+ * edit replaced, so rolling back costs as much as the edits did. Changes made inside a
+ * transaction are published to readers when it ends.
+ *
+ * <p>Shape edits are also recorded in an {@link EditJournal} for {@link #undo()} and
+ * {@link #redo()}. The journal keeps the replaced shapes rather than copies of the album, under a
+ * byte budget.
+ *
+ * <p>A {@link SpatialGrid} over the bounding boxes of the current shapes is kept in step with
+ * every edit, for {@link #shapesIntersecting(double, double, double, double)}.
+ *
+ * <p>Paint order follows the order of the shape map. {@link #bringToFront(String)},
+ * {@link #sendToBack(String)} and {@link #moveAbove(String, String)} give a shape a new order
+ * stamp in logarithmic time, and snapshots keep the order they were taken with.
+ *
+ * <p>A {@link MemoryMeter} is told of every change and keeps a running estimate of the memory
+ * retained by shapes and snapshots, with an optional budget.
+ *
+ * <p>With {@link #setCollapseDuplicates(boolean)}, a snapshot whose shapes equal those of the
+ * latest snapshot, going by their fingerprints and then their entries, shares that snapshot's
+ * shape map instead of keeping its own.
+ *
+ * <p>Once asked for, a {@link ShapeHistory} records the states of every shape as snapshots are
+ * taken, from the changes since the previous snapshot.
+ *
+ * <p>Every snapshot carries a {@link BloomFilter} over its shape identifiers, so membership
+ * queries can pass over snapshots without reading their shapes. The album adds identifiers to
+ * one filter as shapes are added, and snapshots take frozen copies of it; identifiers of removed
+ * shapes stay in it until it fills up and is rebuilt from the current shapes.
  */
-public class PhotoAlbumImpl implements IPhotoAlbum {
-  private Map<String, IShape> shapeList;
-  private Map<String, ISnapshot> snapshotList;
-  private static final DateTimeFormatter formatterID = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-  private static final DateTimeFormatter formatterTimestamp
-          = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+public class PhotoAlbumImpl implements IPhotoAlbum, ITransactional {
+  private PersistentOrderedMap<String, IShape> shapeList;
+  private ISnapshotStore snapshotList;
+  private ISnapshotIdGenerator idGenerator;
+  private ShapePool shapePool;
+  private PersistentOrderedMap<Object, ISnapshot> snapshotVersions;
+  private long epoch;
+  private EpochManager epochs;
+  private List<UndoRecord> undoLog;
+  private PersistentOrderedMap<String, IShape> shapesAtBegin;
+  private EditJournal journal;
+  private long journalAtBegin;
+  private boolean replaying;
+  private SpatialGrid<String> grid;
+  private MemoryMeter memory;
+  private boolean collapseDuplicates;
+  private Object latestKey;
+  private PersistentOrderedMap<String, IShape> latestShapes;
+  private ShapeHistory history;
+  private SnapshotMetadataIndex metadata;
+  private double filterRate;
+  private BloomFilter shapeFilter;
+  private boolean filterStale;
 
   /**
-   * Constructor.
+   * Constructor, keeping snapshots in memory as they are taken.
    */
   public PhotoAlbumImpl() {
-    this.shapeList = new LinkedHashMap<String, IShape>();
-    this.snapshotList = new LinkedHashMap<String, ISnapshot>();
+    this(new InMemorySnapshotStore());
+  }
+
+  /**
+   * Constructor.
+   * @param snapshotStore storage policy for snapshots
+   * @throws IllegalArgumentException if store is null
+   */
+  public PhotoAlbumImpl(ISnapshotStore snapshotStore) throws IllegalArgumentException {
+    this(snapshotStore, new MonotonicIdGenerator());
+  }
+
+  /**
+   * Constructor.
+   * @param snapshotStore storage policy for snapshots
+   * @param idGenerator source of snapshot identifiers
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public PhotoAlbumImpl(ISnapshotStore snapshotStore, ISnapshotIdGenerator idGenerator)
+          throws IllegalArgumentException {
+    if ((snapshotStore == null) || (idGenerator == null)) {
+      throw new IllegalArgumentException("Snapshot store and ID generator cannot be null.");
+    }
+
+    this.shapeList = PersistentOrderedMap.empty(ShapeState.HASHER);
+    this.snapshotList = snapshotStore;
+    this.idGenerator = idGenerator;
+    this.shapePool = new ShapePool();
+    this.snapshotVersions = PersistentOrderedMap.empty();
+    this.epoch = 0;
+    this.epochs = new EpochManager(
+            new AlbumVersion(this.epoch, this.shapeList, this.snapshotVersions));
+    this.journal = new EditJournal(EditJournal.DEFAULT_BUDGET);
+    this.grid = new SpatialGrid<String>();
+    this.memory = new MemoryMeter();
+    this.metadata = new SnapshotMetadataIndex();
+    this.filterRate = BloomFilter.DEFAULT_FALSE_POSITIVE_RATE;
+    this.filterStale = true;
   }
 
   /**
@@ -35,7 +135,7 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
    */
   @Override
   public boolean isEmpty() {
-    return (this.snapshotList.isEmpty());
+    return (this.snapshotList.size() == 0);
   }
 
   /**
@@ -44,27 +144,35 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
    * @return snapshot
    */
   @Override
-  public ISnapshot takeSnapshot(String description)
-          throws IllegalArgumentException, InterruptedException {
+  public ISnapshot takeSnapshot(String description) throws IllegalArgumentException {
     if (description == null) {
       throw new IllegalArgumentException("Description object cannot be null");
     }
 
-    LocalDateTime now = LocalDateTime.now();
-
-    String id = now.format(formatterID);
-    String timestamp = now.format(formatterTimestamp);
-
-    Map<String, IShape> listCopy = new LinkedHashMap<String, IShape>();
-
-    for (String key: shapeList.keySet()) {
-      listCopy.put(key, shapeList.get(key).getCopy());
+    // the map is immutable, so the snapshot can share it with the album
+    PersistentOrderedMap<String, IShape> shapes =
+            this.collapseDuplicates ? this.latestEqualShapes() : this.shapeList;
+    long stamp = this.idGenerator.nextStamp();
+    ISnapshot newSnap = new SnapshotImpl(stamp, description, shapes.asMap(),
+            this.currentFilter().freeze());
+    ISnapshot stored = snapshotList.add(newSnap);
+    // snapshots are keyed by stamp, so the identifier is not formatted until someone reads it
+    Object key = SnapshotIndex.keyOf(stored);
+    this.latestKey = key;
+    this.latestShapes = shapes;
+    if (this.history != null) {
+      this.history.snapshotTaken(stored.getID(), shapes);
     }
-
-    ISnapshot newSnap = new SnapshotImpl(id,timestamp,description,listCopy);
-    snapshotList.put(id, newSnap);
-    TimeUnit.MILLISECONDS.sleep(5);
-    return newSnap;
+    this.metadata.snapshotTaken(stamp, description);
+    this.shapePool.snapshotTaken();
+    this.releaseShapes();
+    this.snapshotVersions = this.snapshotVersions.put(key, stored);
+    this.memory.snapshotTaken(key, description);
+    if (this.undoLog != null) {
+      this.undoLog.add(new UndoRecord(stored.getID(), null, null, true));
+    }
+    this.publish();
+    return stored;
   }
 
   @Override
@@ -75,7 +183,7 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
 
     int i = 0;
     int len = snapshotList.size();
-    for (ISnapshot snapshot: snapshotList.values()) {
+    for (ISnapshot snapshot: snapshotList.asMap().values()) {
       s += snapshot.toString();
 
       if (i != (len - 1)) {
@@ -97,14 +205,55 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (id == null) {
       throw new IllegalArgumentException("ID object is null.");
     }
+    this.checkNoTransaction();
 
-    if (this.snapshotList.containsKey(id)) {
-      this.snapshotList.remove(id);
-      return true;
-    }
-    else {
+    ISnapshot snapshot = this.snapshotList.get(id);
+    if (snapshot == null) {
       return false;
     }
+    Object key = SnapshotIndex.keyOf(snapshot);
+    if (!this.snapshotList.releasesShapes()) {
+      this.shapePool.snapshotRemoved(snapshot.getShapes());
+    }
+    this.snapshotVersions = this.snapshotVersions.remove(key);
+    this.memory.snapshotRemoved(key);
+    if (this.history != null) {
+      this.history.snapshotRemoved(id);
+    }
+    this.metadata.snapshotRemoved(snapshot.getStamp());
+    int index = this.snapshotList.indexOf(id);
+    boolean removed = this.snapshotList.remove(id);
+    this.releaseShapes();
+    this.refreshVersions(index);
+    this.publish();
+    return removed;
+  }
+
+  /**
+   * Release the pool references of the snapshots whose shape maps the store let go of, so shapes
+   * only such snapshots had can leave the heap.
+   */
+  private void releaseShapes() {
+    for (Map<String, IShape> shapes : this.snapshotList.takeReleased()) {
+      this.shapePool.snapshotRemoved(shapes);
+    }
+  }
+
+  /**
+   * Publish the stored snapshots from an index on that the store replaced while removing the one
+   * before them (the delta store rebases the deltas that followed it), so published versions do
+   * not hold on to the removed snapshot through the replaced ones.
+   * @param index index the removed snapshot had
+   */
+  private void refreshVersions(int index) {
+    for (int i = index; i < this.snapshotList.size(); i++) {
+      ISnapshot stored = this.snapshotList.get(i);
+      Object key = SnapshotIndex.keyOf(stored);
+      if (this.snapshotVersions.get(key) == stored) {
+        return;
+      }
+      this.snapshotVersions = this.snapshotVersions.put(key, stored);
+    }
   }
 
 
@@ -119,10 +268,7 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
       throw new IllegalArgumentException("ID object is null.");
     }
 
-    if (this.snapshotList.containsKey(id)) {
-      return this.snapshotList.get(id);
-    }
-    else return null;
+    return this.snapshotList.get(id);
   }
 
   /**
@@ -134,47 +280,33 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
    */
   @Override
   public ISnapshot getSnapshot(int index) throws IllegalArgumentException {
-    if ((index < 0) || (index >= this.snapshotList.size())) {
-      throw new IllegalArgumentException("Index out of range.");
-    }
-    String key = (String) this.snapshotList.keySet().toArray()[index];
-    return this.snapshotList.get(key);
+    return this.snapshotList.get(index);
   }
 
   /**
    * Given an identifier, find the index.
    *
    * @param id identifier of snapshot
-   * @return -1 if snapshot not found, index of snapshot in the LinkedHashMap if found
+   * @return -1 if snapshot not found, index of snapshot if found
    * @throws IllegalArgumentException if id is null
    */
   @Override
   public int getSnapShotIndex(String id) throws IllegalArgumentException {
-    if (id == null) {
-      throw new IllegalArgumentException("ID");
-    }
-
-    int i = 0;
-    for (String key: this.snapshotList.keySet()) {
-      if (key.equals(id)) {
-        return i;
-      }
-      i++;
-    }
-    return -1;
+    return this.snapshotList.indexOf(id);
   }
 
   /**
    * Getter for snapshot map.
-   * @return  snapshot map
+   * @return  read-only snapshot map
    */
   @Override
   public Map<String, ISnapshot> getAllSnapshots() {
-    return this.snapshotList;
+    return this.snapshotList.asMap();
   }
 
   /**
-   * Add a new shape into the album, along with identifier.
+   * Add a new shape into the album, along with identifier. The album stores its own copy of the
+   * shape, so later changes to the given object do not leak into the album or its snapshots.
    *
    * @param id    identifier
    * @param shape shape to be added
@@ -189,10 +321,234 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
       return false;
     }
 
-    this.shapeList.put(id, shape);
+    this.insertShape(id, shape.getCopy());
+    this.publish();
     return true;
   }
 
+  /**
+   * Add copy of a new shape without publishing the change.
+   * @param id  identifier of shape
+   * @param shape copy of shape
+   */
+  private void insertShape(String id, IShape shape) {
+    IShape pooled = this.shapePool.acquire(shape);
+    long generation = this.shapeList.getGeneration();
+    this.shapeList = this.shapeList.put(id, pooled);
+    this.checkGeneration(generation);
+    long order = this.shapeList.orderOf(id);
+    this.grid.put(id, pooled, order);
+    this.filterShape(id);
+    this.memory.shapeAdded(id);
+    this.logShape(id, null, pooled, order, false);
+  }
+
+  /**
+   * Put a shape back at the position it had, without publishing the change.
+   * @param id  identifier of shape
+   * @param shape shape to put back
+   * @param order order stamp the shape had
+   */
+  private void restoreShape(String id, IShape shape, long order) {
+    IShape pooled = this.shapePool.acquire(shape);
+    this.shapeList = this.shapeList.putAt(id, pooled, order);
+    this.grid.put(id, pooled, order);
+    this.filterShape(id);
+    this.memory.shapeAdded(id);
+    this.logShape(id, null, pooled, order, false);
+  }
+
+  /**
+   * Add a shape identifier to the filter of the current shapes.
+   * @param id  identifier of shape
+   */
+  private void filterShape(String id) {
+    if (!this.filterStale && !this.shapeFilter.mightContain(id)) {
+      this.shapeFilter.add(id);
+    }
+  }
+
+  /**
+   * Return the filter of the current shapes, rebuilding it if it is stale or holds more
+   * identifiers than it was sized for.
+   * @return  filter
+   */
+  private BloomFilter currentFilter() {
+    if (this.filterStale || (this.shapeFilter.getCount() > this.shapeFilter.getCapacity())) {
+      this.shapeFilter = new BloomFilter(Math.max(64, 2 * this.shapeList.size()), this.filterRate);
+      for (String id : this.shapeList.asMap().keySet()) {
+        this.shapeFilter.add(id);
+      }
+      this.filterStale = false;
+    }
+    return this.shapeFilter;
+  }
+
+  /**
+   * Set the false-positive rate of the shape filters of new snapshots.
+   * @param rate  false-positive rate, between 0 and 1
+   * @throws IllegalArgumentException if rate is not between 0 and 1
+   */
+  public void setShapeFilterRate(double rate) throws IllegalArgumentException {
+    if (!(rate > 0) || !(rate < 1)) {
+      throw new IllegalArgumentException("False-positive rate has to be between 0 and 1.");
+    }
+    this.filterRate = rate;
+    this.filterStale = true;
+  }
+
+  /**
+   * Get the false-positive rate of the shape filters of new snapshots.
+   * @return  false-positive rate
+   */
+  public double getShapeFilterRate() {
+    return this.filterRate;
+  }
+
+  /**
+   * Remove shape without publishing the change.
+   * @param id  identifier of shape
+   * @param old current shape
+   */
+  private void deleteShape(String id, IShape old) {
+    long order = this.shapeList.orderOf(id);
+    this.shapeList = this.shapeList.remove(id);
+    this.grid.remove(id);
+    this.memory.shapeRemoved(id);
+    this.shapePool.release(old);
+    this.logShape(id, old, null, order, false);
+  }
+
+  /**
+   * Replace shape with an updated copy, sharing the pooled instance of its new state.
+   * @param id  identifier of shape
+   * @param shape updated copy of shape
+   */
+  private void replaceShape(String id, IShape shape) {
+    this.replaceShape(id, this.shapeList.get(id), shape);
+    this.publish();
+  }
+
+  /**
+   * Replace shape with an updated copy without publishing the change.
+   * @param id  identifier of shape
+   * @param old current shape
+   * @param shape updated copy of shape
+   */
+  private void replaceShape(String id, IShape old, IShape shape) {
+    IShape pooled = this.shapePool.acquire(shape);
+    this.shapeList = this.shapeList.put(id, pooled);
+    this.grid.put(id, pooled, this.shapeList.orderOf(id));
+    this.memory.shapeChanged(id);
+    this.shapePool.release(old);
+    this.logShape(id, old, pooled, -1, false);
+  }
+
+  /**
+   * Record a shape change in the undo log of the active transaction and in the edit journal.
+   * @param id  identifier of shape
+   * @param before  shape before the change, null if added
+   * @param after shape after the change, null if removed
+   * @param order order stamp of the shape
+   * @param joined  true if the change belongs to the same edit as the previous one
+   */
+  private void logShape(String id, IShape before, IShape after, long order, boolean joined) {
+    if (this.undoLog != null) {
+      this.undoLog.add(new UndoRecord(id, before, after, false));
+    }
+    if (!this.replaying) {
+      this.journal.record(id, before, after, order, joined);
+    }
+  }
+
+  /**
+   * Apply a batch of commands in order and report the outcome of each. Every command is worked out
+   * on copies of the shapes before any of them is applied, so a command that throws leaves the
+   * album as it was. Readers of {@link #openReadView()} see the shape changes of the batch
+   * together, published with its snapshots or at its end.
+   *
+   * @param commands  commands to apply
+   * @return  one result per command, in order
+   * @throws IllegalArgumentException if list or a command is null, or a command adds a shape of a
+   *                                  type the album cannot store
+   */
+  @Override
+  public List<CommandResult> applyBatch(List<AlbumCommand> commands)
+          throws IllegalArgumentException {
+    if (commands == null) {
+      throw new IllegalArgumentException("Command list cannot be null.");
+    }
+    for (AlbumCommand command : commands) {
+      if (command == null) {
+        throw new IllegalArgumentException("Command cannot be null.");
+      }
+    }
+
+    // shapes as the batch leaves them so far, null for removed ones
+    Map<String, IShape> pending = new HashMap<String, IShape>();
+    CommandResult.Status[] statuses = new CommandResult.Status[commands.size()];
+    IShape[] prepared = new IShape[commands.size()];
+    for (int i = 0; i < commands.size(); i++) {
+      AlbumCommand command = commands.get(i);
+      statuses[i] = CommandResult.Status.OK;
+      if (command.getType() == AlbumCommand.Type.SNAPSHOT) {
+        continue;
+      }
+
+      String id = command.getId();
+      IShape current = pending.containsKey(id) ? pending.get(id) : this.shapeList.get(id);
+      IShape shape = null;
+      if (command.getType() == AlbumCommand.Type.ADD) {
+        if (current != null) {
+          statuses[i] = CommandResult.Status.DUPLICATE_ID;
+          continue;
+        }
+        shape = command.getShape().getCopy();
+        // the shape pool only takes the known types, so check before anything is applied
+        ShapeType.of(shape);
+      } else if (current == null) {
+        statuses[i] = CommandResult.Status.NOT_FOUND;
+        continue;
+      } else if (command.getType() != AlbumCommand.Type.REMOVE) {
+        shape = current.getCopy();
+        switch (command.getType()) {
+          case MOVE:
+            shape.move(command.getPoint());
+            break;
+          case RESIZE:
+            shape.changeXDimension(command.getXDimension());
+            shape.changeYDimension(command.getYDimension());
+            break;
+          default:
+            shape.changeColor(command.getColor());
+        }
+      }
+      pending.put(id, shape);
+      prepared[i] = shape;
+    }
+
+    List<CommandResult> results = new ArrayList<CommandResult>(commands.size());
+    for (int i = 0; i < commands.size(); i++) {
+      AlbumCommand command = commands.get(i);
+      ISnapshot snapshot = null;
+      String id = command.getId();
+      if (command.getType() == AlbumCommand.Type.SNAPSHOT) {
+        snapshot = this.takeSnapshot(command.getDescription());
+      } else if (statuses[i] == CommandResult.Status.OK) {
+        if (command.getType() == AlbumCommand.Type.ADD) {
+          this.insertShape(id, prepared[i]);
+        } else if (command.getType() == AlbumCommand.Type.REMOVE) {
+          this.deleteShape(id, this.shapeList.get(id));
+        } else {
+          this.replaceShape(id, this.shapeList.get(id), prepared[i]);
+        }
+      }
+      results.add(new CommandResult(command, statuses[i], snapshot));
+    }
+    this.publish();
+    return results;
+  }
+
   /**
    * Check if album contains a shape with given identifier.
    * @param id  identifier of shape to be checked
@@ -213,24 +569,22 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (!this.containsShape(id)) {
       return false;
     }
-    this.shapeList.remove(id);
+    this.deleteShape(id, this.shapeList.get(id));
+    this.publish();
     return true;
   }
 
   /**
-   * Return shape with ID.
+   * Return a copy of shape with ID. The album's own shape is shared with snapshots and the shape
+   * pool, so changing the copy leaves them intact.
    *
    * @param id identifier of shape
    * @return IShape object or null if shape not found
    */
   @Override
   public IShape getShape(String id) {
-    if (shapeList.containsKey(id)) {
-      return shapeList.get(id);
-    }
-    else {
-      return null;
-    }
+    IShape shape = this.shapeList.get(id);
+    return (shape == null) ? null : shape.getCopy();
   }
 
   /**
@@ -246,7 +600,9 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (!this.containsShape(id)) {
       return false;
     }
-    this.shapeList.get(id).move(newPoint);
+    IShape shape = this.shapeList.get(id).getCopy();
+    shape.move(newPoint);
+    this.replaceShape(id, shape);
     return true;
   }
 
@@ -263,7 +619,9 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (!this.containsShape(id)) {
       return false;
     }
-    this.shapeList.get(id).changeColor(color);
+    IShape shape = this.shapeList.get(id).getCopy();
+    shape.changeColor(color);
+    this.replaceShape(id, shape);
     return true;
   }
 
@@ -280,7 +638,9 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (!this.containsShape(id)) {
       return false;
     }
-    this.shapeList.get(id).changeXDimension(dimension);
+    IShape shape = this.shapeList.get(id).getCopy();
+    shape.changeXDimension(dimension);
+    this.replaceShape(id, shape);
     return true;
   }
 
@@ -298,7 +658,9 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (!this.containsShape(id)) {
       return false;
     }
-    this.shapeList.get(id).changeYDimension(dimension);
+    IShape shape = this.shapeList.get(id).getCopy();
+    shape.changeYDimension(dimension);
+    this.replaceShape(id, shape);
     return true;
   }
 
@@ -315,7 +677,9 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
     if (!this.containsShape(id)) {
       return false;
     }
-    this.shapeList.get(id).scaleShape(scaleFactor);
+    IShape shape = this.shapeList.get(id).getCopy();
+    shape.scaleShape(scaleFactor);
+    this.replaceShape(id, shape);
     return true;
   }
 
@@ -324,7 +688,16 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
    */
   @Override
   public void reset() {
+    this.checkNoTransaction();
     this.snapshotList.clear();
+    this.shapePool.snapshotsCleared();
+    this.memory.snapshotsCleared();
+    if (this.history != null) {
+      this.history.snapshotsCleared();
+    }
+    this.metadata.snapshotsCleared();
+    this.snapshotVersions = PersistentOrderedMap.empty();
+    this.publish();
   }
 
   /**
@@ -332,7 +705,491 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
    */
   @Override
   public void clearShapes() {
-    this.shapeList.clear();
+    boolean joined = false;
+    for (Map.Entry<String, IShape> entry : this.shapeList.asMap().entrySet()) {
+      this.shapePool.release(entry.getValue());
+      this.memory.shapeRemoved(entry.getKey());
+      this.logShape(entry.getKey(), entry.getValue(), null,
+              this.shapeList.orderOf(entry.getKey()), joined);
+      joined = true;
+    }
+    // keep handing out new order stamps, so undo can put the shapes back where they were
+    this.shapeList = this.shapeList.clear();
+    this.grid.clear();
+    this.publish();
+  }
+
+  /**
+   * Undo the newest shape edit in the journal.
+   * @return  true if an edit was undone, false if there is none
+   * @throws IllegalStateException if a transaction is active
+   */
+  @Override
+  public boolean undo() throws IllegalStateException {
+    this.checkNoTransaction();
+    List<EditJournal.Entry> changes = this.journal.undo();
+    if (changes == null) {
+      return false;
+    }
+
+    this.replaying = true;
+    for (EditJournal.Entry change : changes) {
+      if (change.previousOrder >= 0) {
+        this.reorderShape(change.id, this.shapeList.moveTo(change.id, change.previousOrder));
+      } else if (change.before == null) {
+        this.deleteShape(change.id, change.after);
+      } else if (change.after == null) {
+        this.restoreShape(change.id, change.before, change.order);
+      } else {
+        this.replaceShape(change.id, change.after, change.before);
+      }
+    }
+    this.replaying = false;
+    this.publish();
+    return true;
+  }
+
+  /**
+   * Redo the newest undone shape edit in the journal.
+   * @return  true if an edit was redone, false if there is none
+   * @throws IllegalStateException if a transaction is active
+   */
+  @Override
+  public boolean redo() throws IllegalStateException {
+    this.checkNoTransaction();
+    List<EditJournal.Entry> changes = this.journal.redo();
+    if (changes == null) {
+      return false;
+    }
+
+    this.replaying = true;
+    for (EditJournal.Entry change : changes) {
+      if (change.previousOrder >= 0) {
+        this.reorderShape(change.id, this.shapeList.moveTo(change.id, change.order));
+      } else if (change.before == null) {
+        this.restoreShape(change.id, change.after, change.order);
+      } else if (change.after == null) {
+        this.deleteShape(change.id, change.before);
+      } else {
+        this.replaceShape(change.id, change.before, change.after);
+      }
+    }
+    this.replaying = false;
+    this.publish();
+    return true;
+  }
+
+  /**
+   * Paint a shape over all others.
+   * @param id  identifier of shape
+   * @return  true if moved or already in front, false if shape not found
+   */
+  public boolean bringToFront(String id) {
+    if (!this.containsShape(id)) {
+      return false;
+    }
+    this.reorderShape(id, this.shapeList.moveToEnd(id));
+    this.publish();
+    return true;
+  }
+
+  /**
+   * Paint a shape under all others.
+   * @param id  identifier of shape
+   * @return  true if moved or already at the back, false if shape not found
+   */
+  public boolean sendToBack(String id) {
+    if (!this.containsShape(id)) {
+      return false;
+    }
+    this.reorderShape(id, this.shapeList.moveToStart(id));
+    this.publish();
+    return true;
+  }
+
+  /**
+   * Paint a shape right over another one.
+   * @param id  identifier of shape to be moved
+   * @param targetId  identifier of shape to be painted over
+   * @return  true if moved or already there, false if either shape not found
+   * @throws IllegalArgumentException if both identifiers are the same
+   */
+  public boolean moveAbove(String id, String targetId) throws IllegalArgumentException {
+    if ((id != null) && id.equals(targetId)) {
+      throw new IllegalArgumentException("Shape cannot be moved above itself.");
+    }
+    if (!this.containsShape(id) || !this.containsShape(targetId)) {
+      return false;
+    }
+    this.reorderShape(id, this.shapeList.moveAfter(id, targetId));
+    this.publish();
+    return true;
+  }
+
+  /**
+   * Take a version of the shape map in which a shape was given a new order stamp, without
+   * publishing the change.
+   * @param id  identifier of shape
+   * @param reordered shape map with the shape moved
+   */
+  private void reorderShape(String id, PersistentOrderedMap<String, IShape> reordered) {
+    if (reordered == this.shapeList) {
+      return;
+    }
+    long from = this.shapeList.orderOf(id);
+    long generation = this.shapeList.getGeneration();
+    IShape shape = this.shapeList.get(id);
+    this.shapeList = reordered;
+    if (this.checkGeneration(generation)) {
+      // stamps changed everywhere, so the move cannot be undone by stamp either
+      return;
+    }
+
+    long to = this.shapeList.orderOf(id);
+    this.grid.put(id, shape, to);
+    this.memory.shapeChanged(id);
+    if (this.undoLog != null) {
+      this.undoLog.add(new UndoRecord(id, shape, shape, false));
+    }
+    if (!this.replaying) {
+      this.journal.recordMove(id, shape, from, to);
+    }
+  }
+
+  /**
+   * Re-index shapes and drop the journal, whose order stamps no longer apply, if the shape map
+   * renumbered its order stamps.
+   * @param generation  generation of the shape map before the change
+   * @return  true if the order stamps were renumbered
+   */
+  private boolean checkGeneration(long generation) {
+    if (this.shapeList.getGeneration() == generation) {
+      return false;
+    }
+    this.reindex(this.shapeList);
+    this.journal.clear();
+    return true;
+  }
+
+  /**
+   * Rebuild the spatial index from a version of the shape map.
+   * @param shapes  shape map
+   */
+  private void reindex(PersistentOrderedMap<String, IShape> shapes) {
+    this.grid.clear();
+    for (Map.Entry<String, IShape> entry : shapes.asMap().entrySet()) {
+      this.grid.put(entry.getKey(), entry.getValue(), shapes.orderOf(entry.getKey()));
+    }
+  }
+
+  /**
+   * Estimate bytes retained by the album, kept up to date on every change.
+   * @return  estimated bytes of shapes and snapshots
+   */
+  @Override
+  public long getEstimatedBytes() {
+    return this.memory.getTotalBytes();
+  }
+
+  /**
+   * Estimate bytes of a current shape.
+   * @param id  identifier of shape
+   * @return  estimated bytes, or 0 if shape not found
+   */
+  @Override
+  public long getEstimatedShapeBytes(String id) {
+    return this.containsShape(id) ? MemoryMeter.estimateShape(id) : 0;
+  }
+
+  /**
+   * Estimate bytes retained by a snapshot alone: its own object and the shapes that changed after
+   * it was taken, before the next snapshot.
+   * @param id  identifier of snapshot
+   * @return  estimated bytes, or -1 if snapshot not found
+   */
+  @Override
+  public long getEstimatedSnapshotBytes(String id) {
+    return this.memory.getSnapshotBytes(id);
+  }
+
+  /**
+   * Get memory meter, for its figures and budget.
+   * @return  memory meter
+   */
+  public MemoryMeter getMemoryMeter() {
+    return this.memory;
+  }
+
+  /**
+   * Set whether a snapshot equal to the latest one shares its shape map.
+   * @param collapse  true to collapse consecutive equal snapshots
+   */
+  public void setCollapseDuplicates(boolean collapse) {
+    this.collapseDuplicates = collapse;
+  }
+
+  /**
+   * Check whether a snapshot equal to the latest one shares its shape map.
+   * @return  true if consecutive equal snapshots are collapsed
+   */
+  public boolean isCollapseDuplicates() {
+    return this.collapseDuplicates;
+  }
+
+  /**
+   * Find the shape map of the latest snapshot if it equals the current shapes.
+   * @return  shape map of latest snapshot, or current shapes if they differ
+   */
+  private PersistentOrderedMap<String, IShape> latestEqualShapes() {
+    int count = this.snapshotList.size();
+    if (count == 0) {
+      return this.shapeList;
+    }
+    // every store keeps the fingerprint, so differing shapes are not read at all
+    ISnapshot snapshot = this.snapshotList.get(count - 1);
+    if (snapshot.getFingerprint() != this.shapeList.getFingerprint()) {
+      return this.shapeList;
+    }
+    // stores may hand back decoded copies, so prefer the map the latest snapshot was taken with
+    PersistentOrderedMap<String, IShape> shared =
+            SnapshotIndex.keyOf(snapshot).equals(this.latestKey)
+                    ? this.latestShapes : PersistentOrderedMap.unwrap(snapshot.getShapes());
+    if ((shared == null) || !SnapshotDiff.sameShapes(shared.asMap(), this.shapeList.asMap())) {
+      return this.shapeList;
+    }
+    return shared;
+  }
+
+  /**
+   * Get history of the shapes across snapshots. The history holds on to the shapes of every
+   * snapshot, so the album only builds it from the stored snapshots when it is first asked for,
+   * and keeps it up to date from then on.
+   * @return  shape history
+   */
+  public ShapeHistory getShapeHistory() {
+    if (this.history == null) {
+      ShapeHistory built = new ShapeHistory();
+      for (int i = 0; i < this.snapshotList.size(); i++) {
+        ISnapshot snapshot = this.snapshotList.get(i);
+        PersistentOrderedMap<String, IShape> shapes =
+                SnapshotIndex.keyOf(snapshot).equals(this.latestKey)
+                        ? this.latestShapes
+                        : PersistentOrderedMap.copyOf(snapshot.getShapes(), ShapeState.HASHER);
+        built.snapshotTaken(snapshot.getID(), shapes);
+      }
+      this.history = built;
+    }
+    return this.history;
+  }
+
+  /**
+   * Get index of the stamps and descriptions of the snapshots.
+   * @return  metadata index
+   */
+  public SnapshotMetadataIndex getMetadataIndex() {
+    return this.metadata;
+  }
+
+  /**
+   * Find snapshots by time and description with the metadata index, without reading any
+   * snapshot.
+   */
+  @Override
+  public List<String> findSnapshots(String text, Instant from, Instant to)
+          throws IllegalArgumentException {
+    if ((from != null) && (to != null) && from.isAfter(to)) {
+      throw new IllegalArgumentException("Start of range is after its end.");
+    }
+    return this.metadata.find(text, toStamp(from, Long.MIN_VALUE), toStamp(to, Long.MAX_VALUE));
+  }
+
+  /**
+   * Convert an instant to a stamp, rounding up to the next microsecond.
+   * @param instant instant, or null
+   * @param unbounded stamp to use for null or an instant out of range
+   * @return  microseconds since the epoch
+   */
+  private static long toStamp(Instant instant, long unbounded) {
+    if (instant == null) {
+      return unbounded;
+    }
+    try {
+      return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L),
+              (instant.getNano() + 999) / 1_000);
+    } catch (ArithmeticException e) {
+      return (instant.getEpochSecond() < 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Get journal of shape edits, for its budget and statistics.
+   * @return  edit journal
+   */
+  public EditJournal getJournal() {
+    return this.journal;
+  }
+
+  /**
+   * Start a transaction. Snapshots cannot be removed or reset until it ends.
+   * @throws IllegalStateException if a transaction is already active
+   */
+  @Override
+  public void begin() throws IllegalStateException {
+    if (this.undoLog != null) {
+      throw new IllegalStateException("Transaction already active.");
+    }
+    this.undoLog = new ArrayList<UndoRecord>();
+    this.shapesAtBegin = this.shapeList;
+    this.journalAtBegin = this.journal.position();
+  }
+
+  @Override
+  public void commit() throws IllegalStateException {
+    if (this.undoLog == null) {
+      throw new IllegalStateException("No active transaction.");
+    }
+    this.undoLog = null;
+    this.shapesAtBegin = null;
+    this.publish();
+  }
+
+  /**
+   * Undo the edits of the active transaction, newest first, and remove the snapshots taken
+   * during it.
+   * @throws IllegalStateException if no transaction is active
+   */
+  @Override
+  public void rollback() throws IllegalStateException {
+    if (this.undoLog == null) {
+      throw new IllegalStateException("No active transaction.");
+    }
+
+    for (int i = this.undoLog.size() - 1; i >= 0; i--) {
+      UndoRecord record = this.undoLog.get(i);
+      if (record.snapshot) {
+        ISnapshot snapshot = this.snapshotList.get(record.id);
+        Object key = SnapshotIndex.keyOf(snapshot);
+        if (!this.snapshotList.releasesShapes()) {
+          this.shapePool.snapshotRemoved(snapshot.getShapes());
+        }
+        int index = this.snapshotList.indexOf(record.id);
+        this.snapshotList.remove(record.id);
+        this.releaseShapes();
+        this.snapshotVersions = this.snapshotVersions.remove(key);
+        this.refreshVersions(index);
+        this.memory.snapshotRemoved(key);
+        if (this.history != null) {
+          this.history.snapshotRemoved(record.id);
+        }
+        this.metadata.snapshotRemoved(snapshot.getStamp());
+        continue;
+      }
+      if (record.before != null) {
+        this.shapePool.acquire(record.before);
+      } else {
+        this.memory.shapeRemoved(record.id);
+      }
+      if (record.after != null) {
+        this.shapePool.release(record.after);
+      } else {
+        this.memory.shapeAdded(record.id);
+      }
+    }
+
+    // the map is persistent, so the version from the start of the transaction is still intact
+    if (this.shapesAtBegin.getGeneration() != this.shapeList.getGeneration()) {
+      this.reindex(this.shapesAtBegin);
+    } else {
+      for (UndoRecord record : this.undoLog) {
+        if (record.snapshot) {
+          continue;
+        }
+        IShape restored = this.shapesAtBegin.get(record.id);
+        if (restored == null) {
+          this.grid.remove(record.id);
+        } else {
+          this.grid.put(record.id, restored, this.shapesAtBegin.orderOf(record.id));
+        }
+      }
+    }
+    this.shapeList = this.shapesAtBegin;
+    // shapes put back may have been dropped from a filter rebuilt during the transaction
+    this.filterStale = true;
+    this.journal.rewind(this.journalAtBegin);
+    this.undoLog = null;
+    this.shapesAtBegin = null;
+    this.publish();
+  }
+
+  @Override
+  public boolean inTransaction() {
+    return this.undoLog != null;
+  }
+
+  /**
+   * Throw if a transaction is active.
+   * @throws IllegalStateException if a transaction is active
+   */
+  private void checkNoTransaction() throws IllegalStateException {
+    if (this.undoLog != null) {
+      throw new IllegalStateException("Not allowed during a transaction.");
+    }
+  }
+
+  /**
+   * Open a stable view of the shapes and snapshots as they are now. The view can be read from any
+   * thread while this album keeps changing, and must be closed when no longer needed.
+   * @return  read view
+   */
+  public AlbumReadView openReadView() {
+    return new AlbumReadView(this.epochs);
+  }
+
+  /**
+   * Get epoch manager, for the epochs of published and pinned versions.
+   * @return  epoch manager
+   */
+  public EpochManager getEpochManager() {
+    return this.epochs;
+  }
+
+  /**
+   * Publish the current shapes and snapshots as a new version for readers.
+   */
+  private void publish() {
+    if (this.undoLog != null) {
+      return;
+    }
+    this.epoch++;
+    this.epochs.publish(new AlbumVersion(this.epoch, this.shapeList, this.snapshotVersions));
+  }
+
+  /**
+   * Get pool holding the shape states of the album and its snapshots.
+   * @return  shape pool, for its statistics
+   */
+  public ShapePool getShapePool() {
+    return this.shapePool;
+  }
+
+  /**
+   * Get the shapes whose bounding boxes intersect a rectangle, edges included, looking only at
+   * the cells of the spatial index the rectangle covers. As with {@link #getShape(String)}, the
+   * shapes are copies, so changing them leaves the album and its snapshots intact.
+   * @param x left edge of rectangle
+   * @param y top edge of rectangle
+   * @param width width of rectangle
+   * @param height  height of rectangle
+   * @return  read-only map of copies of the shapes, in paint order
+   * @throws IllegalArgumentException if width or height is negative
+   */
+  public Map<String, IShape> shapesIntersecting(double x, double y, double width, double height)
+          throws IllegalArgumentException {
+    Map<String, IShape> found = new LinkedHashMap<String, IShape>();
+    for (String id : this.grid.query(x, y, width, height)) {
+      found.put(id, this.shapeList.get(id).getCopy());
+    }
+    return Collections.unmodifiableMap(found);
   }
 
   /**
@@ -363,10 +1220,34 @@ public class PhotoAlbumImpl implements IPhotoAlbum {
   public String toString() {
     String s = "";
 
-    for (String key: this.shapeList.keySet()) {
-      s += "Name: " + key + "\n";
-      s += this.shapeList.get(key).toString() + "\n";
+    for (Map.Entry<String, IShape> entry: this.shapeList.asMap().entrySet()) {
+      s += "Name: " + entry.getKey() + "\n";
+      s += entry.getValue().toString() + "\n";
     }
     return s;
   }
+
+  /**
+   * Entry of the undo log: a shape change, or a snapshot taken.
+   */
+  private static final class UndoRecord {
+    private final String id;
+    private final IShape before;
+    private final IShape after;
+    private final boolean snapshot;
+
+    /**
+     * Constructor.
+     * @param id  identifier of shape or snapshot
+     * @param before  shape before the change, null if added
+     * @param after shape after the change, null if removed
+     * @param snapshot  true if the record is a snapshot taken
+     */
+    private UndoRecord(String id, IShape before, IShape after, boolean snapshot) {
+      this.id = id;
+      this.before = before;
+      this.after = after;
+      this.snapshot = snapshot;
+    }
+  }
 }
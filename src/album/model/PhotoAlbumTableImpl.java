@@ -0,0 +1,251 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.Map;
+
+/**
+ * Class PhotoAlbumTableImpl implements interface IPhotoAlbum on top of a struct-of-arrays shape
+ * table, for albums with very many shapes.
+ *
+ * <p>Shapes are not kept as objects: each one is a row of primitive values, and the IShape
+ * objects returned by {@link #getShape(String)} and by snapshots are built from those values
+ * when asked for. Changing such an object does not change the album. Colors are stored with
+ * 8 bits per channel.
+ */
+public class PhotoAlbumTableImpl implements IPhotoAlbum {
+  private ShapeTable shapeTable;
+  private ISnapshotStore snapshotList;
+  private ISnapshotIdGenerator idGenerator;
+
+  /**
+   * Constructor, keeping snapshots in memory as they are taken.
+   */
+  public PhotoAlbumTableImpl() {
+    this(new InMemorySnapshotStore(), new MonotonicIdGenerator());
+  }
+
+  /**
+   * Constructor.
+   * @param snapshotStore storage policy for snapshots
+   * @param idGenerator source of snapshot identifiers
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public PhotoAlbumTableImpl(ISnapshotStore snapshotStore, ISnapshotIdGenerator idGenerator)
+          throws IllegalArgumentException {
+    if ((snapshotStore == null) || (idGenerator == null)) {
+      throw new IllegalArgumentException("Snapshot store and ID generator cannot be null.");
+    }
+
+    this.shapeTable = new ShapeTable();
+    this.snapshotList = snapshotStore;
+    this.idGenerator = idGenerator;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return (this.snapshotList.size() == 0);
+  }
+
+  /**
+   * Return current shapes in album (as a snapshot). The snapshot holds a trimmed copy of the
+   * shape table.
+   *
+   * @return snapshot
+   */
+  @Override
+  public ISnapshot takeSnapshot(String description) throws IllegalArgumentException {
+    if (description == null) {
+      throw new IllegalArgumentException("Description object cannot be null");
+    }
+
+    ISnapshot newSnap = new SnapshotImpl(
+            this.idGenerator.nextStamp(), description, this.shapeTable.copy().asMap());
+    return this.snapshotList.add(newSnap);
+  }
+
+  @Override
+  public String printSnapshots() {
+    StringBuilder s = new StringBuilder("Printing Snapshots\n");
+
+    int i = 0;
+    int len = this.snapshotList.size();
+    for (ISnapshot snapshot: this.snapshotList.asMap().values()) {
+      s.append(snapshot.toString());
+
+      if (i != (len - 1)) {
+        s.append("\n\n");
+      }
+      i++;
+    }
+    return s.toString();
+  }
+
+  @Override
+  public boolean removeSnapshot(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.remove(id);
+  }
+
+  @Override
+  public ISnapshot getSnapshot(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.get(id);
+  }
+
+  @Override
+  public ISnapshot getSnapshot(int index) throws IllegalArgumentException {
+    return this.snapshotList.get(index);
+  }
+
+  @Override
+  public int getSnapShotIndex(String id) throws IllegalArgumentException {
+    return this.snapshotList.indexOf(id);
+  }
+
+  @Override
+  public Map<String, ISnapshot> getAllSnapshots() {
+    return this.snapshotList.asMap();
+  }
+
+  @Override
+  public boolean containsShape(String id) {
+    return this.shapeTable.rowOf(id) >= 0;
+  }
+
+  @Override
+  public boolean addShape(String id, IShape shape) throws IllegalArgumentException {
+    if (shape == null) {
+      throw new IllegalArgumentException("Shape cannot be null.");
+    }
+    if (id == null) {
+      return false;
+    }
+    return this.shapeTable.add(id, shape);
+  }
+
+  @Override
+  public boolean removeShape(String id) {
+    return this.shapeTable.remove(id);
+  }
+
+  /**
+   * Return shape with ID, as a copy built from the table.
+   *
+   * @param id identifier of shape
+   * @return IShape object or null if shape not found
+   */
+  @Override
+  public IShape getShape(String id) {
+    int row = this.shapeTable.rowOf(id);
+    return (row < 0) ? null : this.shapeTable.shapeAt(row);
+  }
+
+  @Override
+  public boolean moveShape(String id, Point2D newPoint) throws IllegalArgumentException {
+    int row = this.shapeTable.rowOf(id);
+    if (row < 0) {
+      return false;
+    }
+    if (newPoint == null) {
+      throw new IllegalArgumentException("Coordinate point object cannot be null.");
+    }
+    this.shapeTable.move(row, newPoint);
+    return true;
+  }
+
+  @Override
+  public boolean changeShapeColor(String id, Color color) throws IllegalArgumentException {
+    int row = this.shapeTable.rowOf(id);
+    if (row < 0) {
+      return false;
+    }
+    if (color == null) {
+      throw new IllegalArgumentException("Color object cannot be null");
+    }
+    this.shapeTable.changeColor(row, color);
+    return true;
+  }
+
+  @Override
+  public boolean changeShapeXDimension(String id, double dimension)
+          throws IllegalArgumentException {
+    int row = this.shapeTable.rowOf(id);
+    if (row < 0) {
+      return false;
+    }
+    if (dimension <= 0) {
+      throw new IllegalArgumentException("Dimension has to be positive");
+    }
+    this.shapeTable.changeXDimension(row, dimension);
+    return true;
+  }
+
+  @Override
+  public boolean changeShapeYDimension(String id, double dimension)
+          throws IllegalArgumentException {
+    int row = this.shapeTable.rowOf(id);
+    if (row < 0) {
+      return false;
+    }
+    if (dimension <= 0) {
+      throw new IllegalArgumentException("Dimension has to be positive");
+    }
+    this.shapeTable.changeYDimension(row, dimension);
+    return true;
+  }
+
+  @Override
+  public boolean scaleShape(String id, double scaleFactor) throws IllegalArgumentException {
+    int row = this.shapeTable.rowOf(id);
+    if (row < 0) {
+      return false;
+    }
+    if (scaleFactor <= 0) {
+      throw new IllegalArgumentException("Scale factor has to be positive");
+    }
+    this.shapeTable.scale(row, scaleFactor);
+    return true;
+  }
+
+  @Override
+  public void reset() {
+    this.snapshotList.clear();
+  }
+
+  @Override
+  public void clearShapes() {
+    this.shapeTable.clear();
+  }
+
+  @Override
+  public int getNumShapes() {
+    return this.shapeTable.size();
+  }
+
+  @Override
+  public int getNumSnapshots() {
+    return this.snapshotList.size();
+  }
+
+  /**
+   * Return string representation of photo album.
+   * @return  string representation
+   */
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+
+    for (Map.Entry<String, IShape> entry: this.shapeTable.asMap().entrySet()) {
+      s.append("Name: ").append(entry.getKey()).append("\n");
+      s.append(entry.getValue().toString()).append("\n");
+    }
+    return s.toString();
+  }
+}
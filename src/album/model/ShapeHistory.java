@@ -0,0 +1,328 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the states of every shape across the snapshots of an album.
+ *
+ * <p>Each shape has a column of runs: the sequence number of the snapshot where a state begins,
+ * and the shape in that state, or null where the shape is absent. A run is only added when a
+ * snapshot is taken with the shape added, changed or removed since the previous snapshot, which
+ * the shape maps of the album report in time proportional to the changes. States are compared
+ * exactly, so a change too small to print still begins a run. Snapshots are addressed by their
+ * index in the album; removing one drops it from the index of live snapshots. Once about half as
+ * many snapshots were removed as are left, runs that no live snapshot falls in are dropped and
+ * neighbouring runs with the same state are merged, so the index shrinks with the album.
+ *
+ * <p>Runs hold the shapes themselves, which keeps them on the heap even when a snapshot store
+ * spills them, so an album only keeps a history once it is asked for one.
+ *
+ * <p>The state of a shape at a snapshot is found by binary search over its runs. Changes and
+ * lifetimes take a binary search per run, so they cost O(r log n) for r runs and n snapshots
+ * rather than a look at every snapshot.
+ */
+public final class ShapeHistory {
+  private final Map<String, Column> columns;
+  private final Map<String, Long> sequences;
+  private long[] live;
+  private int liveCount;
+  private int removedSinceCompaction;
+  private long nextSequence;
+  private PersistentOrderedMap<String, IShape> lastShapes;
+
+  /**
+   * Constructor, for an album without snapshots.
+   */
+  ShapeHistory() {
+    this.columns = new HashMap<String, Column>();
+    this.sequences = new HashMap<String, Long>();
+    this.live = new long[16];
+    this.snapshotsCleared();
+  }
+
+  /**
+   * Get number of snapshots indexed.
+   * @return  number of snapshots
+   */
+  public int getNumSnapshots() {
+    return this.liveCount;
+  }
+
+  /**
+   * Get number of runs kept over all shapes.
+   * @return  number of runs
+   */
+  public int getNumRuns() {
+    int runs = 0;
+    for (Column column : this.columns.values()) {
+      runs += column.size;
+    }
+    return runs;
+  }
+
+  /**
+   * Get state of a shape at a snapshot.
+   * @param id  identifier of shape
+   * @param index index of snapshot, starting at 0 for the first snapshot
+   * @return  shape as it was in the snapshot, or null if it was absent
+   * @throws IllegalArgumentException if identifier is null or index is out of range
+   */
+  public IShape shapeAt(String id, int index) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    if ((index < 0) || (index >= this.liveCount)) {
+      throw new IllegalArgumentException("Snapshot index out of range.");
+    }
+    Column column = this.columns.get(id);
+    return (column == null) ? null : column.valueAt(this.live[index]);
+  }
+
+  /**
+   * Find the snapshots where a shape differs from the snapshot before, including the snapshots
+   * where it appears or disappears.
+   * @param id  identifier of shape
+   * @return  read-only, ascending snapshot indexes
+   * @throws IllegalArgumentException if identifier is null
+   */
+  public List<Integer> getChanges(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    Column column = this.columns.get(id);
+    if (column == null) {
+      return Collections.emptyList();
+    }
+
+    List<Integer> changes = new ArrayList<Integer>();
+    for (int run = 0; run < column.size; run++) {
+      int index = this.firstLiveAtOrAfter(column.starts[run]);
+      // a run no live snapshot falls in left no trace
+      if ((index == this.liveCount)
+              || ((run + 1 < column.size) && (this.live[index] >= column.starts[run + 1]))) {
+        continue;
+      }
+      IShape before = (index == 0) ? null : column.valueAt(this.live[index - 1]);
+      if (!ShapeState.same(before, column.values[run])) {
+        changes.add(index);
+      }
+    }
+    return Collections.unmodifiableList(changes);
+  }
+
+  /**
+   * Find the ranges of consecutive snapshots that contain a shape.
+   * @param id  identifier of shape
+   * @return  read-only, ascending list of ranges
+   * @throws IllegalArgumentException if identifier is null
+   */
+  public List<Interval> getLifetimes(String id) throws IllegalArgumentException {
+    List<Integer> changes = this.getChanges(id);
+    List<Interval> lifetimes = new ArrayList<Interval>();
+    Column column = this.columns.get(id);
+    int first = -1;
+    for (int index : changes) {
+      boolean present = column.valueAt(this.live[index]) != null;
+      if (present && (first < 0)) {
+        first = index;
+      } else if (!present && (first >= 0)) {
+        lifetimes.add(new Interval(first, index - 1));
+        first = -1;
+      }
+    }
+    if (first >= 0) {
+      lifetimes.add(new Interval(first, this.liveCount - 1));
+    }
+    return Collections.unmodifiableList(lifetimes);
+  }
+
+  /**
+   * Record the shapes of a new snapshot, taken after all indexed ones.
+   * @param snapshotId  identifier of snapshot
+   * @param shapes  shapes of snapshot
+   */
+  void snapshotTaken(String snapshotId, PersistentOrderedMap<String, IShape> shapes) {
+    final long sequence = this.nextSequence++;
+    shapes.diff(this.lastShapes, new PersistentOrderedMap.ChangeVisitor<String, IShape>() {
+      @Override
+      public void visit(String key, IShape before, IShape after, boolean reordered) {
+        if (!ShapeState.same(before, after)) {
+          Column column = ShapeHistory.this.columns.get(key);
+          if (column == null) {
+            column = new Column();
+            ShapeHistory.this.columns.put(key, column);
+          }
+          column.append(sequence, after);
+        }
+      }
+    });
+    this.lastShapes = shapes;
+
+    if (this.liveCount == this.live.length) {
+      this.live = Arrays.copyOf(this.live, this.live.length * 2);
+    }
+    this.live[this.liveCount++] = sequence;
+    this.sequences.put(snapshotId, sequence);
+  }
+
+  /**
+   * Drop a snapshot from the index of live snapshots.
+   * @param snapshotId  identifier of snapshot
+   */
+  void snapshotRemoved(String snapshotId) {
+    Long sequence = this.sequences.remove(snapshotId);
+    if (sequence == null) {
+      return;
+    }
+    int index = Arrays.binarySearch(this.live, 0, this.liveCount, sequence);
+    System.arraycopy(this.live, index + 1, this.live, index, this.liveCount - index - 1);
+    this.liveCount--;
+    if (++this.removedSinceCompaction >= Math.max(1, this.liveCount / 2)) {
+      this.compact();
+    }
+  }
+
+  /**
+   * Forget all snapshots and runs.
+   */
+  void snapshotsCleared() {
+    this.columns.clear();
+    this.sequences.clear();
+    this.liveCount = 0;
+    this.removedSinceCompaction = 0;
+    this.nextSequence = 0;
+    this.lastShapes = PersistentOrderedMap.empty(ShapeState.HASHER);
+  }
+
+  /**
+   * Drop the runs that no live snapshot falls in, and merge neighbouring runs with the same state.
+   * The last run of a shape is its state in the latest snapshot taken, which the next snapshot is
+   * compared with, so it is kept.
+   */
+  private void compact() {
+    Iterator<Column> columns = this.columns.values().iterator();
+    while (columns.hasNext()) {
+      Column column = columns.next();
+      int kept = 0;
+      for (int run = 0; run < column.size; run++) {
+        int index = this.firstLiveAtOrAfter(column.starts[run]);
+        boolean last = run + 1 == column.size;
+        boolean covered = (index < this.liveCount)
+                && (last || (this.live[index] < column.starts[run + 1]));
+        IShape value = column.values[run];
+        // a shape is absent before its first run anyway
+        if ((!covered && !last) || ((kept == 0) && (value == null))
+                || ((kept > 0) && ShapeState.same(column.values[kept - 1], value))) {
+          continue;
+        }
+        column.starts[kept] = column.starts[run];
+        column.values[kept] = value;
+        kept++;
+      }
+      Arrays.fill(column.values, kept, column.size, null);
+      column.size = kept;
+      if (kept == 0) {
+        columns.remove();
+      } else if (kept * 4 < column.starts.length) {
+        column.starts = Arrays.copyOf(column.starts, Math.max(4, kept * 2));
+        column.values = Arrays.copyOf(column.values, Math.max(4, kept * 2));
+      }
+    }
+    this.removedSinceCompaction = 0;
+  }
+
+  /**
+   * Find the first live snapshot taken at or after a sequence number.
+   * @param sequence  sequence number
+   * @return  index of snapshot, or number of live snapshots if there is none
+   */
+  private int firstLiveAtOrAfter(long sequence) {
+    int index = Arrays.binarySearch(this.live, 0, this.liveCount, sequence);
+    return (index >= 0) ? index : -(index + 1);
+  }
+
+  /**
+   * Runs of one shape, as parallel arrays of start sequence numbers and states.
+   */
+  private static final class Column {
+    private long[] starts = new long[4];
+    private IShape[] values = new IShape[4];
+    private int size;
+
+    /**
+     * Add a run.
+     * @param start sequence number of the snapshot where it begins
+     * @param value shape, or null if absent
+     */
+    private void append(long start, IShape value) {
+      if (this.size == this.starts.length) {
+        this.starts = Arrays.copyOf(this.starts, this.size * 2);
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.starts[this.size] = start;
+      this.values[this.size] = value;
+      this.size++;
+    }
+
+    /**
+     * Find the state at a sequence number.
+     * @param sequence  sequence number of a snapshot
+     * @return  shape, or null if absent
+     */
+    private IShape valueAt(long sequence) {
+      int run = Arrays.binarySearch(this.starts, 0, this.size, sequence);
+      if (run < 0) {
+        // the run that began before the sequence number
+        run = -(run + 1) - 1;
+      }
+      return (run < 0) ? null : this.values[run];
+    }
+  }
+
+  /**
+   * Range of snapshot indexes, both ends included.
+   */
+  public static final class Interval {
+    private final int first;
+    private final int last;
+
+    /**
+     * Constructor.
+     * @param first index of first snapshot
+     * @param last  index of last snapshot
+     */
+    private Interval(int first, int last) {
+      this.first = first;
+      this.last = last;
+    }
+
+    /**
+     * Get index of first snapshot.
+     * @return  index
+     */
+    public int getFirst() {
+      return this.first;
+    }
+
+    /**
+     * Get index of last snapshot.
+     * @return  index
+     */
+    public int getLast() {
+      return this.last;
+    }
+
+    @Override
+    public String toString() {
+      return "[" + this.first + ", " + this.last + "]";
+    }
+  }
+}
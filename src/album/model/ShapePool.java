@@ -0,0 +1,259 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.ShapeType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * ShapePool keeps one canonical instance per shape state (type, color, coordinate and dimensions),
+ * so a state that recurs in many snapshots or under several identifiers is stored once.
+ *
+ * <p>States are compared exactly, not with the rounding of {@link IShape#equals(Object)}, so
+ * interning never changes what a snapshot contains. Pooled shapes are shared and must not be
+ * mutated.
+ *
+ * <p>Each state is referenced by the album while it is current and by every snapshot taken
+ * meanwhile. Snapshot references are counted lazily: a state only records how many snapshots had
+ * been taken when its number of current uses last changed, so taking a snapshot costs the same
+ * no matter how many shapes the album holds. A state is released once it is neither current nor
+ * part of any stored snapshot.
+ */
+public class ShapePool {
+  /**
+   * Estimated heap footprint of one separately copied shape: the shape with its color and
+   * coordinate objects.
+   */
+  public static final int ESTIMATED_SHAPE_BYTES = 112;
+
+  private Map<Key, Entry> entries;
+  private long snapshotsTaken;
+  private long snapshotReferences;
+  private long currentReferences;
+
+  /**
+   * Constructor.
+   */
+  public ShapePool() {
+    this.entries = new HashMap<Key, Entry>();
+    this.snapshotsTaken = 0;
+    this.snapshotReferences = 0;
+    this.currentReferences = 0;
+  }
+
+  /**
+   * Start using a shape state in the album, returning its canonical instance. The given shape
+   * becomes the canonical instance if the state is new to the pool.
+   * @param shape shape, not mutated afterwards
+   * @return  canonical shape with the same state
+   * @throws IllegalArgumentException if shape is null
+   */
+  public IShape acquire(IShape shape) throws IllegalArgumentException {
+    if (shape == null) {
+      throw new IllegalArgumentException("Shape cannot be null.");
+    }
+
+    Key key = new Key(shape);
+    Entry entry = this.entries.get(key);
+    if (entry == null) {
+      entry = new Entry(shape, this.snapshotsTaken);
+      this.entries.put(key, entry);
+    }
+    entry.fold(this.snapshotsTaken);
+    entry.currentUses++;
+    this.currentReferences++;
+    return entry.shape;
+  }
+
+  /**
+   * Stop using a shape state in the album, after it was replaced or removed.
+   * @param shape shape returned by {@link #acquire(IShape)}
+   * @throws IllegalArgumentException if shape is null or not in use
+   */
+  public void release(IShape shape) throws IllegalArgumentException {
+    Entry entry = this.find(shape);
+    if (entry.currentUses == 0) {
+      throw new IllegalArgumentException("Shape is not in use.");
+    }
+
+    entry.fold(this.snapshotsTaken);
+    entry.currentUses--;
+    this.currentReferences--;
+    this.evictIfUnused(shape, entry);
+  }
+
+  /**
+   * Record that a snapshot of all shapes currently in use was taken.
+   */
+  public void snapshotTaken() {
+    this.snapshotsTaken++;
+    this.snapshotReferences += this.currentReferences;
+  }
+
+  /**
+   * Release the references of a removed snapshot.
+   * @param shapes  shapes of the snapshot
+   * @throws IllegalArgumentException if shapes are null or were not pooled
+   */
+  public void snapshotRemoved(Map<String, IShape> shapes) throws IllegalArgumentException {
+    if (shapes == null) {
+      throw new IllegalArgumentException("Shapes cannot be null.");
+    }
+
+    for (IShape shape : shapes.values()) {
+      Entry entry = this.find(shape);
+      entry.fold(this.snapshotsTaken);
+      entry.snapshotUses--;
+      this.snapshotReferences--;
+      this.evictIfUnused(shape, entry);
+    }
+  }
+
+  /**
+   * Release the references of all snapshots, keeping the shapes currently in use.
+   */
+  public void snapshotsCleared() {
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.currentUses == 0) {
+        iterator.remove();
+      } else {
+        entry.snapshotUses = 0;
+        entry.lastFold = this.snapshotsTaken;
+      }
+    }
+    this.snapshotReferences = 0;
+  }
+
+  /**
+   * Get number of distinct shape states stored.
+   * @return  number of canonical shapes
+   */
+  public int getUniqueShapes() {
+    return this.entries.size();
+  }
+
+  /**
+   * Get number of shape references held by the album and its snapshots, which is the number of
+   * shape copies needed without the pool.
+   * @return  number of references
+   */
+  public long getReferences() {
+    return this.snapshotReferences + this.currentReferences;
+  }
+
+  /**
+   * Get ratio of references to stored shapes.
+   * @return  dedupe ratio, 1 if the pool is empty
+   */
+  public double getDedupeRatio() {
+    if (this.entries.isEmpty()) {
+      return 1;
+    }
+    return (double) this.getReferences() / this.entries.size();
+  }
+
+  /**
+   * Get estimated number of bytes saved by sharing shapes instead of copying them.
+   * @return  estimated bytes saved
+   */
+  public long getBytesSaved() {
+    return (this.getReferences() - this.entries.size()) * ESTIMATED_SHAPE_BYTES;
+  }
+
+  /**
+   * Find entry of pooled shape.
+   * @param shape shape
+   * @return  entry
+   * @throws IllegalArgumentException if shape is null or not pooled
+   */
+  private Entry find(IShape shape) throws IllegalArgumentException {
+    if (shape == null) {
+      throw new IllegalArgumentException("Shape cannot be null.");
+    }
+    Entry entry = this.entries.get(new Key(shape));
+    if (entry == null) {
+      throw new IllegalArgumentException("Shape is not pooled.");
+    }
+    return entry;
+  }
+
+  /**
+   * Drop entry once nothing references it.
+   * @param shape shape of entry
+   * @param entry entry
+   */
+  private void evictIfUnused(IShape shape, Entry entry) {
+    if ((entry.currentUses == 0) && (entry.snapshotUses == 0)) {
+      this.entries.remove(new Key(shape));
+    }
+  }
+
+  /**
+   * Pool entry with reference counts.
+   */
+  private static final class Entry {
+    private final IShape shape;
+    private int currentUses;
+    private long snapshotUses;
+    private long lastFold;
+
+    /**
+     * Constructor.
+     * @param shape canonical shape
+     * @param snapshotsTaken  snapshots taken so far
+     */
+    private Entry(IShape shape, long snapshotsTaken) {
+      this.shape = shape;
+      this.currentUses = 0;
+      this.snapshotUses = 0;
+      this.lastFold = snapshotsTaken;
+    }
+
+    /**
+     * Add references of snapshots taken since the last change of current uses.
+     * @param snapshotsTaken  snapshots taken so far
+     */
+    private void fold(long snapshotsTaken) {
+      this.snapshotUses += this.currentUses * (snapshotsTaken - this.lastFold);
+      this.lastFold = snapshotsTaken;
+    }
+  }
+
+  /**
+   * Exact shape state used as pool key.
+   */
+  private static final class Key {
+    private final ShapeType type;
+    private final long[] bits;
+    private final int hash;
+
+    /**
+     * Constructor.
+     * @param shape shape
+     */
+    private Key(IShape shape) {
+      this.type = ShapeType.of(shape);
+      this.bits = ShapeState.bits(shape);
+      this.hash = 31 * this.type.ordinal() + Arrays.hashCode(this.bits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key other2 = (Key) other;
+      return (this.type == other2.type) && Arrays.equals(this.bits, other2.bits);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+/**
+ * Exact state of a shape: its class and the bits of its color, coordinate and dimensions.
+ *
+ * <p>{@link IShape#equals(Object)} rounds colors and coordinates to the precision they are
+ * printed with, so two shapes it calls equal can still be drawn differently. Anything that decides
+ * whether a snapshot changed compares states with this class instead.
+ */
+final class ShapeState {
+  /** Number of values in a state. */
+  static final int VALUES = 7;
+
+  /** Hash function giving shape maps fingerprints of the exact states of their shapes. */
+  static final PersistentOrderedMap.ValueHasher<IShape> HASHER =
+          new PersistentOrderedMap.ValueHasher<IShape>() {
+            @Override
+            public int hash(IShape shape) {
+              return ShapeState.hash(shape);
+            }
+          };
+
+  /**
+   * Private constructor, utility class.
+   */
+  private ShapeState() {
+  }
+
+  /**
+   * Get the bits of the values of a shape.
+   * @param shape shape
+   * @return  bits of red, green, blue, x, y, x dimension and y dimension
+   */
+  static long[] bits(IShape shape) {
+    long[] bits = new long[VALUES];
+    for (int i = 0; i < VALUES; i++) {
+      bits[i] = Double.doubleToLongBits(value(shape, i));
+    }
+    return bits;
+  }
+
+  /**
+   * Check if two shapes have the same exact state.
+   * @param shape shape, or null
+   * @param other other shape, or null
+   * @return  true if both are null, or both have the same class and values
+   */
+  static boolean same(IShape shape, IShape other) {
+    if (shape == other) {
+      return true;
+    }
+    if ((shape == null) || (other == null) || (shape.getClass() != other.getClass())) {
+      return false;
+    }
+    for (int i = 0; i < VALUES; i++) {
+      if (Double.doubleToLongBits(value(shape, i)) != Double.doubleToLongBits(value(other, i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hash the exact state of a shape, consistent with {@link #same(IShape, IShape)}.
+   * @param shape shape
+   * @return  hash
+   */
+  static int hash(IShape shape) {
+    int hash = shape.getClass().getName().hashCode();
+    for (int i = 0; i < VALUES; i++) {
+      hash = 31 * hash + Long.hashCode(Double.doubleToLongBits(value(shape, i)));
+    }
+    return hash;
+  }
+
+  /**
+   * Get one value of a shape.
+   * @param shape shape
+   * @param index index of value, as in {@link #bits(IShape)}
+   * @return  value
+   */
+  private static double value(IShape shape, int index) {
+    switch (index) {
+      case 0:
+        return shape.getColor().getRed();
+      case 1:
+        return shape.getColor().getGreen();
+      case 2:
+        return shape.getColor().getBlue();
+      case 3:
+        return shape.getCoordinate().getX();
+      case 4:
+        return shape.getCoordinate().getY();
+      case 5:
+        return shape.getXDimension();
+      default:
+        return shape.getYDimension();
+    }
+  }
+}
@@ -0,0 +1,465 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.ShapeType;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Struct-of-arrays table of shapes. Each shape is one row spread over parallel primitive columns:
+ * position and dimensions as doubles, color packed into an int, type as a byte and identifier as
+ * an int symbol. Rows are kept in insertion order; removed rows are left empty and squeezed out
+ * once they outnumber the live ones.
+ *
+ * <p>Colors are stored with 8 bits per channel, so color values are rounded to the nearest
+ * multiple of 1/255 (which is exact for colors read from instruction files).
+ */
+final class ShapeTable {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int MIN_COMPACT_ROWS = 64;
+  private static final int RGB_SCALE = 255;
+  private static final byte EMPTY = 0;
+
+  private final SymbolTable symbols;
+  private double[] x;
+  private double[] y;
+  private double[] xDim;
+  private double[] yDim;
+  private int[] rgb;
+  private byte[] type;
+  private int[] idSymbol;
+  private int rows;
+  private int live;
+  private int[] rowOfSymbol;
+  private Map<String, IShape> view;
+
+  /**
+   * Constructor for an empty table.
+   */
+  ShapeTable() {
+    this(new SymbolTable(), INITIAL_CAPACITY);
+    this.rowOfSymbol = new int[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Constructor.
+   * @param symbols symbol table for identifiers
+   * @param capacity  initial number of rows
+   */
+  private ShapeTable(SymbolTable symbols, int capacity) {
+    this.symbols = symbols;
+    this.x = new double[capacity];
+    this.y = new double[capacity];
+    this.xDim = new double[capacity];
+    this.yDim = new double[capacity];
+    this.rgb = new int[capacity];
+    this.type = new byte[capacity];
+    this.idSymbol = new int[capacity];
+    this.rows = 0;
+    this.live = 0;
+  }
+
+  /**
+   * Pack color into 8-bit RGB channels.
+   * @param color color
+   * @return  packed color
+   */
+  static int packColor(Color color) {
+    int red = (int) Math.round(color.getRed() * RGB_SCALE);
+    int green = (int) Math.round(color.getGreen() * RGB_SCALE);
+    int blue = (int) Math.round(color.getBlue() * RGB_SCALE);
+    return (red << 16) | (green << 8) | blue;
+  }
+
+  /**
+   * Unpack color packed by {@link #packColor(Color)}.
+   * @param packed  packed color
+   * @return  color
+   */
+  static Color unpackColor(int packed) {
+    double red = (double) ((packed >> 16) & 0xff) / RGB_SCALE;
+    double green = (double) ((packed >> 8) & 0xff) / RGB_SCALE;
+    double blue = (double) (packed & 0xff) / RGB_SCALE;
+    return Color.of(red, blue, green);
+  }
+
+  /**
+   * Get number of shapes.
+   * @return  number of shapes
+   */
+  int size() {
+    return this.live;
+  }
+
+  /**
+   * Return row of shape with identifier.
+   * @param id  identifier
+   * @return  row, or -1 if not found
+   */
+  int rowOf(String id) {
+    if (id == null) {
+      return -1;
+    }
+    int symbol = this.symbols.find(id);
+    if (symbol < 0) {
+      return -1;
+    }
+    if (this.rowOfSymbol == null) {
+      this.indexSymbols();
+    }
+    return (symbol < this.rowOfSymbol.length) ? this.rowOfSymbol[symbol] - 1 : -1;
+  }
+
+  /**
+   * Add shape as last row.
+   * @param id  identifier
+   * @param shape shape
+   * @return  true if added, false if identifier already taken
+   */
+  boolean add(String id, IShape shape) {
+    if (this.rowOf(id) >= 0) {
+      return false;
+    }
+
+    byte code = ShapeType.of(shape).getCode();
+    if (this.rows == this.type.length) {
+      this.resize(this.type.length * 2);
+    }
+    int symbol = this.symbols.intern(id);
+    if (symbol >= this.rowOfSymbol.length) {
+      this.rowOfSymbol = Arrays.copyOf(this.rowOfSymbol,
+              Math.max(symbol + 1, this.rowOfSymbol.length * 2));
+    }
+
+    int row = this.rows++;
+    this.x[row] = shape.getCoordinate().getX();
+    this.y[row] = shape.getCoordinate().getY();
+    this.xDim[row] = shape.getXDimension();
+    this.yDim[row] = shape.getYDimension();
+    this.rgb[row] = packColor(shape.getColor());
+    this.type[row] = code;
+    this.idSymbol[row] = symbol;
+    this.rowOfSymbol[symbol] = row + 1;
+    this.live++;
+    return true;
+  }
+
+  /**
+   * Remove shape with identifier.
+   * @param id  identifier
+   * @return  true if removed, false if not found
+   */
+  boolean remove(String id) {
+    int row = this.rowOf(id);
+    if (row < 0) {
+      return false;
+    }
+
+    this.type[row] = EMPTY;
+    this.rowOfSymbol[this.idSymbol[row]] = 0;
+    this.live--;
+    if ((this.rows >= MIN_COMPACT_ROWS) && (this.rows - this.live > this.live)) {
+      this.compact();
+    }
+    return true;
+  }
+
+  /**
+   * Remove all shapes.
+   */
+  void clear() {
+    for (int row = 0; row < this.rows; row++) {
+      if (this.type[row] != EMPTY) {
+        this.rowOfSymbol[this.idSymbol[row]] = 0;
+      }
+    }
+    this.rows = 0;
+    this.live = 0;
+  }
+
+  /**
+   * Move shape at row.
+   * @param row row
+   * @param point new coordinate
+   */
+  void move(int row, Point2D point) {
+    this.x[row] = point.getX();
+    this.y[row] = point.getY();
+  }
+
+  /**
+   * Change color of shape at row.
+   * @param row row
+   * @param color new color
+   */
+  void changeColor(int row, Color color) {
+    this.rgb[row] = packColor(color);
+  }
+
+  /**
+   * Change x dimension of shape at row.
+   * @param row row
+   * @param dimension new dimension
+   */
+  void changeXDimension(int row, double dimension) {
+    this.xDim[row] = dimension;
+  }
+
+  /**
+   * Change y dimension of shape at row.
+   * @param row row
+   * @param dimension new dimension
+   */
+  void changeYDimension(int row, double dimension) {
+    this.yDim[row] = dimension;
+  }
+
+  /**
+   * Scale shape at row.
+   * @param row row
+   * @param scaleFactor scale factor
+   */
+  void scale(int row, double scaleFactor) {
+    this.xDim[row] *= scaleFactor;
+    this.yDim[row] *= scaleFactor;
+  }
+
+  /**
+   * Return a shape object holding the values of a row. The object is a copy: changing it does
+   * not change the table.
+   * @param row row
+   * @return  shape
+   */
+  IShape shapeAt(int row) {
+    return ShapeType.fromCode(this.type[row]).create(unpackColor(this.rgb[row]),
+            new Point2D(this.x[row], this.y[row]), this.xDim[row], this.yDim[row]);
+  }
+
+  /**
+   * Return an immutable copy of the table holding only the live rows.
+   * @return  copy
+   */
+  ShapeTable copy() {
+    ShapeTable copy = new ShapeTable(this.symbols, 0);
+    copy.x = new double[this.live];
+    copy.y = new double[this.live];
+    copy.xDim = new double[this.live];
+    copy.yDim = new double[this.live];
+    copy.rgb = new int[this.live];
+    copy.type = new byte[this.live];
+    copy.idSymbol = new int[this.live];
+
+    if (this.live == this.rows) {
+      System.arraycopy(this.x, 0, copy.x, 0, this.rows);
+      System.arraycopy(this.y, 0, copy.y, 0, this.rows);
+      System.arraycopy(this.xDim, 0, copy.xDim, 0, this.rows);
+      System.arraycopy(this.yDim, 0, copy.yDim, 0, this.rows);
+      System.arraycopy(this.rgb, 0, copy.rgb, 0, this.rows);
+      System.arraycopy(this.type, 0, copy.type, 0, this.rows);
+      System.arraycopy(this.idSymbol, 0, copy.idSymbol, 0, this.rows);
+    } else {
+      int to = 0;
+      for (int row = 0; row < this.rows; row++) {
+        if (this.type[row] != EMPTY) {
+          copy.x[to] = this.x[row];
+          copy.y[to] = this.y[row];
+          copy.xDim[to] = this.xDim[row];
+          copy.yDim[to] = this.yDim[row];
+          copy.rgb[to] = this.rgb[row];
+          copy.type[to] = this.type[row];
+          copy.idSymbol[to] = this.idSymbol[row];
+          to++;
+        }
+      }
+    }
+    copy.rows = this.live;
+    copy.live = this.live;
+    return copy;
+  }
+
+  /**
+   * Return read-only, insertion-ordered map view of the table. Every value read from the view is
+   * a fresh shape object built from its row.
+   * @return  map view
+   */
+  Map<String, IShape> asMap() {
+    if (this.view == null) {
+      this.view = new TableView();
+    }
+    return this.view;
+  }
+
+  /**
+   * Grow or shrink columns.
+   * @param capacity  new number of rows
+   */
+  private void resize(int capacity) {
+    this.x = Arrays.copyOf(this.x, capacity);
+    this.y = Arrays.copyOf(this.y, capacity);
+    this.xDim = Arrays.copyOf(this.xDim, capacity);
+    this.yDim = Arrays.copyOf(this.yDim, capacity);
+    this.rgb = Arrays.copyOf(this.rgb, capacity);
+    this.type = Arrays.copyOf(this.type, capacity);
+    this.idSymbol = Arrays.copyOf(this.idSymbol, capacity);
+  }
+
+  /**
+   * Squeeze out removed rows, keeping the order of the live ones.
+   */
+  private void compact() {
+    int to = 0;
+    for (int row = 0; row < this.rows; row++) {
+      if (this.type[row] != EMPTY) {
+        this.x[to] = this.x[row];
+        this.y[to] = this.y[row];
+        this.xDim[to] = this.xDim[row];
+        this.yDim[to] = this.yDim[row];
+        this.rgb[to] = this.rgb[row];
+        this.type[to] = this.type[row];
+        this.idSymbol[to] = this.idSymbol[row];
+        this.rowOfSymbol[this.idSymbol[to]] = to + 1;
+        to++;
+      }
+    }
+    this.rows = to;
+  }
+
+  /**
+   * Build the symbol-to-row index of a copied table.
+   */
+  private void indexSymbols() {
+    int[] index = new int[this.symbols.size()];
+    for (int row = 0; row < this.rows; row++) {
+      index[this.idSymbol[row]] = row + 1;
+    }
+    this.rowOfSymbol = index;
+  }
+
+  /**
+   * Append-only table mapping identifiers to int symbols, shared by a table and its copies.
+   */
+  private static final class SymbolTable {
+    private final Map<String, Integer> symbols = new HashMap<String, Integer>();
+    private final List<String> names = new ArrayList<String>();
+
+    /**
+     * Return symbol of identifier, or -1 if it has none.
+     * @param id  identifier
+     * @return  symbol
+     */
+    private int find(String id) {
+      Integer symbol = this.symbols.get(id);
+      return (symbol == null) ? -1 : symbol;
+    }
+
+    /**
+     * Return symbol of identifier, assigning a new one if needed.
+     * @param id  identifier
+     * @return  symbol
+     */
+    private int intern(String id) {
+      Integer symbol = this.symbols.get(id);
+      if (symbol == null) {
+        symbol = this.names.size();
+        this.names.add(id);
+        this.symbols.put(id, symbol);
+      }
+      return symbol;
+    }
+
+    /**
+     * Return identifier of symbol.
+     * @param symbol  symbol
+     * @return  identifier
+     */
+    private String name(int symbol) {
+      return this.names.get(symbol);
+    }
+
+    /**
+     * Get number of symbols.
+     * @return  number of symbols
+     */
+    private int size() {
+      return this.names.size();
+    }
+  }
+
+  /**
+   * Read-only map view over the live rows.
+   */
+  private final class TableView extends AbstractMap<String, IShape> {
+    @Override
+    public Set<Map.Entry<String, IShape>> entrySet() {
+      return new AbstractSet<Map.Entry<String, IShape>>() {
+        @Override
+        public Iterator<Map.Entry<String, IShape>> iterator() {
+          return new Iterator<Map.Entry<String, IShape>>() {
+            private int row = this.skip(0);
+
+            /**
+             * Return first live row at or after a row.
+             * @param from  row to start at
+             * @return  live row, or number of rows if there is none
+             */
+            private int skip(int from) {
+              while ((from < ShapeTable.this.rows) && (ShapeTable.this.type[from] == EMPTY)) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return this.row < ShapeTable.this.rows;
+            }
+
+            @Override
+            public Map.Entry<String, IShape> next() {
+              if (!this.hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int current = this.row;
+              this.row = this.skip(current + 1);
+              return new AbstractMap.SimpleImmutableEntry<String, IShape>(
+                      ShapeTable.this.symbols.name(ShapeTable.this.idSymbol[current]),
+                      ShapeTable.this.shapeAt(current));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return ShapeTable.this.live;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return ShapeTable.this.live;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (key instanceof String) && (ShapeTable.this.rowOf((String) key) >= 0);
+    }
+
+    @Override
+    public IShape get(Object key) {
+      int row = (key instanceof String) ? ShapeTable.this.rowOf((String) key) : -1;
+      return (row < 0) ? null : ShapeTable.this.shapeAt(row);
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.ShapeType;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Binary encoding of the shapes of a snapshot, used by stores that keep snapshots outside of
+ * regular Java objects.
+ *
+ * <p>Layout: a header (shape count, offset of the identifier pool), then one fixed-size record per
+ * shape in insertion order (identifier offset, type code, color channels, coordinate and
+ * dimensions), then the identifiers as length-prefixed UTF-8 strings. Values are stored exactly.
+ */
+final class SnapshotCodec {
+  private static final int HEADER_BYTES = 8;
+  private static final int RECORD_BYTES = 4 + 1 + 7 * 8;
+
+  /**
+   * Private constructor, utility class.
+   */
+  private SnapshotCodec() {
+  }
+
+  /**
+   * Encode shapes.
+   * @param shapes  shapes in insertion order
+   * @return  encoded bytes
+   */
+  static byte[] encode(Map<String, IShape> shapes) {
+    try {
+      ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(
+              HEADER_BYTES + shapes.size() * RECORD_BYTES);
+      ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+      DataOutputStream records = new DataOutputStream(recordBytes);
+      DataOutputStream pool = new DataOutputStream(poolBytes);
+
+      records.writeInt(shapes.size());
+      records.writeInt(HEADER_BYTES + shapes.size() * RECORD_BYTES);
+      for (Map.Entry<String, IShape> entry : shapes.entrySet()) {
+        IShape shape = entry.getValue();
+        records.writeInt(pool.size());
+        records.writeByte(ShapeType.of(shape).getCode());
+        records.writeDouble(shape.getColor().getRed());
+        records.writeDouble(shape.getColor().getGreen());
+        records.writeDouble(shape.getColor().getBlue());
+        records.writeDouble(shape.getCoordinate().getX());
+        records.writeDouble(shape.getCoordinate().getY());
+        records.writeDouble(shape.getXDimension());
+        records.writeDouble(shape.getYDimension());
+        byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        pool.writeInt(id.length);
+        pool.write(id);
+      }
+
+      records.flush();
+      pool.flush();
+      poolBytes.writeTo(recordBytes);
+      return recordBytes.toByteArray();
+    } catch (IOException e) {
+      // in-memory streams do not fail
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Return read-only, insertion-ordered map view over encoded shapes. Shapes are decoded each time
+   * they are read, and the buffer must not change while the view is in use.
+   * @param encoded buffer holding exactly one encoding, as written by {@link #encode(Map)}
+   * @return  map view
+   */
+  static Map<String, IShape> view(ByteBuffer encoded) {
+    return new EncodedShapeMap(encoded);
+  }
+
+  /**
+   * Read-only map view decoding shapes from a buffer with absolute reads only, so one buffer can be
+   * read from several views at once.
+   */
+  private static final class EncodedShapeMap extends AbstractMap<String, IShape> {
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int poolOffset;
+    private Map<String, Integer> index;
+
+    /**
+     * Constructor.
+     * @param buffer  encoded shapes
+     */
+    private EncodedShapeMap(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.count = buffer.getInt(0);
+      this.poolOffset = buffer.getInt(4);
+    }
+
+    /**
+     * Decode identifier of record.
+     * @param record  record number
+     * @return  identifier
+     */
+    private String idAt(int record) {
+      int offset = this.poolOffset + this.buffer.getInt(HEADER_BYTES + record * RECORD_BYTES);
+      int length = this.buffer.getInt(offset);
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = this.buffer.get(offset + 4 + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode shape of record.
+     * @param record  record number
+     * @return  shape
+     */
+    private IShape shapeAt(int record) {
+      int offset = HEADER_BYTES + record * RECORD_BYTES + 4;
+      ShapeType type = ShapeType.fromCode(this.buffer.get(offset));
+      double red = this.buffer.getDouble(offset + 1);
+      double green = this.buffer.getDouble(offset + 9);
+      double blue = this.buffer.getDouble(offset + 17);
+      double x = this.buffer.getDouble(offset + 25);
+      double y = this.buffer.getDouble(offset + 33);
+      double xDimension = this.buffer.getDouble(offset + 41);
+      double yDimension = this.buffer.getDouble(offset + 49);
+      return type.create(Color.of(red, blue, green), new Point2D(x, y), xDimension, yDimension);
+    }
+
+    /**
+     * Return record number of identifier, building the index on first use.
+     * @param key identifier
+     * @return  record number, or -1 if not found
+     */
+    private int recordOf(Object key) {
+      if (this.index == null) {
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        for (int i = 0; i < this.count; i++) {
+          map.put(this.idAt(i), i);
+        }
+        this.index = map;
+      }
+      Integer record = this.index.get(key);
+      return (record == null) ? -1 : record;
+    }
+
+    @Override
+    public Set<Map.Entry<String, IShape>> entrySet() {
+      return new AbstractSet<Map.Entry<String, IShape>>() {
+        @Override
+        public Iterator<Map.Entry<String, IShape>> iterator() {
+          return new Iterator<Map.Entry<String, IShape>>() {
+            private int record = 0;
+
+            @Override
+            public boolean hasNext() {
+              return this.record < EncodedShapeMap.this.count;
+            }
+
+            @Override
+            public Map.Entry<String, IShape> next() {
+              if (!this.hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int current = this.record++;
+              return new AbstractMap.SimpleImmutableEntry<String, IShape>(
+                      EncodedShapeMap.this.idAt(current), EncodedShapeMap.this.shapeAt(current));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return EncodedShapeMap.this.count;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return this.count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return this.recordOf(key) >= 0;
+    }
+
+    @Override
+    public IShape get(Object key) {
+      int record = this.recordOf(key);
+      return (record < 0) ? null : this.shapeAt(record);
+    }
+  }
+}
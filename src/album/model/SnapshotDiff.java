@@ -0,0 +1,410 @@
+package album.model;
+
+import album.model.shapes.IShape;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Differences between the shapes of two snapshots: shapes added, shapes removed and shapes
+ * modified, each modification with a mask of the fields that changed.
+ *
+ * <p>Snapshots taken by {@link PhotoAlbumImpl} share the nodes of untouched shapes, so diffing
+ * them walks only the changed parts of their maps and costs time proportional to the number of
+ * changes. Other snapshots, and snapshots whose ordering was renumbered in between, are compared
+ * shape by shape. Without the order stamps of the maps, such a comparison flags the fewest shapes
+ * whose moves explain the new paint order.
+ */
+public final class SnapshotDiff {
+  /** Shape type changed. */
+  public static final int TYPE = 1;
+  /** Color changed. */
+  public static final int COLOR = 1 << 1;
+  /** Coordinate changed. */
+  public static final int POSITION = 1 << 2;
+  /** X or y dimension changed. */
+  public static final int SIZE = 1 << 3;
+  /** Shape was moved in paint order, or removed and added again. */
+  public static final int ORDER = 1 << 4;
+
+  private final String fromId;
+  private final String toId;
+  private final Map<String, IShape> added;
+  private final Map<String, IShape> removed;
+  private final Map<String, Change> modified;
+
+  /**
+   * Constructor.
+   * @param fromId  identifier of older snapshot
+   * @param toId  identifier of newer snapshot
+   * @param added shapes added, in paint order of newer snapshot
+   * @param removed shapes removed, in paint order of older snapshot
+   * @param modified  changes, in paint order of newer snapshot
+   */
+  private SnapshotDiff(String fromId, String toId, Map<String, IShape> added,
+                       Map<String, IShape> removed, Map<String, Change> modified) {
+    this.fromId = fromId;
+    this.toId = toId;
+    this.added = Collections.unmodifiableMap(added);
+    this.removed = Collections.unmodifiableMap(removed);
+    this.modified = Collections.unmodifiableMap(modified);
+  }
+
+  /**
+   * Compare the shapes of two snapshots.
+   * @param from  older snapshot
+   * @param to  newer snapshot
+   * @return  differences leading from the older snapshot to the newer one
+   * @throws IllegalArgumentException if a snapshot is null
+   */
+  public static SnapshotDiff of(ISnapshot from, ISnapshot to) throws IllegalArgumentException {
+    if ((from == null) || (to == null)) {
+      throw new IllegalArgumentException("Snapshots cannot be null.");
+    }
+
+    Map<String, IShape> before = from.getShapes();
+    Map<String, IShape> after = to.getShapes();
+    PersistentOrderedMap<String, IShape> older = PersistentOrderedMap.unwrap(before);
+    PersistentOrderedMap<String, IShape> newer = PersistentOrderedMap.unwrap(after);
+    final Map<String, IShape> added = new LinkedHashMap<String, IShape>();
+    final Map<String, IShape> removed = new LinkedHashMap<String, IShape>();
+    final Map<String, Change> modified = new LinkedHashMap<String, Change>();
+
+    // order stamps are only comparable within one generation
+    if ((older != null) && (newer != null) && (older.getGeneration() == newer.getGeneration())) {
+      final List<String> removedKeys = new ArrayList<String>();
+      newer.diff(older, new PersistentOrderedMap.ChangeVisitor<String, IShape>() {
+        @Override
+        public void visit(String key, IShape oldShape, IShape newShape, boolean reordered) {
+          if (newShape == null) {
+            removedKeys.add(key);
+          } else if (oldShape == null) {
+            added.put(key, newShape);
+          } else {
+            int mask = compare(oldShape, newShape) | (reordered ? ORDER : 0);
+            if (mask != 0) {
+              modified.put(key, new Change(key, oldShape, newShape, mask));
+            }
+          }
+        }
+      });
+      sortByOrder(removedKeys, older);
+      for (String key : removedKeys) {
+        removed.put(key, before.get(key));
+      }
+    } else {
+      scan(before, after, added, removed, modified);
+    }
+    return new SnapshotDiff(from.getID(), to.getID(), added, removed, modified);
+  }
+
+  /**
+   * Get identifier of older snapshot.
+   * @return  identifier
+   */
+  public String getFromId() {
+    return this.fromId;
+  }
+
+  /**
+   * Get identifier of newer snapshot.
+   * @return  identifier
+   */
+  public String getToId() {
+    return this.toId;
+  }
+
+  /**
+   * Get shapes that are only in the newer snapshot.
+   * @return  read-only shapes, in paint order of newer snapshot
+   */
+  public Map<String, IShape> getAdded() {
+    return this.added;
+  }
+
+  /**
+   * Get shapes that are only in the older snapshot.
+   * @return  read-only shapes, in paint order of older snapshot
+   */
+  public Map<String, IShape> getRemoved() {
+    return this.removed;
+  }
+
+  /**
+   * Get shapes in both snapshots that differ.
+   * @return  read-only changes by identifier, in paint order of newer snapshot
+   */
+  public Map<String, Change> getModified() {
+    return this.modified;
+  }
+
+  /**
+   * Check if the snapshots have the same shapes in the same order.
+   * @return  true if nothing changed
+   */
+  public boolean isEmpty() {
+    return this.added.isEmpty() && this.removed.isEmpty() && this.modified.isEmpty();
+  }
+
+  /**
+   * Return the number of added, removed and modified shapes.
+   * @return  number of changes
+   */
+  public int size() {
+    return this.added.size() + this.removed.size() + this.modified.size();
+  }
+
+  @Override
+  public String toString() {
+    return "Diff " + this.fromId + " -> " + this.toId + ": added " + this.added.keySet()
+            + ", removed " + this.removed.keySet() + ", modified " + this.modified.keySet();
+  }
+
+  /**
+   * Find the fields that differ between two versions of a shape, ignoring order.
+   * @param before  older shape
+   * @param after newer shape
+   * @return  mask of {@link #TYPE}, {@link #COLOR}, {@link #POSITION} and {@link #SIZE}
+   */
+  static int compare(IShape before, IShape after) {
+    if (before == after) {
+      return 0;
+    }
+    int mask = 0;
+    if (before.getClass() != after.getClass()) {
+      mask |= TYPE;
+    }
+    // exact, unlike the equality of colors and points, since every change shows when drawn
+    Color color = before.getColor();
+    Color otherColor = after.getColor();
+    if ((Double.compare(color.getRed(), otherColor.getRed()) != 0)
+            || (Double.compare(color.getGreen(), otherColor.getGreen()) != 0)
+            || (Double.compare(color.getBlue(), otherColor.getBlue()) != 0)) {
+      mask |= COLOR;
+    }
+    Point2D point = before.getCoordinate();
+    Point2D otherPoint = after.getCoordinate();
+    if ((Double.compare(point.getX(), otherPoint.getX()) != 0)
+            || (Double.compare(point.getY(), otherPoint.getY()) != 0)) {
+      mask |= POSITION;
+    }
+    if ((Double.compare(before.getXDimension(), after.getXDimension()) != 0)
+            || (Double.compare(before.getYDimension(), after.getYDimension()) != 0)) {
+      mask |= SIZE;
+    }
+    return mask;
+  }
+
+  /**
+   * Check if two shape maps have the same shapes, in exactly the same state, in the same order.
+   * @param shapes  shapes
+   * @param otherShapes other shapes
+   * @return  true if they are the same
+   */
+  static boolean sameShapes(Map<String, IShape> shapes, Map<String, IShape> otherShapes) {
+    PersistentOrderedMap<String, IShape> persistent = PersistentOrderedMap.unwrap(shapes);
+    if ((persistent != null) && (persistent == PersistentOrderedMap.unwrap(otherShapes))) {
+      return true;
+    }
+    if (shapes.size() != otherShapes.size()) {
+      return false;
+    }
+    Iterator<Map.Entry<String, IShape>> others = otherShapes.entrySet().iterator();
+    for (Map.Entry<String, IShape> entry : shapes.entrySet()) {
+      Map.Entry<String, IShape> other = others.next();
+      if (!entry.getKey().equals(other.getKey())
+              || !ShapeState.same(entry.getValue(), other.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sort keys by their position in a map.
+   * @param keys  keys in the map
+   * @param map map
+   */
+  private static void sortByOrder(List<String> keys, final PersistentOrderedMap<String, ?> map) {
+    if (keys.size() < 2) {
+      return;
+    }
+    final Map<String, Long> orders = new HashMap<String, Long>();
+    for (String key : keys) {
+      orders.put(key, map.orderOf(key));
+    }
+    Collections.sort(keys, new Comparator<String>() {
+      @Override
+      public int compare(String key1, String key2) {
+        return Long.compare(orders.get(key1), orders.get(key2));
+      }
+    });
+  }
+
+  /**
+   * Compare two shape maps entry by entry. Shapes in both maps count as reordered if they are
+   * outside the largest group of common shapes that kept their relative order, which leaves the
+   * fewest shapes whose moves explain the new order.
+   * @param before  older shapes
+   * @param after newer shapes
+   * @param added receives added shapes
+   * @param removed receives removed shapes
+   * @param modified  receives changes
+   */
+  private static void scan(Map<String, IShape> before, Map<String, IShape> after,
+                           Map<String, IShape> added, Map<String, IShape> removed,
+                           Map<String, Change> modified) {
+    Map<String, Integer> positions = new HashMap<String, Integer>();
+    int position = 0;
+    for (Map.Entry<String, IShape> entry : before.entrySet()) {
+      if (after.containsKey(entry.getKey())) {
+        positions.put(entry.getKey(), position++);
+      } else {
+        removed.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    // older positions of the common shapes, in newer order
+    int[] sequence = new int[positions.size()];
+    int common = 0;
+    for (String key : after.keySet()) {
+      Integer old = positions.get(key);
+      if (old != null) {
+        sequence[common++] = old;
+      }
+    }
+    boolean[] kept = longestIncreasing(sequence);
+
+    common = 0;
+    for (Map.Entry<String, IShape> entry : after.entrySet()) {
+      String key = entry.getKey();
+      if (!positions.containsKey(key)) {
+        added.put(key, entry.getValue());
+        continue;
+      }
+      IShape old = before.get(key);
+      int mask = compare(old, entry.getValue()) | (kept[common++] ? 0 : ORDER);
+      if (mask != 0) {
+        modified.put(key, new Change(key, old, entry.getValue(), mask));
+      }
+    }
+  }
+
+  /**
+   * Mark the elements of a longest strictly increasing subsequence.
+   * @param sequence  distinct values
+   * @return  flags, true for elements of the subsequence
+   */
+  private static boolean[] longestIncreasing(int[] sequence) {
+    int[] tails = new int[sequence.length];
+    int[] previous = new int[sequence.length];
+    int length = 0;
+    for (int i = 0; i < sequence.length; i++) {
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sequence[tails[middle]] < sequence[i]) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      previous[i] = (low > 0) ? tails[low - 1] : -1;
+      tails[low] = i;
+      length = Math.max(length, low + 1);
+    }
+
+    boolean[] kept = new boolean[sequence.length];
+    for (int i = (length > 0) ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+      kept[i] = true;
+    }
+    return kept;
+  }
+
+  /**
+   * A shape in both snapshots with the fields that changed.
+   */
+  public static final class Change {
+    private final String id;
+    private final IShape before;
+    private final IShape after;
+    private final int mask;
+
+    /**
+     * Constructor.
+     * @param id  identifier of shape
+     * @param before  shape in older snapshot
+     * @param after shape in newer snapshot
+     * @param mask  changed fields
+     */
+    private Change(String id, IShape before, IShape after, int mask) {
+      this.id = id;
+      this.before = before;
+      this.after = after;
+      this.mask = mask;
+    }
+
+    /**
+     * Get identifier of shape.
+     * @return  identifier
+     */
+    public String getId() {
+      return this.id;
+    }
+
+    /**
+     * Get shape in older snapshot.
+     * @return  shape
+     */
+    public IShape getBefore() {
+      return this.before;
+    }
+
+    /**
+     * Get shape in newer snapshot.
+     * @return  shape
+     */
+    public IShape getAfter() {
+      return this.after;
+    }
+
+    /**
+     * Get changed fields.
+     * @return  mask of {@link #TYPE}, {@link #COLOR}, {@link #POSITION}, {@link #SIZE} and
+     *          {@link #ORDER}
+     */
+    public int getMask() {
+      return this.mask;
+    }
+
+    /**
+     * Check if any of the given fields changed.
+     * @param fields  mask of fields
+     * @return  true if one of them changed
+     */
+    public boolean changed(int fields) {
+      return (this.mask & fields) != 0;
+    }
+
+    @Override
+    public String toString() {
+      List<String> fields = new ArrayList<String>();
+      String[] names = {"type", "color", "position", "size", "order"};
+      for (int i = 0; i < names.length; i++) {
+        if ((this.mask & (1 << i)) != 0) {
+          fields.add(names[i]);
+        }
+      }
+      return this.id + " " + fields;
+    }
+  }
+}
@@ -2,23 +2,41 @@ package album.model;
 
 import album.model.shapes.IShape;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * SNapShotImpl implements ISnapshot interface.
  */
 public class SnapshotImpl implements ISnapshot {
+  private static final DateTimeFormatter formatterID = DateTimeFormatter.ISO_INSTANT;
+  private static final DateTimeFormatter formatterTimestamp
+          = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+  private static final long NANOS_PER_MICRO = 1_000L;
+
+  private final long stamp;
+  private final BloomFilter shapeFilter;
   private String id;
   private String timeStamp;
   private String description;
   private Map<String, IShape> shapeList;
+  private volatile SpatialGrid<String> grid;
+  private volatile long estimatedBytes = -1;
+  private volatile Long fingerprint;
 
   /**
    * Constructor.
    * @param id  identifier of snapshot
    * @param timeStamp timestamp of snapshot
    * @param description description of snapshot
-   * @param shapeList shapes in snapshot
+   * @param shapeList shapes in snapshot, in insertion order (the snapshot exposes it read only)
    * @throws IllegalArgumentException if any input object is null
    */
   public SnapshotImpl(String id, String timeStamp, String description,
@@ -27,22 +45,130 @@ public class SnapshotImpl implements ISnapshot {
       throw new IllegalArgumentException("Object must not be null.");
     }
 
+    this.stamp = NO_STAMP;
+    this.shapeFilter = null;
     this.id = id;
     this.description = description;
     this.timeStamp = timeStamp;
-    this.shapeList = shapeList;
+    // views of persistent maps are already read only, keep them unwrapped so they can be diffed
+    this.shapeList = (PersistentOrderedMap.unwrap(shapeList) != null)
+            ? shapeList : Collections.unmodifiableMap(shapeList);
+  }
+
+  /**
+   * Constructor for a snapshot identified by a stamp. Identifier and timestamp strings are only
+   * formatted the first time they are read: the identifier as a UTC instant, so it is unique even
+   * when the local clock is set back, and the timestamp in the system time zone.
+   * @param stamp snapshot stamp, as microseconds since the epoch
+   * @param description description of snapshot
+   * @param shapeList shapes in snapshot, in insertion order (the snapshot exposes it read only)
+   * @throws IllegalArgumentException if any input object is null
+   */
+  public SnapshotImpl(long stamp, String description, Map<String, IShape> shapeList)
+          throws IllegalArgumentException {
+    this(stamp, description, shapeList, null);
+  }
+
+  /**
+   * Constructor for a snapshot identified by a stamp, with a filter over its shape identifiers.
+   * @param stamp snapshot stamp, as microseconds since the epoch
+   * @param description description of snapshot
+   * @param shapeList shapes in snapshot, in insertion order (the snapshot exposes it read only)
+   * @param shapeFilter filter holding at least the identifiers of the shapes, or null for none
+   * @throws IllegalArgumentException if description or shapes are null
+   */
+  public SnapshotImpl(long stamp, String description, Map<String, IShape> shapeList,
+                      BloomFilter shapeFilter) throws IllegalArgumentException {
+    if ((description == null) || (shapeList == null)) {
+      throw new IllegalArgumentException("Object must not be null.");
+    }
+
+    this.stamp = stamp;
+    this.shapeFilter = shapeFilter;
+    this.id = null;
+    this.timeStamp = null;
+    this.description = description;
+    this.shapeList = (PersistentOrderedMap.unwrap(shapeList) != null)
+            ? shapeList : Collections.unmodifiableMap(shapeList);
+  }
+
+  /**
+   * Convert a stamp to an instant.
+   * @param stamp stamp, as microseconds since the epoch
+   * @return  instant of stamp
+   */
+  static Instant toInstant(long stamp) {
+    return Instant.ofEpochSecond(Math.floorDiv(stamp, MICROS_PER_SECOND),
+            Math.floorMod(stamp, MICROS_PER_SECOND) * NANOS_PER_MICRO);
+  }
+
+  /**
+   * Format the identifier of a snapshot taken at a stamp.
+   * @param stamp stamp, as microseconds since the epoch
+   * @return  identifier, the UTC instant of the stamp
+   */
+  static String formatId(long stamp) {
+    return formatterID.format(toInstant(stamp));
+  }
+
+  /**
+   * Format the timestamp of a snapshot taken at a stamp.
+   * @param stamp stamp, as microseconds since the epoch
+   * @return  timestamp, in the system time zone
+   */
+  static String formatTimestamp(long stamp) {
+    return LocalDateTime.ofInstant(toInstant(stamp), ZoneId.systemDefault())
+            .format(formatterTimestamp);
+  }
+
+  /**
+   * Get the stamp an identifier is formatted from.
+   * @param id  identifier
+   * @return  stamp, or {@link ISnapshot#NO_STAMP} if the identifier is not formatted from one
+   */
+  static long parseId(String id) {
+    if (id == null) {
+      return NO_STAMP;
+    }
+    try {
+      Instant instant = Instant.parse(id);
+      if (instant.getNano() % NANOS_PER_MICRO != 0) {
+        return NO_STAMP;
+      }
+      long stamp = Math.addExact(Math.multiplyExact(instant.getEpochSecond(), MICROS_PER_SECOND),
+              instant.getNano() / NANOS_PER_MICRO);
+      // the parser takes any number of fraction digits, only the way a stamp is printed counts
+      return ((stamp != NO_STAMP) && formatId(stamp).equals(id)) ? stamp : NO_STAMP;
+    } catch (DateTimeParseException | ArithmeticException e) {
+      return NO_STAMP;
+    }
   }
 
   @Override
   public String getID() {
+    if (this.id == null) {
+      this.id = formatId(this.stamp);
+    }
     return this.id;
   }
 
   @Override
   public String getTimestamp() {
+    if (this.timeStamp == null) {
+      this.timeStamp = formatTimestamp(this.stamp);
+    }
     return this.timeStamp;
   }
 
+  /**
+   * Get the stamp the identifier and timestamp are formatted from.
+   * @return  stamp, or {@link ISnapshot#NO_STAMP} for a snapshot made with an identifier
+   */
+  @Override
+  public long getStamp() {
+    return this.stamp;
+  }
+
   @Override
   public String getDescription() {
     return this.description;
@@ -50,19 +176,85 @@ public class SnapshotImpl implements ISnapshot {
 
   /**
    * Get list of shapes in snapshot.
-   * @return collection of shapes in snapshot.
+   * @return read-only, insertion-ordered map of shapes in snapshot.
    */
   @Override
   public Map<String, IShape> getShapes() {
     return this.shapeList;
   }
 
+  /**
+   * Estimate bytes of the snapshot as if it shared nothing with other snapshots. The snapshot is
+   * frozen, so the estimate is worked out once.
+   * @return  estimated bytes
+   */
+  @Override
+  public long getEstimatedBytes() {
+    long bytes = this.estimatedBytes;
+    if (bytes < 0) {
+      bytes = ISnapshot.super.getEstimatedBytes();
+      this.estimatedBytes = bytes;
+    }
+    return bytes;
+  }
+
+  /**
+   * Get filter over the identifiers of the shapes.
+   * @return  filter, or null if the snapshot has none
+   */
+  @Override
+  public BloomFilter getShapeFilter() {
+    return this.shapeFilter;
+  }
+
+  /**
+   * Get a fingerprint of the shapes. Persistent shape maps keep theirs up to date; for other maps
+   * it is worked out once, since the snapshot is frozen.
+   * @return  fingerprint
+   */
+  @Override
+  public long getFingerprint() {
+    Long known = this.fingerprint;
+    if (known == null) {
+      known = ISnapshot.super.getFingerprint();
+      this.fingerprint = known;
+    }
+    return known;
+  }
+
+  /**
+   * Get the shapes whose bounding boxes intersect a rectangle, edges included. The snapshot is
+   * frozen, so its spatial index is built on the first query and kept.
+   * @param x left edge of rectangle
+   * @param y top edge of rectangle
+   * @param width width of rectangle
+   * @param height  height of rectangle
+   * @return  read-only map of the shapes, in paint order
+   * @throws IllegalArgumentException if width or height is negative
+   */
+  @Override
+  public Map<String, IShape> shapesIntersecting(double x, double y, double width, double height)
+          throws IllegalArgumentException {
+    SpatialGrid<String> index = this.grid;
+    if (index == null) {
+      // racing threads build equal grids, so either may win
+      index = SpatialGrid.of(this.shapeList);
+      this.grid = index;
+    }
+
+    Map<String, IShape> found = new LinkedHashMap<String, IShape>();
+    for (String id : index.query(x, y, width, height)) {
+      found.put(id, this.shapeList.get(id));
+    }
+    return Collections.unmodifiableMap(found);
+  }
+
   @Override
   public String toString() {
     String s = "";
 
-    s += "Snapshot ID: " + this.id + "\n";
-    s += "Timestamp: " + this.timeStamp + "\n";
+    s += "Snapshot ID: " + this.getID() + "\n";
+    s += "Timestamp: " + this.getTimestamp() + "\n";
     s += "Description: " + this.description + "\n";
     s += "Shape Information: \n";
 
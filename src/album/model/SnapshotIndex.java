@@ -0,0 +1,261 @@
+package album.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Positional and identifier index over stored snapshots, shared by the snapshot stores.
+ *
+ * <p>Snapshots are kept in an array-backed list, and each identifier maps to a slot that records
+ * the snapshot's position. Lookups by index or identifier take constant time. A removal only
+ * marks the positions after it as stale; they are renumbered the next time a stale position is
+ * asked for, so a run of removals costs one pass instead of one pass each.
+ *
+ * <p>Snapshots with a {@link ISnapshot#getStamp() stamp} are keyed by it, so adding one does not
+ * format its identifier; an identifier that is looked up is turned back into the stamp it was
+ * formatted from.
+ *
+ * @param <T> type of stored snapshots
+ */
+final class SnapshotIndex<T extends ISnapshot> {
+  private final List<Slot<T>> slots;
+  private final Map<Object, Slot<T>> slotsByKey;
+  private int staleFrom;
+  private Map<String, ISnapshot> view;
+
+  /**
+   * Constructor.
+   */
+  SnapshotIndex() {
+    this.slots = new ArrayList<Slot<T>>();
+    this.slotsByKey = new HashMap<Object, Slot<T>>();
+    this.staleFrom = 0;
+  }
+
+  /**
+   * Get the key of a snapshot: its stamp, or its identifier if it has none.
+   * @param snapshot  snapshot
+   * @return  key
+   */
+  static Object keyOf(ISnapshot snapshot) {
+    long stamp = snapshot.getStamp();
+    return (stamp != ISnapshot.NO_STAMP) ? (Object) stamp : keyOf(snapshot.getID());
+  }
+
+  /**
+   * Get the key of the snapshot with an identifier.
+   * @param id  identifier
+   * @return  key: the stamp the identifier is formatted from, or else the identifier
+   */
+  static Object keyOf(String id) {
+    long stamp = SnapshotImpl.parseId(id);
+    return (stamp != ISnapshot.NO_STAMP) ? (Object) stamp : id;
+  }
+
+  /**
+   * Check if a snapshot with the same identifier is indexed.
+   * @param snapshot  snapshot
+   * @return  true if it is
+   */
+  boolean contains(ISnapshot snapshot) {
+    return this.slotsByKey.containsKey(keyOf(snapshot));
+  }
+
+  /**
+   * Return the indexed snapshot with the same identifier as a snapshot.
+   * @param snapshot  snapshot
+   * @return  indexed snapshot, or null if there is none
+   */
+  T get(ISnapshot snapshot) {
+    Slot<T> slot = this.slotsByKey.get(keyOf(snapshot));
+    return (slot == null) ? null : slot.snapshot;
+  }
+
+  /**
+   * Append snapshot.
+   * @param snapshot  snapshot
+   * @throws IllegalArgumentException if identifier is already indexed
+   */
+  void add(T snapshot) throws IllegalArgumentException {
+    Object key = keyOf(snapshot);
+    if (this.slotsByKey.containsKey(key)) {
+      throw new IllegalArgumentException("Snapshot ID already stored.");
+    }
+
+    Slot<T> slot = new Slot<T>(snapshot, this.slots.size());
+    this.slots.add(slot);
+    this.slotsByKey.put(key, slot);
+    if (this.staleFrom == slot.position) {
+      this.staleFrom++;
+    }
+  }
+
+  /**
+   * Replace the snapshot at an index by one with the same identifier.
+   * @param index index
+   * @param snapshot  replacement
+   */
+  void set(int index, T snapshot) {
+    this.slots.get(index).snapshot = snapshot;
+  }
+
+  /**
+   * Remove snapshot with identifier.
+   * @param id  identifier
+   * @return  removed snapshot, or null if not indexed
+   */
+  T remove(String id) {
+    Slot<T> slot = this.slotsByKey.remove(keyOf(id));
+    if (slot == null) {
+      return null;
+    }
+
+    int index = this.position(slot);
+    this.slots.remove(index);
+    this.staleFrom = Math.min(this.staleFrom, index);
+    return slot.snapshot;
+  }
+
+  /**
+   * Return snapshot with identifier.
+   * @param id  identifier
+   * @return  snapshot, or null if not indexed
+   */
+  T get(String id) {
+    Slot<T> slot = this.slotsByKey.get(keyOf(id));
+    return (slot == null) ? null : slot.snapshot;
+  }
+
+  /**
+   * Return snapshot at index.
+   * @param index index
+   * @return  snapshot
+   * @throws IllegalArgumentException if index out of range
+   */
+  T get(int index) throws IllegalArgumentException {
+    if ((index < 0) || (index >= this.slots.size())) {
+      throw new IllegalArgumentException("Index out of range.");
+    }
+    return this.slots.get(index).snapshot;
+  }
+
+  /**
+   * Return index of snapshot with identifier.
+   * @param id  identifier
+   * @return  index, or -1 if not indexed
+   */
+  int indexOf(String id) {
+    Slot<T> slot = this.slotsByKey.get(keyOf(id));
+    return (slot == null) ? -1 : this.position(slot);
+  }
+
+  /**
+   * Get number of snapshots.
+   * @return  number of snapshots
+   */
+  int size() {
+    return this.slots.size();
+  }
+
+  /**
+   * Remove all snapshots.
+   */
+  void clear() {
+    this.slots.clear();
+    this.slotsByKey.clear();
+    this.staleFrom = 0;
+  }
+
+  /**
+   * Return position of slot, renumbering stale positions first if needed.
+   * @param slot  slot
+   * @return  position
+   */
+  private int position(Slot<T> slot) {
+    if (slot.position >= this.staleFrom) {
+      for (int i = this.staleFrom; i < this.slots.size(); i++) {
+        this.slots.get(i).position = i;
+      }
+      this.staleFrom = this.slots.size();
+    }
+    return slot.position;
+  }
+
+  /**
+   * Return read-only view of snapshots keyed by identifier, in index order.
+   * @return  snapshot map
+   */
+  Map<String, ISnapshot> asMap() {
+    if (this.view == null) {
+      this.view = new AbstractMap<String, ISnapshot>() {
+        @Override
+        public Set<Map.Entry<String, ISnapshot>> entrySet() {
+          return new AbstractSet<Map.Entry<String, ISnapshot>>() {
+            @Override
+            public Iterator<Map.Entry<String, ISnapshot>> iterator() {
+              final Iterator<Slot<T>> it = SnapshotIndex.this.slots.iterator();
+              return new Iterator<Map.Entry<String, ISnapshot>>() {
+                @Override
+                public boolean hasNext() {
+                  return it.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, ISnapshot> next() {
+                  T snapshot = it.next().snapshot;
+                  return new AbstractMap.SimpleImmutableEntry<String, ISnapshot>(
+                          snapshot.getID(), snapshot);
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return SnapshotIndex.this.slots.size();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return SnapshotIndex.this.slots.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+          return this.get(key) != null;
+        }
+
+        @Override
+        public ISnapshot get(Object key) {
+          return (key instanceof String) ? SnapshotIndex.this.get((String) key) : null;
+        }
+      };
+    }
+    return this.view;
+  }
+
+  /**
+   * Stored snapshot together with its (possibly stale) position.
+   */
+  private static final class Slot<T> {
+    private T snapshot;
+    private int position;
+
+    /**
+     * Constructor.
+     * @param snapshot  snapshot
+     * @param position  position
+     */
+    private Slot(T snapshot, int position) {
+      this.snapshot = snapshot;
+      this.position = position;
+    }
+  }
+}
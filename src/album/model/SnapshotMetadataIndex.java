@@ -0,0 +1,264 @@
+package album.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the stamps and descriptions of the snapshots of an album.
+ *
+ * <p>Stamps are kept in a sorted array, and identify the snapshots: the identifiers of the
+ * snapshots found are only formatted from them when a query returns. An album hands out strictly
+ * increasing stamps, so a new snapshot is appended and a time range is found by two binary
+ * searches. Descriptions are split into lowercase words of letters and digits, and every
+ * word has a posting list: the sorted stamps of the snapshots whose description contains it.
+ *
+ * <p>A query with words starts from the shortest posting list, narrowed to the time range, and
+ * keeps the stamps found in the posting list of every other word. It costs O(k log n) for k
+ * stamps in the shortest list, however many snapshots there are. Removing a snapshot shifts the
+ * arrays it is in, which is linear but rare.
+ */
+public final class SnapshotMetadataIndex {
+  private final Map<Long, Entry> entries;
+  private final Map<String, Postings> words;
+  private long[] stamps;
+  private int size;
+
+  /**
+   * Constructor, for an album without snapshots.
+   */
+  SnapshotMetadataIndex() {
+    this.entries = new HashMap<Long, Entry>();
+    this.words = new HashMap<String, Postings>();
+    this.stamps = new long[16];
+  }
+
+  /**
+   * Get number of snapshots indexed.
+   * @return  number of snapshots
+   */
+  public int getNumSnapshots() {
+    return this.size;
+  }
+
+  /**
+   * Get number of distinct words in the descriptions indexed.
+   * @return  number of words
+   */
+  public int getNumWords() {
+    return this.words.size();
+  }
+
+  /**
+   * Find snapshots by stamp and description.
+   * @param text  words that all have to appear in the description, in any order and case, or null
+   *              to match any description
+   * @param fromStamp first stamp to include, in microseconds since the epoch
+   * @param toStamp first stamp to exclude, in microseconds since the epoch
+   * @return  read-only identifiers of the matching snapshots, oldest first
+   */
+  public List<String> find(String text, long fromStamp, long toStamp) {
+    int from = this.firstAtOrAfter(this.stamps, this.size, fromStamp);
+    int to = this.firstAtOrAfter(this.stamps, this.size, toStamp);
+    if (from >= to) {
+      return Collections.emptyList();
+    }
+    Set<String> tokens = tokenize(text);
+    if (tokens.isEmpty()) {
+      List<String> found = new ArrayList<String>(to - from);
+      for (int i = from; i < to; i++) {
+        found.add(SnapshotImpl.formatId(this.stamps[i]));
+      }
+      return Collections.unmodifiableList(found);
+    }
+
+    Postings[] lists = new Postings[tokens.size()];
+    int count = 0;
+    for (String token : tokens) {
+      Postings postings = this.words.get(token);
+      if (postings == null) {
+        return Collections.emptyList();
+      }
+      lists[count++] = postings;
+    }
+    Postings shortest = lists[0];
+    for (Postings postings : lists) {
+      if (postings.size < shortest.size) {
+        shortest = postings;
+      }
+    }
+
+    List<String> found = new ArrayList<String>();
+    int first = this.firstAtOrAfter(shortest.stamps, shortest.size, fromStamp);
+    int last = this.firstAtOrAfter(shortest.stamps, shortest.size, toStamp);
+    for (int i = first; i < last; i++) {
+      long stamp = shortest.stamps[i];
+      boolean all = true;
+      for (Postings postings : lists) {
+        if ((postings != shortest) && !postings.contains(stamp)) {
+          all = false;
+          break;
+        }
+      }
+      if (all) {
+        found.add(SnapshotImpl.formatId(stamp));
+      }
+    }
+    return Collections.unmodifiableList(found);
+  }
+
+  /**
+   * Record a new snapshot.
+   * @param stamp stamp of snapshot, greater than every stamp indexed
+   * @param description description of snapshot
+   */
+  void snapshotTaken(long stamp, String description) {
+    if (this.size == this.stamps.length) {
+      this.stamps = Arrays.copyOf(this.stamps, this.size * 2);
+    }
+    this.stamps[this.size] = stamp;
+    this.size++;
+
+    Set<String> tokens = tokenize(description);
+    for (String token : tokens) {
+      Postings postings = this.words.get(token);
+      if (postings == null) {
+        postings = new Postings();
+        this.words.put(token, postings);
+      }
+      postings.append(stamp);
+    }
+    this.entries.put(stamp, new Entry(stamp, tokens.toArray(new String[0])));
+  }
+
+  /**
+   * Drop a snapshot.
+   * @param stamp stamp of snapshot
+   */
+  void snapshotRemoved(long stamp) {
+    Entry entry = this.entries.remove(stamp);
+    if (entry == null) {
+      return;
+    }
+    int index = Arrays.binarySearch(this.stamps, 0, this.size, entry.stamp);
+    System.arraycopy(this.stamps, index + 1, this.stamps, index, this.size - index - 1);
+    this.size--;
+
+    for (String token : entry.tokens) {
+      Postings postings = this.words.get(token);
+      postings.remove(entry.stamp);
+      if (postings.size == 0) {
+        this.words.remove(token);
+      }
+    }
+  }
+
+  /**
+   * Forget all snapshots.
+   */
+  void snapshotsCleared() {
+    this.entries.clear();
+    this.words.clear();
+    this.stamps = new long[16];
+    this.size = 0;
+  }
+
+  /**
+   * Split text into distinct lowercase words of letters and digits.
+   * @param text  text, or null
+   * @return  words in order of first appearance
+   */
+  static Set<String> tokenize(String text) {
+    Set<String> tokens = new LinkedHashSet<String>();
+    if (text == null) {
+      return tokens;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean word = (i < text.length()) && Character.isLetterOrDigit(text.charAt(i));
+      if (word && (start < 0)) {
+        start = i;
+      } else if (!word && (start >= 0)) {
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Find the first position of a sorted array holding a stamp at or after a given one.
+   * @param sorted  ascending stamps
+   * @param length  number of stamps in use
+   * @param stamp stamp
+   * @return  position, or length if every stamp is before it
+   */
+  private int firstAtOrAfter(long[] sorted, int length, long stamp) {
+    int index = Arrays.binarySearch(sorted, 0, length, stamp);
+    return (index >= 0) ? index : -(index + 1);
+  }
+
+  /**
+   * Stamp and words of an indexed snapshot, to undo its postings when it is removed.
+   */
+  private static final class Entry {
+    private final long stamp;
+    private final String[] tokens;
+
+    /**
+     * Constructor.
+     * @param stamp stamp of snapshot
+     * @param tokens  distinct words of its description
+     */
+    private Entry(long stamp, String[] tokens) {
+      this.stamp = stamp;
+      this.tokens = tokens;
+    }
+  }
+
+  /**
+   * Sorted stamps of the snapshots whose description contains a word.
+   */
+  private static final class Postings {
+    private long[] stamps = new long[4];
+    private int size;
+
+    /**
+     * Add a stamp, greater than all in the list.
+     * @param stamp stamp
+     */
+    private void append(long stamp) {
+      if (this.size == this.stamps.length) {
+        this.stamps = Arrays.copyOf(this.stamps, this.size * 2);
+      }
+      this.stamps[this.size++] = stamp;
+    }
+
+    /**
+     * Remove a stamp.
+     * @param stamp stamp in the list
+     */
+    private void remove(long stamp) {
+      int index = Arrays.binarySearch(this.stamps, 0, this.size, stamp);
+      if (index >= 0) {
+        System.arraycopy(this.stamps, index + 1, this.stamps, index, this.size - index - 1);
+        this.size--;
+      }
+    }
+
+    /**
+     * Check if the list holds a stamp.
+     * @param stamp stamp
+     * @return  true if it does
+     */
+    private boolean contains(long stamp) {
+      return Arrays.binarySearch(this.stamps, 0, this.size, stamp) >= 0;
+    }
+  }
+}
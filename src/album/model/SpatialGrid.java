@@ -0,0 +1,294 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Uniform grid over the bounding boxes of shapes, for finding the shapes that intersect a region.
+ *
+ * <p>Each key is filed under every cell its bounding box covers, so a query only looks at the
+ * cells of the region it asks about. A shape covering more than {@link #MAX_CELLS} cells is kept
+ * in a separate list that every query checks. Every key carries a rank, and query results come
+ * back in rank order, which callers use for paint order.
+ *
+ * @param <K> type of keys
+ */
+public final class SpatialGrid<K> {
+  /** Default width and height of a cell. */
+  public static final double DEFAULT_CELL_SIZE = 64;
+  /** Largest number of cells a shape is filed under. */
+  public static final int MAX_CELLS = 64;
+
+  private static final Comparator<Item<?>> BY_RANK = new Comparator<Item<?>>() {
+    @Override
+    public int compare(Item<?> item1, Item<?> item2) {
+      return Long.compare(item1.rank, item2.rank);
+    }
+  };
+
+  private final double cellSize;
+  private final Map<K, Item<K>> items;
+  private final Map<Long, List<Item<K>>> cells;
+  private final Set<Item<K>> large;
+
+  /**
+   * Constructor, with cells of the default size.
+   */
+  public SpatialGrid() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param cellSize  width and height of a cell
+   * @throws IllegalArgumentException if cell size is not positive
+   */
+  public SpatialGrid(double cellSize) throws IllegalArgumentException {
+    if (!(cellSize > 0)) {
+      throw new IllegalArgumentException("Cell size has to be positive.");
+    }
+    this.cellSize = cellSize;
+    this.items = new HashMap<K, Item<K>>();
+    this.cells = new HashMap<Long, List<Item<K>>>();
+    this.large = new HashSet<Item<K>>();
+  }
+
+  /**
+   * Index a key under the bounding box of a shape, replacing its previous box.
+   * @param key key
+   * @param shape shape, whose box is copied
+   * @param rank  rank of the key in query results
+   * @throws IllegalArgumentException if key or shape is null
+   */
+  public void put(K key, IShape shape, long rank) throws IllegalArgumentException {
+    if ((key == null) || (shape == null)) {
+      throw new IllegalArgumentException("Key and shape cannot be null.");
+    }
+    this.remove(key);
+
+    Item<K> item = new Item<K>(key, shape, rank, this.cellSize);
+    this.items.put(key, item);
+    if (item.cellCount() > MAX_CELLS) {
+      this.large.add(item);
+      return;
+    }
+    for (int cx = item.cellMinX; cx <= item.cellMaxX; cx++) {
+      for (int cy = item.cellMinY; cy <= item.cellMaxY; cy++) {
+        Long cell = cellKey(cx, cy);
+        List<Item<K>> bucket = this.cells.get(cell);
+        if (bucket == null) {
+          bucket = new ArrayList<Item<K>>(4);
+          this.cells.put(cell, bucket);
+        }
+        bucket.add(item);
+      }
+    }
+  }
+
+  /**
+   * Remove a key.
+   * @param key key
+   * @return  true if the key was indexed
+   */
+  public boolean remove(Object key) {
+    Item<K> item = this.items.remove(key);
+    if (item == null) {
+      return false;
+    }
+    if (this.large.remove(item)) {
+      return true;
+    }
+    for (int cx = item.cellMinX; cx <= item.cellMaxX; cx++) {
+      for (int cy = item.cellMinY; cy <= item.cellMaxY; cy++) {
+        Long cell = cellKey(cx, cy);
+        List<Item<K>> bucket = this.cells.get(cell);
+        bucket.remove(item);
+        if (bucket.isEmpty()) {
+          this.cells.remove(cell);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Remove all keys.
+   */
+  public void clear() {
+    this.items.clear();
+    this.cells.clear();
+    this.large.clear();
+  }
+
+  /**
+   * Get number of keys.
+   * @return  number of keys
+   */
+  public int size() {
+    return this.items.size();
+  }
+
+  /**
+   * Find the keys whose bounding boxes intersect a rectangle, edges included.
+   * @param x left edge of rectangle
+   * @param y top edge of rectangle
+   * @param width width of rectangle
+   * @param height  height of rectangle
+   * @return  keys in rank order
+   * @throws IllegalArgumentException if width or height is negative
+   */
+  public List<K> query(double x, double y, double width, double height)
+          throws IllegalArgumentException {
+    if (!(width >= 0) || !(height >= 0)) {
+      throw new IllegalArgumentException("Width and height cannot be negative.");
+    }
+    double maxX = x + width;
+    double maxY = y + height;
+
+    List<Item<K>> found = new ArrayList<Item<K>>();
+    int cellMinX = cellOf(x, this.cellSize);
+    int cellMinY = cellOf(y, this.cellSize);
+    int cellMaxX = cellOf(maxX, this.cellSize);
+    int cellMaxY = cellOf(maxY, this.cellSize);
+    long cellCount = ((long) cellMaxX - cellMinX + 1) * ((long) cellMaxY - cellMinY + 1);
+
+    if (cellCount > this.cells.size()) {
+      // a region larger than the occupied cells is cheaper to answer from the items
+      for (Item<K> item : this.items.values()) {
+        if (item.intersects(x, y, maxX, maxY)) {
+          found.add(item);
+        }
+      }
+    } else {
+      // an item filed under several cells can only turn up twice if the region spans several
+      Set<Item<K>> seen = (cellCount > 1) ? new HashSet<Item<K>>() : null;
+      for (int cx = cellMinX; cx <= cellMaxX; cx++) {
+        for (int cy = cellMinY; cy <= cellMaxY; cy++) {
+          List<Item<K>> bucket = this.cells.get(cellKey(cx, cy));
+          if (bucket == null) {
+            continue;
+          }
+          for (int i = 0; i < bucket.size(); i++) {
+            Item<K> item = bucket.get(i);
+            if (item.intersects(x, y, maxX, maxY) && ((seen == null) || seen.add(item))) {
+              found.add(item);
+            }
+          }
+        }
+      }
+      for (Item<K> item : this.large) {
+        if (item.intersects(x, y, maxX, maxY)) {
+          found.add(item);
+        }
+      }
+    }
+
+    Collections.sort(found, BY_RANK);
+    List<K> keys = new ArrayList<K>(found.size());
+    for (Item<K> item : found) {
+      keys.add(item.key);
+    }
+    return keys;
+  }
+
+  /**
+   * Build a grid over the shapes of a map, ranked in map order.
+   * @param shapes  shapes by identifier
+   * @return  grid
+   */
+  static SpatialGrid<String> of(Map<String, IShape> shapes) {
+    SpatialGrid<String> grid = new SpatialGrid<String>();
+    long rank = 0;
+    for (Map.Entry<String, IShape> entry : shapes.entrySet()) {
+      grid.put(entry.getKey(), entry.getValue(), rank++);
+    }
+    return grid;
+  }
+
+  /**
+   * Return cell index of a coordinate.
+   * @param value coordinate
+   * @param cellSize  cell size
+   * @return  cell index, clamped to int range
+   */
+  private static int cellOf(double value, double cellSize) {
+    double cell = Math.floor(value / cellSize);
+    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, cell));
+  }
+
+  /**
+   * Pack cell indexes into a map key.
+   * @param cx  column
+   * @param cy  row
+   * @return  cell key
+   */
+  private static Long cellKey(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  /**
+   * A key with its bounding box and the cells the box covers.
+   * @param <K> type of key
+   */
+  private static final class Item<K> {
+    private final K key;
+    private final long rank;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final int cellMinX;
+    private final int cellMinY;
+    private final int cellMaxX;
+    private final int cellMaxY;
+
+    /**
+     * Constructor.
+     * @param key key
+     * @param shape shape
+     * @param rank  rank of key
+     * @param cellSize  cell size of the grid
+     */
+    private Item(K key, IShape shape, long rank, double cellSize) {
+      this.key = key;
+      this.rank = rank;
+      this.minX = shape.getMinX();
+      this.minY = shape.getMinY();
+      this.maxX = shape.getMaxX();
+      this.maxY = shape.getMaxY();
+      this.cellMinX = cellOf(this.minX, cellSize);
+      this.cellMinY = cellOf(this.minY, cellSize);
+      this.cellMaxX = cellOf(this.maxX, cellSize);
+      this.cellMaxY = cellOf(this.maxY, cellSize);
+    }
+
+    /**
+     * Get number of cells the box covers.
+     * @return  number of cells
+     */
+    private long cellCount() {
+      return ((long) this.cellMaxX - this.cellMinX + 1)
+              * ((long) this.cellMaxY - this.cellMinY + 1);
+    }
+
+    /**
+     * Check if the box intersects a rectangle, edges included.
+     * @param x left edge
+     * @param y top edge
+     * @param maxX  right edge
+     * @param maxY  bottom edge
+     * @return  true if they intersect
+     */
+    private boolean intersects(double x, double y, double maxX, double maxY) {
+      return (this.minX <= maxX) && (this.maxX >= x) && (this.minY <= maxY) && (this.maxY >= y);
+    }
+  }
+}
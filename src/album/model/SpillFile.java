@@ -0,0 +1,131 @@
+package album.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only file of encoded snapshots, read back through memory mapping.
+ *
+ * <p>The file is mapped in segments, so reading a spilled snapshot touches only its pages and the
+ * operating system, not the Java heap, decides what stays in memory. Regions that would fill more
+ * than a quarter of a segment get a mapping of their own. Space of single regions is not reused.
+ */
+final class SpillFile implements AutoCloseable {
+  static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+  private final File file;
+  private final boolean temporary;
+  private final int segmentSize;
+  private final FileChannel channel;
+  private MappedByteBuffer current;
+  private long fileEnd;
+  private long bytesWritten;
+  private boolean open;
+
+  /**
+   * Constructor.
+   * @param file  file to write, or null for a temporary file deleted on close
+   * @param segmentSize number of bytes mapped at a time
+   * @throws IllegalArgumentException if segment size is not positive
+   * @throws UncheckedIOException if the file cannot be created
+   */
+  SpillFile(File file, int segmentSize) throws IllegalArgumentException, UncheckedIOException {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size has to be positive.");
+    }
+
+    try {
+      this.temporary = (file == null);
+      this.file = this.temporary ? File.createTempFile("snapshots", ".spill") : file;
+      this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create spill file.", e);
+    }
+    this.segmentSize = segmentSize;
+    this.open = true;
+  }
+
+  /**
+   * Append bytes to the file.
+   * @param bytes bytes to append
+   * @return  read-only buffer over the mapped region
+   * @throws IllegalStateException if file is closed
+   * @throws UncheckedIOException if the file cannot be mapped
+   */
+  ByteBuffer append(byte[] bytes) throws IllegalStateException, UncheckedIOException {
+    if (!this.open) {
+      throw new IllegalStateException("Spill file is closed.");
+    }
+
+    MappedByteBuffer segment;
+    if (bytes.length > this.segmentSize / 4) {
+      segment = this.map(bytes.length);
+    } else {
+      if ((this.current == null) || (this.current.remaining() < bytes.length)) {
+        this.current = this.map(this.segmentSize);
+      }
+      segment = this.current;
+    }
+
+    int start = segment.position();
+    segment.put(bytes);
+    ByteBuffer region = segment.duplicate();
+    region.position(start).limit(start + bytes.length);
+    this.bytesWritten += bytes.length;
+    return region.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Map a new segment at the end of the file.
+   * @param size  segment size
+   * @return  mapped segment
+   * @throws UncheckedIOException if the file cannot be mapped
+   */
+  private MappedByteBuffer map(int size) throws UncheckedIOException {
+    try {
+      MappedByteBuffer segment = this.channel.map(FileChannel.MapMode.READ_WRITE, this.fileEnd,
+              size);
+      this.fileEnd += size;
+      return segment;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot map spill file.", e);
+    }
+  }
+
+  /**
+   * Get number of bytes appended.
+   * @return  bytes written
+   */
+  long getBytesWritten() {
+    return this.bytesWritten;
+  }
+
+  /**
+   * Close the file, deleting it if temporary. Regions handed out stay readable until they are no
+   * longer referenced, since a mapping outlives its channel.
+   */
+  @Override
+  public void close() {
+    if (!this.open) {
+      return;
+    }
+    this.open = false;
+    this.current = null;
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot close spill file.", e);
+    } finally {
+      if (this.temporary) {
+        this.file.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,391 @@
+package album.model;
+
+import album.model.shapes.IShape;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TieredSnapshotStore implements ISnapshotStore with a hot tier of recently used snapshots on the
+ * heap and a cold tier in a memory-mapped spill file.
+ *
+ * <p>Stored snapshots are handles. A snapshot starts hot, sharing its shapes with the album; when
+ * more than the configured number of snapshots are hot, the least recently used one is encoded
+ * with {@link SnapshotCodec} into the spill file (once, since snapshots never change) and the
+ * store drops its shape map. Reading the shapes of a cold snapshot is a miss: they are
+ * decoded from the mapped file and, if the store promotes on misses, the snapshot becomes hot
+ * again. A store that does not promote suits one-pass scans, which would otherwise push the
+ * working set out of the hot tier.
+ *
+ * <p>The first time a snapshot is spilled, the store lets go of the shape map it was added with
+ * and reports it with {@link #takeReleased()}, so {@link PhotoAlbumImpl} drops the references its
+ * {@link ShapePool} held for the snapshot, and shapes that only spilled snapshots had leave the
+ * heap; RetainedHeapBenchmark measures how much.
+ *
+ * <p>Space in the spill file is reclaimed when the store is cleared or closed, not on single
+ * removals. The store is safe to read from other threads, such as readers of album views. A
+ * reader holds the store's lock only to look its snapshot up and to promote it; a cold snapshot is
+ * decoded outside the lock, so readers do not wait for each other's misses.
+ */
+public class TieredSnapshotStore implements ISnapshotStore, AutoCloseable {
+  /** Default number of hot snapshots. */
+  public static final int DEFAULT_HOT_SNAPSHOTS = 64;
+
+  private final int maxHot;
+  private final boolean promoteOnMiss;
+  private final File spillPath;
+  private final int segmentSize;
+  private SnapshotIndex<TieredSnapshot> snapshotList;
+  private LinkedHashMap<TieredSnapshot, TieredSnapshot> hot;
+  private SpillFile spill;
+  private long hits;
+  private long misses;
+  private long spills;
+  private List<Map<String, IShape>> released;
+
+  /**
+   * Constructor, keeping the default number of snapshots hot and spilling to a temporary file.
+   */
+  public TieredSnapshotStore() {
+    this(DEFAULT_HOT_SNAPSHOTS);
+  }
+
+  /**
+   * Constructor, promoting snapshots on misses and spilling to a temporary file.
+   * @param maxHot  number of snapshots kept hot
+   * @throws IllegalArgumentException if number is not positive
+   */
+  public TieredSnapshotStore(int maxHot) throws IllegalArgumentException {
+    this(maxHot, true, null);
+  }
+
+  /**
+   * Constructor.
+   * @param maxHot  number of snapshots kept hot
+   * @param promoteOnMiss true to make a snapshot hot again when its cold shapes are read
+   * @param spillPath file to spill to, replaced if present, or null for a temporary file
+   * @throws IllegalArgumentException if number is not positive
+   * @throws UncheckedIOException if the spill file cannot be created
+   */
+  public TieredSnapshotStore(int maxHot, boolean promoteOnMiss, File spillPath)
+          throws IllegalArgumentException, UncheckedIOException {
+    if (maxHot <= 0) {
+      throw new IllegalArgumentException("Number of hot snapshots has to be positive.");
+    }
+
+    this.maxHot = maxHot;
+    this.promoteOnMiss = promoteOnMiss;
+    this.spillPath = spillPath;
+    this.segmentSize = SpillFile.DEFAULT_SEGMENT_SIZE;
+    this.snapshotList = new SnapshotIndex<TieredSnapshot>();
+    this.hot = new LinkedHashMap<TieredSnapshot, TieredSnapshot>(16, 0.75f, true);
+    this.spill = new SpillFile(spillPath, this.segmentSize);
+    this.released = new ArrayList<Map<String, IShape>>();
+  }
+
+  @Override
+  public synchronized ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("Snapshot cannot be null.");
+    }
+    if (this.snapshotList.contains(snapshot)) {
+      throw new IllegalArgumentException("Snapshot ID already stored.");
+    }
+
+    TieredSnapshot stored = new TieredSnapshot(snapshot);
+    this.snapshotList.add(stored);
+    this.hot.put(stored, stored);
+    this.evict();
+    return stored;
+  }
+
+  @Override
+  public synchronized boolean remove(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    TieredSnapshot removed = this.snapshotList.remove(id);
+    if (removed == null) {
+      return false;
+    }
+    this.hot.remove(removed);
+    if (removed.region == null) {
+      this.released.add(removed.shapes);
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized ISnapshot get(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.get(id);
+  }
+
+  @Override
+  public synchronized ISnapshot get(int index) throws IllegalArgumentException {
+    return this.snapshotList.get(index);
+  }
+
+  @Override
+  public synchronized int indexOf(String id) throws IllegalArgumentException {
+    if (id == null) {
+      throw new IllegalArgumentException("ID object is null.");
+    }
+    return this.snapshotList.indexOf(id);
+  }
+
+  @Override
+  public synchronized int size() {
+    return this.snapshotList.size();
+  }
+
+  /**
+   * Remove all snapshots and start a new spill file. Snapshots handed out before stay readable.
+   * @throws UncheckedIOException if the new spill file cannot be created
+   */
+  @Override
+  public synchronized void clear() throws UncheckedIOException {
+    this.snapshotList.clear();
+    this.hot.clear();
+    this.released.clear();
+    this.spill.close();
+    this.spill = new SpillFile(this.spillPath, this.segmentSize);
+  }
+
+  /**
+   * Return a read-only view of the stored snapshots. The view is not synchronized, so it should
+   * only be read by the thread that changes the store.
+   * @return  snapshot map
+   */
+  @Override
+  public synchronized Map<String, ISnapshot> asMap() {
+    return this.snapshotList.asMap();
+  }
+
+  /**
+   * Report that the store lets go of shape maps once it has spilled them.
+   * @return  true
+   */
+  @Override
+  public boolean releasesShapes() {
+    return true;
+  }
+
+  /**
+   * Take the shape maps let go of since the last call: those of snapshots spilled for the first
+   * time, and those of snapshots removed before they were ever spilled.
+   * @return  shape maps, oldest first
+   */
+  @Override
+  public synchronized List<Map<String, IShape>> takeReleased() {
+    List<Map<String, IShape>> taken = this.released;
+    this.released = new ArrayList<Map<String, IShape>>();
+    return taken;
+  }
+
+  /**
+   * Get number of reads of hot shapes.
+   * @return  number of hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Get number of reads of cold shapes, decoded from the spill file.
+   * @return  number of misses
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Get number of snapshots written to the spill file.
+   * @return  number of spills
+   */
+  public synchronized long getSpills() {
+    return this.spills;
+  }
+
+  /**
+   * Get number of hot snapshots.
+   * @return  number of snapshots whose shapes are on the heap
+   */
+  public synchronized int getHotSnapshots() {
+    return this.hot.size();
+  }
+
+  /**
+   * Get number of bytes written to the current spill file, including removed snapshots.
+   * @return  spilled bytes
+   */
+  public synchronized long getSpillBytes() {
+    return this.spill.getBytesWritten();
+  }
+
+  /**
+   * Remove all snapshots and close the spill file, deleting it if temporary. The store must not
+   * be used afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    this.snapshotList.clear();
+    this.hot.clear();
+    this.released.clear();
+    this.spill.close();
+  }
+
+  /**
+   * Move least recently used snapshots to the cold tier until the hot tier fits.
+   */
+  private void evict() {
+    Iterator<TieredSnapshot> eldest = this.hot.values().iterator();
+    while (this.hot.size() > this.maxHot) {
+      TieredSnapshot snapshot = eldest.next();
+      eldest.remove();
+      if (snapshot.region == null) {
+        snapshot.region = this.spill.append(SnapshotCodec.encode(snapshot.shapes));
+        this.spills++;
+        this.released.add(snapshot.shapes);
+      }
+      snapshot.shapes = null;
+    }
+  }
+
+  /**
+   * Read the shapes of a snapshot, from whichever tier holds them.
+   * @param snapshot  snapshot
+   * @return  shapes in insertion order
+   */
+  private Map<String, IShape> read(TieredSnapshot snapshot) {
+    ByteBuffer region;
+    synchronized (this) {
+      if (snapshot.shapes != null) {
+        this.hits++;
+        // refresh its place in the access order
+        this.hot.get(snapshot);
+        return snapshot.shapes;
+      }
+      this.misses++;
+      region = snapshot.region;
+    }
+
+    Map<String, IShape> view = SnapshotCodec.view(region);
+    if (!this.promoteOnMiss) {
+      return view;
+    }
+    Map<String, IShape> shapes =
+            Collections.unmodifiableMap(new LinkedHashMap<String, IShape>(view));
+    synchronized (this) {
+      // the snapshot may have been removed, or promoted by another reader, meanwhile
+      if (this.snapshotList.get(snapshot) != snapshot) {
+        return shapes;
+      }
+      if (snapshot.shapes == null) {
+        snapshot.shapes = shapes;
+        this.hot.put(snapshot, snapshot);
+        this.evict();
+      }
+      return snapshot.shapes;
+    }
+  }
+
+  /**
+   * Snapshot handle whose shapes are either on the heap or in the spill file.
+   */
+  private final class TieredSnapshot implements ISnapshot {
+    private final long stamp;
+    private String id;
+    private String timeStamp;
+    private final String description;
+    private final long fingerprint;
+    private final BloomFilter shapeFilter;
+    private Map<String, IShape> shapes;
+    private ByteBuffer region;
+
+    /**
+     * Constructor, starting hot.
+     * @param snapshot  snapshot providing identifier, timestamp, description and shapes
+     */
+    private TieredSnapshot(ISnapshot snapshot) {
+      this.stamp = snapshot.getStamp();
+      // a snapshot with a stamp has its strings formatted only when they are read
+      if (this.stamp == NO_STAMP) {
+        this.id = snapshot.getID();
+        this.timeStamp = snapshot.getTimestamp();
+      }
+      this.description = snapshot.getDescription();
+      this.shapes = snapshot.getShapes();
+      this.fingerprint = snapshot.getFingerprint();
+      this.shapeFilter = snapshot.getShapeFilter();
+    }
+
+    @Override
+    public String getID() {
+      if (this.id == null) {
+        this.id = SnapshotImpl.formatId(this.stamp);
+      }
+      return this.id;
+    }
+
+    @Override
+    public String getTimestamp() {
+      if (this.timeStamp == null) {
+        this.timeStamp = SnapshotImpl.formatTimestamp(this.stamp);
+      }
+      return this.timeStamp;
+    }
+
+    @Override
+    public long getStamp() {
+      return this.stamp;
+    }
+
+    @Override
+    public String getDescription() {
+      return this.description;
+    }
+
+    /**
+     * Get read-only shapes, decoding them from the spill file if the snapshot is cold.
+     * @return  shapes in insertion order
+     */
+    @Override
+    public Map<String, IShape> getShapes() {
+      return TieredSnapshotStore.this.read(this);
+    }
+
+    /**
+     * Get fingerprint of the shapes, taken when the snapshot was stored.
+     * @return  fingerprint
+     */
+    @Override
+    public long getFingerprint() {
+      return this.fingerprint;
+    }
+
+    /**
+     * Get filter over the shape identifiers, taken when the snapshot was stored.
+     * @return  filter, or null if the snapshot had none
+     */
+    @Override
+    public BloomFilter getShapeFilter() {
+      return this.shapeFilter;
+    }
+
+    @Override
+    public String toString() {
+      return new SnapshotImpl(this.getID(), this.getTimestamp(), this.description,
+              this.getShapes()).toString();
+    }
+  }
+}
@@ -76,4 +76,91 @@ public abstract class AbstractShape implements IShape {
 
     this.color = color;
   }
+
+  /**
+   * Get left edge of the bounding box, the x of the coordinate point by default.
+   * @return  smallest x covered by shape
+   */
+  @Override
+  public double getMinX() {
+    return this.coordinatePoint.getX();
+  }
+
+  /**
+   * Get top edge of the bounding box, the y of the coordinate point by default.
+   * @return  smallest y covered by shape
+   */
+  @Override
+  public double getMinY() {
+    return this.coordinatePoint.getY();
+  }
+
+  /**
+   * Get right edge of the bounding box, one x dimension right of the coordinate point by
+   * default.
+   * @return  largest x covered by shape
+   */
+  @Override
+  public double getMaxX() {
+    return this.coordinatePoint.getX() + this.getXDimension();
+  }
+
+  /**
+   * Get bottom edge of the bounding box, one y dimension below the coordinate point by default.
+   * @return  largest y covered by shape
+   */
+  @Override
+  public double getMaxY() {
+    return this.coordinatePoint.getY() + this.getYDimension();
+  }
+
+  /**
+   * Check if a point lies in shape, edges included. By default the shape fills its bounding box.
+   * @param x x of point
+   * @param y y of point
+   * @return  true if the point lies in shape
+   */
+  @Override
+  public boolean contains(double x, double y) {
+    return (x >= this.getMinX()) && (x <= this.getMaxX())
+            && (y >= this.getMinY()) && (y <= this.getMaxY());
+  }
+
+  /**
+   * Check if another object is equal: a shape of the same type with equal color and coordinate
+   * and the same dimensions.
+   * @param other other object
+   * @return true if equal, false if not
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+
+    if ((other == null) || (other.getClass() != this.getClass())) {
+      return false;
+    }
+
+    IShape other2 = (IShape) other;
+    return (Double.compare(this.getXDimension(), other2.getXDimension()) == 0)
+            && (Double.compare(this.getYDimension(), other2.getYDimension()) == 0)
+            && this.color.equals(other2.getColor())
+            && this.coordinatePoint.equals(other2.getCoordinate());
+  }
+
+  /**
+   * Return hash code consistent with {@link #equals(Object)}. Shapes are mutable, so a shape must
+   * not be changed while it is a key of a hashed collection.
+   * @return  hash code
+   */
+  @Override
+  public int hashCode() {
+    int hash = this.getClass().hashCode();
+    hash = 31 * hash + Double.hashCode(this.getXDimension());
+    hash = 31 * hash + Double.hashCode(this.getYDimension());
+    hash = 31 * hash + this.color.hashCode();
+    hash = 31 * hash + this.coordinatePoint.hashCode();
+    return hash;
+  }
 }
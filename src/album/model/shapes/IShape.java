@@ -45,6 +45,38 @@ public interface IShape {
    */
   double getYDimension();
 
+  /**
+   * Get left edge of the bounding box of shape.
+   * @return  smallest x covered by shape
+   */
+  double getMinX();
+
+  /**
+   * Get top edge of the bounding box of shape.
+   * @return  smallest y covered by shape
+   */
+  double getMinY();
+
+  /**
+   * Get right edge of the bounding box of shape.
+   * @return  largest x covered by shape
+   */
+  double getMaxX();
+
+  /**
+   * Get bottom edge of the bounding box of shape.
+   * @return  largest y covered by shape
+   */
+  double getMaxY();
+
+  /**
+   * Check if a point lies in shape, edges included.
+   * @param x x of point
+   * @param y y of point
+   * @return  true if the point lies in shape
+   */
+  boolean contains(double x, double y);
+
   /**
    * Change x dimension of shape.
    * @param xDimension  new x dimension
@@ -78,6 +110,12 @@ public interface IShape {
    */
   boolean equals(Object other);
 
+  /**
+   * Return a hash code consistent with equals.
+   * @return  hash code
+   */
+  int hashCode();
+
   /**
    * Return a copy of IShape.
    * @return  copy of IShape
@@ -81,6 +81,55 @@ public class Oval extends AbstractShape {
     return this.yRadius;
   }
 
+  /**
+   * Get left edge of the bounding box, one x radius left of the center.
+   * @return  smallest x covered by shape
+   */
+  @Override
+  public double getMinX() {
+    return this.coordinatePoint.getX() - this.xRadius;
+  }
+
+  /**
+   * Get top edge of the bounding box, one y radius above the center.
+   * @return  smallest y covered by shape
+   */
+  @Override
+  public double getMinY() {
+    return this.coordinatePoint.getY() - this.yRadius;
+  }
+
+  /**
+   * Get right edge of the bounding box, one x radius right of the center.
+   * @return  largest x covered by shape
+   */
+  @Override
+  public double getMaxX() {
+    return this.coordinatePoint.getX() + this.xRadius;
+  }
+
+  /**
+   * Get bottom edge of the bounding box, one y radius below the center.
+   * @return  largest y covered by shape
+   */
+  @Override
+  public double getMaxY() {
+    return this.coordinatePoint.getY() + this.yRadius;
+  }
+
+  /**
+   * Check if a point lies in the ellipse around the center, edges included.
+   * @param x x of point
+   * @param y y of point
+   * @return  true if the point lies in shape
+   */
+  @Override
+  public boolean contains(double x, double y) {
+    double dx = (x - this.coordinatePoint.getX()) / this.xRadius;
+    double dy = (y - this.coordinatePoint.getY()) / this.yRadius;
+    return (dx * dx) + (dy * dy) <= 1;
+  }
+
   /**
    * Scale shape by a factor.
    *
@@ -112,27 +161,6 @@ public class Oval extends AbstractShape {
     return s;
   }
 
-  /**
-   * Check if another object is equal.
-   *
-   * @return true if equal, false if not
-   */
-  @Override
-  public boolean equals(Object other) {
-    if (other == this) {
-      return true;
-    }
-
-    if (other.getClass() == Oval.class) {
-      Oval other2 = (Oval) other;
-
-      if (other2.toString().equals(this.toString())) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   /**
    * Return a copy of IShape.
    *
@@ -140,7 +168,7 @@ public class Oval extends AbstractShape {
    */
   @Override
   public IShape getCopy() {
-    return new Oval(this.color.copy(), this.coordinatePoint.copy(), this.xRadius, this.yRadius);
+    return new Oval(this.color, this.coordinatePoint, this.xRadius, this.yRadius);
   }
 
 
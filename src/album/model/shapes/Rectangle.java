@@ -115,27 +115,6 @@ public class Rectangle extends AbstractShape {
     return s;
   }
 
-  /**
-   * Check if another object is equal.
-   *
-   * @return true if equal, false if not
-   */
-  @Override
-  public boolean equals(Object other) {
-    if (other == this) {
-      return true;
-    }
-
-    if (other.getClass() == Rectangle.class) {
-      Rectangle other2 = (Rectangle) other;
-
-      if (other2.toString().equals(this.toString())) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   /**
    * Return a copy of IShape.
    *
@@ -143,6 +122,6 @@ public class Rectangle extends AbstractShape {
    */
   @Override
   public IShape getCopy() {
-    return new Rectangle(this.color.copy(), this.coordinatePoint.copy(), this.width, this.height);
+    return new Rectangle(this.color, this.coordinatePoint, this.width, this.height);
   }
 }
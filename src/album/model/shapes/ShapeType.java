@@ -0,0 +1,81 @@
+package album.model.shapes;
+
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+
+/**
+ * Enum of the concrete shape types, used where shapes are stored as plain values rather than
+ * objects.
+ */
+public enum ShapeType {
+  OVAL,
+  RECTANGLE,
+  TRIANGLE;
+
+  private static final ShapeType[] VALUES = values();
+
+  /**
+   * Return type of a shape.
+   * @param shape shape
+   * @return  shape type
+   * @throws IllegalArgumentException if shape is null or not one of the known types
+   */
+  public static ShapeType of(IShape shape) throws IllegalArgumentException {
+    if (shape == null) {
+      throw new IllegalArgumentException("Shape cannot be null.");
+    }
+
+    if (shape.getClass() == Oval.class) {
+      return OVAL;
+    }
+    else if (shape.getClass() == Rectangle.class) {
+      return RECTANGLE;
+    }
+    else if (shape.getClass() == Triangle.class) {
+      return TRIANGLE;
+    }
+    throw new IllegalArgumentException("Shape type not supported.");
+  }
+
+  /**
+   * Return type with code.
+   * @param code  code returned by {@link #getCode()}
+   * @return  shape type
+   * @throws IllegalArgumentException if code is unknown
+   */
+  public static ShapeType fromCode(byte code) throws IllegalArgumentException {
+    if ((code < 1) || (code > VALUES.length)) {
+      throw new IllegalArgumentException("Shape type code unknown.");
+    }
+    return VALUES[code - 1];
+  }
+
+  /**
+   * Get compact code of type. Codes start at 1, so 0 is free to mark an empty slot.
+   * @return  code
+   */
+  public byte getCode() {
+    return (byte) (this.ordinal() + 1);
+  }
+
+  /**
+   * Create shape of this type.
+   * @param color color of shape
+   * @param coordinatePoint coordinate point of shape
+   * @param xDimension  x dimension of shape
+   * @param yDimension  y dimension of shape
+   * @return  new shape
+   * @throws IllegalArgumentException if arguments are invalid for the shape
+   */
+  public IShape create(Color color, Point2D coordinatePoint, double xDimension, double yDimension)
+          throws IllegalArgumentException {
+    switch (this) {
+      case OVAL:
+        return new Oval(color, coordinatePoint, xDimension, yDimension);
+      case RECTANGLE:
+        return new Rectangle(color, coordinatePoint, xDimension, yDimension);
+      default:
+        return new Triangle(color, coordinatePoint, xDimension, yDimension);
+    }
+  }
+}
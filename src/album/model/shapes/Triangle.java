@@ -82,6 +82,23 @@ public class Triangle extends AbstractShape {
     this.height = yDimension;
   }
 
+  /**
+   * Check if a point lies in the triangle, edges included. The apex is at the middle of the top
+   * edge of the bounding box and the base runs along its bottom edge.
+   * @param x x of point
+   * @param y y of point
+   * @return  true if the point lies in shape
+   */
+  @Override
+  public boolean contains(double x, double y) {
+    double top = this.coordinatePoint.getY();
+    if ((y < top) || (y > top + this.height)) {
+      return false;
+    }
+    double halfWidth = (this.base / 2) * (y - top) / this.height;
+    return Math.abs(x - (this.coordinatePoint.getX() + this.base / 2)) <= halfWidth;
+  }
+
   /**
    * Scale shape by a factor.
    *
@@ -113,27 +130,6 @@ public class Triangle extends AbstractShape {
     return s;
   }
 
-  /**
-   * Check if another object is equal.
-   *
-   * @return true if equal, false if not
-   */
-  @Override
-  public boolean equals(Object other) {
-    if (other == this) {
-      return true;
-    }
-
-    if (other.getClass() == Triangle.class) {
-      Triangle other2 = (Triangle) other;
-
-      if (other2.toString().equals(this.toString())) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   /**
    * Return a copy of IShape.
    *
@@ -141,6 +137,6 @@ public class Triangle extends AbstractShape {
    */
   @Override
   public IShape getCopy() {
-    return new Triangle(this.color.copy(), this.coordinatePoint.copy(), this.base, this.height);
+    return new Triangle(this.color, this.coordinatePoint, this.base, this.height);
   }
 }
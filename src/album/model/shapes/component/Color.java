@@ -3,14 +3,17 @@ package album.model.shapes.component;
 import java.text.DecimalFormat;
 
 /**
- * Public class for Color.
+ * Public class for Color. Colors are immutable, so one instance can be shared by any number of
+ * shapes and snapshots; {@link #of(double, double, double)} returns canonical instances.
  */
-public class Color {
-  private double red;
-  private double green;
-  private double blue;
+public final class Color {
+  private final double red;
+  private final double green;
+  private final double blue;
 
   private static final double COLOR_MAX = 1.0;
+  private static final int CACHE_SIZE = 1024;
+  private static final Color[] CACHE = new Color[CACHE_SIZE];
 
   /**
    * Constructor.
@@ -33,6 +36,35 @@ public class Color {
     this.green = green;
   }
 
+  /**
+   * Return canonical color for the given values. Recently used colors are kept in a small cache,
+   * so albums drawing with a handful of colors share one instance per color.
+   * @param red red value
+   * @param blue  blue value
+   * @param green green value
+   * @return  color
+   * @throws IllegalArgumentException if color values are out of bounds
+   */
+  public static Color of(double red, double blue, double green) throws IllegalArgumentException {
+    long redBits = Double.doubleToLongBits(red);
+    long blueBits = Double.doubleToLongBits(blue);
+    long greenBits = Double.doubleToLongBits(green);
+    long hash = (redBits * 31 + blueBits) * 31 + greenBits;
+    int slot = (int) (hash ^ (hash >>> 32)) & (CACHE_SIZE - 1);
+
+    // colors are immutable with final fields, so racing writers can only replace a slot
+    Color cached = CACHE[slot];
+    if ((cached != null) && (Double.doubleToLongBits(cached.red) == redBits)
+            && (Double.doubleToLongBits(cached.blue) == blueBits)
+            && (Double.doubleToLongBits(cached.green) == greenBits)) {
+      return cached;
+    }
+
+    Color color = new Color(red, blue, green);
+    CACHE[slot] = color;
+    return color;
+  }
+
   /**
    * Getter for red value.
    * @return  red value
@@ -58,37 +90,42 @@ public class Color {
   }
 
   /**
-   * Setter for red value.
+   * Return color with a new red value.
    * @param red new red value
+   * @return  color with new red value
+   * @throws IllegalArgumentException if value is out of bounds
    */
-  public void setRed(double red) throws IllegalArgumentException {
+  public Color withRed(double red) throws IllegalArgumentException {
     if ((red < 0) || (red > COLOR_MAX)) {
       throw new IllegalArgumentException("Color value invalid.");
     }
-
-    this.red = red;
+    return Color.of(red, this.blue, this.green);
   }
 
   /**
-   * Setter for green value.
+   * Return color with a new green value.
    * @param green new green value
+   * @return  color with new green value
+   * @throws IllegalArgumentException if value is out of bounds
    */
-  public void setGreen(double green) throws IllegalArgumentException {
+  public Color withGreen(double green) throws IllegalArgumentException {
     if ((green < 0) || (green > COLOR_MAX)) {
       throw new IllegalArgumentException("Color value invalid.");
     }
-    this.green = green;
+    return Color.of(this.red, this.blue, green);
   }
 
   /**
-   * Setter for blue value.
+   * Return color with a new blue value.
    * @param blue new blue value
+   * @return  color with new blue value
+   * @throws IllegalArgumentException if value is out of bounds
    */
-  public void setBlue(double blue) throws IllegalArgumentException {
+  public Color withBlue(double blue) throws IllegalArgumentException {
     if ((blue < 0) || (blue > COLOR_MAX)) {
       throw new IllegalArgumentException("Color value invalid.");
     }
-    this.blue = blue;
+    return Color.of(this.red, blue, this.green);
   }
 
   /**
@@ -103,35 +140,44 @@ public class Color {
   }
 
   /**
-   * Check if object is equal to another.
+   * Check if object is equal to another. Values are compared to one decimal place.
    * @param other other object to be checked
    * @return  true if equal, false if not
    */
   @Override
   public boolean equals(Object other) {
-    if (other == null) {
-      return false;
-    }
-
     if (this == other) {
       return true;
     }
 
-    if (other.getClass() == Color.class) {
-      Color other2 = (Color) other;
-
-      if (other2.toString().equals(this.toString())) {
-        return true;
-      }
+    if ((other == null) || (other.getClass() != Color.class)) {
+      return false;
     }
-    return false;
+
+    Color other2 = (Color) other;
+    return (Precision.quantize(this.red) == Precision.quantize(other2.red))
+            && (Precision.quantize(this.blue) == Precision.quantize(other2.blue))
+            && (Precision.quantize(this.green) == Precision.quantize(other2.green));
+  }
+
+  /**
+   * Return hash code consistent with {@link #equals(Object)}.
+   * @return  hash code
+   */
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    hash = 31 * hash + Long.hashCode(Precision.quantize(this.red));
+    hash = 31 * hash + Long.hashCode(Precision.quantize(this.blue));
+    hash = 31 * hash + Long.hashCode(Precision.quantize(this.green));
+    return hash;
   }
 
   /**
-   * Return a copy of this color.
+   * Return a copy of this color. Colors are immutable, so this is the color itself.
    * @return copy Color object
    */
   public Color copy() {
-    return new Color(this.getRed(), this.getBlue(), this.getGreen());
+    return this;
   }
 }
@@ -3,11 +3,12 @@ package album.model.shapes.component;
 import java.text.DecimalFormat;
 
 /**
- * Class for Point2D ( a coordinate).
+ * Class for Point2D ( a coordinate). Points are immutable and can be shared between shapes and
+ * snapshots.
  */
-public class Point2D {
-  private double x;
-  private double y;
+public final class Point2D {
+  private final double x;
+  private final double y;
   /**
    * Constructor.
    * @param x x-coordinate
@@ -40,25 +41,23 @@ public class Point2D {
   }
 
   /**
-   * Setter for x.
-   * @param x x-coordinate to be set to
+   * Return point with a new x-coordinate.
+   * @param x new x-coordinate
+   * @return  point with new x-coordinate
+   * @throws IllegalArgumentException if coordinate is negative
    */
-  public void setX(double x) {
-    if (x < 0) {
-      throw new IllegalArgumentException("Coordinates have to be positive");
-    }
-    this.x = x;
+  public Point2D withX(double x) throws IllegalArgumentException {
+    return new Point2D(x, this.y);
   }
 
   /**
-   * Setter for y.
-   * @param y y-coordinate to be set to
+   * Return point with a new y-coordinate.
+   * @param y new y-coordinate
+   * @return  point with new y-coordinate
+   * @throws IllegalArgumentException if coordinate is negative
    */
-  public void setY(double y) {
-    if (y < 0) {
-      throw new IllegalArgumentException("Coordinates have to be positive");
-    }
-    this.y = y;
+  public Point2D withY(double y) throws IllegalArgumentException {
+    return new Point2D(this.x, y);
   }
 
   /**
@@ -72,37 +71,43 @@ public class Point2D {
   }
 
   /**
-   * Check if object is equal to another.
+   * Check if object is equal to another. Values are compared to one decimal place.
    * @param other other object to be checked
    * @return  true if equal, false if not
    */
   @Override
   public boolean equals(Object other) {
-    if (other == null) {
-      return false;
-    }
-
     if (this == other) {
       return true;
     }
 
-    if (other.getClass() == Point2D.class) {
-      Point2D other2 = (Point2D) other;
-
-      if (other2.toString().equals(this.toString())) {
-        return true;
-      }
+    if ((other == null) || (other.getClass() != Point2D.class)) {
+      return false;
     }
-    return false;
+
+    Point2D other2 = (Point2D) other;
+    return (Precision.quantize(this.x) == Precision.quantize(other2.x))
+            && (Precision.quantize(this.y) == Precision.quantize(other2.y));
   }
 
+  /**
+   * Return hash code consistent with {@link #equals(Object)}.
+   * @return  hash code
+   */
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    hash = 31 * hash + Long.hashCode(Precision.quantize(this.x));
+    hash = 31 * hash + Long.hashCode(Precision.quantize(this.y));
+    return hash;
+  }
 
   /**
-   * Return a copy of this Point2D.
+   * Return a copy of this Point2D. Points are immutable, so this is the point itself.
    * @return copy
    */
   public Point2D copy() {
-    return new Point2D(this.getX(), this.getY());
+    return this;
   }
 }
 
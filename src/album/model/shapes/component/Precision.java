@@ -0,0 +1,58 @@
+package album.model.shapes.component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Precision used when comparing colors and coordinates, which are equal when they print the same
+ * to one decimal place.
+ *
+ * <p>Values are printed with {@code DecimalFormat("0.0")}, which rounds the exact binary value
+ * half to even and prints negative values that round to zero as "-0.0". Values are quantized the
+ * same way, so equal values are exactly those that print alike.
+ */
+final class Precision {
+  private static final double SCALE = 10.0;
+
+  /** Magnitude below which a value scaled by ten is off by far less than a tenth. */
+  private static final double FAST_LIMIT = 0x1p40;
+
+  /** Magnitude from which doubles are spaced far enough apart to print differently. */
+  private static final double EXACT_LIMIT = 0x1p49;
+
+  /** Distance from a half tenth within which the scaled value may round the wrong way. */
+  private static final double TIE_WINDOW = 0.01;
+
+  /**
+   * Private constructor, utility class.
+   */
+  private Precision() {
+  }
+
+  /**
+   * Round value to the compared precision.
+   * @param value value
+   * @return  value in tenths as printed, the bits of the value if it is too large to have a
+   *          fraction, or the bits of -0.0 if it prints as "-0.0"
+   */
+  static long quantize(double value) {
+    if (!(Math.abs(value) < EXACT_LIMIT)) {
+      return Double.doubleToLongBits(value);
+    }
+
+    long tenths;
+    double scaled = value * SCALE;
+    double rounded = Math.rint(scaled);
+    if ((Math.abs(value) < FAST_LIMIT)
+            && (Math.abs(Math.abs(scaled - rounded) - 0.5) > TIE_WINDOW)) {
+      tenths = (long) rounded;
+    } else {
+      tenths = new BigDecimal(value).setScale(1, RoundingMode.HALF_EVEN).unscaledValue()
+              .longValue();
+    }
+    if ((tenths == 0) && ((value < 0) || (Double.doubleToRawLongBits(value) == Long.MIN_VALUE))) {
+      return Double.doubleToLongBits(-0.0);
+    }
+    return tenths;
+  }
+}
@@ -1,17 +1,28 @@
 package album.util;
 
+import album.model.AlbumCommand;
+import album.model.CommandResult;
 import album.model.IPhotoAlbum;
+import album.model.ITransactional;
 import album.model.shapes.IShape;
 import album.model.shapes.component.Color;
 import album.model.shapes.component.Point2D;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 
 /**
  * Private class implementing FileParser interface to parse content from file to change a model.
+ * Instructions are collected into batches of commands that are applied to the model with
+ * {@link IPhotoAlbum#applyBatch(List)}. If the model supports transactions, every block of
+ * instructions up to and including a snapshot is applied as one transaction, so a line that fails
+ * halfway leaves the model as it was after the previous snapshot. If the caller already has a
+ * transaction open, the parser works inside it and leaves committing or rolling back to the
+ * caller.
  */
 public class FileToModelParser implements FileParser {
   private static final int FILE_COLOR_SCALE = 255;
@@ -20,10 +31,15 @@ public class FileToModelParser implements FileParser {
   private static final int LENGTH_RESIZE_COMMAND = 4;
   private static final int LENGTH_COLOR_COMMAND = 5;
   private static final int LENGTH_REMOVE_COMMAND = 2;
+  private static final int BATCH_SIZE = 1000;
 
   private IPhotoAlbum model;
+  private ITransactional transactions;
+  private boolean ownTransaction;
   private File file;
   private int currentLine;
+  private List<AlbumCommand> batch;
+  private List<PendingLine> pendingLines;
 
 
   /**
@@ -41,8 +57,11 @@ public class FileToModelParser implements FileParser {
     }
 
     this.model = model;
+    this.transactions = (model instanceof ITransactional) ? (ITransactional) model : null;
     this.file = file;
     currentLine = 0;
+    this.batch = new ArrayList<AlbumCommand>();
+    this.pendingLines = new ArrayList<PendingLine>();
   }
 
   /**
@@ -50,6 +69,20 @@ public class FileToModelParser implements FileParser {
    */
   public void parse() throws FileNotFoundException, InterruptedException {
     Scanner fileScan = new Scanner(this.file);
+    try {
+      this.parseLines(fileScan);
+    } catch (RuntimeException | InterruptedException e) {
+      this.abortBlock();
+      throw e;
+    }
+  }
+
+  /**
+   * Parse and apply every line.
+   *
+   * @param fileScan scanner over the instruction file
+   */
+  private void parseLines(Scanner fileScan) throws InterruptedException {
     String line;
     while (fileScan.hasNext()) {
       currentLine++;
@@ -86,10 +119,93 @@ public class FileToModelParser implements FileParser {
             break;
           case "snapshot":
             this.takeModelSnapshot(elementList);
+            this.flush();
+            this.endBlock();
             break;
         }
+
+        if (this.batch.size() >= BATCH_SIZE) {
+          this.flush();
+        }
       }
     }
+    this.flush();
+    this.endBlock();
+  }
+
+  /**
+   * Apply the queued commands to the model and print the skipped lines in order.
+   */
+  private void flush() throws InterruptedException {
+    if (this.pendingLines.isEmpty()) {
+      return;
+    }
+
+    if ((this.transactions != null) && !this.transactions.inTransaction()) {
+      this.transactions.begin();
+      this.ownTransaction = true;
+    }
+    List<CommandResult> results = this.model.applyBatch(this.batch);
+    int next = 0;
+    for (PendingLine pending : this.pendingLines) {
+      if (pending.syntaxError) {
+        System.out.println("Line " + pending.line + " skipped due to invalid syntax");
+        continue;
+      }
+
+      switch (results.get(next++).getStatus()) {
+        case NOT_FOUND:
+          System.out.println("Line " + pending.line + " skipped because shape is not found");
+          break;
+        case DUPLICATE_ID:
+          System.out.println("Line " + pending.line
+                  + " skipped because shape with similar identifier already exists");
+          break;
+        default:
+      }
+    }
+    this.batch.clear();
+    this.pendingLines.clear();
+  }
+
+  /**
+   * Commit the transaction of the current block, if the parser began it.
+   */
+  private void endBlock() {
+    if (this.ownTransaction) {
+      this.ownTransaction = false;
+      this.transactions.commit();
+    }
+  }
+
+  /**
+   * Drop the queued lines of the current block and roll back what was applied of it, if the
+   * parser began its transaction.
+   */
+  private void abortBlock() {
+    this.batch.clear();
+    this.pendingLines.clear();
+    if (this.ownTransaction) {
+      this.ownTransaction = false;
+      this.transactions.rollback();
+    }
+  }
+
+  /**
+   * Queue a command of the current line.
+   *
+   * @param command command to be applied
+   */
+  private void queue(AlbumCommand command) {
+    this.batch.add(command);
+    this.pendingLines.add(new PendingLine(this.currentLine, false));
+  }
+
+  /**
+   * Queue a message that the current line has invalid syntax.
+   */
+  private void queueSyntaxError() {
+    this.pendingLines.add(new PendingLine(this.currentLine, true));
   }
 
   /**
@@ -97,7 +213,7 @@ public class FileToModelParser implements FileParser {
    *
    * @param instruction array representing arguments in instruction.
    */
-  private void takeModelSnapshot(String[] instruction) throws InterruptedException {
+  private void takeModelSnapshot(String[] instruction) {
     if (instruction.length >= 2) {
       String description = "";
 
@@ -106,9 +222,9 @@ public class FileToModelParser implements FileParser {
         description += instruction[i] + " ";
       }
       description = description.trim();
-      this.model.takeSnapshot(description);
+      this.queue(AlbumCommand.snapshot(description));
     } else {
-      this.model.takeSnapshot("");
+      this.queue(AlbumCommand.snapshot(""));
     }
   }
 
@@ -119,15 +235,11 @@ public class FileToModelParser implements FileParser {
    */
   private void removeShapeModel(String[] instruction) {
     if (instruction.length < LENGTH_REMOVE_COMMAND) {
-      System.out.println("Line " + this.currentLine + " skipped due to invalid syntax");
+      this.queueSyntaxError();
       return;
     }
     String id = instruction[1];
-    if (!model.containsShape(id)) {
-      System.out.println("Line " + this.currentLine + " skipped because shape is not found");
-    }
-    ;
-    model.removeShape(id);
+    this.queue(AlbumCommand.remove(id));
   }
 
   /**
@@ -137,21 +249,17 @@ public class FileToModelParser implements FileParser {
    */
   private void changeColorModelShape(String[] instruction) {
     if (instruction.length < LENGTH_COLOR_COMMAND) {
-      System.out.println("Line " + this.currentLine + " skipped due to invalid syntax");
+      this.queueSyntaxError();
       return;
     }
 
     String id = instruction[1];
-    if (!model.containsShape(id)) {
-      System.out.println("Line " + this.currentLine + " skipped because shape is not found");
-    }
-    ;
 
     double red = convertColor(Integer.parseInt(instruction[2]));
     double green = convertColor(Integer.parseInt(instruction[3]));
     double blue = convertColor(Integer.parseInt(instruction[4]));
 
-    model.changeShapeColor(id, new Color(red, green, blue));
+    this.queue(AlbumCommand.color(id, Color.of(red, green, blue)));
   }
 
   /**
@@ -161,21 +269,16 @@ public class FileToModelParser implements FileParser {
    */
   private void resizeModelShape(String[] instruction) {
     if (instruction.length < LENGTH_RESIZE_COMMAND) {
-      System.out.println("Line " + this.currentLine + " skipped due to invalid syntax");
+      this.queueSyntaxError();
       return;
     }
 
     String id = instruction[1];
-    if (!model.containsShape(id)) {
-      System.out.println("Line " + this.currentLine + " skipped because shape is not found");
-    }
-    ;
 
     double yDimension = Double.parseDouble(instruction[3]);
     double xDimension = Double.parseDouble(instruction[2]);
 
-    model.changeShapeXDimension(id, xDimension);
-    model.changeShapeYDimension(id, yDimension);
+    this.queue(AlbumCommand.resize(id, xDimension, yDimension));
   }
 
   /**
@@ -185,19 +288,15 @@ public class FileToModelParser implements FileParser {
    */
   private void moveModelShape(String[] instruction) {
     if (instruction.length < LENGTH_MOVE_COMMAND) {
-      System.out.println("Line " + this.currentLine + " skipped due to invalid syntax");
+      this.queueSyntaxError();
       return;
     }
     String id = instruction[1];
-    if (!model.containsShape(id)) {
-      System.out.println("Line " + this.currentLine + " skipped because shape is not found");
-    }
-    ;
 
     double xPosition = Double.parseDouble(instruction[2]);
     double yPosition = Double.parseDouble(instruction[3]);
 
-    model.moveShape(id, new Point2D(xPosition, yPosition));
+    this.queue(AlbumCommand.move(id, new Point2D(xPosition, yPosition)));
   }
 
   /**
@@ -207,17 +306,12 @@ public class FileToModelParser implements FileParser {
    */
   private void addShapeToModel(String[] instruction) {
     if (instruction.length < LENGTH_CREATE_COMMAND) {
-      System.out.println("Line " + this.currentLine + " skipped due to invalid syntax");
+      this.queueSyntaxError();
       return;
     }
 
     // get arguments for creating shape
     String id = instruction[1];
-    if (model.containsShape(id)) {
-      System.out.println("Line " + this.currentLine
-              + " skipped because shape with similar identifier already exists");
-    }
-    ;
 
     String type = instruction[2];
     double xPosition = Double.parseDouble(instruction[3]);
@@ -231,7 +325,7 @@ public class FileToModelParser implements FileParser {
 
     IShape shape = IShapeFactory.create(
             type, red, green, blue, xPosition, yPosition, xDimension, yDimension);
-    model.addShape(id, shape);
+    this.queue(AlbumCommand.add(id, shape));
   }
 
   /**
@@ -243,4 +337,23 @@ public class FileToModelParser implements FileParser {
   private double convertColor(int fileColorValue) {
     return (double) fileColorValue / FILE_COLOR_SCALE;
   }
-}
\ No newline at end of file
+
+  /**
+   * Parsed line waiting for its batch to be applied.
+   */
+  private static final class PendingLine {
+    private final int line;
+    private final boolean syntaxError;
+
+    /**
+     * Constructor.
+     *
+     * @param line        line number
+     * @param syntaxError true if line was skipped for invalid syntax, false if it holds a command
+     */
+    private PendingLine(int line, boolean syntaxError) {
+      this.line = line;
+      this.syntaxError = syntaxError;
+    }
+  }
+}
@@ -27,7 +27,7 @@ public class IShapeFactory {
                        double xPosition, double yPosition, double xDimension, double yDimension) {
     type = type.toLowerCase();
 
-    Color color = new Color(colorRed, colorBlue, colorGreen);
+    Color color = Color.of(colorRed, colorBlue, colorGreen);
     Point2D coordinate = new Point2D(xPosition, yPosition);
 
     switch (type) {
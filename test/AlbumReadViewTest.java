@@ -0,0 +1,187 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.AlbumReadView;
+import album.model.CompressedSnapshotStore;
+import album.model.ISnapshotStore;
+import album.model.OffHeapSnapshotStore;
+import album.model.PhotoAlbumImpl;
+import album.model.TieredSnapshotStore;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test class for AlbumReadView.
+ */
+public class AlbumReadViewTest {
+  private PhotoAlbumImpl album;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(1, 1), 10, 10));
+    album.takeSnapshot("first");
+  }
+
+  /**
+   * Test that a view does not change while the album does.
+   */
+  @Test
+  public void testStableView() {
+    final AlbumReadView view = album.openReadView();
+    String firstId = album.getSnapshot(0).getID();
+
+    album.moveShape("R", new Point2D(5, 5));
+    album.addShape("S", new Rectangle(new Color(0, 1, 0), new Point2D(2, 2), 3, 3));
+    album.takeSnapshot("second");
+    album.removeSnapshot(firstId);
+
+    assertEquals(1, view.getNumShapes());
+    assertNull(view.getShape("S"));
+    assertEquals(1, view.getShape("R").getCoordinate().getX(), 0);
+    assertEquals(1, view.getNumSnapshots());
+    assertEquals("first", view.getSnapshot(0).getDescription());
+    assertEquals(0, view.getSnapshotIndex(firstId));
+
+    try (AlbumReadView latest = album.openReadView()) {
+      assertTrue(latest.getEpoch() > view.getEpoch());
+      assertEquals("[R, S]", latest.getShapes().keySet().toString());
+      assertEquals(-1, latest.getSnapshotIndex(firstId));
+      assertEquals("second", latest.getSnapshot(0).getDescription());
+      assertEquals(2, album.getEpochManager().getPinnedReaders());
+    }
+
+    assertEquals(view.getEpoch(), album.getEpochManager().getOldestPinnedEpoch());
+    view.close();
+    view.close();
+    assertEquals(0, album.getEpochManager().getPinnedReaders());
+    assertEquals(-1, album.getEpochManager().getOldestPinnedEpoch());
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        view.getShapes();
+      }
+    });
+  }
+
+  /**
+   * Test that snapshots of a pinned version stay readable after reset, also off-heap.
+   */
+  @Test
+  public void testReset() {
+    album = new PhotoAlbumImpl(new OffHeapSnapshotStore());
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(1, 1), 10, 10));
+    album.takeSnapshot("first");
+
+    try (AlbumReadView view = album.openReadView()) {
+      album.reset();
+      assertEquals(0, album.getNumSnapshots());
+      assertEquals(1, view.getSnapshot(0).getShapes().size());
+    }
+  }
+
+  /**
+   * Test that a reader thread always sees a consistent version while the album is written:
+   * the writer takes one snapshot after every move, so the number of snapshots is always the
+   * x-coordinate of the shape or one less.
+   */
+  @Test
+  public void testConcurrentReader() throws InterruptedException {
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (running.get()) {
+          try (AlbumReadView view = album.openReadView()) {
+            double x = view.getShape("R").getCoordinate().getX();
+            int snapshots = view.getNumSnapshots();
+            if ((snapshots != (int) x) && (snapshots != (int) x - 1)) {
+              failure.set(snapshots + " snapshots at x = " + x);
+            }
+          }
+        }
+      }
+    });
+    reader.start();
+    for (int i = 2; i < 3000; i++) {
+      album.moveShape("R", new Point2D(i, 1));
+      album.takeSnapshot("step " + i);
+    }
+    running.set(false);
+    reader.join();
+
+    assertNull(failure.get());
+    assertEquals(0, album.getEpochManager().getPinnedReaders());
+  }
+
+  /**
+   * Test readers decoding and promoting cold snapshots of the tiered and compressed stores at
+   * once, while the album keeps taking snapshots: every snapshot read has the x-coordinate of its
+   * index.
+   */
+  @Test
+  public void testConcurrentColdReads() throws InterruptedException {
+    TieredSnapshotStore tiered = new TieredSnapshotStore(1);
+    ISnapshotStore[] stores = {tiered, new CompressedSnapshotStore(1)};
+    for (ISnapshotStore store : stores) {
+      final PhotoAlbumImpl cold = new PhotoAlbumImpl(store);
+      cold.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(0, 1), 20, 30));
+      cold.takeSnapshot("step 0");
+      for (int i = 1; i < 20; i++) {
+        cold.moveShape("R", new Point2D(i, 1));
+        cold.takeSnapshot("step " + i);
+      }
+
+      final AtomicBoolean running = new AtomicBoolean(true);
+      final AtomicReference<String> failure = new AtomicReference<String>();
+      List<Thread> readers = new ArrayList<Thread>();
+      for (int r = 0; r < 4; r++) {
+        final int offset = r * 5;
+        Thread reader = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            for (int n = offset; running.get(); n++) {
+              try (AlbumReadView view = cold.openReadView()) {
+                int index = n % view.getNumSnapshots();
+                double x = view.getSnapshot(index).getShapes().get("R").getCoordinate().getX();
+                if (x != index) {
+                  failure.set("snapshot " + index + " at x = " + x);
+                }
+              }
+            }
+          }
+        });
+        readers.add(reader);
+        reader.start();
+      }
+      for (int i = 20; i < 500; i++) {
+        cold.moveShape("R", new Point2D(i, 1));
+        cold.takeSnapshot("step " + i);
+      }
+      running.set(false);
+      for (Thread reader : readers) {
+        reader.join();
+      }
+
+      assertNull(failure.get());
+      assertEquals(500, cold.getNumSnapshots());
+    }
+    assertTrue(tiered.getHotSnapshots() <= 1);
+    tiered.close();
+  }
+}
@@ -0,0 +1,144 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.BloomFilter;
+import album.model.CompressedSnapshotStore;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.SnapshotImpl;
+import album.model.shapes.IShape;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Test class for BloomFilter and the shape filters of snapshots.
+ */
+public class BloomFilterTest {
+  private BloomFilter filter;
+
+  /**
+   * Set up test cases: a filter for 1000 identifiers at 1%, holding S0 to S999.
+   */
+  @Before
+  public void setUp() {
+    filter = new BloomFilter(1000, 0.01);
+    for (int i = 0; i < 1000; i++) {
+      filter.add("S" + i);
+    }
+  }
+
+  /**
+   * Test that added identifiers are always found and others rarely.
+   */
+  @Test
+  public void testMembership() {
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(filter.mightContain("S" + i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (filter.mightContain("T" + i)) {
+        falsePositives++;
+      }
+    }
+    // 1% of 100000, with room for chance
+    assertTrue(falsePositives < 1500);
+    assertEquals(0.01, filter.getExpectedFalsePositiveRate(), 0.002);
+    assertEquals(1000, filter.getCount());
+    assertEquals(7, filter.getHashCount());
+    assertEquals(0, filter.getBitCount() % 64);
+  }
+
+  /**
+   * Test that a lower rate takes more bits.
+   */
+  @Test
+  public void testRate() {
+    BloomFilter tight = new BloomFilter(1000, 0.0001);
+    // bits grow with the logarithm of the rate
+    assertEquals(2 * filter.getBitCount(), tight.getBitCount(), 64);
+    assertEquals(13, tight.getHashCount());
+    assertEquals(0.0001, tight.getFalsePositiveRate(), 0);
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        new BloomFilter(10, 1);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        new BloomFilter(0, 0.5);
+      }
+    });
+  }
+
+  /**
+   * Test snapshots of an album: frozen filters, membership queries that skip cold snapshots, and
+   * rebuilding after removals.
+   */
+  @Test
+  public void testAlbum() throws InterruptedException {
+    CompressedSnapshotStore store = new CompressedSnapshotStore(1);
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    album.setShapeFilterRate(0.001);
+    for (int s = 0; s < 10; s++) {
+      album.addShape("S" + s, new Rectangle(new Color(0, 0, 0), new Point2D(s, s), 1, 1));
+      album.takeSnapshot("snapshot " + s);
+    }
+    album.removeShape("S3");
+    album.takeSnapshot("without S3");
+
+    final ISnapshot first = album.getSnapshot(0);
+    assertTrue(first.getShapeFilter().isFrozen());
+    assertEquals(0.001, first.getShapeFilter().getFalsePositiveRate(), 0);
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() {
+        first.getShapeFilter().add("X");
+      }
+    });
+    assertFalse(first.mightContainShape("S5"));
+
+    long misses = store.getMisses();
+    assertEquals(Arrays.asList(album.getSnapshot(8).getID(), album.getSnapshot(9).getID(),
+            album.getSnapshot(10).getID()), album.findSnapshotsContaining("S8"));
+    // only the snapshots the filters let through were inflated
+    assertTrue(store.getMisses() - misses <= 3);
+    // S3 stays in the filter after its removal, so only reading the shapes rules it out
+    assertEquals(7, album.findSnapshotsContaining("S3").size());
+    assertEquals(0, album.findSnapshotsContaining("S99").size());
+
+    // many removed shapes fill the filter up, until it is rebuilt from the current shapes
+    for (int i = 0; i < 200; i++) {
+      album.addShape("T" + i, new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+      album.removeShape("T" + i);
+    }
+    ISnapshot rebuilt = album.takeSnapshot("rebuilt");
+    assertFalse(rebuilt.mightContainShape("S3"));
+    assertEquals(9, rebuilt.getShapeFilter().getCount());
+  }
+
+  /**
+   * Test snapshots without a filter, which answer membership exactly.
+   */
+  @Test
+  public void testNoFilter() {
+    LinkedHashMap<String, IShape> shapes = new LinkedHashMap<String, IShape>();
+    shapes.put("A", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+    ISnapshot snapshot = new SnapshotImpl(0, "plain", shapes);
+    assertNull(snapshot.getShapeFilter());
+    assertTrue(snapshot.mightContainShape("A"));
+    assertFalse(snapshot.mightContainShape("B"));
+  }
+}
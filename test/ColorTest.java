@@ -1,5 +1,6 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -94,30 +95,33 @@ public class ColorTest {
   }
 
   /**
-   * Test setRed.
+   * Test withRed.
    */
   @Test
-  public void testSetRed() {
-    color1.setRed(0.5);
-    assertEquals(color1.getRed(),0.5, delta);
+  public void testWithRed() {
+    Color changed = color1.withRed(0.5);
+    assertEquals(changed.getRed(),0.5, delta);
+    assertEquals(color1.toString(),"(1.0, 0.5, 0.0)");
   }
 
   /**
-   * Test setGreen.
+   * Test withGreen.
    */
   @Test
-  public void testSetGreen() {
-    color1.setGreen(0.7);
-    assertEquals(color1.getGreen(),0.7, delta);
+  public void testWithGreen() {
+    Color changed = color1.withGreen(0.7);
+    assertEquals(changed.getGreen(),0.7, delta);
+    assertEquals(color1.toString(),"(1.0, 0.5, 0.0)");
   }
 
   /**
-   * Test setBlue.
+   * Test withBlue.
    */
   @Test
-  public void testSetBlue() {
-    color1.setBlue(1);
-    assertEquals(color1.getBlue(),1, delta);
+  public void testWithBlue() {
+    Color changed = color1.withBlue(1);
+    assertEquals(changed.getBlue(),1, delta);
+    assertEquals(color1.toString(),"(1.0, 0.5, 0.0)");
   }
 
   /**
@@ -138,6 +142,19 @@ public class ColorTest {
 
     Color color3 = new Color(1,0.5,0);
     assertTrue(color1.equals(color3));
+    assertEquals(color1.hashCode(), color3.hashCode());
+
+    Color color4 = new Color(0.96,0.52,0.04);
+    assertTrue(color1.equals(color4));
+    assertEquals(color1.hashCode(), color4.hashCode());
+    assertFalse(color1.equals(new Color(1,0,0.5)));
+
+    // equal exactly when printed alike: 0.15 and 0.05 both print as 0.1
+    Color color5 = new Color(0.15, 0.05, 0.25);
+    assertEquals("(0.1, 0.1, 0.2)", color5.toString());
+    assertTrue(color5.equals(new Color(0.1, 0.1, 0.2)));
+    assertEquals(color5.hashCode(), new Color(0.1, 0.1, 0.2).hashCode());
+    assertFalse(color5.equals(new Color(0.2, 0.1, 0.2)));
   }
 
   /**
@@ -147,7 +164,23 @@ public class ColorTest {
   public void testCopy() {
     Color color4 = color1.copy();
     assertTrue(color1.equals(color4));
-    color1.setRed(0);
-    assertFalse(color1.equals(color4));
+    assertFalse(color1.withRed(0).equals(color4));
+  }
+
+  /**
+   * Test that of() returns canonical instances.
+   */
+  @Test
+  public void testOf() {
+    Color black = Color.of(0, 0, 0);
+    assertSame(black, Color.of(0, 0, 0));
+    assertSame(Color.of(1, 0.5, 0), color1.withRed(1));
+    assertTrue(color1.equals(Color.of(1, 0.5, 0)));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        Color.of(0, 0, 2);
+      }
+    });
   }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.ConcurrentPhotoAlbumImpl;
+import album.model.IPhotoAlbum;
+import album.model.ISnapshot;
+import album.model.InMemorySnapshotStore;
+import album.model.MonotonicIdGenerator;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.IShape;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for ConcurrentPhotoAlbumImpl.
+ */
+public class ConcurrentPhotoAlbumImplTest {
+  private IPhotoAlbum album1;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album1 = new ConcurrentPhotoAlbumImpl();
+    album1.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(100, 50), 10, 5));
+  }
+
+  /**
+   * Test that a single thread sees the same album as PhotoAlbumImpl.
+   */
+  @Test
+  public void testSameAsPhotoAlbumImpl() throws InterruptedException {
+    IPhotoAlbum expected = new PhotoAlbumImpl();
+    expected.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(100, 50), 10, 5));
+
+    for (IPhotoAlbum album : new IPhotoAlbum[]{expected, album1}) {
+      album.addShape("R", new Rectangle(new Color(0, 1, 0), new Point2D(1, 2), 3, 4));
+      album.takeSnapshot("first");
+      album.moveShape("O", new Point2D(5, 5));
+      album.changeShapeColor("R", new Color(0, 0, 1));
+      album.changeShapeXDimension("R", 7);
+      album.changeShapeYDimension("O", 8);
+      album.scaleShape("R", 2);
+      assertFalse(album.addShape("R", new Rectangle(new Color(0, 1, 0), new Point2D(1, 2), 3, 4)));
+      album.removeShape("O");
+      album.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(100, 50), 10, 5));
+      album.takeSnapshot("second");
+    }
+
+    assertEquals(expected.toString(), album1.toString());
+    assertEquals(expected.getNumSnapshots(), album1.getNumSnapshots());
+    for (int i = 0; i < expected.getNumSnapshots(); i++) {
+      assertEquals(expected.getSnapshot(i).getShapes().toString(),
+              album1.getSnapshot(i).getShapes().toString());
+    }
+    assertFalse(album1.moveShape("X", new Point2D(1, 1)));
+    assertFalse(album1.containsShape(null));
+    assertNull(album1.getShape("X"));
+
+    String id = album1.getSnapshot(0).getID();
+    assertEquals(0, album1.getSnapShotIndex(id));
+    assertTrue(album1.removeSnapshot(id));
+    assertEquals(1, album1.getAllSnapshots().size());
+    album1.clearShapes();
+    assertEquals(0, album1.getNumShapes());
+    album1.reset();
+    assertTrue(album1.isEmpty());
+  }
+
+  /**
+   * Test that a failed change leaves the shape untouched, and bad arguments.
+   */
+  @Test
+  public void testBadArguments() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album1.scaleShape("O", -1);
+      }
+    });
+    assertEquals(10, album1.getShape("O").getXDimension(), 0);
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album1.addShape("X", null);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        new ConcurrentPhotoAlbumImpl(new InMemorySnapshotStore(), new MonotonicIdGenerator(), 0);
+      }
+    });
+  }
+
+  /**
+   * Test that snapshots taken while other threads change shapes are consistent cuts: every
+   * writer moves its two shapes to the same x in order, so no snapshot may show the second
+   * shape ahead of the first or more than one step behind it.
+   */
+  @Test
+  public void testConsistentCuts() throws InterruptedException {
+    final int writers = 4;
+    final int steps = 2000;
+    final ConcurrentPhotoAlbumImpl album = new ConcurrentPhotoAlbumImpl();
+    for (int w = 0; w < writers; w++) {
+      album.addShape("A" + w, new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+      album.addShape("B" + w, new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+    }
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int w = 0; w < writers; w++) {
+      final String first = "A" + w;
+      final String second = "B" + w;
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 1; i <= steps; i++) {
+            album.moveShape(first, new Point2D(i, 0));
+            album.moveShape(second, new Point2D(i, 0));
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (int i = 0; i < 200; i++) {
+      album.takeSnapshot("cut " + i);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    album.takeSnapshot("last");
+
+    for (ISnapshot snapshot : album.getAllSnapshots().values()) {
+      Map<String, IShape> shapes = snapshot.getShapes();
+      assertEquals(2 * writers, shapes.size());
+      for (int w = 0; w < writers; w++) {
+        double lead = shapes.get("A" + w).getCoordinate().getX()
+                - shapes.get("B" + w).getCoordinate().getX();
+        assertTrue((lead == 0) || (lead == 1));
+      }
+    }
+    assertEquals(steps, album.getShape("B0").getCoordinate().getX(), 0);
+    assertEquals("A0", album.getSnapshot(0).getShapes().keySet().iterator().next());
+  }
+
+  /**
+   * Test that a snapshot is added to the store after the cut is released: a store that waits in
+   * add() for a change on another thread does not hold that change back.
+   */
+  @Test
+  public void testStoreAddOutsideCut() throws InterruptedException {
+    final CountDownLatch adding = new CountDownLatch(1);
+    final CountDownLatch moved = new CountDownLatch(1);
+    final boolean[] movedWhileAdding = new boolean[1];
+    InMemorySnapshotStore store = new InMemorySnapshotStore() {
+      @Override
+      public ISnapshot add(ISnapshot snapshot) throws IllegalArgumentException {
+        adding.countDown();
+        try {
+          movedWhileAdding[0] = moved.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.add(snapshot);
+      }
+    };
+    final ConcurrentPhotoAlbumImpl album =
+            new ConcurrentPhotoAlbumImpl(store, new MonotonicIdGenerator(), 4);
+    album.addShape("R", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+
+    Thread mover = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          adding.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        album.moveShape("R", new Point2D(5, 5));
+        moved.countDown();
+      }
+    });
+    mover.start();
+    ISnapshot snapshot = album.takeSnapshot("cut");
+    mover.join();
+
+    assertTrue(movedWhileAdding[0]);
+    assertEquals(0, snapshot.getShapes().get("R").getCoordinate().getX(), 0);
+    assertEquals(5, album.getShape("R").getCoordinate().getX(), 0);
+  }
+
+  /**
+   * Test that snapshots taken by several threads at once are stored in the order of their
+   * identifiers.
+   */
+  @Test
+  public void testConcurrentSnapshotOrder() throws InterruptedException {
+    final ConcurrentPhotoAlbumImpl album = new ConcurrentPhotoAlbumImpl();
+    album.addShape("R", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 200; i++) {
+            album.moveShape("R", new Point2D(i, 0));
+            album.takeSnapshot("step " + i);
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(800, album.getNumSnapshots());
+    for (int i = 1; i < album.getNumSnapshots(); i++) {
+      assertTrue(album.getSnapshot(i - 1).getStamp() < album.getSnapshot(i).getStamp());
+    }
+  }
+}
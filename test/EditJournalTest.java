@@ -0,0 +1,190 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.EditJournal;
+import album.model.PhotoAlbumImpl;
+import album.model.ShapePool;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for undo and redo through the EditJournal of PhotoAlbumImpl.
+ */
+public class EditJournalTest {
+  private PhotoAlbumImpl album;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(1, 1), 10, 10));
+    album.addShape("O", new Oval(new Color(0, 0, 1), new Point2D(5, 5), 2, 3));
+    album.addShape("T", new Oval(new Color(0, 1, 0), new Point2D(2, 2), 1, 1));
+    album.getJournal().clear();
+  }
+
+  /**
+   * Test undoing and redoing every kind of edit, with shapes keeping their positions.
+   */
+  @Test
+  public void testUndoRedo() {
+    List<String> states = new ArrayList<String>();
+    states.add(album.toString());
+    album.moveShape("R", new Point2D(7, 7));
+    states.add(album.toString());
+    album.changeShapeColor("O", new Color(0.5, 0.5, 0.5));
+    states.add(album.toString());
+    album.changeShapeXDimension("T", 4);
+    states.add(album.toString());
+    album.scaleShape("R", 2);
+    states.add(album.toString());
+    album.removeShape("O");
+    states.add(album.toString());
+    album.addShape("S", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+    states.add(album.toString());
+    album.clearShapes();
+    states.add(album.toString());
+
+    for (int i = states.size() - 2; i >= 0; i--) {
+      assertTrue(album.undo());
+      assertEquals(states.get(i), album.toString());
+    }
+    assertFalse(album.undo());
+
+    for (int i = 1; i < states.size(); i++) {
+      assertTrue(album.redo());
+      assertEquals(states.get(i), album.toString());
+    }
+    assertFalse(album.redo());
+  }
+
+  /**
+   * Test that a new edit drops the edits that could be redone.
+   */
+  @Test
+  public void testNewEditDropsRedo() {
+    album.moveShape("R", new Point2D(7, 7));
+    album.undo();
+    assertTrue(album.getJournal().canRedo());
+    album.scaleShape("O", 2);
+    assertFalse(album.getJournal().canRedo());
+    assertFalse(album.redo());
+  }
+
+  /**
+   * Test that the journal drops its oldest edits to stay under budget.
+   */
+  @Test
+  public void testBudget() {
+    EditJournal journal = album.getJournal();
+    long perMove = EditJournal.ESTIMATED_ENTRY_BYTES + 2 * ShapePool.ESTIMATED_SHAPE_BYTES;
+    journal.setBudget(3 * perMove);
+    assertTrue(journal.getBytes() <= journal.getBudget());
+
+    for (int i = 1; i <= 10; i++) {
+      album.moveShape("R", new Point2D(i, i));
+    }
+    assertEquals(3, journal.getSize());
+    assertEquals(3 * perMove, journal.getBytes());
+    assertTrue(album.undo());
+    assertTrue(album.undo());
+    assertTrue(album.undo());
+    assertFalse(album.undo());
+    assertEquals(new Point2D(7, 7), album.getShape("R").getCoordinate());
+
+    journal.setBudget(0);
+    assertEquals(0, journal.getSize());
+    assertFalse(album.redo());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.getJournal().setBudget(-1);
+      }
+    });
+  }
+
+  /**
+   * Test that a smaller budget drops undone edits from the newest end, so redo picks up where
+   * the album is.
+   */
+  @Test
+  public void testBudgetAfterUndo() {
+    EditJournal journal = album.getJournal();
+    long perMove = EditJournal.ESTIMATED_ENTRY_BYTES + 2 * ShapePool.ESTIMATED_SHAPE_BYTES;
+    for (int i = 1; i <= 4; i++) {
+      album.moveShape("R", new Point2D(i, i));
+    }
+    album.undo();
+    album.undo();
+    album.undo();
+    assertEquals(new Point2D(1, 1), album.getShape("R").getCoordinate());
+
+    journal.setBudget(2 * perMove);
+    assertEquals(2, journal.getSize());
+    assertTrue(album.redo());
+    assertEquals(new Point2D(2, 2), album.getShape("R").getCoordinate());
+    assertFalse(album.redo());
+    assertTrue(album.undo());
+    assertTrue(album.undo());
+    assertEquals(new Point2D(1, 1), album.getShape("R").getCoordinate());
+  }
+
+  /**
+   * Test that an edit over budget is dropped whole.
+   */
+  @Test
+  public void testEditOverBudget() {
+    album.getJournal().setBudget(2 * (EditJournal.ESTIMATED_ENTRY_BYTES
+            + ShapePool.ESTIMATED_SHAPE_BYTES));
+    album.clearShapes();
+    assertEquals(0, album.getJournal().getSize());
+    assertFalse(album.undo());
+    assertEquals(0, album.getNumShapes());
+  }
+
+  /**
+   * Test that rolled back edits leave the journal, and that undo waits for the transaction.
+   */
+  @Test
+  public void testTransaction() {
+    album.moveShape("R", new Point2D(7, 7));
+    String moved = album.toString();
+    album.begin();
+    album.removeShape("O");
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.undo();
+      }
+    });
+    album.rollback();
+
+    assertEquals(moved, album.toString());
+    assertTrue(album.undo());
+    assertEquals(new Point2D(1, 1), album.getShape("R").getCoordinate());
+    assertFalse(album.undo());
+  }
+
+  /**
+   * Test that undo keeps shape pool references balanced.
+   */
+  @Test
+  public void testPool() {
+    long references = album.getShapePool().getReferences();
+    album.removeShape("R");
+    album.undo();
+    assertEquals(references, album.getShapePool().getReferences());
+  }
+}
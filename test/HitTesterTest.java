@@ -0,0 +1,68 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.HitTester;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.Triangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test class for HitTester.
+ */
+public class HitTesterTest {
+  private HitTester tester;
+
+  /**
+   * Set up test cases: a background rectangle with an oval and a triangle painted over it.
+   */
+  @Before
+  public void setUp() {
+    PhotoAlbumImpl album = new PhotoAlbumImpl();
+    album.addShape("back", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 100, 100));
+    album.addShape("oval", new Oval(new Color(1, 0, 0), new Point2D(50, 50), 20, 10));
+    album.addShape("tri", new Triangle(new Color(0, 1, 0), new Point2D(40, 40), 20, 20));
+    ISnapshot snapshot = album.takeSnapshot("scene");
+    album.clearShapes();
+    tester = new HitTester(snapshot);
+  }
+
+  /**
+   * Test the topmost shape under points, following exact outlines.
+   */
+  @Test
+  public void testShapeAt() {
+    assertEquals("tri", tester.shapeAt(50, 50));
+    // inside the triangle's box and the oval, left of the triangle's edge
+    assertEquals("oval", tester.shapeAt(42, 45));
+    // inside the oval's box, outside the ellipse
+    assertEquals("back", tester.shapeAt(32, 42));
+    assertNull(tester.shapeAt(150, 150));
+  }
+
+  /**
+   * Test all shapes under a point, topmost first.
+   */
+  @Test
+  public void testShapesAt() {
+    assertEquals(Arrays.asList("tri", "oval", "back"), tester.shapesAt(50, 50));
+    assertEquals(Arrays.asList("back"), tester.shapesAt(5, 95));
+    assertEquals(Collections.emptyList(), tester.shapesAt(-1, 0));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        new HitTester(null);
+      }
+    });
+  }
+}
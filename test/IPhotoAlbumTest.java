@@ -3,9 +3,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import album.model.AlbumCommand;
+import album.model.CommandResult;
 import album.model.IPhotoAlbum;
 import album.model.ISnapshot;
 import album.model.PhotoAlbumImpl;
+import album.model.PhotoAlbumTableImpl;
 import album.model.shapes.component.Color;
 import album.model.shapes.IShape;
 import album.model.shapes.Oval;
@@ -13,6 +16,10 @@ import album.model.shapes.component.Point2D;
 import album.model.shapes.Rectangle;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Test class for interface IPhotoAlbum.
@@ -61,6 +68,31 @@ public class IPhotoAlbumTest {
                    "Center: (100.0, 50.0), X radius: 10.0, Y radius: 5.0, Color: (1.0, 0.0, 0.0)");
   }
 
+  /**
+   * Test that snapshots keep the shapes as they were when taken.
+   */
+  @Test
+  public void testSnapshotUnaffectedByLaterChanges() throws InterruptedException {
+    ISnapshot snap = album1.takeSnapshot("before");
+    album1.moveShape("O", new Point2D(1, 2));
+    album1.scaleShape("O", 3);
+    album1.addShape("R", shape2);
+    shape1.changeXDimension(99);
+
+    assertEquals(1, snap.getShapes().size());
+    assertEquals("Type: oval\n"
+            + "Center: (100.0, 50.0), X radius: 10.0, Y radius: 5.0, Color: (1.0, 0.0, 0.0)",
+            snap.getShapes().get("O").toString());
+    assertEquals("(1.0, 2.0)", album1.getShape("O").getCoordinate().toString());
+    assertEquals(30, album1.getShape("O").getXDimension(), 0.001);
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        snap.getShapes().remove("O");
+      }
+    });
+  }
+
   /**
    * Test printSnapshots().
    */
@@ -164,6 +196,21 @@ public class IPhotoAlbumTest {
     assertEquals(album1.getShape("O"), shape1);
   }
 
+  /**
+   * Test that changing a shape returned by getShape() leaves the album and its snapshots intact.
+   */
+  @Test
+  public void testGetShapeReturnsCopy() throws InterruptedException {
+    album1.takeSnapshot("before");
+    IShape shape = album1.getShape("O");
+    shape.move(new Point2D(0, 0));
+    shape.changeColor(new Color(0, 1, 0));
+    assertEquals("(100.0, 50.0)", album1.getShape("O").getCoordinate().toString());
+    assertEquals("(100.0, 50.0)",
+            album1.getSnapshot(0).getShapes().get("O").getCoordinate().toString());
+    assertEquals(shape1.getColor(), album1.getSnapshot(0).getShapes().get("O").getColor());
+  }
+
   /**
    * Test moveShape().
    */
@@ -259,4 +306,82 @@ public class IPhotoAlbumTest {
     assertEquals(album2.getNumSnapshots(),0);
   }
 
-}
\ No newline at end of file
+  /**
+   * Test applyBatch() on PhotoAlbumImpl and through the default implementation.
+   */
+  @Test
+  public void testApplyBatch() throws InterruptedException {
+    List<AlbumCommand> commands = new ArrayList<AlbumCommand>();
+    commands.add(AlbumCommand.add("R", shape2));
+    commands.add(AlbumCommand.add("O", shape2));
+    commands.add(AlbumCommand.move("O", new Point2D(1, 2)));
+    commands.add(AlbumCommand.resize("R", 3, 4));
+    commands.add(AlbumCommand.snapshot("batch"));
+    commands.add(AlbumCommand.color("X", new Color(0, 0, 0)));
+    commands.add(AlbumCommand.remove("O"));
+    commands.add(AlbumCommand.remove("O"));
+
+    IPhotoAlbum album3 = new PhotoAlbumTableImpl();
+    album3.addShape("O", shape1);
+    for (IPhotoAlbum album : new IPhotoAlbum[]{album1, album3}) {
+      List<CommandResult> results = album.applyBatch(commands);
+      assertEquals("[ADD R: OK, ADD O: DUPLICATE_ID, MOVE O: OK, RESIZE R: OK, SNAPSHOT: OK, "
+              + "COLOR X: NOT_FOUND, REMOVE O: OK, REMOVE O: NOT_FOUND]", results.toString());
+      assertEquals("(1.0, 2.0)",
+              results.get(4).getSnapshot().getShapes().get("O").getCoordinate().toString());
+      assertEquals(1, album.getNumShapes());
+      assertEquals(3, album.getShape("R").getXDimension(), 0);
+      assertEquals(4, album.getShape("R").getYDimension(), 0);
+    }
+
+    final List<AlbumCommand> bad = new ArrayList<AlbumCommand>();
+    bad.add(AlbumCommand.remove("R"));
+    bad.add(null);
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album1.applyBatch(bad);
+      }
+    });
+    assertTrue(album1.containsShape("R"));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        AlbumCommand.resize("R", 0, 1);
+      }
+    });
+  }
+
+  /**
+   * Test that a command failing in the middle of a batch leaves the album as it was.
+   */
+  @Test
+  public void testApplyBatchFailsWhole() throws InterruptedException {
+    // a shape type the album cannot store, which only fails once the batch is applied
+    IShape unsupported = new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1) {
+      @Override
+      public IShape getCopy() {
+        return this;
+      }
+    };
+    album1.addShape("R", shape2);
+    final List<AlbumCommand> commands = new ArrayList<AlbumCommand>();
+    commands.add(AlbumCommand.move("R", new Point2D(7, 7)));
+    commands.add(AlbumCommand.resize("R", 3, 4));
+    commands.add(AlbumCommand.snapshot("batch"));
+    commands.add(AlbumCommand.add("T", shape1));
+    commands.add(AlbumCommand.add("U", unsupported));
+    commands.add(AlbumCommand.remove("R"));
+
+    String before = album1.toString();
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album1.applyBatch(commands);
+      }
+    });
+    assertEquals(before, album1.toString());
+    assertEquals(2, album1.getNumShapes());
+    assertEquals(0, album1.getNumSnapshots());
+  }
+}
@@ -13,6 +13,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.function.Executable;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Test class for IShape.
  */
@@ -68,6 +71,31 @@ public class IShapeTest {
     });
   }
 
+  /**
+   * Test exact containment of each shape type.
+   */
+  @Test
+  public void testContains() {
+    // oval centered at (100, 50) with radii 10 and 5
+    assertTrue(shape1.contains(100, 50));
+    assertTrue(shape1.contains(110, 50));
+    assertTrue(shape1.contains(107, 53));
+    assertFalse(shape1.contains(108, 54));
+    assertFalse(shape1.contains(110, 55));
+
+    assertTrue(shape2.contains(20, 30));
+    assertTrue(shape2.contains(40, 70));
+    assertFalse(shape2.contains(40.1, 70));
+
+    // apex at (25, 0), base from (20, 10) to (30, 10)
+    IShape triangle = new Triangle(new Color(0, 0, 0), new Point2D(20, 0), 10, 10);
+    assertTrue(triangle.contains(25, 0));
+    assertTrue(triangle.contains(20, 10));
+    assertTrue(triangle.contains(23, 5));
+    assertFalse(triangle.contains(21, 5));
+    assertFalse(triangle.contains(25, 10.5));
+  }
+
   /**
    * Test getCoordinate.
    */
@@ -211,6 +239,20 @@ public class IShapeTest {
 
     IShape shape3 = new Oval(new Color(0.1, 0, 0.4), new Point2D(100,50), 10, 5);
     assertTrue(shape1.equals(shape3));
+    assertEquals(shape1.hashCode(), shape3.hashCode());
+    assertFalse(shape1.equals(null));
+
+    IShape shape4 = new Oval(new Color(0.1, 0, 0.4), new Point2D(100,50), 10, 5.01);
+    assertFalse(shape1.equals(shape4));
+    IShape shape5 = new Triangle(new Color(1,1,1), new Point2D(20,30), 20,40);
+    assertFalse(shape2.equals(shape5));
+    assertFalse(shape5.equals(shape2));
+
+    Set<IShape> shapes = new HashSet<IShape>();
+    shapes.add(shape1);
+    shapes.add(shape2);
+    assertTrue(shapes.contains(shape3));
+    assertFalse(shapes.contains(shape5));
   }
 
   /**
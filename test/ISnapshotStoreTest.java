@@ -0,0 +1,653 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.CompressedSnapshotStore;
+import album.model.DeltaSnapshotStore;
+import album.model.IPhotoAlbum;
+import album.model.ISnapshot;
+import album.model.ISnapshotStore;
+import album.model.InMemorySnapshotStore;
+import album.model.OffHeapSnapshotStore;
+import album.model.PhotoAlbumImpl;
+import album.model.SnapshotImpl;
+import album.model.TieredSnapshotStore;
+import album.model.shapes.IShape;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Test class for ISnapshotStore implementations.
+ */
+public class ISnapshotStoreTest {
+  private List<ISnapshotStore> stores;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    stores = new ArrayList<ISnapshotStore>();
+    stores.add(new InMemorySnapshotStore());
+    stores.add(new DeltaSnapshotStore(3));
+    stores.add(new OffHeapSnapshotStore(256));
+    stores.add(new TieredSnapshotStore(2));
+    stores.add(new CompressedSnapshotStore(2));
+  }
+
+  /**
+   * Close stores that hold resources.
+   */
+  @After
+  public void tearDown() {
+    for (ISnapshotStore store : stores) {
+      if (store instanceof TieredSnapshotStore) {
+        ((TieredSnapshotStore) store).close();
+      }
+    }
+  }
+
+  /**
+   * Build an album on a store and take a few snapshots.
+   * @param store snapshot store
+   * @return  album
+   */
+  private IPhotoAlbum buildAlbum(ISnapshotStore store) throws InterruptedException {
+    IPhotoAlbum album = new PhotoAlbumImpl(store);
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(10, 10), 20, 30));
+    album.addShape("O", new Oval(new Color(0, 0, 1), new Point2D(50, 50), 5, 5));
+    album.takeSnapshot("first");
+    for (int i = 1; i <= 7; i++) {
+      album.moveShape("R", new Point2D(10 + i, 10));
+      if (i == 3) {
+        album.removeShape("O");
+      }
+      if (i == 5) {
+        album.addShape("T", new Rectangle(new Color(0, 1, 0), new Point2D(1, 1), 2, 2));
+      }
+      album.takeSnapshot("step " + i);
+    }
+    return album;
+  }
+
+  /**
+   * Test that every store returns the same snapshots.
+   */
+  @Test
+  public void testSameContent() throws InterruptedException {
+    List<IPhotoAlbum> albums = new ArrayList<IPhotoAlbum>();
+    for (ISnapshotStore store : stores) {
+      albums.add(buildAlbum(store));
+    }
+
+    for (int i = 0; i < 8; i++) {
+      String expected = albums.get(0).getSnapshot(i).getShapes().toString();
+      for (IPhotoAlbum album : albums) {
+        ISnapshot snap = album.getSnapshot(i);
+        assertEquals(expected, snap.getShapes().toString());
+        assertEquals(i, album.getSnapShotIndex(snap.getID()));
+        assertEquals(snap.getShapes().toString(),
+                album.getSnapshot(snap.getID()).getShapes().toString());
+      }
+    }
+    assertEquals("{R=Type: rectangle\nMin corner: (13.0, 10.0), Width: 20.0, Height: 30.0, "
+            + "Color: (1.0, 0.0, 0.0)}", albums.get(1).getSnapshot(3).getShapes().toString());
+  }
+
+  /**
+   * Test that a shape put back by undo keeps its old place in every store.
+   */
+  @Test
+  public void testUndoKeepsOrder() throws InterruptedException {
+    for (ISnapshotStore store : stores) {
+      IPhotoAlbum album = new PhotoAlbumImpl(store);
+      for (String id : new String[] {"A", "B", "C"}) {
+        album.addShape(id, new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+      }
+      album.takeSnapshot("all");
+      album.removeShape("A");
+      album.takeSnapshot("without A");
+      assertTrue(album.undo());
+      album.takeSnapshot("undone");
+      assertEquals("[A, B, C]", album.getSnapshot(2).getShapes().keySet().toString());
+      assertEquals("[B, C]", album.getSnapshot(1).getShapes().keySet().toString());
+    }
+  }
+
+  /**
+   * Test that removing snapshots keeps the remaining ones intact.
+   */
+  @Test
+  public void testRemove() throws InterruptedException {
+    for (ISnapshotStore store : stores.subList(1, stores.size())) {
+      checkRemove(buildAlbum(new InMemorySnapshotStore()), buildAlbum(store));
+    }
+  }
+
+  /**
+   * Remove the same snapshots from two albums and compare what is left.
+   * @param expected  album on the reference store
+   * @param actual  album on the store under test
+   */
+  private void checkRemove(IPhotoAlbum expected, IPhotoAlbum actual)
+          throws InterruptedException {
+
+    for (int index : new int[]{3, 0, 5, 2}) {
+      String expectedId = expected.getSnapshot(index).getID();
+      String actualId = actual.getSnapshot(index).getID();
+      assertTrue(expected.removeSnapshot(expectedId));
+      assertTrue(actual.removeSnapshot(actualId));
+      assertNull(actual.getSnapshot(actualId));
+      assertEquals(-1, actual.getSnapShotIndex(actualId));
+    }
+
+    assertEquals(expected.getNumSnapshots(), actual.getNumSnapshots());
+    for (int i = 0; i < expected.getNumSnapshots(); i++) {
+      assertEquals(expected.getSnapshot(i).getShapes().toString(),
+              actual.getSnapshot(i).getShapes().toString());
+      assertEquals(expected.getSnapshot(i).getDescription(),
+              actual.getSnapshot(i).getDescription());
+      assertEquals(i, expected.getSnapShotIndex(expected.getSnapshot(i).getID()));
+      assertEquals(i, actual.getSnapShotIndex(actual.getSnapshot(i).getID()));
+    }
+
+    actual.moveShape("R", new Point2D(99, 99));
+    ISnapshot last = actual.takeSnapshot("last");
+    assertEquals(last.getShapes().toString(),
+            actual.getSnapshot(actual.getNumSnapshots() - 1).getShapes().toString());
+  }
+
+  /**
+   * Test that stores index snapshots without formatting their identifiers, and still find them by
+   * identifier, whether the identifier was formatted from a stamp or given.
+   */
+  @Test
+  public void testIdsNotFormatted() {
+    long stamp = Instant.parse("2022-10-30T01:30:00.25Z").getEpochSecond() * 1_000_000L + 250_000;
+    for (ISnapshotStore store : stores) {
+      final int[] formatted = new int[1];
+      ISnapshot stamped = new SnapshotImpl(stamp, "stamped", new LinkedHashMap<String, IShape>()) {
+        @Override
+        public String getID() {
+          formatted[0]++;
+          return super.getID();
+        }
+      };
+      store.add(stamped);
+      store.add(new SnapshotImpl("2022-10-30T01:30:00Z", "local", "given",
+              new LinkedHashMap<String, IShape>()));
+      assertEquals(0, formatted[0]);
+
+      assertEquals("stamped", store.get("2022-10-30T01:30:00.250Z").getDescription());
+      assertEquals(0, store.indexOf("2022-10-30T01:30:00.250Z"));
+      assertNull(store.get("2022-10-30T01:30:00.25Z"));
+      assertEquals("given", store.get("2022-10-30T01:30:00Z").getDescription());
+      assertEquals("local", store.get(1).getTimestamp());
+      assertEquals("2022-10-30T01:30:00.250Z", store.get(0).getID());
+      assertEquals(stamp, store.get(0).getStamp());
+      assertTrue(store.asMap().containsKey("2022-10-30T01:30:00.250Z"));
+      final ISnapshotStore current = store;
+      assertThrows(IllegalArgumentException.class, new Executable() {
+        @Override
+        public void execute() throws Throwable {
+          current.add(new SnapshotImpl("2022-10-30T01:30:00.250Z", "", "",
+                  new LinkedHashMap<String, IShape>()));
+        }
+      });
+      assertTrue(store.remove("2022-10-30T01:30:00.250Z"));
+      assertEquals(1, store.size());
+    }
+  }
+
+  /**
+   * Test keyframe spacing of the delta store.
+   */
+  @Test
+  public void testKeyframes() throws InterruptedException {
+    DeltaSnapshotStore store = new DeltaSnapshotStore(3);
+    buildAlbum(store);
+    assertEquals(3, store.getNumKeyframes());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        new DeltaSnapshotStore(0);
+      }
+    });
+  }
+
+  /**
+   * Test that a snapshot removed from the delta store is no longer reachable through the deltas
+   * that were taken after it.
+   */
+  @Test
+  public void testDeltaRemoveReleases() throws InterruptedException {
+    DeltaSnapshotStore store = new DeltaSnapshotStore(8);
+    IPhotoAlbum album = buildAlbum(store);
+    assertEquals(1, store.getNumKeyframes());
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < album.getNumSnapshots(); i++) {
+      expected.add(album.getSnapshot(i).getShapes().toString());
+    }
+
+    WeakReference<ISnapshot> removed = new WeakReference<ISnapshot>(album.getSnapshot(2));
+    WeakReference<ISnapshot> replaced = new WeakReference<ISnapshot>(album.getSnapshot(3));
+    album.removeSnapshot(album.getSnapshot(2).getID());
+    expected.remove(2);
+    assertEquals(2, store.getNumKeyframes());
+    for (int i = 0; i < album.getNumSnapshots(); i++) {
+      assertEquals(expected.get(i), album.getSnapshot(i).getShapes().toString());
+    }
+    assertTrue(collected(removed));
+    assertTrue(collected(replaced));
+  }
+
+  /**
+   * Run the garbage collector until a reference is cleared, or give up.
+   * @param reference reference
+   * @return  true if the referent was collected
+   */
+  private static boolean collected(WeakReference<?> reference) throws InterruptedException {
+    for (int i = 0; (i < 50) && (reference.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    return reference.get() == null;
+  }
+
+  /**
+   * Test that the shape pool stops holding the shapes of snapshots the store encoded, and still
+   * balances when those snapshots are removed or rolled back.
+   */
+  @Test
+  public void testReleasesEncodedShapes() throws InterruptedException {
+    for (ISnapshotStore store : stores) {
+      if (!store.releasesShapes()) {
+        continue;
+      }
+      PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+      album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(10, 10), 20, 30));
+      album.takeSnapshot("first");
+      album.moveShape("R", new Point2D(50, 50));
+      album.takeSnapshot("second");
+      album.moveShape("R", new Point2D(60, 60));
+      album.takeSnapshot("third");
+      album.takeSnapshot("fourth");
+
+      // the first two snapshots are encoded, so the pool only holds the current state
+      assertEquals(1, album.getShapePool().getUniqueShapes());
+      assertEquals("(10.0, 10.0)",
+              album.getSnapshot(0).getShapes().get("R").getCoordinate().toString());
+      assertEquals("(50.0, 50.0)",
+              album.getSnapshot(1).getShapes().get("R").getCoordinate().toString());
+
+      album.begin();
+      album.moveShape("R", new Point2D(70, 70));
+      album.takeSnapshot("rolled back");
+      album.rollback();
+      assertEquals(1, album.getShapePool().getUniqueShapes());
+      while (album.getNumSnapshots() > 0) {
+        assertTrue(album.removeSnapshot(album.getSnapshot(0).getID()));
+      }
+      assertEquals(1, album.getShapePool().getReferences());
+    }
+  }
+
+  /**
+   * Test that a shape only held by spilled or compressed snapshots leaves the heap, and that an
+   * album spilling or compressing its older snapshots retains much less heap than one keeping
+   * every snapshot in memory.
+   */
+  @Test
+  public void testSpillReleasesShapes() throws InterruptedException {
+    TieredSnapshotStore tiered = new TieredSnapshotStore(1);
+    ISnapshotStore[] cold = {tiered, new CompressedSnapshotStore(1)};
+    for (ISnapshotStore store : cold) {
+      PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+      album.getJournal().setBudget(0);
+      album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(10, 10), 20, 30));
+      album.takeSnapshot("first");
+      // the hot snapshot shares the pooled shape with the album
+      WeakReference<IShape> first =
+              new WeakReference<IShape>(album.getSnapshot(0).getShapes().get("R"));
+      album.moveShape("R", new Point2D(50, 50));
+      album.takeSnapshot("second");
+      assertTrue(collected(first));
+    }
+    tiered.close();
+
+    long inMemory = retainedHeap(new InMemorySnapshotStore());
+    tiered = new TieredSnapshotStore(2);
+    long spilled = retainedHeap(tiered);
+    tiered.close();
+    long compressed = retainedHeap(new CompressedSnapshotStore(2));
+    assertTrue(inMemory + " / " + spilled, spilled * 3 < inMemory);
+    assertTrue(inMemory + " / " + compressed, compressed * 3 < inMemory);
+  }
+
+  /**
+   * Measure the heap retained by an album of 40 snapshots, each moving all of its 500 shapes.
+   * @param store snapshot store
+   * @return  bytes retained
+   */
+  private static long retainedHeap(ISnapshotStore store) throws InterruptedException {
+    long base = usedHeap();
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    album.getJournal().setBudget(0);
+    for (int i = 0; i < 500; i++) {
+      album.addShape("S" + i, new Rectangle(new Color(0, 0, 1), new Point2D(i, 0), 10, 20));
+    }
+    for (int s = 1; s <= 40; s++) {
+      for (int i = 0; i < 500; i++) {
+        album.moveShape("S" + i, new Point2D(i, s));
+      }
+      album.takeSnapshot("snapshot " + s);
+    }
+    long retained = usedHeap() - base;
+    assertEquals(40, album.getNumSnapshots());
+    return retained;
+  }
+
+  /**
+   * Measure the heap in use after collecting garbage.
+   * @return  bytes in use
+   */
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Test that the off-heap store keeps exact values and releases memory on clear().
+   */
+  @Test
+  public void testOffHeap() throws InterruptedException {
+    final OffHeapSnapshotStore store = new OffHeapSnapshotStore(256);
+    IPhotoAlbum album = new PhotoAlbumImpl(store);
+    album.addShape("Oval\u00e9",
+            new Oval(new Color(0.123456789, 0.5, 1), new Point2D(1.5, 1e9), 3, 4));
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 2, 2));
+    final ISnapshot snap = album.takeSnapshot("exact");
+
+    IShape oval = snap.getShapes().get("Oval\u00e9");
+    assertEquals(0.123456789, oval.getColor().getRed(), 0);
+    assertEquals(1e9, oval.getCoordinate().getY(), 0);
+    assertEquals(4, oval.getYDimension(), 0);
+    assertNull(snap.getShapes().get("missing"));
+    assertEquals("[Oval\u00e9, R]", snap.getShapes().keySet().toString());
+    assertTrue(store.getOffHeapBytes() > 0);
+
+    store.close();
+    assertEquals(0, store.getOffHeapBytes());
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        snap.getShapes();
+      }
+    });
+  }
+
+  /**
+   * Test that removing snapshots one by one compacts the off-heap store once removed regions take
+   * more than half of it, keeping snapshots handed out before readable.
+   */
+  @Test
+  public void testOffHeapCompaction() throws InterruptedException {
+    OffHeapSnapshotStore store = new OffHeapSnapshotStore(256);
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    album.addShape("R", new Rectangle(new Color(0, 0, 1), new Point2D(0, 0), 10, 20));
+    album.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(5, 5), 3, 4));
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 10; i++) {
+      album.moveShape("R", new Point2D(i, i));
+      expected.add(album.takeSnapshot("step " + i).getShapes().toString());
+    }
+    ISnapshot oldest = album.getSnapshot(0);
+    long allocated = store.getOffHeapBytes();
+
+    // the regions are all the same size, and the sixth of ten removed compacts the store
+    for (int i = 0; i < 6; i++) {
+      assertEquals(0, store.getCompactions());
+      assertTrue(album.removeSnapshot(album.getSnapshot(0).getID()));
+      assertTrue(store.getRemovedBytes() * 2 <= store.getOffHeapBytes());
+    }
+    assertEquals(1, store.getCompactions());
+    assertEquals(0, store.getRemovedBytes());
+    assertEquals(allocated * 4 / 10, store.getOffHeapBytes());
+    assertEquals(expected.get(0), oldest.getShapes().toString());
+    assertEquals(4, album.getNumSnapshots());
+    for (int i = 0; i < album.getNumSnapshots(); i++) {
+      assertEquals(expected.get(6 + i), album.getSnapshot(i).getShapes().toString());
+    }
+    store.close();
+  }
+
+  /**
+   * Test that the off-heap store only counts a region as removed once no neighbour shares it, and
+   * keeps sharing the latest region with the next equal snapshot after compacting.
+   */
+  @Test
+  public void testOffHeapCompactionShared() throws InterruptedException {
+    OffHeapSnapshotStore store = new OffHeapSnapshotStore(256);
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    album.setCollapseDuplicates(true);
+    album.addShape("R", new Rectangle(new Color(0, 0, 1), new Point2D(0, 0), 10, 20));
+    album.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(5, 5), 3, 4));
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 10; i++) {
+      album.moveShape("R", new Point2D(i, i));
+      album.takeSnapshot("step " + i);
+      album.takeSnapshot("same " + i);
+      expected.add(album.getSnapshot(2 * i).getShapes().toString());
+    }
+    ISnapshot oldest = album.getSnapshot(0);
+    long allocated = store.getOffHeapBytes();
+
+    // the second snapshot of each pair shares its region, so removing it frees nothing
+    assertTrue(album.removeSnapshot(album.getSnapshot(1).getID()));
+    assertEquals(0, store.getRemovedBytes());
+    // the regions are all the same size, and the sixth of ten freed compacts the store
+    for (int i = 0; i < 11; i++) {
+      assertEquals(0, store.getCompactions());
+      assertTrue(album.removeSnapshot(album.getSnapshot(0).getID()));
+      assertTrue(store.getRemovedBytes() * 2 <= store.getOffHeapBytes());
+    }
+    assertEquals(1, store.getCompactions());
+    assertEquals(0, store.getRemovedBytes());
+    assertEquals(allocated * 4 / 10, store.getOffHeapBytes());
+    assertEquals(expected.get(0), oldest.getShapes().toString());
+    assertEquals(8, album.getNumSnapshots());
+    for (int i = 0; i < album.getNumSnapshots(); i++) {
+      assertEquals(expected.get(6 + i / 2), album.getSnapshot(i).getShapes().toString());
+    }
+
+    // the latest region is still shared with the next equal snapshot after compacting
+    long compacted = store.getOffHeapBytes();
+    album.takeSnapshot("same again");
+    assertEquals(compacted, store.getOffHeapBytes());
+    store.close();
+  }
+
+  /**
+   * Test that stored snapshots keep their fingerprints, and that an album collapsing duplicates
+   * lets the off-heap store share one region between equal consecutive snapshots.
+   */
+  @Test
+  public void testCollapseDuplicates() throws InterruptedException {
+    IPhotoAlbum expected = buildAlbum(new InMemorySnapshotStore());
+    for (ISnapshotStore store : stores) {
+      IPhotoAlbum album = buildAlbum(store);
+      for (int i = 0; i < expected.getNumSnapshots(); i++) {
+        assertEquals(expected.getSnapshot(i).getFingerprint(),
+                album.getSnapshot(i).getFingerprint());
+        assertTrue(expected.getSnapshot(i).hasSameShapes(album.getSnapshot(i)));
+      }
+    }
+
+    OffHeapSnapshotStore store = new OffHeapSnapshotStore(256);
+    PhotoAlbumImpl album = new PhotoAlbumImpl(store);
+    album.setCollapseDuplicates(true);
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(10, 10), 20, 30));
+    ISnapshot first = album.takeSnapshot("first");
+    long bytes = store.getOffHeapBytes();
+    // an edit that is undone before the next snapshot leaves nothing new to store
+    album.moveShape("R", new Point2D(0, 0));
+    album.moveShape("R", new Point2D(10, 10));
+    ISnapshot second = album.takeSnapshot("second");
+    assertEquals(bytes, store.getOffHeapBytes());
+    assertTrue(first.hasSameShapes(second));
+    assertEquals("second", second.getDescription());
+
+    album.moveShape("R", new Point2D(0, 0));
+    album.takeSnapshot("third");
+    assertTrue(store.getOffHeapBytes() > bytes);
+    assertFalse(second.hasSameShapes(album.getSnapshot(2)));
+
+    // changes below the precision shapes are printed with still show when drawn
+    bytes = store.getOffHeapBytes();
+    album.changeShapeColor("R", new Color(245 / 255.0, 0, 0));
+    album.moveShape("R", new Point2D(0.04, 0));
+    ISnapshot fine = album.takeSnapshot("fine");
+    assertTrue(store.getOffHeapBytes() > bytes);
+    assertEquals(245 / 255.0, fine.getShapes().get("R").getColor().getRed(), 0);
+    assertEquals(0.04, fine.getShapes().get("R").getCoordinate().getX(), 0);
+    assertFalse(fine.hasSameShapes(album.getSnapshot(2)));
+
+    album.setCollapseDuplicates(false);
+    bytes = store.getOffHeapBytes();
+    album.moveShape("R", new Point2D(1, 1));
+    album.moveShape("R", new Point2D(0, 0));
+    album.takeSnapshot("fourth");
+    assertTrue(store.getOffHeapBytes() > bytes);
+    store.close();
+  }
+
+  /**
+   * Test the hot and cold tiers of the tiered store and its counters.
+   */
+  @Test
+  public void testTiered() throws InterruptedException, IOException {
+    File file = File.createTempFile("tiered", ".spill");
+    TieredSnapshotStore store = new TieredSnapshotStore(2, true, file);
+    IPhotoAlbum album = buildAlbum(store);
+    IPhotoAlbum expected = buildAlbum(new InMemorySnapshotStore());
+
+    assertEquals(2, store.getHotSnapshots());
+    assertEquals(6, store.getSpills());
+    assertTrue(file.length() > 0);
+    assertEquals(expected.getSnapshot(0).getShapes(), album.getSnapshot(0).getShapes());
+    assertEquals(1, store.getMisses());
+    assertEquals(expected.getSnapshot(0).getShapes(), album.getSnapshot(0).getShapes());
+    assertEquals(1, store.getHits());
+    // promoting the first snapshot pushed out the oldest hot one, spilling it for the first time
+    assertEquals(2, store.getHotSnapshots());
+    assertEquals(7, store.getSpills());
+    assertEquals(expected.getSnapshot(6).getShapes(), album.getSnapshot(6).getShapes());
+    assertEquals(2, store.getMisses());
+    assertEquals(8, store.getSpills());
+    // the first snapshot was spilled already, so pushing it out again writes nothing
+    assertEquals(expected.getSnapshot(7).getShapes(), album.getSnapshot(7).getShapes());
+    assertEquals(3, store.getMisses());
+    assertEquals(8, store.getSpills());
+
+    TieredSnapshotStore scanning = new TieredSnapshotStore(2, false, null);
+    album = buildAlbum(scanning);
+    for (int i = 0; i < 8; i++) {
+      assertEquals(expected.getSnapshot(i).getShapes(), album.getSnapshot(i).getShapes());
+    }
+    assertEquals(6, scanning.getMisses());
+    assertEquals(2, scanning.getHits());
+    assertEquals(2, scanning.getHotSnapshots());
+
+    store.close();
+    scanning.close();
+    assertTrue(file.delete());
+  }
+
+  /**
+   * Test the compressed store: its cold tier, metrics and compression levels.
+   */
+  @Test
+  public void testCompressed() throws InterruptedException {
+    CompressedSnapshotStore store = new CompressedSnapshotStore(2, true, Deflater.BEST_SPEED);
+    IPhotoAlbum album = buildAlbum(store);
+    IPhotoAlbum expected = buildAlbum(new InMemorySnapshotStore());
+
+    assertEquals(2, store.getHotSnapshots());
+    assertEquals(6, store.getCompressions());
+    assertTrue(store.getCompressionRatio() > 1);
+    assertTrue(store.getCompressedBytes() < store.getEncodedBytes());
+    assertEquals(0, store.getAverageInflateNanos(), 0);
+
+    assertEquals(expected.getSnapshot(0).getShapes(), album.getSnapshot(0).getShapes());
+    assertEquals(expected.getSnapshot(0).getShapes(), album.getSnapshot(0).getShapes());
+    assertEquals(1, store.getMisses());
+    assertEquals(1, store.getHits());
+    assertEquals(7, store.getCompressions());
+    assertTrue(store.getInflateNanos() > 0);
+
+    // removing a compressed snapshot releases its bytes
+    long compressed = store.getCompressedBytes();
+    assertTrue(album.removeSnapshot(album.getSnapshot(1).getID()));
+    assertTrue(store.getCompressedBytes() < compressed);
+    store.clear();
+    assertEquals(0, store.getCompressedBytes());
+    assertEquals(1.0, store.getCompressionRatio(), 0);
+
+    CompressedSnapshotStore scanning = new CompressedSnapshotStore(1, false, 9);
+    album = buildAlbum(scanning);
+    for (int i = 0; i < 8; i++) {
+      assertEquals(expected.getSnapshot(i).getShapes(), album.getSnapshot(i).getShapes());
+    }
+    assertEquals(7, scanning.getMisses());
+    assertEquals(1, scanning.getHotSnapshots());
+
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        new CompressedSnapshotStore(1, true, 10);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        new CompressedSnapshotStore(0);
+      }
+    });
+  }
+
+  /**
+   * Test snapshot map view and clear().
+   */
+  @Test
+  public void testViewAndClear() throws InterruptedException {
+    for (ISnapshotStore store : stores) {
+      IPhotoAlbum album = buildAlbum(store);
+      assertEquals(8, album.getAllSnapshots().size());
+      assertEquals("first", album.getAllSnapshots().values().iterator().next().getDescription());
+      album.reset();
+      assertEquals(0, store.size());
+      assertTrue(album.isEmpty());
+    }
+  }
+}
@@ -1,6 +1,10 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import album.model.ISnapshot;
+import album.model.ISnapshotIdGenerator;
+import album.model.MonotonicIdGenerator;
 import album.model.SnapshotImpl;
 import album.model.shapes.IShape;
 import album.model.shapes.Oval;
@@ -9,8 +13,14 @@ import album.model.shapes.component.Point2D;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Test class for ISnapshot.
@@ -76,4 +86,80 @@ public class ISnapshotTest {
             "Type: oval\n" + "Center: (100.0, 50.0), X radius: 10.0, Y radius: 5.0, "
                     + "Color: (0.1, 0.0, 0.4)");
   }
-}
\ No newline at end of file
+
+  /**
+   * Test snapshots identified by a stamp.
+   */
+  @Test
+  public void testStampConstructor() {
+    LocalDateTime time = LocalDateTime.of(2022, 3, 30, 11, 51, 2, 247794000);
+    long seconds = time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    ISnapshot snap2 = new SnapshotImpl(seconds * 1_000_000L + 247794, "test",
+            new LinkedHashMap<String, IShape>());
+
+    assertEquals(time.atZone(ZoneId.systemDefault()).toInstant().toString(), snap2.getID());
+    assertEquals("30-03-2022 11:51:02", snap2.getTimestamp());
+    assertEquals(seconds * 1_000_000L + 247794, snap2.getStamp());
+
+    // identifiers are UTC instants, so they stay apart when local clocks are set back
+    long stamp = Instant.parse("2022-10-30T00:30:00Z").getEpochSecond() * 1_000_000L;
+    assertEquals("2022-10-30T00:30:00Z",
+            new SnapshotImpl(stamp, "", new LinkedHashMap<String, IShape>()).getID());
+    assertEquals("2022-10-30T01:30:00.000001Z",
+            new SnapshotImpl(stamp + 3_600_000_001L, "", new LinkedHashMap<String, IShape>())
+                    .getID());
+    assertEquals(ISnapshot.NO_STAMP, snap1.getStamp());
+  }
+
+  /**
+   * Test that the monotonic generator hands out unique, increasing stamps on a stopped clock.
+   */
+  @Test
+  public void testMonotonicIdGenerator() {
+    ISnapshotIdGenerator generator = new MonotonicIdGenerator(
+            Clock.fixed(Instant.parse("2022-03-30T11:51:02Z"), ZoneId.of("UTC")));
+    Set<String> ids = new HashSet<String>();
+    long last = Long.MIN_VALUE;
+    for (int i = 0; i < 1000; i++) {
+      long stamp = generator.nextStamp();
+      assertTrue(stamp > last);
+      last = stamp;
+      ids.add(new SnapshotImpl(stamp, "", new LinkedHashMap<String, IShape>()).getID());
+    }
+    assertEquals(1000, ids.size());
+  }
+
+  /**
+   * Test fingerprints and hasSameShapes().
+   */
+  @Test
+  public void testFingerprint() {
+    Map<String, IShape> map = new LinkedHashMap<String, IShape>();
+    map.put("O", new Oval(new Color(0.1, 0, 0.4), new Point2D(100, 50), 10, 5));
+    ISnapshot same = new SnapshotImpl(1, "same", map);
+    assertEquals(snap1.getFingerprint(), same.getFingerprint());
+    assertTrue(snap1.hasSameShapes(same));
+    assertTrue(snap1.hasSameShapes(snap1));
+
+    map.put("P", new Oval(new Color(0.1, 0, 0.4), new Point2D(0, 0), 10, 5));
+    ISnapshot more = new SnapshotImpl(2, "more", map);
+    assertTrue(snap1.getFingerprint() != more.getFingerprint());
+    assertFalse(snap1.hasSameShapes(more));
+
+    // same shapes in another paint order
+    Map<String, IShape> reversed = new LinkedHashMap<String, IShape>();
+    reversed.put("P", map.get("P"));
+    reversed.put("O", map.get("O"));
+    ISnapshot swapped = new SnapshotImpl(3, "swapped", reversed);
+    assertEquals(more.getFingerprint(), swapped.getFingerprint());
+    assertFalse(more.hasSameShapes(swapped));
+
+    // equal to one decimal place, but drawn differently
+    Map<String, IShape> close = new LinkedHashMap<String, IShape>();
+    close.put("O", new Oval(new Color(0.1, 0, 0.42), new Point2D(100.04, 50), 10, 5));
+    ISnapshot nearly = new SnapshotImpl(4, "nearly", close);
+    assertEquals(snap1.getShapes(), nearly.getShapes());
+    assertTrue(snap1.getFingerprint() != nearly.getFingerprint());
+    assertFalse(snap1.hasSameShapes(nearly));
+  }
+}
@@ -0,0 +1,199 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.AlbumReadView;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import album.util.FileToModelParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Test class for ITransactional, as implemented by PhotoAlbumImpl.
+ */
+public class ITransactionalTest {
+  private PhotoAlbumImpl album;
+  private String before;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(1, 1), 10, 10));
+    album.addShape("O", new Oval(new Color(0, 0, 1), new Point2D(5, 5), 2, 3));
+    album.takeSnapshot("base");
+    before = album.toString();
+  }
+
+  /**
+   * Test that rollback restores shapes, order and snapshots.
+   */
+  @Test
+  public void testRollback() {
+    int uniqueShapes = album.getShapePool().getUniqueShapes();
+    long references = album.getShapePool().getReferences();
+
+    album.begin();
+    assertTrue(album.inTransaction());
+    album.moveShape("R", new Point2D(7, 7));
+    album.removeShape("R");
+    album.addShape("R", new Rectangle(new Color(0, 1, 0), new Point2D(2, 2), 1, 1));
+    album.scaleShape("O", 3);
+    album.addShape("T", new Oval(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+    album.takeSnapshot("inside");
+    album.clearShapes();
+    assertEquals(2, album.getNumSnapshots());
+    album.rollback();
+
+    assertFalse(album.inTransaction());
+    assertEquals(before, album.toString());
+    assertEquals(1, album.getNumSnapshots());
+    assertEquals(uniqueShapes, album.getShapePool().getUniqueShapes());
+    assertEquals(references, album.getShapePool().getReferences());
+  }
+
+  /**
+   * Test that commit keeps the edits and publishes them to readers only at the end.
+   */
+  @Test
+  public void testCommit() {
+    long epoch = album.getEpochManager().getCurrentEpoch();
+    album.begin();
+    album.moveShape("R", new Point2D(7, 7));
+    album.takeSnapshot("inside");
+    try (AlbumReadView view = album.openReadView()) {
+      assertEquals(epoch, view.getEpoch());
+      assertEquals(1, view.getNumSnapshots());
+    }
+    album.commit();
+
+    try (AlbumReadView view = album.openReadView()) {
+      assertEquals(7, view.getShape("R").getCoordinate().getX(), 0);
+      assertEquals(2, view.getNumSnapshots());
+    }
+    assertEquals(7, album.getShape("R").getCoordinate().getX(), 0);
+  }
+
+  /**
+   * Test misuse of transactions.
+   */
+  @Test
+  public void testIllegalState() {
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.commit();
+      }
+    });
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.rollback();
+      }
+    });
+    album.begin();
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.begin();
+      }
+    });
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.reset();
+      }
+    });
+    assertThrows(IllegalStateException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.removeSnapshot(album.getSnapshot(0).getID());
+      }
+    });
+  }
+
+  /**
+   * Test that the parser rolls back the block holding a malformed line.
+   */
+  @Test
+  public void testParserRollsBackBlock() throws IOException, InterruptedException {
+    File file = File.createTempFile("instructions", ".txt");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("shape A rectangle 10 10 5 5 255 0 0\n"
+              + "snapshot first\n"
+              + "move A 20 20\n"
+              + "shape B oval 10 10 5 5 0 0 0\n"
+              + "move B x 20\n"
+              + "snapshot second\n");
+    }
+
+    final PhotoAlbumImpl parsed = new PhotoAlbumImpl();
+    final FileToModelParser parser = new FileToModelParser(parsed, file);
+    assertThrows(NumberFormatException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        parser.parse();
+      }
+    });
+    assertFalse(parsed.inTransaction());
+    assertEquals(1, parsed.getNumSnapshots());
+    assertEquals(1, parsed.getNumShapes());
+    assertEquals(10, parsed.getShape("A").getCoordinate().getX(), 0);
+  }
+
+  /**
+   * Test that the parser leaves a transaction opened by its caller to the caller.
+   */
+  @Test
+  public void testParserInCallerTransaction() throws IOException, InterruptedException {
+    File file = File.createTempFile("instructions", ".txt");
+    file.deleteOnExit();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("shape A rectangle 10 10 5 5 255 0 0\n"
+              + "snapshot first\n"
+              + "move A 20 20\n");
+    }
+
+    final PhotoAlbumImpl parsed = new PhotoAlbumImpl();
+    parsed.addShape("C", new Oval(new Color(0, 0, 1), new Point2D(1, 1), 1, 1));
+    parsed.begin();
+    parsed.removeShape("C");
+    new FileToModelParser(parsed, file).parse();
+    assertTrue(parsed.inTransaction());
+    assertEquals(20, parsed.getShape("A").getCoordinate().getX(), 0);
+    parsed.rollback();
+    assertEquals(0, parsed.getNumSnapshots());
+    assertEquals(1, parsed.getNumShapes());
+    assertTrue(parsed.containsShape("C"));
+
+    // a failing line inside the caller's transaction leaves the caller's work to the caller
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("move C x 20\n");
+    }
+    final FileToModelParser failing = new FileToModelParser(parsed, file);
+    parsed.begin();
+    parsed.moveShape("C", new Point2D(5, 5));
+    assertThrows(NumberFormatException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        failing.parse();
+      }
+    });
+    assertTrue(parsed.inTransaction());
+    assertEquals(5, parsed.getShape("C").getCoordinate().getX(), 0);
+    parsed.commit();
+  }
+}
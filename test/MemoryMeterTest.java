@@ -0,0 +1,123 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.IMemoryBudgetListener;
+import album.model.ISnapshot;
+import album.model.MemoryMeter;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for the memory estimates and budget of PhotoAlbumImpl.
+ */
+public class MemoryMeterTest {
+  private PhotoAlbumImpl album;
+  private long shape;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    shape = MemoryMeter.estimateShape("R1");
+    for (int i = 1; i <= 3; i++) {
+      album.addShape("R" + i, new Rectangle(new Color(0, 0, 0), new Point2D(i, i), 1, 1));
+    }
+  }
+
+  /**
+   * Test shape and snapshot estimates as the album changes.
+   */
+  @Test
+  public void testEstimates() {
+    assertEquals(3 * shape, album.getEstimatedBytes());
+    assertEquals(shape, album.getEstimatedShapeBytes("R1"));
+    assertEquals(0, album.getEstimatedShapeBytes("X"));
+
+    ISnapshot first = album.takeSnapshot("s");
+    long snapshot = MemoryMeter.SNAPSHOT_BYTES + MemoryMeter.STRING_BYTES + 2;
+    assertEquals(snapshot, album.getEstimatedSnapshotBytes(first.getID()));
+    assertEquals(3 * shape + snapshot, album.getEstimatedBytes());
+
+    // only the first change of a shape after the snapshot leaves an entry to it
+    album.moveShape("R1", new Point2D(9, 9));
+    album.moveShape("R1", new Point2D(8, 8));
+    album.removeShape("R2");
+    assertEquals(snapshot + 2 * shape, album.getEstimatedSnapshotBytes(first.getID()));
+    assertEquals(2 * shape, album.getMemoryMeter().getShapeBytes());
+
+    // a shape added after the snapshot is not in it
+    album.addShape("R4", new Rectangle(new Color(0, 0, 0), new Point2D(1, 1), 1, 1));
+    album.removeShape("R4");
+    assertEquals(snapshot + 2 * shape, album.getEstimatedSnapshotBytes(first.getID()));
+
+    album.removeSnapshot(first.getID());
+    assertEquals(-1, album.getEstimatedSnapshotBytes(first.getID()));
+    assertEquals(2 * shape, album.getEstimatedBytes());
+    assertEquals(first.getEstimatedBytes(), snapshot + 3 * shape);
+  }
+
+  /**
+   * Test that rollback gives back the estimate of the transaction.
+   */
+  @Test
+  public void testRollback() {
+    long before = album.getEstimatedBytes();
+    album.begin();
+    album.addShape("R4", new Rectangle(new Color(0, 0, 0), new Point2D(1, 1), 1, 1));
+    album.removeShape("R1");
+    album.takeSnapshot("inside");
+    album.rollback();
+    assertEquals(before, album.getEstimatedBytes());
+  }
+
+  /**
+   * Test that the budget listener is called when the estimate goes over, once per crossing.
+   */
+  @Test
+  public void testBudget() {
+    final List<Long> calls = new ArrayList<Long>();
+    album.getMemoryMeter().setBudget(4 * shape, new IMemoryBudgetListener() {
+      @Override
+      public void budgetExceeded(long totalBytes, long budget) {
+        calls.add(totalBytes);
+      }
+    });
+    assertFalse(album.getMemoryMeter().isOverBudget());
+
+    album.addShape("R4", new Rectangle(new Color(0, 0, 0), new Point2D(1, 1), 1, 1));
+    assertTrue(calls.isEmpty());
+    album.addShape("R5", new Rectangle(new Color(0, 0, 0), new Point2D(1, 1), 1, 1));
+    album.addShape("R6", new Rectangle(new Color(0, 0, 0), new Point2D(1, 1), 1, 1));
+    assertEquals(1, calls.size());
+    assertEquals(Long.valueOf(5 * shape), calls.get(0));
+    assertTrue(album.getMemoryMeter().isOverBudget());
+
+    album.clearShapes();
+    album.addShape("R1", new Rectangle(new Color(0, 0, 0), new Point2D(1, 1), 1, 1));
+    assertEquals(1, calls.size());
+    album.undo();
+    album.undo();
+    assertEquals(2, calls.size());
+
+    album.getMemoryMeter().clearBudget();
+    assertFalse(album.getMemoryMeter().isOverBudget());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.getMemoryMeter().setBudget(-1, null);
+      }
+    });
+  }
+}
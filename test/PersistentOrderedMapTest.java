@@ -0,0 +1,297 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.PersistentOrderedMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test class for PersistentOrderedMap.
+ */
+public class PersistentOrderedMapTest {
+  private PersistentOrderedMap<String, Integer> map1;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    map1 = PersistentOrderedMap.<String, Integer>empty().put("a", 1).put("b", 2).put("c", 3);
+  }
+
+  /**
+   * Test get() and containsKey().
+   */
+  @Test
+  public void testGet() {
+    assertEquals(3, map1.size());
+    assertEquals(Integer.valueOf(2), map1.get("b"));
+    assertTrue(map1.containsKey("c"));
+    assertFalse(map1.containsKey("d"));
+    assertNull(map1.get("d"));
+    assertNull(map1.get(null));
+  }
+
+  /**
+   * Test that updates leave older versions untouched.
+   */
+  @Test
+  public void testPersistence() {
+    PersistentOrderedMap<String, Integer> map2 = map1.put("b", 20).remove("a").put("d", 4);
+
+    assertEquals("{a=1, b=2, c=3}", map1.asMap().toString());
+    assertEquals("{b=20, c=3, d=4}", map2.asMap().toString());
+    assertSame(map1, map1.remove("x"));
+  }
+
+  /**
+   * Test that replacing a value keeps its position.
+   */
+  @Test
+  public void testOrder() {
+    assertEquals("{a=1, b=9, c=3}", map1.put("b", 9).asMap().toString());
+    assertEquals("{a=1, c=3, b=2}", map1.remove("b").put("b", 2).asMap().toString());
+  }
+
+  /**
+   * Test that map view is read only.
+   */
+  @Test
+  public void testReadOnlyView() {
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map1.asMap().put("x", 1);
+      }
+    });
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map1.asMap().entrySet().iterator().next().setValue(5);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map1.put(null, 1);
+      }
+    });
+  }
+
+  /**
+   * Test random updates against a LinkedHashMap.
+   */
+  @Test
+  public void testAgainstLinkedHashMap() {
+    Random random = new Random(42);
+    Map<String, Integer> expected = new LinkedHashMap<String, Integer>();
+    PersistentOrderedMap<String, Integer> actual = PersistentOrderedMap.empty();
+    List<Map<String, Integer>> oldExpected = new ArrayList<Map<String, Integer>>();
+    List<PersistentOrderedMap<String, Integer>> oldActual =
+            new ArrayList<PersistentOrderedMap<String, Integer>>();
+
+    for (int i = 0; i < 20000; i++) {
+      String key = "k" + random.nextInt(3000);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        actual = actual.remove(key);
+      } else {
+        expected.put(key, i);
+        actual = actual.put(key, i);
+      }
+      if (i % 2000 == 0) {
+        oldExpected.add(new LinkedHashMap<String, Integer>(expected));
+        oldActual.add(actual);
+      }
+    }
+
+    assertEquals(new ArrayList<>(expected.entrySet()),
+            new ArrayList<>(actual.asMap().entrySet()));
+    for (int i = 0; i < oldExpected.size(); i++) {
+      assertEquals(new ArrayList<>(oldExpected.get(i).entrySet()),
+              new ArrayList<>(oldActual.get(i).asMap().entrySet()));
+    }
+
+    int index = 0;
+    for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), actual.valueAt(index));
+      assertEquals(index, actual.indexOf(entry.getKey()));
+      index++;
+    }
+    assertEquals(-1, actual.indexOf("missing"));
+  }
+
+  /**
+   * Test moving keys in the ordering.
+   */
+  @Test
+  public void testMove() {
+    final PersistentOrderedMap<String, Integer> map2 = map1.put("d", 4);
+    assertEquals("{b=2, c=3, d=4, a=1}", map2.moveToEnd("a").asMap().toString());
+    assertEquals("{d=4, a=1, b=2, c=3}", map2.moveToStart("d").asMap().toString());
+    assertEquals("{a=1, d=4, b=2, c=3}", map2.moveAfter("d", "a").asMap().toString());
+    assertEquals("{b=2, c=3, d=4, a=1}", map2.moveAfter("a", "d").asMap().toString());
+    assertSame(map2, map2.moveToEnd("d"));
+    assertSame(map2, map2.moveToStart("a"));
+    assertSame(map2, map2.moveAfter("c", "b"));
+    assertEquals(3, map2.moveToStart("d").indexOf("c"));
+    assertEquals("{a=1, b=2, c=3, d=4}", map2.asMap().toString());
+
+    long order = map2.orderOf("a");
+    PersistentOrderedMap<String, Integer> moved = map2.moveToEnd("a");
+    assertEquals("{a=1, b=2, c=3, d=4}", moved.moveTo("a", order).asMap().toString());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.moveAfter("a", "a");
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.moveToEnd("x");
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.moveTo("a", map2.orderOf("b"));
+      }
+    });
+  }
+
+  /**
+   * Test that moving keys into the same gap again and again renumbers the order stamps and keeps
+   * the ordering.
+   */
+  @Test
+  public void testRenumber() {
+    PersistentOrderedMap<String, Integer> map2 = map1;
+    List<String> expected = new ArrayList<String>();
+    expected.add("a");
+    for (int i = 0; i < 100; i++) {
+      map2 = map2.put("k" + i, i).moveAfter("k" + i, "a");
+      expected.add(1, "k" + i);
+    }
+    expected.add("b");
+    expected.add("c");
+
+    assertTrue(map2.getGeneration() > 0);
+    assertEquals(0, map1.getGeneration());
+    assertEquals(expected, new ArrayList<String>(map2.asMap().keySet()));
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(i, map2.indexOf(expected.get(i)));
+    }
+  }
+
+  /**
+   * Test putting a removed key back at its old position.
+   */
+  @Test
+  public void testPutAt() {
+    final long order = map1.orderOf("b");
+    final PersistentOrderedMap<String, Integer> map2 = map1.remove("b").put("d", 4);
+    assertEquals("{a=1, b=5, c=3, d=4}", map2.putAt("b", 5, order).asMap().toString());
+    assertEquals(-1, map2.orderOf("b"));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.putAt("a", 5, order);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.putAt("b", 5, map2.orderOf("c"));
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.putAt("b", 5, Long.MAX_VALUE);
+      }
+    });
+  }
+
+  /**
+   * Test positional access on a small map.
+   */
+  @Test
+  public void testPositions() {
+    final PersistentOrderedMap<String, Integer> map2 = map1.remove("a").put("d", 4);
+    assertEquals(Integer.valueOf(2), map2.valueAt(0));
+    assertEquals(Integer.valueOf(4), map2.valueAt(2));
+    assertEquals(2, map2.indexOf("d"));
+    assertEquals(0, map1.indexOf("a"));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        map2.valueAt(3);
+      }
+    });
+  }
+
+  /**
+   * Test that the fingerprint follows the entries, not the ordering or the history.
+   */
+  @Test
+  public void testFingerprint() {
+    assertEquals(0, PersistentOrderedMap.empty().getFingerprint());
+    PersistentOrderedMap<String, Integer> map2 = PersistentOrderedMap.<String, Integer>empty()
+            .put("c", 3).put("a", 0).put("b", 2).put("a", 1);
+    assertEquals(map1.getFingerprint(), map2.getFingerprint());
+    assertEquals(map1.getFingerprint(), map1.moveToStart("c").getFingerprint());
+    assertEquals(map1.getFingerprint(), map1.put("d", 4).remove("d").getFingerprint());
+    assertTrue(map1.getFingerprint() != map1.put("a", 2).getFingerprint());
+    assertTrue(map1.getFingerprint() != map1.remove("a").getFingerprint());
+    assertEquals(map1.getFingerprint(), map1.clear().put("a", 1).put("b", 2).put("c", 3)
+            .getFingerprint());
+
+    Map<String, Integer> plain = new LinkedHashMap<String, Integer>(map1.asMap());
+    assertEquals(map1.getFingerprint(), PersistentOrderedMap.fingerprintOf(plain));
+    assertEquals(map1.getFingerprint(), PersistentOrderedMap.fingerprintOf(map1.asMap()));
+  }
+
+  /**
+   * Test that a map given a hash function fingerprints values with it, in every version.
+   */
+  @Test
+  public void testFingerprintHasher() {
+    // hash values by parity only, so values of the same parity look alike
+    PersistentOrderedMap.ValueHasher<Integer> parity =
+            new PersistentOrderedMap.ValueHasher<Integer>() {
+              @Override
+              public int hash(Integer value) {
+                return value % 2;
+              }
+            };
+    PersistentOrderedMap<String, Integer> map2 = PersistentOrderedMap.<String, Integer>empty(parity)
+            .put("a", 1).put("b", 2).put("c", 3);
+    assertTrue(map1.getFingerprint() != map2.getFingerprint());
+    assertEquals(map2.getFingerprint(), map2.put("a", 5).getFingerprint());
+    assertEquals(map2.getFingerprint(), map2.clear().put("a", 3).put("b", 4).put("c", 1)
+            .getFingerprint());
+    assertEquals(map2.getFingerprint(), PersistentOrderedMap.fingerprintOf(map1.asMap(), parity));
+    assertEquals(map1.getFingerprint(), PersistentOrderedMap.fingerprintOf(map2.asMap()));
+    assertSame(map2, PersistentOrderedMap.copyOf(map2.asMap(), parity));
+    assertEquals(map2.getFingerprint(),
+            PersistentOrderedMap.copyOf(map1.asMap(), parity).getFingerprint());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        PersistentOrderedMap.empty(null);
+      }
+    });
+  }
+}
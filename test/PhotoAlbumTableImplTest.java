@@ -0,0 +1,126 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.IPhotoAlbum;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.PhotoAlbumTableImpl;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.Triangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Random;
+
+/**
+ * Test class for PhotoAlbumTableImpl.
+ */
+public class PhotoAlbumTableImplTest {
+  private IPhotoAlbum album1;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album1 = new PhotoAlbumTableImpl();
+    album1.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(100, 50), 10, 5));
+  }
+
+  /**
+   * Test basic shape operations.
+   */
+  @Test
+  public void testShapes() {
+    assertTrue(album1.containsShape("O"));
+    assertFalse(album1.addShape("O", new Oval(new Color(1, 0, 0), new Point2D(1, 1), 1, 1)));
+    assertTrue(album1.moveShape("O", new Point2D(25, 30)));
+    assertTrue(album1.changeShapeColor("O", new Color(0, 0, 1)));
+    assertTrue(album1.scaleShape("O", 2));
+    assertFalse(album1.moveShape("X", new Point2D(25, 30)));
+    assertEquals("Name: O\nType: oval\n"
+            + "Center: (25.0, 30.0), X radius: 20.0, Y radius: 10.0, Color: (0.0, 0.0, 1.0)\n",
+            album1.toString());
+
+    assertTrue(album1.removeShape("O"));
+    assertNull(album1.getShape("O"));
+    assertEquals(0, album1.getNumShapes());
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album1.addShape("R", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+        album1.changeShapeXDimension("R", -1);
+      }
+    });
+  }
+
+  /**
+   * Test that snapshots keep the shapes as they were when taken.
+   */
+  @Test
+  public void testSnapshot() throws InterruptedException {
+    ISnapshot snap = album1.takeSnapshot("first");
+    album1.moveShape("O", new Point2D(1, 2));
+    album1.addShape("T", new Triangle(new Color(0, 1, 0), new Point2D(3, 4), 5, 6));
+
+    assertEquals("{O=Type: oval\n"
+            + "Center: (100.0, 50.0), X radius: 10.0, Y radius: 5.0, Color: (1.0, 0.0, 0.0)}",
+            snap.getShapes().toString());
+    assertEquals(2, album1.takeSnapshot("second").getShapes().size());
+    assertEquals(1, album1.getSnapShotIndex(album1.getSnapshot(1).getID()));
+  }
+
+  /**
+   * Test random operations against PhotoAlbumImpl.
+   */
+  @Test
+  public void testAgainstPhotoAlbumImpl() throws InterruptedException {
+    IPhotoAlbum expected = new PhotoAlbumImpl();
+    IPhotoAlbum actual = new PhotoAlbumTableImpl();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 5000; i++) {
+      String id = "s" + random.nextInt(200);
+      Color color = new Color(random.nextInt(256) / 255.0, random.nextInt(256) / 255.0,
+              random.nextInt(256) / 255.0);
+      Point2D point = new Point2D(random.nextInt(800), random.nextInt(800));
+      switch (random.nextInt(6)) {
+        case 0:
+          assertEquals(expected.addShape(id, new Rectangle(color, point, 3, 4)),
+                  actual.addShape(id, new Rectangle(color, point, 3, 4)));
+          break;
+        case 1:
+          assertEquals(expected.removeShape(id), actual.removeShape(id));
+          break;
+        case 2:
+          assertEquals(expected.moveShape(id, point), actual.moveShape(id, point));
+          break;
+        case 3:
+          assertEquals(expected.changeShapeColor(id, color), actual.changeShapeColor(id, color));
+          break;
+        case 4:
+          assertEquals(expected.scaleShape(id, 1.5), actual.scaleShape(id, 1.5));
+          break;
+        default:
+          if (random.nextInt(10) == 0) {
+            expected.takeSnapshot("");
+            actual.takeSnapshot("");
+          }
+      }
+    }
+
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(expected.getNumSnapshots(), actual.getNumSnapshots());
+    for (int i = 0; i < expected.getNumSnapshots(); i++) {
+      assertEquals(expected.getSnapshot(i).getShapes().toString(),
+              actual.getSnapshot(i).getShapes().toString());
+    }
+  }
+}
@@ -7,6 +7,8 @@ import org.junit.Test;
 
 import album.model.shapes.component.Point2D;
 
+import java.util.Random;
+
 
 /**
  * JUnit test class for Point2D.
@@ -44,21 +46,23 @@ public class Point2DTest {
   }
 
   /**
-   * Test setX().
+   * Test withX().
    */
   @Test
-  public void testSetX() {
-    p1.setX(302.33);
-    assertEquals(p1.getX(),302.33, 0.001);
+  public void testWithX() {
+    Point2D changed = p1.withX(302.33);
+    assertEquals(changed.getX(),302.33, 0.001);
+    assertEquals(p1.toString(), "(100.0, 50.0)");
   }
 
   /**
-   * Test setY().
+   * Test withY().
    */
   @Test
-  public void testSetY() {
-    p1.setY(302.33);
-    assertEquals(p1.getY(),302.33, 0.001);
+  public void testWithY() {
+    Point2D changed = p1.withY(302.33);
+    assertEquals(changed.getY(),302.33, 0.001);
+    assertEquals(p1.toString(), "(100.0, 50.0)");
   }
 
   /**
@@ -80,6 +84,41 @@ public class Point2DTest {
 
     Point2D p3 = new Point2D(100, 50);
     assertTrue(p1.equals(p3));
+    assertEquals(p1.hashCode(), p3.hashCode());
+
+    Point2D p4 = new Point2D(100.04, 49.96);
+    assertTrue(p1.equals(p4));
+    assertEquals(p1.hashCode(), p4.hashCode());
+    assertFalse(p1.equals(new Point2D(100.2, 50)));
+    assertFalse(p1.equals(null));
+  }
+
+  /**
+   * Test that points are equal exactly when they print the same, ties and signs included.
+   */
+  @Test
+  public void testEqualsMatchesPrinting() {
+    // 0.15 is stored just below the tie and prints as 0.1, 0.05 just above and prints as 0.1
+    assertTrue(new Point2D(0.15, 0.05).equals(new Point2D(0.1, 0.1)));
+    assertFalse(new Point2D(0.15, 0).equals(new Point2D(0.2, 0)));
+    assertEquals("(-0.0, 0.0)", new Point2D(-0.0, 0).toString());
+    assertFalse(new Point2D(-0.0, 0).equals(new Point2D(0, 0)));
+    assertTrue(new Point2D(1e300, 0).equals(new Point2D(1e300, 0)));
+    assertFalse(new Point2D(0x1p50 + 0.25, 0).equals(new Point2D(0x1p50, 0)));
+
+    Random random = new Random(8);
+    double[] scales = {1, 1000, 1e12, 0x1p48, 0x1p52};
+    for (int i = 0; i < 20000; i++) {
+      double scale = scales[random.nextInt(scales.length)];
+      double x = Math.round(random.nextDouble() * scale * 20) / 20.0;
+      double other = Math.abs(x + (random.nextInt(5) - 2) * Math.ulp(x) * random.nextInt(3));
+      Point2D a = new Point2D(x, 0);
+      Point2D b = new Point2D(other, 0);
+      assertEquals(a.toString().equals(b.toString()), a.equals(b));
+      if (a.equals(b)) {
+        assertEquals(a.hashCode(), b.hashCode());
+      }
+    }
   }
 
   /**
@@ -91,7 +130,6 @@ public class Point2DTest {
 
     assertTrue(p1.equals(p4));
 
-    p1.setX(20);
-    assertFalse(p1.equals(p4));
+    assertFalse(p1.withX(20).equals(p4));
   }
 }
\ No newline at end of file
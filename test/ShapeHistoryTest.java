@@ -0,0 +1,249 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.DeltaSnapshotStore;
+import album.model.PhotoAlbumImpl;
+import album.model.ShapeHistory;
+import album.model.shapes.IShape;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Test class for ShapeHistory, as kept by PhotoAlbumImpl.
+ */
+public class ShapeHistoryTest {
+  private PhotoAlbumImpl album;
+  private ShapeHistory history;
+
+  /**
+   * Set up test cases: window W moves, door D comes and goes, roof R never changes.
+   */
+  @Before
+  public void setUp() throws InterruptedException {
+    album = new PhotoAlbumImpl();
+    history = album.getShapeHistory();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 100, 10));
+    album.addShape("W", new Rectangle(new Color(0, 0, 1), new Point2D(10, 20), 5, 5));
+    album.takeSnapshot("0");
+    album.moveShape("W", new Point2D(20, 20));
+    album.addShape("D", new Rectangle(new Color(0, 1, 0), new Point2D(50, 20), 10, 30));
+    album.takeSnapshot("1");
+    album.takeSnapshot("2");
+    album.removeShape("D");
+    album.moveShape("W", new Point2D(30, 20));
+    album.takeSnapshot("3");
+    album.addShape("D", new Rectangle(new Color(0, 1, 0), new Point2D(50, 20), 10, 30));
+    // moved away and back before the snapshot, so no change for W
+    album.moveShape("W", new Point2D(0, 0));
+    album.moveShape("W", new Point2D(30, 20));
+    album.takeSnapshot("4");
+  }
+
+  /**
+   * Test state of a shape at a snapshot.
+   */
+  @Test
+  public void testShapeAt() {
+    assertEquals(5, history.getNumSnapshots());
+    assertEquals(new Point2D(10, 20), history.shapeAt("W", 0).getCoordinate());
+    assertEquals(new Point2D(20, 20), history.shapeAt("W", 2).getCoordinate());
+    assertEquals(new Point2D(30, 20), history.shapeAt("W", 4).getCoordinate());
+    assertNull(history.shapeAt("D", 0));
+    assertNull(history.shapeAt("D", 3));
+    assertNull(history.shapeAt("X", 3));
+    for (int i = 0; i < 5; i++) {
+      assertEquals(album.getSnapshot(i).getShapes().get("R"), history.shapeAt("R", i));
+    }
+  }
+
+  /**
+   * Test changes and lifetimes.
+   */
+  @Test
+  public void testChangesAndLifetimes() {
+    assertEquals(Arrays.asList(0, 1, 3), history.getChanges("W"));
+    assertEquals(Arrays.asList(0), history.getChanges("R"));
+    assertEquals(Arrays.asList(1, 3, 4), history.getChanges("D"));
+    assertEquals("[[1, 2], [4, 4]]", history.getLifetimes("D").toString());
+    assertEquals("[[0, 4]]", history.getLifetimes("R").toString());
+    assertEquals(1, history.getLifetimes("D").get(0).getFirst());
+    assertEquals(2, history.getLifetimes("D").get(0).getLast());
+    assertEquals(0, history.getChanges("X").size());
+    assertEquals(0, history.getLifetimes("X").size());
+  }
+
+  /**
+   * Test that removed snapshots drop out of the index.
+   */
+  @Test
+  public void testRemove() {
+    album.removeSnapshot(album.getSnapshot(3).getID());
+    album.removeSnapshot(album.getSnapshot(0).getID());
+    assertEquals(3, history.getNumSnapshots());
+    assertEquals(new Point2D(20, 20), history.shapeAt("W", 0).getCoordinate());
+    assertEquals(Arrays.asList(0, 2), history.getChanges("W"));
+    // D was gone in the removed snapshot only, so it never changed in what is left
+    assertEquals(Arrays.asList(0), history.getChanges("D"));
+    assertEquals("[[0, 2]]", history.getLifetimes("D").toString());
+
+    album.reset();
+    assertEquals(0, history.getNumSnapshots());
+    assertEquals(0, history.getChanges("W").size());
+  }
+
+  /**
+   * Test that a rolled back snapshot drops out of the index.
+   */
+  @Test
+  public void testRollback() throws InterruptedException {
+    album.begin();
+    album.moveShape("R", new Point2D(1, 1));
+    album.takeSnapshot("5");
+    album.rollback();
+    album.takeSnapshot("5");
+    assertEquals(6, history.getNumSnapshots());
+    assertEquals(Arrays.asList(0), history.getChanges("R"));
+    assertEquals(new Point2D(0, 0), history.shapeAt("R", 5).getCoordinate());
+  }
+
+  /**
+   * Test against looking at every snapshot, over random edits and removals.
+   */
+  @Test
+  public void testAgainstSnapshots() throws InterruptedException {
+    Random random = new Random(7);
+    album.reset();
+    List<String> ids = Arrays.asList("A", "B", "C", "D", "E");
+    for (int s = 0; s < 200; s++) {
+      for (int e = 0; e < 2; e++) {
+        String id = ids.get(random.nextInt(ids.size()));
+        if (!album.containsShape(id)) {
+          album.addShape(id, new Rectangle(new Color(0, 0, 0),
+                  new Point2D(random.nextInt(3), 0), 1, 1));
+        } else if (random.nextInt(3) == 0) {
+          album.removeShape(id);
+        } else {
+          album.moveShape(id, new Point2D(random.nextInt(3), 0));
+        }
+      }
+      album.takeSnapshot("s" + s);
+      if (random.nextInt(5) == 0) {
+        album.removeSnapshot(album.getSnapshot(random.nextInt(album.getNumSnapshots())).getID());
+      }
+    }
+
+    check(album, history, ids);
+    // a history built from the stored snapshots agrees
+    PhotoAlbumImpl copy = new PhotoAlbumImpl(new DeltaSnapshotStore(4));
+    for (int i = 0; i < album.getNumSnapshots(); i++) {
+      copy.clearShapes();
+      for (Map.Entry<String, IShape> entry : album.getSnapshot(i).getShapes().entrySet()) {
+        copy.addShape(entry.getKey(), entry.getValue());
+      }
+      copy.takeSnapshot("copy " + i);
+    }
+    check(copy, copy.getShapeHistory(), ids);
+  }
+
+  /**
+   * Test that runs no snapshot falls in any more are freed, without changing any state.
+   */
+  @Test
+  public void testCompaction() throws InterruptedException {
+    album.reset();
+    for (int s = 0; s < 100; s++) {
+      album.moveShape("W", new Point2D(s, 0));
+      album.takeSnapshot("s" + s);
+    }
+    // W changes in every snapshot, R and D never do
+    assertEquals(102, history.getNumRuns());
+    for (int s = 0; s < 90; s++) {
+      album.removeSnapshot(album.getSnapshot(0).getID());
+    }
+    assertEquals(10, history.getNumSnapshots());
+    // runs are freed in batches, so up to half as many again as there are snapshots are left
+    assertTrue(history.getNumRuns() <= 2 + 10 * 3 / 2);
+    check(album, history, Arrays.asList("R", "W", "D"));
+
+    // the latest state of W is kept, so it is still there for the next snapshot
+    album.removeSnapshot(album.getSnapshot(9).getID());
+    album.takeSnapshot("again");
+    check(album, history, Arrays.asList("R", "W", "D"));
+    assertEquals(new Point2D(99, 0), history.shapeAt("W", 9).getCoordinate());
+  }
+
+  /**
+   * Check a history against the snapshots of an album.
+   * @param album album
+   * @param history history of the album
+   * @param ids identifiers of the shapes to check
+   */
+  private static void check(PhotoAlbumImpl album, ShapeHistory history, List<String> ids) {
+    assertEquals(album.getNumSnapshots(), history.getNumSnapshots());
+    for (String id : ids) {
+      List<Integer> expected = new ArrayList<Integer>();
+      IShape before = null;
+      for (int i = 0; i < album.getNumSnapshots(); i++) {
+        IShape shape = album.getSnapshot(i).getShapes().get(id);
+        assertEquals(shape, history.shapeAt(id, i));
+        if (!Objects.equals(before, shape)) {
+          expected.add(i);
+        }
+        before = shape;
+      }
+      assertEquals(expected, history.getChanges(id));
+    }
+  }
+
+  /**
+   * Test that changes too small to print are still recorded.
+   */
+  @Test
+  public void testSmallChanges() throws InterruptedException {
+    album.changeShapeColor("R", new Color(245 / 255.0, 0, 0));
+    album.moveShape("R", new Point2D(0.04, 0));
+    album.takeSnapshot("5");
+    assertEquals(Arrays.asList(0, 5), history.getChanges("R"));
+    assertEquals(245 / 255.0, history.shapeAt("R", 5).getColor().getRed(), 0);
+    assertEquals(0.04, history.shapeAt("R", 5).getCoordinate().getX(), 0);
+    assertEquals(1, history.shapeAt("R", 4).getColor().getRed(), 0);
+  }
+
+  /**
+   * Test invalid arguments.
+   */
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        history.shapeAt("W", 5);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        history.shapeAt(null, 0);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        history.getLifetimes(null);
+      }
+    });
+  }
+}
@@ -0,0 +1,122 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.DeltaSnapshotStore;
+import album.model.PhotoAlbumImpl;
+import album.model.ShapePool;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Test class for ShapePool.
+ */
+public class ShapePoolTest {
+  private PhotoAlbumImpl album;
+  private ShapePool pool;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    pool = album.getShapePool();
+  }
+
+  /**
+   * Test that recurring states are stored once.
+   */
+  @Test
+  public void testDedupe() {
+    album.addShape("A", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+    album.addShape("B", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+    assertEquals(1, pool.getUniqueShapes());
+
+    album.takeSnapshot("1");
+    assertSame(album.getSnapshot(0).getShapes().get("A"),
+            album.getSnapshot(0).getShapes().get("B"));
+    album.moveShape("A", new Point2D(5, 5));
+    album.takeSnapshot("2");
+    album.moveShape("A", new Point2D(0, 0));
+    album.takeSnapshot("3");
+
+    assertSame(album.getSnapshot(0).getShapes().get("B"),
+            album.getSnapshot(2).getShapes().get("A"));
+    assertEquals(2, pool.getUniqueShapes());
+    assertEquals(8, pool.getReferences());
+    assertEquals(4.0, pool.getDedupeRatio(), 0.0001);
+    assertEquals(6 * ShapePool.ESTIMATED_SHAPE_BYTES, pool.getBytesSaved());
+  }
+
+  /**
+   * Test that removing snapshots and resetting release unused states.
+   */
+  @Test
+  public void testRelease() {
+    album.addShape("A", new Oval(new Color(0, 0, 1), new Point2D(1, 1), 2, 2));
+    String first = album.takeSnapshot("1").getID();
+    album.moveShape("A", new Point2D(2, 2));
+    String second = album.takeSnapshot("2").getID();
+    album.moveShape("A", new Point2D(3, 3));
+    assertEquals(3, pool.getUniqueShapes());
+
+    album.removeSnapshot(first);
+    assertEquals(2, pool.getUniqueShapes());
+    album.removeSnapshot(second);
+    assertEquals(1, pool.getUniqueShapes());
+    assertEquals(1, pool.getReferences());
+
+    album.takeSnapshot("3");
+    album.removeShape("A");
+    assertEquals(1, pool.getUniqueShapes());
+    album.reset();
+    assertEquals(0, pool.getUniqueShapes());
+    assertEquals(0, pool.getReferences());
+    assertEquals(1.0, pool.getDedupeRatio(), 0.0001);
+  }
+
+  /**
+   * Test pooling with a store that rebuilds snapshots, and clearShapes().
+   */
+  @Test
+  public void testDeltaStoreAndClear() {
+    album = new PhotoAlbumImpl(new DeltaSnapshotStore(2));
+    pool = album.getShapePool();
+    for (int i = 0; i < 5; i++) {
+      album.addShape("S" + i, new Oval(new Color(0, 0, 1), new Point2D(i, 1), 2, 2));
+      album.takeSnapshot("" + i);
+    }
+    assertEquals(5, pool.getUniqueShapes());
+    assertEquals(20, pool.getReferences());
+
+    album.removeSnapshot(album.getSnapshot(4).getID());
+    album.clearShapes();
+    assertEquals(4, pool.getUniqueShapes());
+    assertEquals(10, pool.getReferences());
+  }
+
+  /**
+   * Test bad arguments.
+   */
+  @Test
+  public void testBadArguments() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        pool.acquire(null);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        pool.release(new Oval(new Color(0, 0, 1), new Point2D(1, 1), 2, 2));
+      }
+    });
+  }
+}
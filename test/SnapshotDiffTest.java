@@ -0,0 +1,199 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.SnapshotDiff;
+import album.model.SnapshotImpl;
+import album.model.shapes.IShape;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Test class for SnapshotDiff and the diff methods of IPhotoAlbum.
+ */
+public class SnapshotDiffTest {
+  private PhotoAlbumImpl album;
+
+  /**
+   * Set up test cases: four shapes A to D and a first snapshot of them.
+   */
+  @Before
+  public void setUp() throws InterruptedException {
+    album = new PhotoAlbumImpl();
+    album.addShape("A", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+    album.addShape("B", new Oval(new Color(0, 1, 0), new Point2D(20, 20), 5, 5));
+    album.addShape("C", new Rectangle(new Color(0, 0, 1), new Point2D(40, 40), 10, 20));
+    album.addShape("D", new Oval(new Color(0, 0, 0), new Point2D(60, 60), 8, 4));
+    album.takeSnapshot("first");
+  }
+
+  /**
+   * Copy a snapshot into plain maps, so diffs against it compare shape by shape.
+   * @param snapshot  snapshot
+   * @return  copy
+   */
+  private static ISnapshot copy(ISnapshot snapshot) {
+    return new SnapshotImpl(snapshot.getID(), snapshot.getTimestamp(),
+            snapshot.getDescription(), new LinkedHashMap<String, IShape>(snapshot.getShapes()));
+  }
+
+  /**
+   * Check a diff, and the diff of plain copies of the same snapshots.
+   * @param from  older snapshot
+   * @param to  newer snapshot
+   * @param expected  expected toString of both diffs
+   * @return  diff of the snapshots
+   */
+  private static SnapshotDiff check(ISnapshot from, ISnapshot to, String expected) {
+    SnapshotDiff diff = SnapshotDiff.of(from, to);
+    assertEquals(expected, diff.toString());
+    SnapshotDiff scanned = SnapshotDiff.of(copy(from), copy(to));
+    assertEquals(expected, scanned.toString());
+    for (String id : diff.getModified().keySet()) {
+      assertEquals(diff.getModified().get(id).getMask(), scanned.getModified().get(id).getMask());
+    }
+    return diff;
+  }
+
+  /**
+   * Test added, removed and modified shapes with their field masks.
+   */
+  @Test
+  public void testChanges() throws InterruptedException {
+    album.removeShape("B");
+    album.moveShape("A", new Point2D(5, 5));
+    album.changeShapeColor("C", new Color(1, 1, 1));
+    album.scaleShape("C", 2);
+    album.addShape("E", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 1, 1));
+    // a change that is undone by the next one is no change
+    album.moveShape("D", new Point2D(0, 0));
+    album.moveShape("D", new Point2D(60, 60));
+    album.takeSnapshot("second");
+
+    String first = album.getSnapshot(0).getID();
+    String second = album.getSnapshot(1).getID();
+    SnapshotDiff diff = check(album.getSnapshot(0), album.getSnapshot(1),
+            "Diff " + first + " -> " + second + ": added [E], removed [B], modified [A, C]");
+    assertEquals(4, diff.size());
+    assertEquals(SnapshotDiff.POSITION, diff.getModified().get("A").getMask());
+    assertEquals(SnapshotDiff.COLOR | SnapshotDiff.SIZE, diff.getModified().get("C").getMask());
+    assertEquals("C [color, size]", diff.getModified().get("C").toString());
+    assertTrue(diff.getModified().get("C").changed(SnapshotDiff.SIZE | SnapshotDiff.ORDER));
+    assertEquals(new Point2D(0, 0), diff.getModified().get("A").getBefore().getCoordinate());
+    assertEquals(new Point2D(5, 5), diff.getModified().get("A").getAfter().getCoordinate());
+
+    // the reverse diff swaps added and removed
+    SnapshotDiff reverse = album.diffSnapshots(second, first);
+    assertEquals(Arrays.asList("B"), new ArrayList<String>(reverse.getAdded().keySet()));
+    assertEquals(Arrays.asList("E"), new ArrayList<String>(reverse.getRemoved().keySet()));
+    assertTrue(album.diffSnapshots(1, 1).isEmpty());
+  }
+
+  /**
+   * Test that removed shapes come in the paint order of the older snapshot.
+   */
+  @Test
+  public void testRemovedOrder() throws InterruptedException {
+    album.removeShape("D");
+    album.removeShape("A");
+    album.removeShape("C");
+    album.takeSnapshot("second");
+    SnapshotDiff diff = album.diffSnapshots(0, 1);
+    assertEquals(Arrays.asList("A", "C", "D"),
+            new ArrayList<String>(diff.getRemoved().keySet()));
+  }
+
+  /**
+   * Test that only the shapes that moved in paint order are flagged.
+   */
+  @Test
+  public void testOrder() throws InterruptedException {
+    album.bringToFront("A");
+    album.moveAbove("D", "B");
+    album.takeSnapshot("second");
+
+    SnapshotDiff diff = album.diffSnapshots(0, 1);
+    assertEquals(Arrays.asList("D", "A"), new ArrayList<String>(diff.getModified().keySet()));
+    assertEquals(SnapshotDiff.ORDER, diff.getModified().get("D").getMask());
+    SnapshotDiff scanned = SnapshotDiff.of(copy(album.getSnapshot(0)),
+            copy(album.getSnapshot(1)));
+    // without order stamps, the fewest moves that explain the new order are flagged instead
+    assertEquals(2, scanned.getModified().size());
+  }
+
+  /**
+   * Test that changes below the precision colors and points are compared with still show.
+   */
+  @Test
+  public void testSmallChanges() throws InterruptedException {
+    album.changeShapeColor("A", new Color(245 / 255.0, 0, 0));
+    album.moveShape("A", new Point2D(0.04, 0));
+    album.takeSnapshot("second");
+
+    SnapshotDiff diff = check(album.getSnapshot(0), album.getSnapshot(1),
+            "Diff " + album.getSnapshot(0).getID() + " -> " + album.getSnapshot(1).getID()
+                    + ": added [], removed [], modified [A]");
+    assertEquals(SnapshotDiff.COLOR | SnapshotDiff.POSITION,
+            diff.getModified().get("A").getMask());
+  }
+
+  /**
+   * Test diffs across a reset, where every shape was added again.
+   */
+  @Test
+  public void testUnrelated() throws InterruptedException {
+    album.clearShapes();
+    album.addShape("B", new Oval(new Color(0, 1, 0), new Point2D(20, 20), 5, 5));
+    album.addShape("A", new Oval(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+    album.takeSnapshot("second");
+
+    SnapshotDiff diff = album.diffSnapshots(0, 1);
+    assertEquals(Arrays.asList("C", "D"), new ArrayList<String>(diff.getRemoved().keySet()));
+    assertTrue(diff.getModified().get("A").changed(SnapshotDiff.TYPE));
+    assertTrue(diff.getModified().get("A").changed(SnapshotDiff.ORDER));
+    assertTrue(diff.getModified().get("B").changed(SnapshotDiff.ORDER));
+    assertTrue(diff.getAdded().isEmpty());
+  }
+
+  /**
+   * Test invalid arguments.
+   */
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        album.diffSnapshots("nope", album.getSnapshot(0).getID());
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        album.diffSnapshots(null, "nope");
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        album.diffSnapshots(0, 1);
+      }
+    });
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        SnapshotDiff.of(null, album.getSnapshot(0));
+      }
+    });
+  }
+}
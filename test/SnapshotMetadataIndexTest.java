@@ -0,0 +1,163 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.ISnapshot;
+import album.model.ISnapshotIdGenerator;
+import album.model.InMemorySnapshotStore;
+import album.model.PhotoAlbumImpl;
+import album.model.SnapshotMetadataIndex;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test class for SnapshotMetadataIndex, as kept by PhotoAlbumImpl.
+ */
+public class SnapshotMetadataIndexTest {
+  private PhotoAlbumImpl album;
+  private SnapshotMetadataIndex index;
+  private List<String> ids;
+
+  /**
+   * Set up test cases: one snapshot per second from the epoch, with stamps in whole seconds.
+   */
+  @Before
+  public void setUp() throws InterruptedException {
+    album = new PhotoAlbumImpl(new InMemorySnapshotStore(), new ISnapshotIdGenerator() {
+      private long next;
+
+      @Override
+      public long nextStamp() {
+        return (next++) * 1_000_000L;
+      }
+    });
+    index = album.getMetadataIndex();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(0, 0), 10, 10));
+    ids = new ArrayList<String>();
+    for (String description : Arrays.asList("Lights On!", "lights off", "Door open",
+            "Lights on, door open", "night")) {
+      ids.add(album.takeSnapshot(description).getID());
+    }
+  }
+
+  /**
+   * Test finding by words, in any order and case.
+   */
+  @Test
+  public void testWords() {
+    assertEquals(5, index.getNumSnapshots());
+    assertEquals(6, index.getNumWords());
+    assertEquals(Arrays.asList(ids.get(0), ids.get(3)), album.findSnapshots("lights on", null,
+            null));
+    assertEquals(Arrays.asList(ids.get(0), ids.get(3)), album.findSnapshots("ON  LIGHTS!", null,
+            null));
+    assertEquals(Arrays.asList(ids.get(2), ids.get(3)), album.findSnapshots("door", null, null));
+    assertEquals(Collections.emptyList(), album.findSnapshots("lights door off", null, null));
+    assertEquals(Collections.emptyList(), album.findSnapshots("light", null, null));
+    assertEquals(ids, album.findSnapshots(null, null, null));
+    assertEquals(ids, album.findSnapshots(" !", null, null));
+  }
+
+  /**
+   * Test finding by time range, with the start included and the end excluded.
+   */
+  @Test
+  public void testRange() {
+    assertEquals(ids.subList(1, 3), album.findSnapshots(null, Instant.ofEpochSecond(1),
+            Instant.ofEpochSecond(3)));
+    assertEquals(ids.subList(2, 5), album.findSnapshots(null, Instant.ofEpochMilli(1001), null));
+    assertEquals(ids.subList(0, 4), album.findSnapshots("", null, Instant.ofEpochSecond(4)));
+    assertEquals(Arrays.asList(ids.get(1), ids.get(3)), album.findSnapshots("lights",
+            Instant.ofEpochSecond(1), Instant.ofEpochSecond(4)));
+    assertEquals(Collections.emptyList(), album.findSnapshots(null, Instant.ofEpochSecond(2),
+            Instant.ofEpochSecond(2)));
+    assertEquals(ids, album.findSnapshots(null, Instant.MIN, Instant.MAX));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() {
+        album.findSnapshots(null, Instant.ofEpochSecond(3), Instant.ofEpochSecond(2));
+      }
+    });
+  }
+
+  /**
+   * Test that removed, rolled back and reset snapshots drop out of the index.
+   */
+  @Test
+  public void testRemove() throws InterruptedException {
+    album.removeSnapshot(ids.get(0));
+    assertEquals(Arrays.asList(ids.get(3)), album.findSnapshots("lights on", null, null));
+    assertEquals(Collections.emptyList(), album.findSnapshots("night", Instant.MIN,
+            Instant.ofEpochSecond(4)));
+    album.removeSnapshot(ids.get(4));
+    assertEquals(Collections.emptyList(), album.findSnapshots("night", null, null));
+    assertEquals(5, index.getNumWords());
+
+    album.begin();
+    album.takeSnapshot("rolled back");
+    album.rollback();
+    assertEquals(Collections.emptyList(), album.findSnapshots("rolled", null, null));
+    assertEquals(3, index.getNumSnapshots());
+
+    album.reset();
+    assertEquals(0, index.getNumSnapshots());
+    assertEquals(0, index.getNumWords());
+    assertEquals(Collections.emptyList(), album.findSnapshots(null, null, null));
+  }
+
+  /**
+   * Test against looking at every snapshot, over random descriptions and removals.
+   */
+  @Test
+  public void testAgainstScan() throws InterruptedException {
+    Random random = new Random(11);
+    album = new PhotoAlbumImpl();
+    List<String> words = Arrays.asList("red", "Green", "blue", "sky", "sun", "moon");
+    for (int s = 0; s < 300; s++) {
+      String description = "";
+      for (int w = random.nextInt(4); w > 0; w--) {
+        description += words.get(random.nextInt(words.size())) + (random.nextBoolean() ? " " : ",");
+      }
+      album.takeSnapshot(description);
+      if (random.nextInt(6) == 0) {
+        album.removeSnapshot(album.getSnapshot(random.nextInt(album.getNumSnapshots())).getID());
+      }
+    }
+
+    Map<String, ISnapshot> snapshots = album.getAllSnapshots();
+    List<String> snapshotIds = new ArrayList<String>(snapshots.keySet());
+    for (int q = 0; q < 200; q++) {
+      String text = words.get(random.nextInt(words.size()))
+              + (random.nextBoolean() ? " " + words.get(random.nextInt(words.size())) : "");
+      Instant from = null;
+      Instant to = null;
+      if (random.nextBoolean()) {
+        String id = snapshotIds.get(random.nextInt(snapshotIds.size()));
+        from = Instant.parse(id);
+        to = from.plusNanos(random.nextInt(2000) * 1000L);
+      }
+      List<String> expected = new ArrayList<String>();
+      for (ISnapshot snapshot : snapshots.values()) {
+        Instant taken = Instant.parse(snapshot.getID());
+        List<String> description = Arrays.asList(
+                snapshot.getDescription().toLowerCase().split("[ ,]"));
+        if (((from == null) || (!taken.isBefore(from) && taken.isBefore(to)))
+                && description.containsAll(Arrays.asList(text.toLowerCase().split(" ")))) {
+          expected.add(snapshot.getID());
+        }
+      }
+      assertEquals(expected, album.findSnapshots(text, from, to));
+    }
+  }
+}
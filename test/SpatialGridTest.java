@@ -0,0 +1,192 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.SpatialGrid;
+import album.model.shapes.IShape;
+import album.model.shapes.Oval;
+import album.model.shapes.Rectangle;
+import album.model.shapes.Triangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test class for SpatialGrid and the region queries of albums and snapshots.
+ */
+public class SpatialGridTest {
+  private PhotoAlbumImpl album;
+
+  /**
+   * Set up test cases.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    album.addShape("R", new Rectangle(new Color(1, 0, 0), new Point2D(10, 10), 20, 10));
+    album.addShape("O", new Oval(new Color(0, 0, 1), new Point2D(100, 100), 30, 20));
+    album.addShape("T", new Triangle(new Color(0, 1, 0), new Point2D(15, 5), 10, 10));
+    album.addShape("B", new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 5000, 5000));
+  }
+
+  /**
+   * Test bounding boxes of each shape type.
+   */
+  @Test
+  public void testBounds() {
+    IShape oval = album.getShape("O");
+    assertEquals(70, oval.getMinX(), 0.001);
+    assertEquals(80, oval.getMinY(), 0.001);
+    assertEquals(130, oval.getMaxX(), 0.001);
+    assertEquals(120, oval.getMaxY(), 0.001);
+    IShape rectangle = album.getShape("R");
+    assertEquals(10, rectangle.getMinX(), 0.001);
+    assertEquals(30, rectangle.getMaxX(), 0.001);
+    assertEquals(20, rectangle.getMaxY(), 0.001);
+  }
+
+  /**
+   * Test album queries, in paint order and in step with edits.
+   */
+  @Test
+  public void testAlbum() {
+    assertEquals(Arrays.asList("R", "T", "B"),
+            new ArrayList<String>(album.shapesIntersecting(12, 12, 5, 5).keySet()));
+    assertEquals(Arrays.asList("O", "B"),
+            new ArrayList<String>(album.shapesIntersecting(125, 115, 0, 0).keySet()));
+    assertEquals(Arrays.asList("R", "O", "T", "B"),
+            new ArrayList<String>(album.shapesIntersecting(0, 0, 200, 200).keySet()));
+
+    album.moveShape("R", new Point2D(300, 300));
+    album.changeShapeXDimension("O", 5);
+    album.removeShape("B");
+    assertEquals(Arrays.asList("T"),
+            new ArrayList<String>(album.shapesIntersecting(12, 12, 5, 5).keySet()));
+    assertTrue(album.shapesIntersecting(125, 115, 0, 0).isEmpty());
+    assertEquals(Arrays.asList("R"),
+            new ArrayList<String>(album.shapesIntersecting(310, 305, 1, 1).keySet()));
+
+    // results are copies, so changing one leaves the album and its snapshots alone
+    ISnapshot snapshot = album.takeSnapshot("moved");
+    album.shapesIntersecting(310, 305, 1, 1).get("R").move(new Point2D(0, 0));
+    assertEquals(300, album.getShape("R").getMinX(), 0.001);
+    assertEquals(300, snapshot.getShapes().get("R").getMinX(), 0.001);
+    assertEquals(Arrays.asList("R"),
+            new ArrayList<String>(album.shapesIntersecting(310, 305, 1, 1).keySet()));
+
+    album.undo();
+    assertEquals(Arrays.asList("R", "B"),
+            new ArrayList<String>(album.shapesIntersecting(300, 300, 0, 0).keySet()));
+    album.clearShapes();
+    assertTrue(album.shapesIntersecting(0, 0, 1000, 1000).isEmpty());
+  }
+
+  /**
+   * Test that rollback puts the index back with the shapes.
+   */
+  @Test
+  public void testRollback() {
+    album.begin();
+    album.moveShape("R", new Point2D(300, 300));
+    album.removeShape("T");
+    album.rollback();
+    assertEquals(Arrays.asList("R", "T", "B"),
+            new ArrayList<String>(album.shapesIntersecting(12, 12, 5, 5).keySet()));
+  }
+
+  /**
+   * Test snapshot queries, which see the shapes as they were.
+   */
+  @Test
+  public void testSnapshot() {
+    ISnapshot snapshot = album.takeSnapshot("before");
+    album.moveShape("R", new Point2D(300, 300));
+    assertEquals(Arrays.asList("R", "T", "B"),
+            new ArrayList<String>(snapshot.shapesIntersecting(12, 12, 5, 5).keySet()));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.shapesIntersecting(0, 0, -1, 1);
+      }
+    });
+  }
+
+  /**
+   * Test grid queries against checking every shape.
+   */
+  @Test
+  public void testRandom() {
+    Random random = new Random(7);
+    SpatialGrid<Integer> grid = new SpatialGrid<Integer>(16);
+    List<IShape> shapes = new ArrayList<IShape>();
+    for (int i = 0; i < 500; i++) {
+      IShape shape = new Rectangle(new Color(0, 0, 0),
+              new Point2D(random.nextInt(500), random.nextInt(500)),
+              1 + random.nextInt(i % 50 == 0 ? 400 : 20), 1 + random.nextInt(20));
+      shapes.add(shape);
+      grid.put(i, shape, 1000 - i);
+    }
+    for (int i = 0; i < 500; i += 3) {
+      assertTrue(grid.remove(i));
+    }
+    assertFalse(grid.remove(0));
+
+    for (int q = 0; q < 200; q++) {
+      double x = random.nextInt(500);
+      double y = random.nextInt(500);
+      double w = random.nextInt(100);
+      double h = random.nextInt(100);
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int i = 499; i >= 0; i--) {
+        IShape shape = shapes.get(i);
+        if ((i % 3 != 0) && (shape.getMinX() <= x + w) && (shape.getMaxX() >= x)
+                && (shape.getMinY() <= y + h) && (shape.getMaxY() >= y)) {
+          expected.add(i);
+        }
+      }
+      assertEquals(expected, grid.query(x, y, w, h));
+    }
+  }
+
+  /**
+   * Test the default snapshot query matches the indexed one.
+   */
+  @Test
+  public void testDefaultQuery() {
+    final ISnapshot snapshot = album.takeSnapshot("s");
+    ISnapshot plain = new ISnapshot() {
+      @Override
+      public String getID() {
+        return snapshot.getID();
+      }
+
+      @Override
+      public String getTimestamp() {
+        return snapshot.getTimestamp();
+      }
+
+      @Override
+      public String getDescription() {
+        return snapshot.getDescription();
+      }
+
+      @Override
+      public Map<String, IShape> getShapes() {
+        return snapshot.getShapes();
+      }
+    };
+    assertEquals(snapshot.shapesIntersecting(20, 10, 90, 80),
+            plain.shapesIntersecting(20, 10, 90, 80));
+  }
+}
@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import album.model.HitTester;
+import album.model.ISnapshot;
+import album.model.PhotoAlbumImpl;
+import album.model.shapes.Rectangle;
+import album.model.shapes.component.Color;
+import album.model.shapes.component.Point2D;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test class for the paint order operations of PhotoAlbumImpl.
+ */
+public class ZOrderTest {
+  private PhotoAlbumImpl album;
+
+  /**
+   * Set up test cases: four overlapping squares, painted A to D.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbumImpl();
+    for (String id : Arrays.asList("A", "B", "C", "D")) {
+      album.addShape(id, new Rectangle(new Color(0, 0, 0), new Point2D(0, 0), 10, 10));
+    }
+    album.getJournal().clear();
+  }
+
+  /**
+   * Get shape identifiers in paint order.
+   * @return  identifiers
+   */
+  private List<String> order() {
+    return new ArrayList<String>(album.shapesIntersecting(0, 0, 10, 10).keySet());
+  }
+
+  /**
+   * Test bringing to front, sending to back and moving above.
+   */
+  @Test
+  public void testReorder() {
+    assertTrue(album.bringToFront("A"));
+    assertEquals(Arrays.asList("B", "C", "D", "A"), order());
+    assertTrue(album.sendToBack("D"));
+    assertEquals(Arrays.asList("D", "B", "C", "A"), order());
+    assertTrue(album.moveAbove("B", "A"));
+    assertEquals(Arrays.asList("D", "C", "A", "B"), order());
+    assertTrue(album.moveAbove("D", "C"));
+    assertEquals(Arrays.asList("C", "D", "A", "B"), order());
+    assertTrue(album.toString().startsWith("Name: C\n"));
+
+    assertFalse(album.bringToFront("X"));
+    assertFalse(album.moveAbove("A", "X"));
+    assertThrows(IllegalArgumentException.class, new Executable() {
+      @Override
+      public void execute() throws Throwable {
+        album.moveAbove("A", "A");
+      }
+    });
+  }
+
+  /**
+   * Test that snapshots keep the order they were taken with.
+   */
+  @Test
+  public void testSnapshot() {
+    ISnapshot before = album.takeSnapshot("before");
+    album.bringToFront("A");
+    ISnapshot after = album.takeSnapshot("after");
+
+    assertEquals(Arrays.asList("A", "B", "C", "D"),
+            new ArrayList<String>(before.getShapes().keySet()));
+    assertEquals(Arrays.asList("B", "C", "D", "A"),
+            new ArrayList<String>(after.getShapes().keySet()));
+    assertEquals("D", new HitTester(before).shapeAt(5, 5));
+    assertEquals("A", new HitTester(after).shapeAt(5, 5));
+  }
+
+  /**
+   * Test undoing and redoing moves, and rolling them back.
+   */
+  @Test
+  public void testUndoAndRollback() {
+    album.bringToFront("A");
+    album.removeShape("C");
+    album.moveAbove("B", "D");
+    assertEquals(Arrays.asList("D", "B", "A"), order());
+
+    assertTrue(album.undo());
+    assertTrue(album.undo());
+    assertEquals(Arrays.asList("B", "C", "D", "A"), order());
+    assertTrue(album.undo());
+    assertEquals(Arrays.asList("A", "B", "C", "D"), order());
+    assertTrue(album.redo());
+    assertTrue(album.redo());
+    assertTrue(album.redo());
+    assertEquals(Arrays.asList("D", "B", "A"), order());
+
+    album.begin();
+    album.sendToBack("A");
+    for (int i = 0; i < 100; i++) {
+      album.moveAbove("B", "D");
+      album.moveAbove("D", "A");
+    }
+    album.rollback();
+    assertEquals(Arrays.asList("D", "B", "A"), order());
+  }
+
+  /**
+   * Test that many moves into one gap keep the order, the index and the pool consistent.
+   */
+  @Test
+  public void testManyMoves() {
+    long references = album.getShapePool().getReferences();
+    for (int i = 0; i < 200; i++) {
+      album.moveAbove((i % 2 == 0) ? "C" : "B", "A");
+    }
+    assertEquals(Arrays.asList("A", "B", "C", "D"), order());
+    assertEquals(references, album.getShapePool().getReferences());
+    while (album.undo()) {
+      assertEquals(4, order().size());
+    }
+  }
+}